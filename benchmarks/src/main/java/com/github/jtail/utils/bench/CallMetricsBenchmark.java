@@ -0,0 +1,71 @@
+package com.github.jtail.utils.bench;
+
+import com.github.jtail.utils.metrics.CallMetrics;
+import com.github.jtail.utils.xfn.StacklessException;
+import com.github.jtail.utils.xfn.XFunction;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per-call overhead of {@link CallMetrics} decorators, enabled and disabled, against the bare function.
+ * The enabled overhead is mostly the two {@link System#nanoTime()} calls, whose cost depends on the clock source.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+@State(Scope.Thread)
+public class CallMetricsBenchmark {
+    private static final StacklessException FAILURE = new StacklessException("failure");
+
+    private XFunction<Integer, Integer, RuntimeException> bare;
+    private XFunction<Integer, Integer, RuntimeException> disabled;
+    private XFunction<Integer, Integer, RuntimeException> enabled;
+    private XFunction<Integer, Integer, RuntimeException> failing;
+    private Integer input = 42;
+
+    @Setup
+    public void setup() {
+        bare = i -> i + 1;
+        disabled = CallMetrics.disabled().function(bare);
+        enabled = CallMetrics.of("enabled").function(bare);
+        failing = CallMetrics.of("failing").function(i -> {
+            throw FAILURE;
+        });
+    }
+
+    @Benchmark
+    public Integer bare() {
+        return bare.apply(input);
+    }
+
+    @Benchmark
+    public Integer disabled() {
+        return disabled.apply(input);
+    }
+
+    @Benchmark
+    public Integer enabled() {
+        return enabled.apply(input);
+    }
+
+    @Benchmark
+    public Object enabledFailure() {
+        try {
+            return failing.apply(input);
+        } catch (StacklessException e) {
+            return e;
+        }
+    }
+}
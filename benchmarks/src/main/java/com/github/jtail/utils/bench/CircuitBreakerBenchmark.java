@@ -0,0 +1,62 @@
+package com.github.jtail.utils.bench;
+
+import com.github.jtail.utils.resilience.CallNotPermittedException;
+import com.github.jtail.utils.resilience.CircuitBreaker;
+import com.github.jtail.utils.xfn.XFunction;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per-call overhead of a closed {@link CircuitBreaker} against the bare function, and the cost of a rejection by
+ * an open one, which should not allocate.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+@State(Scope.Thread)
+public class CircuitBreakerBenchmark {
+    private XFunction<Integer, Integer, RuntimeException> bare;
+    private XFunction<Integer, Integer, RuntimeException> closed;
+    private XFunction<Integer, Integer, RuntimeException> open;
+    private Integer input = 42;
+
+    @Setup
+    public void setup() {
+        bare = i -> i + 1;
+        closed = CircuitBreaker.builder("closed").build().function(bare);
+        CircuitBreaker breaker = CircuitBreaker.builder("open").build();
+        breaker.open();
+        open = breaker.function(bare);
+    }
+
+    @Benchmark
+    public Integer bare() {
+        return bare.apply(input);
+    }
+
+    @Benchmark
+    public Integer closed() {
+        return closed.apply(input);
+    }
+
+    @Benchmark
+    public Object rejected() {
+        try {
+            return open.apply(input);
+        } catch (CallNotPermittedException e) {
+            return e;
+        }
+    }
+}
@@ -0,0 +1,79 @@
+package com.github.jtail.utils.bench;
+
+import com.github.jtail.utils.xfn.Condition;
+import com.github.jtail.utils.xfn.XOptional;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of {@code ifPresent(...).orElse(...)} chaining through {@link Condition}
+ * compared to the equivalent if/else and {@link Optional} code.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+@State(Scope.Thread)
+public class ConditionBenchmark {
+    @Param({"true", "false"})
+    private boolean present;
+
+    private String value;
+    private Optional<String> optional;
+    private XOptional<String> xoptional;
+
+    @Setup
+    public void setup() {
+        value = present ? "jtail" : null;
+        optional = Optional.ofNullable(value);
+        xoptional = XOptional.ofNullable(value);
+    }
+
+    @Benchmark
+    public void ifElse(Blackhole bh) {
+        String v = value;
+        if (v != null) {
+            bh.consume(v);
+        } else {
+            bh.consume(0);
+        }
+    }
+
+    @Benchmark
+    public void ifPresentOrElse(Blackhole bh) {
+        xoptional.ifPresent(bh::consume).orElse(() -> bh.consume(0));
+    }
+
+    @Benchmark
+    public void jdkIfPresentOrElse(Blackhole bh) {
+        if (optional.isPresent()) {
+            bh.consume(optional.get());
+        } else {
+            bh.consume(0);
+        }
+    }
+
+    @Benchmark
+    public Object ifPresentOrElseThrow(Blackhole bh) {
+        try {
+            xoptional.ifPresent(bh::consume).orElseThrow(IllegalStateException::new);
+            return null;
+        } catch (IllegalStateException e) {
+            return e;
+        }
+    }
+}
@@ -0,0 +1,95 @@
+package com.github.jtail.utils.bench;
+
+import com.github.jtail.utils.xfn.XOptional;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Capturing lambdas against the context-passing overloads of {@link XOptional}.
+ * The {@code context*} variants use static method references, which should stay at zero bytes per operation
+ * under {@code -prof gc}.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+@State(Scope.Thread)
+public class ContextBenchmark {
+    @Param({"true", "false"})
+    private boolean present;
+
+    private XOptional<String> xoptional;
+    private String prefix;
+    private StringBuilder buffer;
+
+    @Setup
+    public void setup() {
+        xoptional = present ? XOptional.of("jtail") : XOptional.empty();
+        prefix = "com.github.";
+        buffer = new StringBuilder();
+    }
+
+    @Benchmark
+    public int capturingMap() {
+        String p = prefix;
+        return xoptional.map(v -> length(v, p)).orElse(-1);
+    }
+
+    @Benchmark
+    public int contextMap() {
+        return xoptional.map(prefix, ContextBenchmark::length).orElse(-1);
+    }
+
+    @Benchmark
+    public void capturingIfPresent(Blackhole bh) {
+        StringBuilder b = buffer;
+        xoptional.ifPresent(v -> write(v, b)).orElse(() -> bh.consume(0));
+        b.setLength(0);
+    }
+
+    @Benchmark
+    public void contextIfPresent(Blackhole bh) {
+        xoptional.ifPresent(buffer, ContextBenchmark::write).orElse(bh, ContextBenchmark::absent);
+        buffer.setLength(0);
+    }
+
+    @Benchmark
+    public String capturingOrElseGet() {
+        String p = prefix;
+        return xoptional.orElseGet(() -> p);
+    }
+
+    @Benchmark
+    public String contextOrElseGet() {
+        return xoptional.orElseGet(prefix, ContextBenchmark::identity);
+    }
+
+    private static int length(String value, String prefix) {
+        return prefix.length() + value.length();
+    }
+
+    private static void write(String value, StringBuilder buffer) {
+        buffer.append(value);
+    }
+
+    private static void absent(Blackhole bh) {
+        bh.consume(0);
+    }
+
+    private static String identity(String value) {
+        return value;
+    }
+}
@@ -0,0 +1,114 @@
+package com.github.jtail.utils.bench;
+
+import com.github.jtail.utils.xfn.XConsumer;
+import com.github.jtail.utils.xfn.XFunction;
+import com.github.jtail.utils.xfn.XSupplier;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * Lambda dispatch through the X-interfaces at call sites of increasing polymorphism.
+ * <p>
+ * With {@code targets=1} the call site is monomorphic and the lambda gets inlined, {@code 2} hits
+ * the bimorphic inline cache and {@code 4} forces a megamorphic (itable) dispatch on every call.
+ * Each fork only ever sees one profile, so the figures are not polluted by the other parameters.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+@State(Scope.Thread)
+public class DispatchBenchmark {
+    private static final int SIZE = 1024;
+
+    @Param({"1", "2", "4"})
+    private int targets;
+
+    private Object[] inputs;
+    private XFunction<Object, Object, RuntimeException>[] xfunctions;
+    private Function<Object, Object>[] functions;
+    private XConsumer<Object, RuntimeException>[] xconsumers;
+    private XSupplier<Object, RuntimeException>[] xsuppliers;
+
+    private Object sink;
+
+    @Setup
+    @SuppressWarnings("unchecked")
+    public void setup() {
+        Object[] constants = {"a", "b", "c", "d"};
+        XFunction<Object, Object, RuntimeException>[] xf = new XFunction[]{
+                v -> v, v -> constants[0], v -> constants[1], v -> constants[2]
+        };
+        Function<Object, Object>[] f = new Function[]{
+                v -> v, v -> constants[0], v -> constants[1], v -> constants[2]
+        };
+        XConsumer<Object, RuntimeException>[] xc = new XConsumer[]{
+                v -> sink = v, v -> sink = constants[0], v -> sink = constants[1], v -> sink = constants[2]
+        };
+        XSupplier<Object, RuntimeException>[] xs = new XSupplier[]{
+                () -> constants[0], () -> constants[1], () -> constants[2], () -> constants[3]
+        };
+
+        inputs = new Object[SIZE];
+        xfunctions = new XFunction[SIZE];
+        functions = new Function[SIZE];
+        xconsumers = new XConsumer[SIZE];
+        xsuppliers = new XSupplier[SIZE];
+        for (int i = 0; i < SIZE; i++) {
+            int k = i % targets;
+            inputs[i] = constants[i & 3];
+            xfunctions[i] = xf[k];
+            functions[i] = f[k];
+            xconsumers[i] = xc[k];
+            xsuppliers[i] = xs[k];
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(SIZE)
+    public void jdkFunction(Blackhole bh) {
+        for (int i = 0; i < SIZE; i++) {
+            bh.consume(functions[i].apply(inputs[i]));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(SIZE)
+    public void xfunction(Blackhole bh) {
+        for (int i = 0; i < SIZE; i++) {
+            bh.consume(xfunctions[i].apply(inputs[i]));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(SIZE)
+    public Object xconsumer() {
+        for (int i = 0; i < SIZE; i++) {
+            xconsumers[i].accept(inputs[i]);
+        }
+        return sink;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(SIZE)
+    public void xsupplier(Blackhole bh) {
+        for (int i = 0; i < SIZE; i++) {
+            bh.consume(xsuppliers[i].get());
+        }
+    }
+}
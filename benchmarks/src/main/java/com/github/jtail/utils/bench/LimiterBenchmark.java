@@ -0,0 +1,69 @@
+package com.github.jtail.utils.bench;
+
+import com.github.jtail.utils.resilience.Bulkhead;
+import com.github.jtail.utils.resilience.RateLimiter;
+import com.github.jtail.utils.resilience.RequestNotPermittedException;
+import com.github.jtail.utils.xfn.XFunction;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per-call overhead of the {@link RateLimiter} and {@link Bulkhead} decorators when a permit is available, and
+ * the cost of a rate limiter rejection, against the bare function. None of them should allocate.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+@State(Scope.Thread)
+public class LimiterBenchmark {
+    private XFunction<Integer, Integer, RuntimeException> bare;
+    private XFunction<Integer, Integer, RuntimeException> limited;
+    private XFunction<Integer, Integer, RuntimeException> exhausted;
+    private XFunction<Integer, Integer, RuntimeException> bulkhead;
+    private Integer input = 42;
+
+    @Setup
+    public void setup() {
+        bare = i -> i + 1;
+        limited = RateLimiter.builder("limited").rate(1e9).build().function(bare);
+        exhausted = RateLimiter.builder("exhausted").rate(1e-3).burst(1).build().function(bare);
+        exhausted.apply(input);
+        bulkhead = Bulkhead.builder("bulkhead").build().function(bare);
+    }
+
+    @Benchmark
+    public Integer bare() {
+        return bare.apply(input);
+    }
+
+    @Benchmark
+    public Integer rateLimited() {
+        return limited.apply(input);
+    }
+
+    @Benchmark
+    public Object rateLimitRejected() {
+        try {
+            return exhausted.apply(input);
+        } catch (RequestNotPermittedException e) {
+            return e;
+        }
+    }
+
+    @Benchmark
+    public Integer bulkhead() {
+        return bulkhead.apply(input);
+    }
+}
@@ -0,0 +1,61 @@
+package com.github.jtail.utils.bench;
+
+import com.github.jtail.utils.concurrent.XPool;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Round trip of a pooled resource through {@link XPool}: borrowing from the thread-local slot and returning it,
+ * directly and through {@code withResource}, and through the shared stack when the thread already keeps another
+ * resource. None of them should allocate.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+@State(Scope.Thread)
+public class PoolBenchmark {
+    private XPool<StringBuilder, RuntimeException> pool;
+
+    @Setup
+    public void setup() {
+        pool = XPool.<StringBuilder, RuntimeException>builder("buffers", StringBuilder::new, b -> b.setLength(0))
+                .maxSize(4).build();
+    }
+
+    @TearDown
+    public void tearDown() {
+        pool.close();
+    }
+
+    @Benchmark
+    public int lease() throws InterruptedException {
+        try (XPool.Lease<StringBuilder> lease = pool.borrow()) {
+            return lease.get().length();
+        }
+    }
+
+    @Benchmark
+    public int withResource() throws InterruptedException {
+        return pool.withResource(StringBuilder::length);
+    }
+
+    @Benchmark
+    public int shared() throws InterruptedException {
+        try (XPool.Lease<StringBuilder> kept = pool.borrow(); XPool.Lease<StringBuilder> lease = pool.borrow()) {
+            return kept.get().length() + lease.get().length();
+        }
+    }
+}
@@ -0,0 +1,163 @@
+package com.github.jtail.utils.bench;
+
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.Result;
+import org.openjdk.jmh.results.RunResult;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Runs the benchmarks with the GC profiler and compares them against a recorded baseline.
+ * <p>
+ * Any standard JMH command line option is accepted (include patterns, {@code -f}, {@code -wi}, ...).
+ * The comparison is configured through system properties:
+ * <ul>
+ * <li>{@code baseline} - path to the baseline file, {@code baseline.csv} by default;</li>
+ * <li>{@code tolerance} - allowed relative slowdown of the primary score, {@code 0.25} by default;</li>
+ * <li>{@code floor} - allowed absolute slowdown of the primary score, in its unit, {@code 5} by default, so that
+ * the noise of a benchmark scoring a few nanoseconds is not taken for a regression;</li>
+ * <li>{@code allocTolerance} - allowed growth of allocation, in bytes per operation, {@code 8} by default;</li>
+ * <li>{@code update} - when {@code true}, results are merged into the baseline instead of compared.</li>
+ * </ul>
+ * The process exits with status 1 if any benchmark regressed, so it can be used as a CI gate.
+ * Benchmarks missing from the baseline are reported but never fail the check.
+ */
+public class RegressionCheck {
+    private static final String ALLOC_NORM = "gc.alloc.rate.norm";
+    private static final String HEADER = "benchmark,mode,score,unit,alloc";
+
+    public static void main(String[] args) throws RunnerException, CommandLineOptionException, IOException {
+        Path path = Paths.get(System.getProperty("baseline", "baseline.csv"));
+        double tolerance = Double.parseDouble(System.getProperty("tolerance", "0.25"));
+        double floor = Double.parseDouble(System.getProperty("floor", "5"));
+        double allocTolerance = Double.parseDouble(System.getProperty("allocTolerance", "8"));
+        boolean update = Boolean.getBoolean("update");
+
+        Options options = new OptionsBuilder()
+                .parent(new CommandLineOptions(args))
+                .addProfiler(GCProfiler.class)
+                .build();
+        Map<String, Entry> current = collect(new Runner(options).run());
+        Map<String, Entry> baseline = Files.exists(path) ? read(path) : new TreeMap<>();
+
+        if (update) {
+            baseline.putAll(current);
+            write(path, baseline);
+            System.out.printf("Recorded %d results into %s%n", current.size(), path);
+        } else if (compare(baseline, current, tolerance, floor, allocTolerance, System.out) > 0) {
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Prints the comparison table and returns the number of regressions.
+     */
+    static int compare(Map<String, Entry> baseline, Map<String, Entry> current,
+                       double tolerance, double floor, double allocTolerance, PrintStream out) {
+        int regressions = 0;
+        out.printf("%n%-70s %12s %12s %8s %10s %10s%n", "Benchmark", "Baseline", "Current", "Change", "B/op was", "B/op now");
+        for (Entry entry : current.values()) {
+            Entry base = baseline.get(entry.key);
+            if (base == null) {
+                out.printf("%-70s %12s %12.3f %8s %10s %10.1f  NEW%n", entry.key, "-", entry.score, "-", "-", entry.alloc);
+                continue;
+            }
+            double delta = entry.score - base.score;
+            double change = delta / base.score;
+            boolean slower = entry.mode == Mode.Throughput
+                    ? -change > tolerance && -delta > floor
+                    : change > tolerance && delta > floor;
+            boolean heavier = entry.alloc > base.alloc + allocTolerance;
+            String verdict = slower || heavier ? "REGRESSION" : "";
+            if (slower || heavier) {
+                regressions++;
+            }
+            out.printf("%-70s %12.3f %12.3f %+7.1f%% %10.1f %10.1f  %s%n",
+                    entry.key, base.score, entry.score, change * 100, base.alloc, entry.alloc, verdict);
+        }
+        out.printf("%n%d regression(s) against %d baseline entries%n", regressions, baseline.size());
+        return regressions;
+    }
+
+    private static Map<String, Entry> collect(Collection<RunResult> results) {
+        Map<String, Entry> entries = new TreeMap<>();
+        for (RunResult run : results) {
+            Result primary = run.getPrimaryResult();
+            double alloc = Double.NaN;
+            for (Map.Entry<String, Result> secondary : run.getSecondaryResults().entrySet()) {
+                if (secondary.getKey().endsWith(ALLOC_NORM)) {
+                    alloc = secondary.getValue().getScore();
+                }
+            }
+            Entry entry = new Entry(key(run), run.getParams().getMode(), primary.getScore(), primary.getScoreUnit(), alloc);
+            entries.put(entry.key, entry);
+        }
+        return entries;
+    }
+
+    private static String key(RunResult run) {
+        String benchmark = run.getParams().getBenchmark();
+        StringBuilder key = new StringBuilder(benchmark.substring(benchmark.lastIndexOf('.', benchmark.lastIndexOf('.') - 1) + 1));
+        for (String param : run.getParams().getParamsKeys()) {
+            key.append(':').append(param).append('=').append(run.getParams().getParam(param));
+        }
+        return key.toString();
+    }
+
+    private static Map<String, Entry> read(Path path) throws IOException {
+        Map<String, Entry> entries = new TreeMap<>();
+        for (String line : Files.readAllLines(path, StandardCharsets.UTF_8)) {
+            if (line.isEmpty() || line.startsWith("#") || line.equals(HEADER)) {
+                continue;
+            }
+            String[] cells = line.split(",");
+            Entry entry = new Entry(cells[0], Mode.deepValueOf(cells[1]), Double.parseDouble(cells[2]), cells[3], Double.parseDouble(cells[4]));
+            entries.put(entry.key, entry);
+        }
+        return entries;
+    }
+
+    private static void write(Path path, Map<String, Entry> entries) throws IOException {
+        List<String> lines = new ArrayList<>();
+        lines.add("# Generated by RegressionCheck -Dupdate=true, " + System.getProperty("java.vm.name") + " " + System.getProperty("java.version"));
+        lines.add(HEADER);
+        for (Entry entry : entries.values()) {
+            lines.add(String.format(Locale.ROOT, "%s,%s,%.3f,%s,%.1f", entry.key, entry.mode.shortLabel(), entry.score, entry.unit, entry.alloc));
+        }
+        Files.write(path, lines, StandardCharsets.UTF_8);
+    }
+
+    static final class Entry {
+        final String key;
+        final Mode mode;
+        final double score;
+        final String unit;
+        final double alloc;
+
+        Entry(String key, Mode mode, double score, String unit, double alloc) {
+            this.key = key;
+            this.mode = mode;
+            this.score = score;
+            this.unit = unit;
+            this.alloc = alloc;
+        }
+    }
+}
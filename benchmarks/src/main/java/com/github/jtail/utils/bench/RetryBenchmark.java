@@ -0,0 +1,56 @@
+package com.github.jtail.utils.bench;
+
+import com.github.jtail.utils.resilience.Retry;
+import com.github.jtail.utils.resilience.RetryBudget;
+import com.github.jtail.utils.xfn.XSupplier;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Overhead of {@link Retry} on calls which succeed at the first attempt, which should be neither slower nor
+ * allocating more than the bare call.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+@State(Scope.Thread)
+public class RetryBenchmark {
+    private XSupplier<Integer, RuntimeException> bare;
+    private XSupplier<Integer, RuntimeException> retried;
+    private Retry retry;
+    private Integer value = 42;
+
+    @Setup
+    public void setup() {
+        bare = () -> value;
+        retry = Retry.builder().maxAttempts(3).budget(RetryBudget.of(10, 1)).build();
+        retried = retry.decorate(bare);
+    }
+
+    @Benchmark
+    public Integer bare() {
+        return bare.get();
+    }
+
+    @Benchmark
+    public Integer call() {
+        return retry.call(bare);
+    }
+
+    @Benchmark
+    public Integer decorated() {
+        return retried.get();
+    }
+}
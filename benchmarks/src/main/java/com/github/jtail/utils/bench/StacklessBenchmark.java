@@ -0,0 +1,86 @@
+package com.github.jtail.utils.bench;
+
+import com.github.jtail.utils.xfn.StacklessException;
+import com.github.jtail.utils.xfn.XOptional;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.NoSuchElementException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of signalling absence with an exception: a new exception with a stack trace, a new stackless one,
+ * and a shared stackless instance, against returning a sentinel.
+ * The exception is thrown a few calls deep, as in a parser, so that filling in the stack trace has frames to walk.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+@State(Scope.Thread)
+public class StacklessBenchmark {
+    private static final StacklessException ABSENT = new StacklessException("absent");
+
+    private XOptional<String> empty = XOptional.empty();
+
+    @Benchmark
+    public int sentinel() {
+        return parse(0) == null ? -1 : 0;
+    }
+
+    @Benchmark
+    public int newException() {
+        try {
+            return parse(1).length();
+        } catch (NoSuchElementException e) {
+            return -1;
+        }
+    }
+
+    @Benchmark
+    public int newStackless() {
+        try {
+            return parse(2).length();
+        } catch (StacklessException e) {
+            return -1;
+        }
+    }
+
+    @Benchmark
+    public int sharedStackless() {
+        try {
+            return parse(3).length();
+        } catch (StacklessException e) {
+            return -1;
+        }
+    }
+
+    private String parse(int mode) {
+        return token(mode);
+    }
+
+    private String token(int mode) {
+        return lookup(mode);
+    }
+
+    private String lookup(int mode) {
+        switch (mode) {
+            case 0:
+                return empty.orElse(null);
+            case 1:
+                return empty.orElseThrow(NoSuchElementException::new);
+            case 2:
+                return empty.orElseThrow(() -> new StacklessException("absent"));
+            default:
+                return empty.orElseThrowInstance(ABSENT);
+        }
+    }
+}
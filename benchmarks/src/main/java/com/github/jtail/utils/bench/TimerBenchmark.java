@@ -0,0 +1,63 @@
+package com.github.jtail.utils.bench;
+
+import com.github.jtail.utils.concurrent.HashedWheelTimer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.time.Duration;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of scheduling and cancelling a timeout which never fires, the common case of a call timeout, on
+ * {@link HashedWheelTimer} and on a {@link ScheduledExecutorService} removing cancelled tasks.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+@State(Scope.Thread)
+public class TimerBenchmark {
+    private static final Runnable TASK = () -> {
+    };
+
+    private HashedWheelTimer wheel;
+    private ScheduledThreadPoolExecutor scheduler;
+
+    @Setup
+    public void setup() {
+        wheel = HashedWheelTimer.create(Duration.ofMillis(10), 512);
+        scheduler = (ScheduledThreadPoolExecutor) Executors.newScheduledThreadPool(1);
+        scheduler.setRemoveOnCancelPolicy(true);
+    }
+
+    @TearDown
+    public void tearDown() {
+        wheel.close();
+        scheduler.shutdownNow();
+    }
+
+    @Benchmark
+    public boolean wheel() {
+        return wheel.schedule(TASK, 1, TimeUnit.SECONDS).cancel();
+    }
+
+    @Benchmark
+    public boolean scheduler() {
+        ScheduledFuture<?> future = scheduler.schedule(TASK, 1, TimeUnit.SECONDS);
+        return future.cancel(false);
+    }
+}
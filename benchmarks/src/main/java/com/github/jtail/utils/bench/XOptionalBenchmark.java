@@ -0,0 +1,127 @@
+package com.github.jtail.utils.bench;
+
+import com.github.jtail.utils.xfn.XOptional;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.NoSuchElementException;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of the {@link XOptional} operations against {@link Optional} and a plain null check.
+ * Run with {@code -prof gc} to see allocation per operation.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+@State(Scope.Thread)
+public class XOptionalBenchmark {
+    @Param({"true", "false"})
+    private boolean present;
+
+    private String value;
+    private String nonNull;
+    private Optional<String> optional;
+    private XOptional<String> xoptional;
+    private XOptional<String> fallback;
+
+    @Setup
+    public void setup() {
+        nonNull = "jtail";
+        value = present ? nonNull : null;
+        optional = Optional.ofNullable(value);
+        xoptional = XOptional.ofNullable(value);
+        fallback = XOptional.of("fallback");
+    }
+
+    @Benchmark
+    public int nullCheck() {
+        String v = value;
+        return v != null ? v.length() : -1;
+    }
+
+    @Benchmark
+    public XOptional<String> of() {
+        return XOptional.of(nonNull);
+    }
+
+    @Benchmark
+    public XOptional<String> ofNullable() {
+        return XOptional.ofNullable(value);
+    }
+
+    @Benchmark
+    public Optional<String> jdkOfNullable() {
+        return Optional.ofNullable(value);
+    }
+
+    @Benchmark
+    public XOptional<String> from() {
+        return XOptional.from(optional);
+    }
+
+    @Benchmark
+    public int map() {
+        return XOptional.ofNullable(value).map(String::length).orElse(-1);
+    }
+
+    @Benchmark
+    public int jdkMap() {
+        return Optional.ofNullable(value).map(String::length).orElse(-1);
+    }
+
+    @Benchmark
+    public XOptional<String> flatMap() {
+        return xoptional.flatMap(v -> fallback);
+    }
+
+    @Benchmark
+    public Optional<String> jdkFlatMap() {
+        return optional.flatMap(v -> Optional.of(v));
+    }
+
+    @Benchmark
+    public XOptional<String> filter() {
+        return xoptional.filter(v -> v.length() > 2);
+    }
+
+    @Benchmark
+    public String orElseGet() {
+        return xoptional.orElseGet(() -> "other");
+    }
+
+    @Benchmark
+    public String jdkOrElseGet() {
+        return optional.orElseGet(() -> "other");
+    }
+
+    @Benchmark
+    public Object orElseThrow() {
+        try {
+            return xoptional.orElseThrow(NoSuchElementException::new);
+        } catch (NoSuchElementException e) {
+            return e;
+        }
+    }
+
+    @Benchmark
+    public Object jdkOrElseThrow() {
+        try {
+            return optional.orElseThrow(NoSuchElementException::new);
+        } catch (NoSuchElementException e) {
+            return e;
+        }
+    }
+}
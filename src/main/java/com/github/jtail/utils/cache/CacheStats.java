@@ -0,0 +1,69 @@
+package com.github.jtail.utils.cache;
+
+/**
+ * Point in time snapshot of {@link XCache} counters.
+ */
+public final class CacheStats {
+    private final long hits;
+    private final long misses;
+    private final long loadFailures;
+    private final long evictions;
+    private final long expirations;
+
+    CacheStats(long hits, long misses, long loadFailures, long evictions, long expirations) {
+        this.hits = hits;
+        this.misses = misses;
+        this.loadFailures = loadFailures;
+        this.evictions = evictions;
+        this.expirations = expirations;
+    }
+
+    /**
+     * @return number of lookups which found a value or a remembered failure
+     */
+    public long hits() {
+        return hits;
+    }
+
+    /**
+     * @return number of lookups which had to invoke the loader
+     */
+    public long misses() {
+        return misses;
+    }
+
+    /**
+     * @return number of loader invocations which threw
+     */
+    public long loadFailures() {
+        return loadFailures;
+    }
+
+    /**
+     * @return number of entries evicted because of the size or weight limit
+     */
+    public long evictions() {
+        return evictions;
+    }
+
+    /**
+     * @return number of entries removed because they expired
+     */
+    public long expirations() {
+        return expirations;
+    }
+
+    /**
+     * @return ratio of hits to all lookups, {@code 1.0} if there were no lookups
+     */
+    public double hitRate() {
+        long requests = hits + misses;
+        return requests == 0 ? 1.0 : (double) hits / requests;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("CacheStats[hits=%d, misses=%d, loadFailures=%d, evictions=%d, expirations=%d]",
+                hits, misses, loadFailures, evictions, expirations);
+    }
+}
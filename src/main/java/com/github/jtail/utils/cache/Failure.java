@@ -0,0 +1,44 @@
+package com.github.jtail.utils.cache;
+
+/**
+ * Remembered exception of a failed call, along with the moment it may be retried.
+ */
+final class Failure {
+    private static final long NEVER = Long.MAX_VALUE;
+
+    final Exception cause;
+    final long retryAt;
+    final int failures;
+
+    Failure(Exception cause, long retryAt, int failures) {
+        this.cause = cause;
+        this.retryAt = retryAt;
+        this.failures = failures;
+    }
+
+    /**
+     * @param now current time, as returned by the ticker which {@code retryAt} is based on
+     * @return {@code true} if the call may be retried
+     */
+    boolean isExpired(long now) {
+        return retryAt != NEVER && now - retryAt >= 0;
+    }
+
+    /**
+     * Rethrows the remembered exception.
+     */
+    <X extends Exception> X raise() throws X {
+        throw Failure.<X>raise(cause);
+    }
+
+    /**
+     * Rethrows an exception caught from a call declared to throw {@code X}.
+     */
+    @SuppressWarnings("unchecked")
+    static <X extends Exception> X raise(Exception e) throws X {
+        if (e instanceof RuntimeException) {
+            throw (RuntimeException) e;
+        }
+        throw (X) e;
+    }
+}
@@ -0,0 +1,76 @@
+package com.github.jtail.utils.cache;
+
+import java.time.Duration;
+import java.util.Objects;
+
+/**
+ * Describes what a caching decorator does when the decorated call fails: remember the exception for good,
+ * retry on the very next call, or keep rethrowing the remembered exception for an exponentially growing
+ * period before trying again.
+ */
+public final class FailurePolicy {
+    private static final long NEVER = Long.MAX_VALUE;
+
+    private static final FailurePolicy CACHE = new FailurePolicy(NEVER, NEVER);
+    private static final FailurePolicy RETRY = new FailurePolicy(0, 0);
+
+    private final long initialNanos;
+    private final long maxNanos;
+
+    private FailurePolicy(long initialNanos, long maxNanos) {
+        this.initialNanos = initialNanos;
+        this.maxNanos = maxNanos;
+    }
+
+    /**
+     * @return policy which keeps the first exception and rethrows it on every later call
+     */
+    public static FailurePolicy cache() {
+        return CACHE;
+    }
+
+    /**
+     * @return policy which forgets the exception, so that the next call tries again
+     */
+    public static FailurePolicy retry() {
+        return RETRY;
+    }
+
+    /**
+     * Returns policy which rethrows the remembered exception until the backoff period is over.
+     * The period starts at {@code initial} and doubles after each consecutive failure, up to {@code max}.
+     *
+     * @param initial backoff after the first failure
+     * @param max upper bound for the backoff
+     * @return a backoff policy
+     */
+    public static FailurePolicy backoff(Duration initial, Duration max) {
+        long initialNanos = Objects.requireNonNull(initial).toNanos();
+        long maxNanos = Objects.requireNonNull(max).toNanos();
+        if (initialNanos <= 0 || maxNanos < initialNanos) {
+            throw new IllegalArgumentException("Invalid backoff " + initial + ".." + max);
+        }
+        return new FailurePolicy(initialNanos, maxNanos);
+    }
+
+    /**
+     * Computes the moment of the next attempt.
+     *
+     * @param now current {@link System#nanoTime()}
+     * @param failures number of consecutive failures so far, starting from 1
+     * @return {@link System#nanoTime()} based deadline, or {@link Long#MAX_VALUE} if the failure is permanent
+     */
+    long retryAt(long now, int failures) {
+        if (initialNanos == NEVER) {
+            return NEVER;
+        }
+        int shift = Math.min(failures - 1, Long.numberOfLeadingZeros(initialNanos) - 1);
+        return now + Math.min(maxNanos, initialNanos << shift);
+    }
+
+    @Override
+    public String toString() {
+        return this == CACHE ? "FailurePolicy.cache" : this == RETRY ? "FailurePolicy.retry"
+                : String.format("FailurePolicy.backoff[%dns..%dns]", initialNanos, maxNanos);
+    }
+}
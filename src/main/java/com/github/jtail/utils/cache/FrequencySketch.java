@@ -0,0 +1,107 @@
+package com.github.jtail.utils.cache;
+
+/**
+ * Count-Min sketch of access frequencies used by the TinyLFU admission policy of {@link XCache}.
+ * <p>
+ * Each {@code long} of the table holds sixteen 4-bit counters, an item is counted in four of them picked by
+ * independent hashes, and its frequency is the minimum of the four. Once the number of increments reaches the
+ * sample size all counters are halved, so that the sketch follows changes in popularity.
+ * <p>
+ * Not thread safe, guarded by the eviction lock of the cache.
+ */
+final class FrequencySketch {
+    private static final long[] SEEDS = {
+            0xc3a5c85c97cb3127L, 0xb492b66fbe98f273L, 0x9ae16a3b2f90404fL, 0xcbf29ce484222325L
+    };
+    private static final long RESET_MASK = 0x7777777777777777L;
+
+    private long[] table;
+    private int mask;
+    private int sampleSize;
+    private int size;
+
+    /**
+     * @param expectedSize expected number of entries in the cache
+     */
+    FrequencySketch(long expectedSize) {
+        allocate(expectedSize);
+    }
+
+    /**
+     * Grows the table if it is too small for the given number of entries, forgetting the counts.
+     *
+     * @param expectedSize current or expected number of entries in the cache
+     */
+    void ensureCapacity(long expectedSize) {
+        if (expectedSize > table.length && table.length < 1 << 30) {
+            allocate(expectedSize);
+        }
+    }
+
+    private void allocate(long expectedSize) {
+        int capacity = (int) Math.max(8, Math.min(expectedSize, 1 << 30));
+        this.table = new long[Integer.highestOneBit(capacity - 1) << 1];
+        this.mask = table.length - 1;
+        this.sampleSize = (int) Math.min(10L * capacity, Integer.MAX_VALUE);
+        this.size = 0;
+    }
+
+    /**
+     * @return estimated number of occurrences of the item, up to 15
+     */
+    int frequency(Object item) {
+        int hash = spread(item.hashCode());
+        int start = (hash & 3) << 2;
+        int frequency = 15;
+        for (int i = 0; i < 4; i++) {
+            int index = indexOf(hash, i);
+            int count = (int) ((table[index] >>> ((start + i) << 2)) & 0xfL);
+            frequency = Math.min(frequency, count);
+        }
+        return frequency;
+    }
+
+    /**
+     * Records an occurrence of the item, ageing all counters periodically.
+     */
+    void increment(Object item) {
+        int hash = spread(item.hashCode());
+        int start = (hash & 3) << 2;
+        boolean added = false;
+        for (int i = 0; i < 4; i++) {
+            added |= incrementAt(indexOf(hash, i), start + i);
+        }
+        if (added && ++size >= sampleSize) {
+            reset();
+        }
+    }
+
+    private boolean incrementAt(int index, int counter) {
+        int offset = counter << 2;
+        long mask = 0xfL << offset;
+        if ((table[index] & mask) != mask) {
+            table[index] += 1L << offset;
+            return true;
+        }
+        return false;
+    }
+
+    private void reset() {
+        for (int i = 0; i < table.length; i++) {
+            table[i] = (table[i] >>> 1) & RESET_MASK;
+        }
+        size >>>= 1;
+    }
+
+    private int indexOf(int item, int i) {
+        long hash = (item + SEEDS[i]) * SEEDS[i];
+        hash += hash >>> 32;
+        return ((int) hash) & mask;
+    }
+
+    private static int spread(int x) {
+        x = ((x >>> 16) ^ x) * 0x45d9f3b;
+        x = ((x >>> 16) ^ x) * 0x45d9f3b;
+        return (x >>> 16) ^ x;
+    }
+}
@@ -0,0 +1,129 @@
+package com.github.jtail.utils.cache;
+
+import com.github.jtail.utils.xfn.XSupplier;
+
+import java.util.Objects;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * {@link XSupplier} decorator which invokes the delegate once and then keeps returning its result.
+ * <p>
+ * Once the value is known, {@link #get()} is a single volatile read. Until then callers serialize on a lock,
+ * so that concurrent first calls run the delegate only once and share its outcome, be it the value or
+ * the exception. What happens to later calls after a failure is decided by a {@link FailurePolicy}.
+ * <p>
+ * A lock is used rather than {@code synchronized} so that a slow delegate does not pin virtual threads.
+ *
+ * @param <T> the type of the value
+ * @param <X> the type of the exception thrown by the delegate
+ */
+public final class MemoizingSupplier<T, X extends Exception> implements XSupplier<T, X> {
+    /**
+     * Stands for the {@code null} value, as {@code null} state means no value yet.
+     */
+    private static final Object NULL = new Object();
+
+    private final XSupplier<? extends T, ? extends X> delegate;
+    private final FailurePolicy policy;
+    private final ReentrantLock lock = new ReentrantLock();
+
+    /**
+     * {@code null} until the first call completes, then the value, {@link #NULL} or {@link Failure}.
+     */
+    private volatile Object state;
+
+    private MemoizingSupplier(XSupplier<? extends T, ? extends X> delegate, FailurePolicy policy) {
+        this.delegate = Objects.requireNonNull(delegate);
+        this.policy = Objects.requireNonNull(policy);
+    }
+
+    /**
+     * Memoizes the result of the given supplier. A failed call is not remembered and the next call tries again.
+     *
+     * @param delegate supplier to be invoked once
+     * @param <T> the type of the value
+     * @param <X> the type of the exception thrown by the delegate
+     * @return memoizing supplier
+     */
+    public static <T, X extends Exception> MemoizingSupplier<T, X> of(XSupplier<? extends T, ? extends X> delegate) {
+        return new MemoizingSupplier<>(delegate, FailurePolicy.retry());
+    }
+
+    /**
+     * Memoizes the result of the given supplier, handling failures as the policy says.
+     *
+     * @param delegate supplier to be invoked once
+     * @param policy what to do after the delegate throws
+     * @param <T> the type of the value
+     * @param <X> the type of the exception thrown by the delegate
+     * @return memoizing supplier
+     */
+    public static <T, X extends Exception> MemoizingSupplier<T, X> of(XSupplier<? extends T, ? extends X> delegate,
+                                                                      FailurePolicy policy) {
+        return new MemoizingSupplier<>(delegate, policy);
+    }
+
+    @Override
+    public T get() throws X {
+        Object current = state;
+        if (current != null && !(current instanceof Failure)) {
+            return unmask(current);
+        }
+        return load(current);
+    }
+
+    /**
+     * @return {@code true} if the value has been computed
+     */
+    public boolean isInitialized() {
+        Object current = state;
+        return current != null && !(current instanceof Failure);
+    }
+
+    private T load(Object observed) throws X {
+        if (observed != null) {
+            Failure failure = (Failure) observed;
+            if (!failure.isExpired(System.nanoTime())) {
+                throw failure.<X>raise();
+            }
+        }
+        lock.lock();
+        try {
+            Object current = state;
+            if (current != observed) {
+                // someone else completed an attempt while we were waiting for the lock, share its outcome
+                return resolve(current);
+            }
+            try {
+                T value = delegate.get();
+                state = value == null ? NULL : value;
+                return value;
+            } catch (Exception e) {
+                int failures = observed == null ? 1 : ((Failure) observed).failures + 1;
+                state = new Failure(e, policy.retryAt(System.nanoTime(), failures), failures);
+                throw Failure.<X>raise(e);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private T resolve(Object current) throws X {
+        if (current instanceof Failure) {
+            throw ((Failure) current).<X>raise();
+        }
+        return unmask(current);
+    }
+
+    @SuppressWarnings("unchecked")
+    private T unmask(Object value) {
+        return value == NULL ? null : (T) value;
+    }
+
+    @Override
+    public String toString() {
+        Object current = state;
+        return current == null || current instanceof Failure
+                ? "MemoizingSupplier.pending" : String.format("MemoizingSupplier[%s]", unmask(current));
+    }
+}
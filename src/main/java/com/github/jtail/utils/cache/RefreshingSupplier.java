@@ -0,0 +1,274 @@
+package com.github.jtail.utils.cache;
+
+import com.github.jtail.utils.concurrent.XExecutor;
+import com.github.jtail.utils.xfn.XSupplier;
+
+import java.time.Duration;
+import java.util.Objects;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.function.LongSupplier;
+
+/**
+ * {@link XSupplier} decorator which keeps the value of the delegate for a while and refreshes it in the background
+ * (stale-while-revalidate).
+ * <p>
+ * A value younger than the refresh period is returned as is. An older one is still returned, while a single
+ * background refresh replaces it; callers only wait for the delegate when there is no value yet or it is older
+ * than the expiry period. Either way {@link #get()} reads the shared state with a single volatile load.
+ * <p>
+ * When a background refresh fails, the old value is kept until it expires, the exception is passed to the failure
+ * handler, and the {@link FailurePolicy} decides when the next refresh is tried. When a blocking load fails, its
+ * exception is thrown and the next call tries again.
+ * <pre>{@code
+ * RefreshingSupplier<Token, IOException> token = RefreshingSupplier.builder()
+ *         .refreshAfter(Duration.ofMinutes(4))
+ *         .expireAfter(Duration.ofMinutes(5))
+ *         .onRefreshFailure(e -> log.warn("Token refresh failed", e))
+ *         .build(auth::fetchToken);
+ * }</pre>
+ *
+ * @param <T> the type of the value
+ * @param <X> the type of the exception thrown by the delegate
+ */
+public final class RefreshingSupplier<T, X extends Exception> implements XSupplier<T, X> {
+    private static final long NEVER = Long.MAX_VALUE;
+
+    private final XSupplier<? extends T, ? extends X> delegate;
+    private final long refreshNanos;
+    private final long expireNanos;
+    private final FailurePolicy policy;
+    private final Executor executor;
+    private final Consumer<? super Exception> onRefreshFailure;
+    private final LongSupplier ticker;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final AtomicBoolean refreshing = new AtomicBoolean();
+    private final AtomicReference<Entry<T>> state = new AtomicReference<>();
+
+    private RefreshingSupplier(Builder builder, XSupplier<? extends T, ? extends X> delegate) {
+        this.delegate = Objects.requireNonNull(delegate);
+        this.refreshNanos = builder.refreshNanos;
+        this.expireNanos = builder.expireNanos;
+        this.policy = builder.policy;
+        this.executor = builder.executor != null ? builder.executor : SharedExecutor.INSTANCE;
+        this.onRefreshFailure = builder.onRefreshFailure;
+        this.ticker = builder.ticker;
+    }
+
+    /**
+     * @return builder of a new supplier
+     */
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    @Override
+    public T get() throws X {
+        Entry<T> current = state.get();
+        if (current != null) {
+            long now = ticker.getAsLong();
+            if (!isDue(now, current.expireAt)) {
+                if (isDue(now, current.refreshAt)) {
+                    refresh(current);
+                }
+                return current.value;
+            }
+        }
+        return load(current);
+    }
+
+    /**
+     * @return {@code true} if a value is held, even a stale one
+     */
+    public boolean isInitialized() {
+        return state.get() != null;
+    }
+
+    private T load(Entry<T> observed) throws X {
+        lock.lock();
+        try {
+            Entry<T> current = state.get();
+            if (current != observed && current != null && !isDue(ticker.getAsLong(), current.expireAt)) {
+                // someone else loaded the value while we were waiting for the lock
+                return current.value;
+            }
+            T value = delegate.get();
+            state.set(fresh(value, ticker.getAsLong()));
+            return value;
+        } catch (Exception e) {
+            throw Failure.<X>raise(e);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void refresh(Entry<T> observed) {
+        if (!refreshing.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            executor.execute(() -> {
+                try {
+                    T value = delegate.get();
+                    state.set(fresh(value, ticker.getAsLong()));
+                } catch (Exception e) {
+                    int failures = observed.failures + 1;
+                    long retryAt = policy.retryAt(ticker.getAsLong(), failures);
+                    state.compareAndSet(observed, new Entry<>(observed.value, retryAt, observed.expireAt, failures));
+                    try {
+                        onRefreshFailure.accept(e);
+                    } catch (RuntimeException ignored) {
+                        // the failure handler must not break later refreshes
+                    }
+                } finally {
+                    refreshing.set(false);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            refreshing.set(false);
+        }
+    }
+
+    private Entry<T> fresh(T value, long now) {
+        return new Entry<>(value, deadline(now, refreshNanos), deadline(now, expireNanos), 0);
+    }
+
+    private static long deadline(long now, long nanos) {
+        return nanos == NEVER ? NEVER : now + nanos;
+    }
+
+    private static boolean isDue(long now, long deadline) {
+        return deadline != NEVER && now - deadline >= 0;
+    }
+
+    @Override
+    public String toString() {
+        Entry<T> current = state.get();
+        return current == null ? "RefreshingSupplier.pending" : String.format("RefreshingSupplier[%s]", current.value);
+    }
+
+    /**
+     * Value along with the moments it becomes stale and expires.
+     */
+    private static final class Entry<T> {
+        final T value;
+        final long refreshAt;
+        final long expireAt;
+        final int failures;
+
+        Entry(T value, long refreshAt, long expireAt, int failures) {
+            this.value = value;
+            this.refreshAt = refreshAt;
+            this.expireAt = expireAt;
+            this.failures = failures;
+        }
+    }
+
+    /**
+     * Executor of the background refreshes unless one is given to the builder, created on first use.
+     */
+    private static final class SharedExecutor {
+        static final Executor INSTANCE = XExecutor.newPerTaskExecutor("refreshing-supplier-").toExecutorService();
+    }
+
+    /**
+     * Builder of {@link RefreshingSupplier}. By default the value is refreshed in the background once it is a minute
+     * old and never expires, a failed refresh is tried again after a second, doubling up to a minute, and
+     * the exception goes to the uncaught exception handler of the refreshing thread. Refreshes run on threads
+     * started per refresh, virtual ones on Java 21 and later.
+     */
+    public static final class Builder {
+        private long refreshNanos = Duration.ofMinutes(1).toNanos();
+        private long expireNanos = NEVER;
+        private FailurePolicy policy = FailurePolicy.backoff(Duration.ofSeconds(1), Duration.ofMinutes(1));
+        private Executor executor;
+        private Consumer<? super Exception> onRefreshFailure = e -> {
+            Thread thread = Thread.currentThread();
+            thread.getUncaughtExceptionHandler().uncaughtException(thread, e);
+        };
+        private LongSupplier ticker = System::nanoTime;
+
+        private Builder() {
+        }
+
+        /**
+         * @param refreshAfter age after which the value is refreshed in the background (the soft TTL)
+         * @return this builder
+         */
+        public Builder refreshAfter(Duration refreshAfter) {
+            this.refreshNanos = positive(refreshAfter);
+            return this;
+        }
+
+        /**
+         * @param expireAfter age after which the value is no longer returned and callers wait for a new one
+         *                    (the hard TTL)
+         * @return this builder
+         */
+        public Builder expireAfter(Duration expireAfter) {
+            this.expireNanos = positive(expireAfter);
+            return this;
+        }
+
+        /**
+         * @param policy when to try again after a background refresh failed
+         * @return this builder
+         */
+        public Builder failurePolicy(FailurePolicy policy) {
+            this.policy = Objects.requireNonNull(policy);
+            return this;
+        }
+
+        /**
+         * @param executor executor running the background refreshes
+         * @return this builder
+         */
+        public Builder executor(Executor executor) {
+            this.executor = Objects.requireNonNull(executor);
+            return this;
+        }
+
+        /**
+         * @param onRefreshFailure handler of the exceptions thrown by background refreshes
+         * @return this builder
+         */
+        public Builder onRefreshFailure(Consumer<? super Exception> onRefreshFailure) {
+            this.onRefreshFailure = Objects.requireNonNull(onRefreshFailure);
+            return this;
+        }
+
+        /**
+         * @param ticker source of time in nanoseconds
+         * @return this builder
+         */
+        public Builder ticker(LongSupplier ticker) {
+            this.ticker = Objects.requireNonNull(ticker);
+            return this;
+        }
+
+        /**
+         * @param delegate supplier of the value
+         * @param <T> the type of the value
+         * @param <X> the type of the exception thrown by the delegate
+         * @return a new supplier, which calls the delegate on first use
+         * @throws IllegalArgumentException if the value would expire before it is refreshed
+         */
+        public <T, X extends Exception> RefreshingSupplier<T, X> build(XSupplier<? extends T, ? extends X> delegate) {
+            if (expireNanos < refreshNanos) {
+                throw new IllegalArgumentException("Expiry before refresh " + Duration.ofNanos(expireNanos));
+            }
+            return new RefreshingSupplier<>(this, delegate);
+        }
+
+        private static long positive(Duration duration) {
+            if (duration.isNegative() || duration.isZero()) {
+                throw new IllegalArgumentException("Non-positive duration " + duration);
+            }
+            return duration.toNanos();
+        }
+    }
+}
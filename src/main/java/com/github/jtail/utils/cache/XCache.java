@@ -0,0 +1,723 @@
+package com.github.jtail.utils.cache;
+
+import com.github.jtail.utils.xfn.XFunction;
+
+import java.time.Duration;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.LongSupplier;
+import java.util.function.ToIntBiFunction;
+
+/**
+ * Bounded concurrent cache in front of an {@link XFunction}.
+ * <p>
+ * Each key is loaded once: concurrent callers asking for a key which is being loaded wait for that load and
+ * receive its value or its exception. Whether an exception stays in the cache afterwards is decided by the
+ * {@link FailurePolicy}, by default it does not.
+ * <p>
+ * Size or weight is bounded with W-TinyLFU: new entries enter a small LRU window, and when the main space is full
+ * a frequency sketch decides whether the entry leaving the window is admitted in place of the main space victim.
+ * The main space is segmented into probation and protected LRU queues. Entries can also expire a fixed time
+ * after they were loaded or last read.
+ * <p>
+ * Lookups of cached entries take no locks: reads are recorded into striped lossy buffers which are replayed
+ * against the eviction policy in batches, under a lock that is only ever tried. Loads, invalidations and
+ * expirations update the policy under that lock. Counters are kept in {@link LongAdder}s.
+ *
+ * @param <K> the type of keys
+ * @param <V> the type of values
+ * @param <X> the type of the exception thrown by the loader
+ */
+public final class XCache<K, V, X extends Exception> implements XFunction<K, V, X> {
+    /**
+     * Stands for the {@code null} value, as {@code null} means the entry is being loaded.
+     */
+    private static final Object NULL = new Object();
+
+    private static final int NONE = -1;
+    private static final int WINDOW = 0;
+    private static final int PROBATION = 1;
+    private static final int PROTECTED = 2;
+
+    private static final int READ_BUFFER_SIZE = 16;
+    private static final int READ_BUFFER_MASK = READ_BUFFER_SIZE - 1;
+    private static final int READ_BUFFER_THRESHOLD = READ_BUFFER_SIZE / 2;
+    private static final int SKETCH_SIZE = 1024;
+
+    private final ConcurrentHashMap<K, Node<K, V>> map = new ConcurrentHashMap<>();
+    private final XFunction<? super K, ? extends V, ? extends X> loader;
+    private final ToIntBiFunction<? super K, ? super V> weigher;
+    private final boolean weighted;
+    private final FailurePolicy failurePolicy;
+    private final LongSupplier ticker;
+    private final long expireAfterWriteNanos;
+    private final long expireAfterAccessNanos;
+    private final boolean recordReads;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder loadFailures = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder expirations = new LongAdder();
+
+    private final ReadBuffer[] readBuffers;
+
+    /*
+     * Eviction policy, guarded by evictionLock
+     */
+    private final ReentrantLock evictionLock = new ReentrantLock();
+    private final FrequencySketch sketch;
+    private final AccessOrder<K, V> window = new AccessOrder<>();
+    private final AccessOrder<K, V> probation = new AccessOrder<>();
+    private final AccessOrder<K, V> protectedQueue = new AccessOrder<>();
+    private final WriteOrder<K, V> writeOrder = new WriteOrder<>();
+    private final long maximumWeight;
+    private final long windowMaximum;
+    private final long protectedMaximum;
+    private long totalWeight;
+    private long windowWeight;
+    private long protectedWeight;
+
+    private XCache(Builder<K, V> builder, XFunction<? super K, ? extends V, ? extends X> loader) {
+        this.loader = Objects.requireNonNull(loader);
+        this.weigher = builder.weigher;
+        this.failurePolicy = builder.failurePolicy;
+        this.ticker = builder.ticker;
+        this.expireAfterWriteNanos = builder.expireAfterWriteNanos;
+        this.expireAfterAccessNanos = builder.expireAfterAccessNanos;
+        this.maximumWeight = builder.maximumWeight;
+        this.recordReads = maximumWeight != Long.MAX_VALUE || expireAfterAccessNanos > 0;
+        this.windowMaximum = maximumWeight == Long.MAX_VALUE ? Long.MAX_VALUE : Math.max(1, maximumWeight / 100);
+        this.protectedMaximum = maximumWeight == Long.MAX_VALUE ? Long.MAX_VALUE : (maximumWeight - windowMaximum) * 4 / 5;
+        this.weighted = builder.weighted;
+        // a weighted cache may hold far fewer entries than its weight, its sketch grows with the map instead
+        this.sketch = new FrequencySketch(maximumWeight == Long.MAX_VALUE || weighted ? SKETCH_SIZE : maximumWeight);
+        int stripes = Integer.highestOneBit(Runtime.getRuntime().availableProcessors() * 2 - 1);
+        this.readBuffers = new ReadBuffer[stripes];
+        for (int i = 0; i < stripes; i++) {
+            readBuffers[i] = new ReadBuffer();
+        }
+    }
+
+    /**
+     * @param <K> the type of keys
+     * @param <V> the type of values
+     * @return builder of a new cache
+     */
+    public static <K, V> Builder<K, V> builder() {
+        return new Builder<>();
+    }
+
+    /**
+     * Returns the value for the key, loading it if necessary. If the key is being loaded by another thread,
+     * waits for that load to complete and shares its outcome.
+     *
+     * @param key the key, not null
+     * @return the cached or loaded value, may be {@code null} if the loader returned {@code null}
+     * @throws X if the loader throws, or if a remembered failure is still in effect
+     */
+    @Override
+    public V apply(K key) throws X {
+        Objects.requireNonNull(key);
+        int failures = 0;
+        for (;;) {
+            Node<K, V> node = map.get(key);
+            if (node == null) {
+                Node<K, V> created = new Node<>(key);
+                node = map.putIfAbsent(key, created);
+                if (node == null) {
+                    return load(created, failures);
+                }
+            }
+            Object value = node.value;
+            if (value == null) {
+                value = node.await();
+                if (value == null) {
+                    // the load has been abandoned, race for a new one
+                    continue;
+                }
+                hits.increment();
+                return resolve(value);
+            }
+            long now = ticker.getAsLong();
+            if (isExpired(node, value, now)) {
+                failures = value instanceof Failure ? ((Failure) value).failures : 0;
+                expire(node);
+                continue;
+            }
+            hits.increment();
+            afterRead(node, now);
+            return resolve(value);
+        }
+    }
+
+    /**
+     * Returns the cached value for the key without loading it.
+     *
+     * @param key the key, not null
+     * @return the value, or {@code null} if the key is not cached, is being loaded, or has failed
+     */
+    public V getIfPresent(K key) {
+        Node<K, V> node = map.get(Objects.requireNonNull(key));
+        Object value = node == null ? null : node.value;
+        long now = ticker.getAsLong();
+        if (value == null || isExpired(node, value, now)) {
+            misses.increment();
+            return null;
+        }
+        hits.increment();
+        afterRead(node, now);
+        return value instanceof Failure ? null : unmask(value);
+    }
+
+    /**
+     * Discards the entry for the key. A load in progress completes for its callers, but is not cached.
+     *
+     * @param key the key, not null
+     */
+    public void invalidate(K key) {
+        Node<K, V> node = map.remove(Objects.requireNonNull(key));
+        if (node != null) {
+            evictionLock.lock();
+            try {
+                retire(node);
+            } finally {
+                evictionLock.unlock();
+            }
+        }
+    }
+
+    /**
+     * Discards all entries.
+     */
+    public void invalidateAll() {
+        for (K key : map.keySet()) {
+            invalidate(key);
+        }
+    }
+
+    /**
+     * Performs pending maintenance: replays buffered reads, removes expired entries and evicts over the limit.
+     * Maintenance normally piggybacks on cache operations, this only makes it happen now.
+     */
+    public void cleanUp() {
+        evictionLock.lock();
+        try {
+            maintenance(ticker.getAsLong());
+        } finally {
+            evictionLock.unlock();
+        }
+    }
+
+    /**
+     * @return approximate number of entries, including the ones being loaded
+     */
+    public long estimatedSize() {
+        return map.mappingCount();
+    }
+
+    /**
+     * @return snapshot of the counters, taken without locking
+     */
+    public CacheStats stats() {
+        return new CacheStats(hits.sum(), misses.sum(), loadFailures.sum(), evictions.sum(), expirations.sum());
+    }
+
+    private V load(Node<K, V> node, int failures) throws X {
+        misses.increment();
+        boolean completed = false;
+        try {
+            V value = loader.apply(node.key);
+            node.writeTime = ticker.getAsLong();
+            node.accessTime = node.writeTime;
+            node.value = value == null ? NULL : value;
+            completed = true;
+            afterWrite(node, weigher.applyAsInt(node.key, value));
+            return value;
+        } catch (Exception e) {
+            loadFailures.increment();
+            long now = ticker.getAsLong();
+            Failure failure = new Failure(e, failurePolicy.retryAt(now, failures + 1), failures + 1);
+            node.writeTime = now;
+            node.accessTime = now;
+            node.value = failure;
+            completed = true;
+            if (failure.isExpired(now)) {
+                map.remove(node.key, node);
+            } else {
+                afterWrite(node, 1);
+            }
+            throw Failure.<X>raise(e);
+        } finally {
+            if (!completed) {
+                map.remove(node.key, node);
+            }
+            node.loading.countDown();
+        }
+    }
+
+    private boolean isExpired(Node<K, V> node, Object value, long now) {
+        return value instanceof Failure && ((Failure) value).isExpired(now)
+                || expireAfterWriteNanos > 0 && now - node.writeTime >= expireAfterWriteNanos
+                || expireAfterAccessNanos > 0 && now - node.accessTime >= expireAfterAccessNanos;
+    }
+
+    private void expire(Node<K, V> node) {
+        if (map.remove(node.key, node)) {
+            expirations.increment();
+            evictionLock.lock();
+            try {
+                retire(node);
+            } finally {
+                evictionLock.unlock();
+            }
+        }
+    }
+
+    private V resolve(Object value) throws X {
+        if (value instanceof Failure) {
+            throw ((Failure) value).<X>raise();
+        }
+        return unmask(value);
+    }
+
+    @SuppressWarnings("unchecked")
+    private V unmask(Object value) {
+        return value == NULL ? null : (V) value;
+    }
+
+    /**
+     * Records a read of a cached entry, replaying the buffer against the policy when it fills up.
+     */
+    private void afterRead(Node<K, V> node, long now) {
+        if (!recordReads) {
+            return;
+        }
+        if (expireAfterAccessNanos > 0) {
+            node.accessTime = now;
+        }
+        long thread = Thread.currentThread().getId();
+        ReadBuffer buffer = readBuffers[Long.hashCode(thread * 0x9E3779B97F4A7C15L) & (readBuffers.length - 1)];
+        if (buffer.offer(node) && evictionLock.tryLock()) {
+            try {
+                maintenance(now);
+            } finally {
+                evictionLock.unlock();
+            }
+        }
+    }
+
+    /**
+     * Adds a loaded entry to the policy, unless it has been invalidated in the meantime.
+     */
+    private void afterWrite(Node<K, V> node, int weight) {
+        evictionLock.lock();
+        try {
+            if (!node.retired) {
+                node.weight = weight;
+                node.queue = WINDOW;
+                window.add(node);
+                writeOrder.add(node);
+                windowWeight += weight;
+                totalWeight += weight;
+                if (weighted) {
+                    sketch.ensureCapacity(map.size());
+                }
+                sketch.increment(node.key);
+            }
+            maintenance(ticker.getAsLong());
+        } finally {
+            evictionLock.unlock();
+        }
+    }
+
+    private void maintenance(long now) {
+        for (ReadBuffer buffer : readBuffers) {
+            buffer.drain(this);
+        }
+        expireEntries(now);
+        evictEntries();
+    }
+
+    /**
+     * Replays a buffered read: counts the key in the sketch and updates its position in the LRU queues.
+     */
+    @SuppressWarnings("unchecked")
+    private void onAccess(Node<?, ?> accessed) {
+        Node<K, V> node = (Node<K, V>) accessed;
+        if (node.queue == NONE) {
+            return;
+        }
+        sketch.increment(node.key);
+        if (node.queue == WINDOW) {
+            window.moveToTail(node);
+        } else if (node.queue == PROTECTED) {
+            protectedQueue.moveToTail(node);
+        } else {
+            probation.remove(node);
+            protectedQueue.add(node);
+            node.queue = PROTECTED;
+            protectedWeight += node.weight;
+            while (protectedWeight > protectedMaximum && protectedQueue.head != node) {
+                Node<K, V> demoted = protectedQueue.head;
+                protectedQueue.remove(demoted);
+                probation.add(demoted);
+                demoted.queue = PROBATION;
+                protectedWeight -= demoted.weight;
+            }
+        }
+    }
+
+    private void expireEntries(long now) {
+        if (expireAfterWriteNanos > 0) {
+            Node<K, V> node;
+            while ((node = writeOrder.head) != null && now - node.writeTime >= expireAfterWriteNanos) {
+                expireLocked(node);
+            }
+        }
+        if (expireAfterAccessNanos > 0) {
+            expireLocked(window, now);
+            expireLocked(probation, now);
+            expireLocked(protectedQueue, now);
+        }
+    }
+
+    private void expireLocked(AccessOrder<K, V> queue, long now) {
+        Node<K, V> node;
+        while ((node = queue.head) != null && now - node.accessTime >= expireAfterAccessNanos) {
+            expireLocked(node);
+        }
+    }
+
+    private void expireLocked(Node<K, V> node) {
+        if (map.remove(node.key, node)) {
+            expirations.increment();
+        }
+        retire(node);
+    }
+
+    /**
+     * Moves the window overflow to probation, then evicts until the weight is within the limit, letting the sketch
+     * pick between the probation victim and the most recent candidate from the window.
+     */
+    private void evictEntries() {
+        while (windowWeight > windowMaximum && window.head != null) {
+            Node<K, V> node = window.head;
+            window.remove(node);
+            windowWeight -= node.weight;
+            probation.add(node);
+            node.queue = PROBATION;
+        }
+        while (totalWeight > maximumWeight) {
+            Node<K, V> victim = probation.head;
+            Node<K, V> candidate = probation.tail;
+            if (victim == null) {
+                victim = protectedQueue.head != null ? protectedQueue.head : window.head;
+                if (victim == null) {
+                    break;
+                }
+            } else if (victim != candidate && sketch.frequency(candidate.key) <= sketch.frequency(victim.key)) {
+                victim = candidate;
+            }
+            if (map.remove(victim.key, victim)) {
+                evictions.increment();
+            }
+            retire(victim);
+        }
+    }
+
+    /**
+     * Removes an entry from the policy, it has already been removed from the map.
+     */
+    private void retire(Node<K, V> node) {
+        node.retired = true;
+        if (node.queue == NONE) {
+            return;
+        }
+        if (node.queue == WINDOW) {
+            window.remove(node);
+            windowWeight -= node.weight;
+        } else if (node.queue == PROBATION) {
+            probation.remove(node);
+        } else {
+            protectedQueue.remove(node);
+            protectedWeight -= node.weight;
+        }
+        writeOrder.remove(node);
+        totalWeight -= node.weight;
+        node.queue = NONE;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("XCache[size=%d, %s]", estimatedSize(), stats());
+    }
+
+    /**
+     * Cache entry, linked into the policy queues once loaded.
+     */
+    private static final class Node<K, V> {
+        final K key;
+        final CountDownLatch loading = new CountDownLatch(1);
+
+        /**
+         * {@code null} while loading, then the value, {@link #NULL} or {@link Failure}
+         */
+        volatile Object value;
+        volatile long accessTime;
+        long writeTime;
+
+        /*
+         * Guarded by evictionLock
+         */
+        int weight;
+        int queue = NONE;
+        boolean retired;
+        Node<K, V> prev;
+        Node<K, V> next;
+        Node<K, V> prevWrite;
+        Node<K, V> nextWrite;
+
+        Node(K key) {
+            this.key = key;
+        }
+
+        /**
+         * Waits for the load of this entry to complete.
+         *
+         * @return loaded value or failure, {@code null} if the load was abandoned
+         */
+        Object await() {
+            boolean interrupted = false;
+            while (true) {
+                try {
+                    loading.await();
+                    break;
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+            return value;
+        }
+    }
+
+    /**
+     * Doubly linked LRU queue over {@link Node#prev} and {@link Node#next}.
+     */
+    private static final class AccessOrder<K, V> {
+        Node<K, V> head;
+        Node<K, V> tail;
+
+        void add(Node<K, V> node) {
+            node.prev = tail;
+            node.next = null;
+            if (tail == null) {
+                head = node;
+            } else {
+                tail.next = node;
+            }
+            tail = node;
+        }
+
+        void remove(Node<K, V> node) {
+            if (node.prev == null) {
+                head = node.next;
+            } else {
+                node.prev.next = node.next;
+            }
+            if (node.next == null) {
+                tail = node.prev;
+            } else {
+                node.next.prev = node.prev;
+            }
+            node.prev = null;
+            node.next = null;
+        }
+
+        void moveToTail(Node<K, V> node) {
+            if (tail != node) {
+                remove(node);
+                add(node);
+            }
+        }
+    }
+
+    /**
+     * Doubly linked FIFO queue over {@link Node#prevWrite} and {@link Node#nextWrite}.
+     */
+    private static final class WriteOrder<K, V> {
+        Node<K, V> head;
+        Node<K, V> tail;
+
+        void add(Node<K, V> node) {
+            node.prevWrite = tail;
+            node.nextWrite = null;
+            if (tail == null) {
+                head = node;
+            } else {
+                tail.nextWrite = node;
+            }
+            tail = node;
+        }
+
+        void remove(Node<K, V> node) {
+            if (node.prevWrite == null) {
+                head = node.nextWrite;
+            } else {
+                node.prevWrite.nextWrite = node.nextWrite;
+            }
+            if (node.nextWrite == null) {
+                tail = node.prevWrite;
+            } else {
+                node.nextWrite.prevWrite = node.prevWrite;
+            }
+            node.prevWrite = null;
+            node.nextWrite = null;
+        }
+    }
+
+    /**
+     * Lossy ring buffer of reads for one stripe. Reads which do not fit are dropped, the policy only needs a sample.
+     */
+    private static final class ReadBuffer {
+        private final AtomicLong writes = new AtomicLong();
+        private final AtomicReferenceArray<Node<?, ?>> slots = new AtomicReferenceArray<>(READ_BUFFER_SIZE);
+        private volatile long reads;
+
+        /**
+         * @return {@code true} if the buffer should be drained
+         */
+        boolean offer(Node<?, ?> node) {
+            long read = reads;
+            long write = writes.get();
+            long pending = write - read;
+            if (pending >= READ_BUFFER_SIZE) {
+                return true;
+            }
+            if (writes.compareAndSet(write, write + 1)) {
+                slots.lazySet((int) (write & READ_BUFFER_MASK), node);
+            }
+            return pending + 1 >= READ_BUFFER_THRESHOLD;
+        }
+
+        /**
+         * Replays buffered reads, called under the eviction lock.
+         */
+        void drain(XCache<?, ?, ?> cache) {
+            long write = writes.get();
+            for (long read = reads; read < write; read++) {
+                Node<?, ?> node = slots.getAndSet((int) (read & READ_BUFFER_MASK), null);
+                if (node != null) {
+                    cache.onAccess(node);
+                }
+            }
+            reads = write;
+        }
+    }
+
+    /**
+     * Builder of {@link XCache}. Unless configured otherwise the cache is unbounded, entries never expire
+     * and failures are not cached.
+     *
+     * @param <K> the type of keys
+     * @param <V> the type of values
+     */
+    public static final class Builder<K, V> {
+        private long maximumWeight = Long.MAX_VALUE;
+        private ToIntBiFunction<? super K, ? super V> weigher = (k, v) -> 1;
+        private boolean weighted;
+        private long expireAfterWriteNanos;
+        private long expireAfterAccessNanos;
+        private FailurePolicy failurePolicy = FailurePolicy.retry();
+        private LongSupplier ticker = System::nanoTime;
+
+        private Builder() {
+        }
+
+        /**
+         * @param maximumSize maximum number of entries
+         * @return this builder
+         */
+        public Builder<K, V> maximumSize(long maximumSize) {
+            maximumWeight(maximumSize, (k, v) -> 1);
+            this.weighted = false;
+            return this;
+        }
+
+        /**
+         * @param maximumWeight maximum total weight of entries
+         * @param weigher computes weight of an entry, should be non-negative; failures weigh 1
+         * @return this builder
+         */
+        public Builder<K, V> maximumWeight(long maximumWeight, ToIntBiFunction<? super K, ? super V> weigher) {
+            if (maximumWeight < 0) {
+                throw new IllegalArgumentException("Negative maximum weight " + maximumWeight);
+            }
+            this.maximumWeight = maximumWeight;
+            this.weigher = Objects.requireNonNull(weigher);
+            this.weighted = true;
+            return this;
+        }
+
+        /**
+         * @param duration time after which an entry expires once it has been loaded
+         * @return this builder
+         */
+        public Builder<K, V> expireAfterWrite(Duration duration) {
+            this.expireAfterWriteNanos = positive(duration);
+            return this;
+        }
+
+        /**
+         * @param duration time after which an entry expires once it has been loaded or last read
+         * @return this builder
+         */
+        public Builder<K, V> expireAfterAccess(Duration duration) {
+            this.expireAfterAccessNanos = positive(duration);
+            return this;
+        }
+
+        /**
+         * @param failurePolicy whether and for how long exceptions thrown by the loader are cached
+         * @return this builder
+         */
+        public Builder<K, V> failurePolicy(FailurePolicy failurePolicy) {
+            this.failurePolicy = Objects.requireNonNull(failurePolicy);
+            return this;
+        }
+
+        /**
+         * @param ticker source of time in nanoseconds, {@link System#nanoTime()} by default
+         * @return this builder
+         */
+        public Builder<K, V> ticker(LongSupplier ticker) {
+            this.ticker = Objects.requireNonNull(ticker);
+            return this;
+        }
+
+        /**
+         * @param loader function computing values for the keys missing in the cache
+         * @param <X> the type of the exception thrown by the loader
+         * @return a new cache
+         */
+        public <X extends Exception> XCache<K, V, X> build(XFunction<? super K, ? extends V, ? extends X> loader) {
+            return new XCache<>(this, loader);
+        }
+
+        private static long positive(Duration duration) {
+            long nanos = duration.toNanos();
+            if (nanos <= 0) {
+                throw new IllegalArgumentException("Non-positive duration " + duration);
+            }
+            return nanos;
+        }
+    }
+}
@@ -0,0 +1,282 @@
+package com.github.jtail.utils.concurrent;
+
+import com.github.jtail.utils.metrics.Histogram;
+import com.github.jtail.utils.xfn.XFunction;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * {@link XFunction} which turns individual calls from many threads into calls of a bulk function.
+ * <p>
+ * Each {@link #apply(Object)} enqueues its key and waits. A dispatcher thread takes the first queued key, keeps
+ * collecting keys until the batch is full or the oldest key has waited for the maximum delay, and hands the batch
+ * to the bulk function. Every caller then receives the value mapped to its key, {@code null} if the map has none,
+ * or the exception thrown by the bulk function. Equal keys in one batch are passed to the bulk function once.
+ * <p>
+ * Batches are loaded on the dispatcher thread unless an executor is given, in which case the dispatcher starts
+ * collecting the next batch while the previous one is loading.
+ * <p>
+ * {@link #batchSizes()} and {@link #queueWaits()} show how full the batches are and how long the keys waited
+ * for them, which is what the maximum delay trades against each other.
+ *
+ * @param <K> the type of keys
+ * @param <V> the type of values
+ * @param <X> the type of the exception thrown by the bulk function
+ */
+public final class BatchingLoader<K, V, X extends Exception> implements XFunction<K, V, X>, AutoCloseable {
+    private static final AtomicInteger INSTANCES = new AtomicInteger();
+
+    private final XFunction<? super List<K>, ? extends Map<K, ? extends V>, ? extends X> bulk;
+    private final int maxBatchSize;
+    private final long maxDelayNanos;
+    private final XExecutor executor;
+    private final BlockingQueue<Request<K, V>> queue = new LinkedBlockingQueue<>();
+    private final Histogram batchSizes = new Histogram();
+    private final Histogram queueWaits = new Histogram();
+    private final Thread dispatcher;
+    /** Queued by {@link #close()} to wake the dispatcher without interrupting a batch it is loading. */
+    private final Request<K, V> wakeUp = new Request<>(null);
+    private volatile boolean closed;
+
+    private BatchingLoader(Builder builder, XFunction<? super List<K>, ? extends Map<K, ? extends V>, ? extends X> bulk) {
+        this.bulk = Objects.requireNonNull(bulk);
+        this.maxBatchSize = builder.maxBatchSize;
+        this.maxDelayNanos = builder.maxDelayNanos;
+        this.executor = builder.executor;
+        this.dispatcher = new Thread(this::dispatch, "batching-loader-" + INSTANCES.incrementAndGet());
+        this.dispatcher.setDaemon(true);
+        this.dispatcher.start();
+    }
+
+    /**
+     * @return builder of a new loader
+     */
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * Loads the value for the key as part of the next batch, waiting for it uninterruptibly.
+     *
+     * @throws IllegalStateException if the loader has been closed
+     */
+    @Override
+    public V apply(K key) throws X {
+        Request<K, V> request = new Request<>(Objects.requireNonNull(key));
+        if (closed) {
+            throw new IllegalStateException("Loader closed");
+        }
+        queue.add(request);
+        if (closed && queue.remove(request)) {
+            throw new IllegalStateException("Loader closed");
+        }
+        try {
+            return request.result.join();
+        } catch (CompletionException e) {
+            throw Exceptions.<X>rethrow(e.getCause());
+        }
+    }
+
+    /**
+     * @return approximate number of keys waiting for their batch to be dispatched
+     */
+    public int queued() {
+        return queue.size();
+    }
+
+    /**
+     * @return sizes of the dispatched batches
+     */
+    public Histogram batchSizes() {
+        return batchSizes;
+    }
+
+    /**
+     * @return nanoseconds the keys spent in the queue before their batch was dispatched
+     */
+    public Histogram queueWaits() {
+        return queueWaits;
+    }
+
+    /**
+     * Stops accepting keys, dispatches the ones already queued and waits for the dispatcher to finish.
+     * Batches running in the executor are not waited for.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        queue.add(wakeUp);
+        boolean interrupted = false;
+        while (dispatcher.isAlive()) {
+            try {
+                dispatcher.join();
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void dispatch() {
+        List<Request<K, V>> batch = new ArrayList<>(maxBatchSize);
+        try {
+            while (!closed) {
+                Request<K, V> first = queue.take();
+                if (first == wakeUp) {
+                    break;
+                }
+                batch.add(first);
+                long deadline = first.enqueued + maxDelayNanos;
+                while (batch.size() < maxBatchSize) {
+                    long remaining = deadline - System.nanoTime();
+                    Request<K, V> next = remaining > 0 ? queue.poll(remaining, TimeUnit.NANOSECONDS) : queue.poll();
+                    if (next == null || next == wakeUp) {
+                        break;
+                    }
+                    batch.add(next);
+                }
+                submit(batch);
+                batch = new ArrayList<>(maxBatchSize);
+            }
+        } catch (InterruptedException e) {
+            // only close() should stop the dispatcher, finish the queued keys anyway
+        }
+        queue.drainTo(batch);
+        batch.remove(wakeUp);
+        while (!batch.isEmpty()) {
+            int size = Math.min(batch.size(), maxBatchSize);
+            submit(new ArrayList<>(batch.subList(0, size)));
+            batch.subList(0, size).clear();
+        }
+        // requests which raced with close
+        Request<K, V> late;
+        while ((late = queue.poll()) != null) {
+            late.result.completeExceptionally(new IllegalStateException("Loader closed"));
+        }
+    }
+
+    private void submit(List<Request<K, V>> batch) {
+        long now = System.nanoTime();
+        batchSizes.record(batch.size());
+        for (Request<K, V> request : batch) {
+            queueWaits.record(Math.max(0, now - request.enqueued));
+        }
+        if (executor == null) {
+            load(batch);
+            return;
+        }
+        try {
+            executor.toExecutorService().execute(() -> load(batch));
+        } catch (RejectedExecutionException e) {
+            for (Request<K, V> request : batch) {
+                request.result.completeExceptionally(e);
+            }
+        }
+    }
+
+    private void load(List<Request<K, V>> batch) {
+        LinkedHashSet<K> keys = new LinkedHashSet<>();
+        for (Request<K, V> request : batch) {
+            keys.add(request.key);
+        }
+        try {
+            Map<K, ? extends V> values = bulk.apply(new ArrayList<>(keys));
+            for (Request<K, V> request : batch) {
+                request.result.complete(values.get(request.key));
+            }
+        } catch (Throwable e) {
+            for (Request<K, V> request : batch) {
+                request.result.completeExceptionally(e);
+            }
+        }
+    }
+
+    @Override
+    public String toString() {
+        return String.format("BatchingLoader[queued=%d, batchSizes=%s]", queued(), batchSizes);
+    }
+
+    private static final class Request<K, V> {
+        final K key;
+        final long enqueued = System.nanoTime();
+        final CompletableFuture<V> result = new CompletableFuture<>();
+
+        Request(K key) {
+            this.key = key;
+        }
+    }
+
+    /**
+     * Builder of {@link BatchingLoader}. By default batches have up to 100 keys collected for up to a millisecond,
+     * and are loaded on the dispatcher thread.
+     */
+    public static final class Builder {
+        private int maxBatchSize = 100;
+        private long maxDelayNanos = TimeUnit.MILLISECONDS.toNanos(1);
+        private XExecutor executor;
+
+        private Builder() {
+        }
+
+        /**
+         * @param maxBatchSize maximum number of keys in a batch
+         * @return this builder
+         */
+        public Builder maxBatchSize(int maxBatchSize) {
+            if (maxBatchSize < 1) {
+                throw new IllegalArgumentException("Non-positive batch size " + maxBatchSize);
+            }
+            this.maxBatchSize = maxBatchSize;
+            return this;
+        }
+
+        /**
+         * @param maxDelay how long the first key of a batch may wait for more keys
+         * @return this builder
+         */
+        public Builder maxDelay(Duration maxDelay) {
+            if (maxDelay.isNegative()) {
+                throw new IllegalArgumentException("Negative delay " + maxDelay);
+            }
+            this.maxDelayNanos = maxDelay.toNanos();
+            return this;
+        }
+
+        /**
+         * @param executor executor to load the batches in
+         * @return this builder
+         */
+        public Builder executor(XExecutor executor) {
+            this.executor = Objects.requireNonNull(executor);
+            return this;
+        }
+
+        /**
+         * Creates the loader and starts its dispatcher thread.
+         *
+         * @param bulk function loading values for a list of distinct keys
+         * @param <K> the type of keys
+         * @param <V> the type of values
+         * @param <X> the type of the exception thrown by the bulk function
+         * @return a new loader
+         */
+        public <K, V, X extends Exception> BatchingLoader<K, V, X> build(
+                XFunction<? super List<K>, ? extends Map<K, ? extends V>, ? extends X> bulk) {
+            return new BatchingLoader<>(this, bulk);
+        }
+    }
+}
@@ -0,0 +1,23 @@
+package com.github.jtail.utils.concurrent;
+
+/**
+ * Rethrowing of exceptions which crossed a thread boundary.
+ */
+final class Exceptions {
+    private Exceptions() {
+    }
+
+    /**
+     * Rethrows the cause of a failed task declared to throw {@code X}, errors and unchecked exceptions as they are.
+     */
+    @SuppressWarnings("unchecked")
+    static <X extends Exception> X rethrow(Throwable cause) throws X {
+        if (cause instanceof Error) {
+            throw (Error) cause;
+        }
+        if (cause instanceof RuntimeException) {
+            throw (RuntimeException) cause;
+        }
+        throw (X) cause;
+    }
+}
@@ -0,0 +1,349 @@
+package com.github.jtail.utils.concurrent;
+
+import java.time.Duration;
+import java.util.Objects;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Timer for large numbers of short-lived timeouts, most of which are cancelled before they expire.
+ * <p>
+ * Timeouts are kept in a ring of buckets, each bucket a doubly linked list of the timeouts expiring during one
+ * tick, so scheduling and cancelling are O(1) regardless of how many timeouts are pending. A single daemon thread
+ * advances the wheel each tick and runs the expired tasks; scheduling and cancelling only enqueue the timeout for
+ * that thread, so callers never contend on the wheel itself.
+ * <p>
+ * The price is precision: a task runs up to one tick late. Tasks run on the timer thread and must be short,
+ * anything longer should be handed over to an executor.
+ */
+public final class HashedWheelTimer implements AutoCloseable {
+    private static final AtomicInteger INSTANCES = new AtomicInteger();
+
+    private final long tickNanos;
+    private final Bucket[] wheel;
+    private final int mask;
+    private final Queue<Timeout> added = new ConcurrentLinkedQueue<>();
+    private final Queue<Timeout> cancelled = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger pending = new AtomicInteger();
+    private final long start = System.nanoTime();
+    private final Thread worker;
+    private volatile boolean closed;
+    private long tick;
+
+    private HashedWheelTimer(long tickNanos, int ticksPerWheel, String name) {
+        int size = Integer.highestOneBit(ticksPerWheel - 1) << 1;
+        this.tickNanos = tickNanos;
+        this.wheel = new Bucket[size];
+        for (int i = 0; i < size; i++) {
+            wheel[i] = new Bucket();
+        }
+        this.mask = size - 1;
+        this.worker = new Thread(this::work, name);
+        this.worker.setDaemon(true);
+        this.worker.start();
+    }
+
+    /**
+     * Creates a timer and starts its thread.
+     *
+     * @param tick duration of one tick, the precision of the timer
+     * @param ticksPerWheel number of buckets, rounded up to a power of two
+     * @return a new timer
+     */
+    public static HashedWheelTimer create(Duration tick, int ticksPerWheel) {
+        if (tick.isNegative() || tick.isZero()) {
+            throw new IllegalArgumentException("Non-positive tick " + tick);
+        }
+        if (ticksPerWheel < 1 || ticksPerWheel > 1 << 24) {
+            throw new IllegalArgumentException("Ticks per wheel out of range " + ticksPerWheel);
+        }
+        return new HashedWheelTimer(tick.toNanos(), Math.max(ticksPerWheel, 2),
+                "hashed-wheel-timer-" + INSTANCES.incrementAndGet());
+    }
+
+    /**
+     * @return timer shared by the whole JVM, ticking every 10 milliseconds, which is never closed
+     */
+    public static HashedWheelTimer shared() {
+        return Shared.INSTANCE;
+    }
+
+    /**
+     * Schedules a task to run once after the delay.
+     *
+     * @param task the task, run on the timer thread
+     * @param delay delay before running the task
+     * @return handle cancelling the task
+     * @throws IllegalStateException if the timer has been closed
+     */
+    public Timeout schedule(Runnable task, Duration delay) {
+        return schedule(task, delay.toNanos(), TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Schedules a task to run once after the delay.
+     *
+     * @param task the task, run on the timer thread
+     * @param delay delay before running the task
+     * @param unit unit of the delay
+     * @return handle cancelling the task
+     * @throws IllegalStateException if the timer has been closed
+     */
+    public Timeout schedule(Runnable task, long delay, TimeUnit unit) {
+        Objects.requireNonNull(task);
+        if (closed) {
+            throw new IllegalStateException("Timer closed");
+        }
+        long deadline = System.nanoTime() - start + Math.max(0, unit.toNanos(delay));
+        Timeout timeout = new Timeout(this, task, deadline);
+        pending.incrementAndGet();
+        added.add(timeout);
+        if (closed && timeout.cancel()) {
+            throw new IllegalStateException("Timer closed");
+        }
+        return timeout;
+    }
+
+    /**
+     * @return number of timeouts neither expired nor cancelled
+     */
+    public int pending() {
+        return pending.get();
+    }
+
+    /**
+     * Stops the timer thread; pending timeouts are cancelled without running.
+     */
+    @Override
+    public void close() {
+        if (this == Shared.INSTANCE) {
+            throw new IllegalStateException("Shared timer cannot be closed");
+        }
+        closed = true;
+        worker.interrupt();
+        boolean interrupted = false;
+        while (worker.isAlive()) {
+            try {
+                worker.join();
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void work() {
+        while (!closed) {
+            long now = awaitTick();
+            if (now < 0) {
+                break;
+            }
+            removeCancelled();
+            transferAdded();
+            wheel[(int) (tick & mask)].expire(now);
+            tick++;
+        }
+        for (Bucket bucket : wheel) {
+            bucket.clear();
+        }
+        Timeout timeout;
+        while ((timeout = added.poll()) != null) {
+            timeout.cancel();
+        }
+        cancelled.clear();
+    }
+
+    /**
+     * @return time since start at the end of the current tick, or {@code -1} if interrupted
+     */
+    private long awaitTick() {
+        long end = tickNanos * (tick + 1);
+        while (true) {
+            long now = System.nanoTime() - start;
+            if (now >= end) {
+                return now;
+            }
+            try {
+                TimeUnit.NANOSECONDS.sleep(end - now);
+            } catch (InterruptedException e) {
+                if (closed) {
+                    return -1;
+                }
+            }
+        }
+    }
+
+    private void transferAdded() {
+        // bounded so that a flood of new timeouts does not stall the wheel
+        for (int i = 0; i < 100_000; i++) {
+            Timeout timeout = added.poll();
+            if (timeout == null) {
+                return;
+            }
+            if (timeout.state.get() != Timeout.SCHEDULED) {
+                continue;
+            }
+            long ticks = Math.max(timeout.deadline / tickNanos, tick);
+            timeout.rounds = (ticks - tick) / wheel.length;
+            wheel[(int) (ticks & mask)].add(timeout);
+        }
+    }
+
+    private void removeCancelled() {
+        Timeout timeout;
+        while ((timeout = cancelled.poll()) != null) {
+            if (timeout.bucket != null) {
+                timeout.bucket.remove(timeout);
+            }
+        }
+    }
+
+    @Override
+    public String toString() {
+        return String.format("HashedWheelTimer[tick=%s, buckets=%d, pending=%d]",
+                Duration.ofNanos(tickNanos), wheel.length, pending());
+    }
+
+    /**
+     * Handle of a task scheduled on a {@link HashedWheelTimer}.
+     */
+    public static final class Timeout {
+        private static final int SCHEDULED = 0;
+        private static final int CANCELLED = 1;
+        private static final int EXPIRED = 2;
+
+        private final HashedWheelTimer timer;
+        private final Runnable task;
+        private final long deadline;
+        private final AtomicInteger state = new AtomicInteger();
+        // owned by the timer thread
+        private long rounds;
+        private Bucket bucket;
+        private Timeout previous;
+        private Timeout next;
+
+        private Timeout(HashedWheelTimer timer, Runnable task, long deadline) {
+            this.timer = timer;
+            this.task = task;
+            this.deadline = deadline;
+        }
+
+        /**
+         * Cancels the task unless it has already run.
+         *
+         * @return {@code true} if this call cancelled the task
+         */
+        public boolean cancel() {
+            if (!state.compareAndSet(SCHEDULED, CANCELLED)) {
+                return false;
+            }
+            timer.pending.decrementAndGet();
+            timer.cancelled.add(this);
+            return true;
+        }
+
+        /**
+         * @return {@code true} if the task was cancelled
+         */
+        public boolean isCancelled() {
+            return state.get() == CANCELLED;
+        }
+
+        /**
+         * @return {@code true} if the task has been started
+         */
+        public boolean isExpired() {
+            return state.get() == EXPIRED;
+        }
+
+        private void expire() {
+            if (!state.compareAndSet(SCHEDULED, EXPIRED)) {
+                return;
+            }
+            timer.pending.decrementAndGet();
+            try {
+                task.run();
+            } catch (Throwable e) {
+                Thread thread = Thread.currentThread();
+                thread.getUncaughtExceptionHandler().uncaughtException(thread, e);
+            }
+        }
+
+        @Override
+        public String toString() {
+            String[] names = {"scheduled", "cancelled", "expired"};
+            return String.format("Timeout[%s, %s]", names[state.get()], task);
+        }
+    }
+
+    /**
+     * Doubly linked list of the timeouts in one slot of the wheel, accessed by the timer thread only.
+     */
+    private static final class Bucket {
+        private Timeout head;
+        private Timeout tail;
+
+        void add(Timeout timeout) {
+            timeout.bucket = this;
+            if (head == null) {
+                head = tail = timeout;
+            } else {
+                tail.next = timeout;
+                timeout.previous = tail;
+                tail = timeout;
+            }
+        }
+
+        void expire(long now) {
+            Timeout timeout = head;
+            while (timeout != null) {
+                Timeout next = timeout.next;
+                if (timeout.rounds <= 0 && timeout.deadline <= now) {
+                    remove(timeout);
+                    timeout.expire();
+                } else if (timeout.state.get() == Timeout.CANCELLED) {
+                    remove(timeout);
+                } else {
+                    timeout.rounds--;
+                }
+                timeout = next;
+            }
+        }
+
+        void remove(Timeout timeout) {
+            if (timeout.bucket != this) {
+                return;
+            }
+            if (timeout.previous != null) {
+                timeout.previous.next = timeout.next;
+            } else {
+                head = timeout.next;
+            }
+            if (timeout.next != null) {
+                timeout.next.previous = timeout.previous;
+            } else {
+                tail = timeout.previous;
+            }
+            timeout.previous = null;
+            timeout.next = null;
+            timeout.bucket = null;
+        }
+
+        void clear() {
+            while (head != null) {
+                Timeout timeout = head;
+                remove(timeout);
+                timeout.cancel();
+            }
+        }
+    }
+
+    private static final class Shared {
+        static final HashedWheelTimer INSTANCE =
+                new HashedWheelTimer(TimeUnit.MILLISECONDS.toNanos(10), 512, "hashed-wheel-timer-shared");
+    }
+}
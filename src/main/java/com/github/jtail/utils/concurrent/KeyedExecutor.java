@@ -0,0 +1,370 @@
+package com.github.jtail.utils.concurrent;
+
+import com.github.jtail.utils.xfn.XConsumer;
+
+import java.util.Objects;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.BiConsumer;
+
+/**
+ * Executor handling events in order per key and in parallel across keys.
+ * <p>
+ * Keys are hashed onto a fixed number of lanes, each a bounded multi-producer {@link RingBuffer}. A lane with events
+ * is scheduled on a shared thread pool and drains a batch of them; at most one thread drains a lane at a time, so
+ * events of the same key are handled one after another in submission order, while different lanes run on all the
+ * threads of the pool. After a batch the lane goes back to the pool, so a busy key cannot starve the other lanes.
+ * <p>
+ * An exception of the handler is reported to the error handler along with the key of the event, and the lane goes
+ * on with the next event. The default number of lanes is four per processor, the default pool one thread per
+ * processor.
+ * <pre>{@code
+ * KeyedExecutor<String, OrderEvent> orders = KeyedExecutor.builder()
+ *         .onError((key, e) -> log.warn("Order {} failed", key, e))
+ *         .build(ledger::apply);
+ * orders.submit(event.orderId(), event);
+ * }</pre>
+ *
+ * @param <K> the type of keys
+ * @param <T> the type of events
+ */
+public final class KeyedExecutor<K, T> implements AutoCloseable {
+    private static final AtomicInteger INSTANCES = new AtomicInteger();
+
+    private final XConsumer<? super T, ?> handler;
+    private final BiConsumer<Object, Throwable> onError;
+    private final ExecutorService executor;
+    private final boolean ownExecutor;
+    private final int batchSize;
+    private final Lane[] lanes;
+    private final LongAdder handled = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+    private final AtomicInteger submitting = new AtomicInteger();
+    private volatile boolean closed;
+
+    private KeyedExecutor(Builder builder, XConsumer<? super T, ?> handler) {
+        this.handler = Objects.requireNonNull(handler);
+        this.onError = builder.onError;
+        this.batchSize = builder.batchSize;
+        if (builder.executor != null) {
+            this.executor = builder.executor.toExecutorService();
+            this.ownExecutor = false;
+        } else {
+            this.executor = newPool(builder.threads);
+            this.ownExecutor = true;
+        }
+        this.lanes = new Lane[builder.lanes];
+        for (int i = 0; i < lanes.length; i++) {
+            lanes[i] = new Lane(this, builder.capacity);
+        }
+    }
+
+    /**
+     * @return builder of a new executor
+     */
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * Queues the event on the lane of its key, waiting while the lane is full.
+     *
+     * @param key the key of the event
+     * @param event the event, not null
+     * @throws InterruptedException if interrupted while waiting
+     * @throws IllegalStateException if the executor has been closed
+     */
+    public void submit(K key, T event) throws InterruptedException {
+        Lane lane = lane(key);
+        Entry entry = new Entry(key, Objects.requireNonNull(event));
+        submitting.incrementAndGet();
+        try {
+            checkOpen();
+            for (int idle = 0; !lane.queue.offer(entry); idle++) {
+                LockSupport.parkNanos(Math.min(1_000_000L, 1_000L << Math.min(idle, 10)));
+                if (Thread.interrupted()) {
+                    throw new InterruptedException();
+                }
+            }
+            lane.schedule();
+        } finally {
+            submitting.decrementAndGet();
+        }
+    }
+
+    /**
+     * Queues the event on the lane of its key if the lane is not full.
+     *
+     * @param key the key of the event
+     * @param event the event, not null
+     * @return {@code true} if the event was queued
+     * @throws IllegalStateException if the executor has been closed
+     */
+    public boolean offer(K key, T event) {
+        Lane lane = lane(key);
+        Entry entry = new Entry(key, Objects.requireNonNull(event));
+        submitting.incrementAndGet();
+        try {
+            checkOpen();
+            if (!lane.queue.offer(entry)) {
+                return false;
+            }
+            lane.schedule();
+            return true;
+        } finally {
+            submitting.decrementAndGet();
+        }
+    }
+
+    /**
+     * @return number of lanes
+     */
+    public int lanes() {
+        return lanes.length;
+    }
+
+    /**
+     * @return approximate number of queued events
+     */
+    public int queued() {
+        int queued = 0;
+        for (Lane lane : lanes) {
+            queued += lane.queue.size();
+        }
+        return queued;
+    }
+
+    /**
+     * @return number of events handled without an exception
+     */
+    public long handled() {
+        return handled.sum();
+    }
+
+    /**
+     * @return number of events whose handler threw
+     */
+    public long failed() {
+        return failed.sum();
+    }
+
+    /**
+     * Stops accepting events and waits for the queued ones to be handled. The thread pool is shut down unless
+     * it was given to the builder.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        while (submitting.get() != 0) {
+            Thread.yield();
+        }
+        for (Lane lane : lanes) {
+            for (int idle = 0; lane.scheduled.get() || !lane.queue.isEmpty(); idle++) {
+                LockSupport.parkNanos(Math.min(1_000_000L, 1_000L << Math.min(idle, 10)));
+            }
+        }
+        if (ownExecutor) {
+            XExecutor.of(executor).close();
+        }
+    }
+
+    @Override
+    public String toString() {
+        return String.format("KeyedExecutor[lanes=%d, queued=%d, handled=%d, failed=%d]",
+                lanes.length, queued(), handled(), failed());
+    }
+
+    private Lane lane(K key) {
+        int hash = key.hashCode();
+        return lanes[(hash ^ hash >>> 16) & (lanes.length - 1)];
+    }
+
+    private void checkOpen() {
+        if (closed) {
+            throw new IllegalStateException("Executor closed");
+        }
+    }
+
+    private static ExecutorService newPool(int threads) {
+        String prefix = "keyed-executor-" + INSTANCES.incrementAndGet() + "-";
+        AtomicInteger count = new AtomicInteger();
+        return new ThreadPoolExecutor(threads, threads, 0, TimeUnit.NANOSECONDS, new LinkedBlockingQueue<>(), r -> {
+            Thread thread = new Thread(r, prefix + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    private static final class Entry {
+        final Object key;
+        final Object event;
+
+        Entry(Object key, Object event) {
+            this.key = key;
+            this.event = event;
+        }
+    }
+
+    /**
+     * Queue of one lane, drained by at most one thread at a time: whichever thread sets {@link #scheduled} owns the
+     * consumer side of the queue until it clears the flag.
+     */
+    private static final class Lane implements Runnable {
+        final KeyedExecutor<?, ?> owner;
+        final RingBuffer<Entry> queue;
+        final AtomicBoolean scheduled = new AtomicBoolean();
+
+        Lane(KeyedExecutor<?, ?> owner, int capacity) {
+            this.owner = owner;
+            this.queue = RingBuffer.mpsc(capacity);
+        }
+
+        void schedule() {
+            if (!scheduled.get() && scheduled.compareAndSet(false, true)) {
+                try {
+                    owner.executor.execute(this);
+                } catch (RejectedExecutionException e) {
+                    scheduled.set(false);
+                    throw e;
+                }
+            }
+        }
+
+        @Override
+        public void run() {
+            for (int i = 0; i < owner.batchSize; i++) {
+                Entry entry = queue.poll();
+                if (entry == null) {
+                    break;
+                }
+                handle(entry);
+            }
+            scheduled.set(false);
+            // events queued after the last poll found the lane still scheduled
+            if (!queue.isEmpty()) {
+                schedule();
+            }
+        }
+
+        @SuppressWarnings("unchecked")
+        private void handle(Entry entry) {
+            try {
+                ((XConsumer<Object, ?>) owner.handler).accept(entry.event);
+                owner.handled.increment();
+            } catch (Throwable e) {
+                owner.failed.increment();
+                try {
+                    owner.onError.accept(entry.key, e);
+                } catch (Throwable ignored) {
+                    // the error handler must not stall the lane
+                }
+            }
+        }
+    }
+
+    /**
+     * Builder of {@link KeyedExecutor}. By default there are four lanes per processor, each queueing up to 1024
+     * events and handling up to 64 at a time, on a pool of one daemon thread per processor.
+     */
+    public static final class Builder {
+        private int lanes = powerOfTwo(4 * Runtime.getRuntime().availableProcessors());
+        private int threads = Runtime.getRuntime().availableProcessors();
+        private int capacity = 1024;
+        private int batchSize = 64;
+        private XExecutor executor;
+        private BiConsumer<Object, Throwable> onError = (key, e) -> {
+            Thread thread = Thread.currentThread();
+            thread.getUncaughtExceptionHandler().uncaughtException(thread, e);
+        };
+
+        private Builder() {
+        }
+
+        /**
+         * @param lanes number of lanes, rounded up to a power of two
+         * @return this builder
+         */
+        public Builder lanes(int lanes) {
+            if (lanes < 1 || lanes > 1 << 20) {
+                throw new IllegalArgumentException("Lanes out of range " + lanes);
+            }
+            this.lanes = powerOfTwo(lanes);
+            return this;
+        }
+
+        /**
+         * @param threads number of threads of the pool created by the executor
+         * @return this builder
+         */
+        public Builder threads(int threads) {
+            if (threads < 1) {
+                throw new IllegalArgumentException("Non-positive threads " + threads);
+            }
+            this.threads = threads;
+            return this;
+        }
+
+        /**
+         * @param executor executor to run the lanes on instead of an own pool, it is not closed with the executor
+         * @return this builder
+         */
+        public Builder executor(XExecutor executor) {
+            this.executor = Objects.requireNonNull(executor);
+            return this;
+        }
+
+        /**
+         * @param capacity maximum number of events queued per lane, rounded up to a power of two
+         * @return this builder
+         */
+        public Builder capacity(int capacity) {
+            if (capacity < 2 || capacity > 1 << 30) {
+                throw new IllegalArgumentException("Capacity out of range " + capacity);
+            }
+            this.capacity = capacity;
+            return this;
+        }
+
+        /**
+         * @param batchSize maximum number of events a lane handles before giving its thread to other lanes
+         * @return this builder
+         */
+        public Builder batchSize(int batchSize) {
+            if (batchSize < 1) {
+                throw new IllegalArgumentException("Non-positive batch size " + batchSize);
+            }
+            this.batchSize = batchSize;
+            return this;
+        }
+
+        /**
+         * @param onError handler of the exceptions thrown by the event handler, given the key of the event
+         * @return this builder
+         */
+        public Builder onError(BiConsumer<Object, Throwable> onError) {
+            this.onError = Objects.requireNonNull(onError);
+            return this;
+        }
+
+        /**
+         * @param handler handler of the events
+         * @param <K> the type of keys
+         * @param <T> the type of events
+         * @return a new executor
+         */
+        public <K, T> KeyedExecutor<K, T> build(XConsumer<? super T, ?> handler) {
+            return new KeyedExecutor<>(this, handler);
+        }
+
+        private static int powerOfTwo(int value) {
+            return value == 1 ? 1 : Integer.highestOneBit(value - 1) << 1;
+        }
+    }
+}
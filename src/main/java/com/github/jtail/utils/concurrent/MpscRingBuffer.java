@@ -0,0 +1,103 @@
+package com.github.jtail.utils.concurrent;
+
+import java.util.concurrent.atomic.AtomicLongFieldUpdater;
+
+/**
+ * {@link RingBuffer} for any number of producer threads. Producers claim a slot by compare-and-set on the tail and
+ * then publish the element into it, so the consumer treats an empty slot below the tail as a publication in
+ * progress. The class hierarchy pads the head and the tail onto separate cache lines, as in {@link SpscRingBuffer}.
+ */
+final class MpscRingBuffer<E> extends MpscTail<E> {
+    @SuppressWarnings("rawtypes")
+    private static final AtomicLongFieldUpdater<MpscHead> HEAD =
+            AtomicLongFieldUpdater.newUpdater(MpscHead.class, "head");
+    @SuppressWarnings("rawtypes")
+    private static final AtomicLongFieldUpdater<MpscTail> TAIL =
+            AtomicLongFieldUpdater.newUpdater(MpscTail.class, "tail");
+
+    long p10, p11, p12, p13, p14, p15, p16, p17;
+
+    MpscRingBuffer(int capacity) {
+        super(capacity);
+    }
+
+    @Override
+    public boolean offer(E element) {
+        if (element == null) {
+            throw new NullPointerException();
+        }
+        long t;
+        do {
+            t = tail;
+            if (t - headCache > mask) {
+                long h = head;
+                if (t - h > mask) {
+                    return false;
+                }
+                headCache = h;
+            }
+        } while (!TAIL.compareAndSet(this, t, t + 1));
+        buffer.lazySet((int) t & mask, element);
+        return true;
+    }
+
+    @Override
+    public E poll() {
+        long h = head;
+        int index = (int) h & mask;
+        E element = buffer.get(index);
+        if (element == null) {
+            if (h == tail) {
+                return null;
+            }
+            // the slot is claimed but not yet published
+            do {
+                Thread.yield();
+                element = buffer.get(index);
+            } while (element == null);
+        }
+        buffer.lazySet(index, null);
+        HEAD.lazySet(this, h + 1);
+        return element;
+    }
+
+    @Override
+    public int size() {
+        return (int) Math.max(0, Math.min(tail - head, mask + 1));
+    }
+}
+
+abstract class MpscPad0<E> extends RingBuffer<E> {
+    long p00, p01, p02, p03, p04, p05, p06, p07;
+
+    MpscPad0(int capacity) {
+        super(capacity);
+    }
+}
+
+abstract class MpscHead<E> extends MpscPad0<E> {
+    // consumer side
+    volatile long head;
+
+    MpscHead(int capacity) {
+        super(capacity);
+    }
+}
+
+abstract class MpscPad1<E> extends MpscHead<E> {
+    long p00, p01, p02, p03, p04, p05, p06, p07;
+
+    MpscPad1(int capacity) {
+        super(capacity);
+    }
+}
+
+abstract class MpscTail<E> extends MpscPad1<E> {
+    // producer side, the cached head is shared by the producers
+    volatile long tail;
+    volatile long headCache;
+
+    MpscTail(int capacity) {
+        super(capacity);
+    }
+}
@@ -0,0 +1,533 @@
+package com.github.jtail.utils.concurrent;
+
+import com.github.jtail.utils.xfn.XConsumer;
+import com.github.jtail.utils.xfn.XFunction;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+
+/**
+ * Chain of {@link XFunction} stages ending with an {@link XConsumer}, each stage running on its own worker threads.
+ * <p>
+ * Every worker consumes a bounded {@link RingBuffer}: single-producer when the previous stage has one worker,
+ * multi-producer when it has several or for the first stage, which takes items from any thread. Workers drain their
+ * queues in batches and hand each result to a worker of the next stage, round robin; a {@code null} result is
+ * dropped. When the next stage is full the worker waits, so a slow stage holds back the ones before it down to
+ * {@link #submit(Object)} instead of letting queues grow. Items are processed in order by a single-worker stage,
+ * in no particular order by a pool.
+ * <p>
+ * An exception of the type a stage declares goes to the error handler of that stage, any other exception to the
+ * error handler of the pipeline, by default the uncaught exception handler of the worker thread. Either way the
+ * item is dropped and the worker carries on. {@link #stats()} shows how many items each stage has processed and
+ * how many are queued for it, which points at the bottleneck: the stage with full queues behind it.
+ * <pre>{@code
+ * Pipeline<String> pipeline = Pipeline.<String>builder()
+ *         .stage("parse", parser::parse)
+ *         .stage("enrich", 4, enricher::enrich, IOException.class, (event, e) -> retries.add(event))
+ *         .sink("write", writer::write);
+ * }</pre>
+ *
+ * @param <I> the type of items submitted
+ */
+public final class Pipeline<I> implements AutoCloseable {
+    private final List<Stage> stages;
+    private final AtomicInteger submitting = new AtomicInteger();
+    private volatile boolean closed;
+
+    private Pipeline(Builder<I, ?> builder) {
+        List<Stage> stages = new ArrayList<>(builder.specs.size());
+        Stage next = null;
+        for (int i = builder.specs.size() - 1; i >= 0; i--) {
+            Spec spec = builder.specs.get(i);
+            boolean multiProducer = i == 0 || builder.specs.get(i - 1).workers > 1;
+            next = new Stage(spec, builder, next, multiProducer);
+            stages.add(0, next);
+        }
+        this.stages = Collections.unmodifiableList(stages);
+        for (Stage stage : stages) {
+            stage.start();
+        }
+    }
+
+    /**
+     * @param <I> the type of items submitted
+     * @return builder of a new pipeline
+     */
+    public static <I> Builder<I, I> builder() {
+        return new Builder<>();
+    }
+
+    /**
+     * Adds the item to the pipeline, waiting while the first stage is full.
+     *
+     * @param item the item, not null
+     * @throws InterruptedException if interrupted while waiting
+     * @throws IllegalStateException if the pipeline has been closed
+     */
+    public void submit(I item) throws InterruptedException {
+        Objects.requireNonNull(item);
+        submitting.incrementAndGet();
+        try {
+            if (closed) {
+                throw new IllegalStateException("Pipeline closed");
+            }
+            Stage first = stages.get(0);
+            for (int idle = 0; !first.offer(item, ThreadLocalRandom.current().nextInt()); idle++) {
+                backoff(idle);
+                if (Thread.interrupted()) {
+                    throw new InterruptedException();
+                }
+            }
+        } finally {
+            submitting.decrementAndGet();
+        }
+    }
+
+    /**
+     * Adds the item to the pipeline if the first stage is not full.
+     *
+     * @param item the item, not null
+     * @return {@code true} if the item was added
+     * @throws IllegalStateException if the pipeline has been closed
+     */
+    public boolean offer(I item) {
+        Objects.requireNonNull(item);
+        submitting.incrementAndGet();
+        try {
+            if (closed) {
+                throw new IllegalStateException("Pipeline closed");
+            }
+            return stages.get(0).offer(item, ThreadLocalRandom.current().nextInt());
+        } finally {
+            submitting.decrementAndGet();
+        }
+    }
+
+    /**
+     * @return current counters of the stages, in order, taken without locking
+     */
+    public List<StageStats> stats() {
+        List<StageStats> stats = new ArrayList<>(stages.size());
+        for (Stage stage : stages) {
+            stats.add(stage.stats());
+        }
+        return stats;
+    }
+
+    /**
+     * Stops accepting items, waits for the submitted ones to pass through all stages and stops the workers.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        while (submitting.get() != 0) {
+            Thread.yield();
+        }
+        boolean interrupted = false;
+        for (Stage stage : stages) {
+            stage.upstreamDone = true;
+            for (Worker worker : stage.workers) {
+                LockSupport.unpark(worker.thread);
+            }
+            for (Worker worker : stage.workers) {
+                while (worker.thread.isAlive()) {
+                    try {
+                        worker.thread.join();
+                    } catch (InterruptedException e) {
+                        interrupted = true;
+                    }
+                }
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @Override
+    public String toString() {
+        return String.format("Pipeline%s", stats());
+    }
+
+    private static void backoff(int idle) {
+        if (idle < 16) {
+            Thread.yield();
+        } else {
+            LockSupport.parkNanos(Math.min(1_000_000L, 1_000L << Math.min(idle - 16, 10)));
+        }
+    }
+
+    /**
+     * Definition of a stage collected by the {@link Builder}.
+     */
+    private static final class Spec {
+        final String name;
+        final int workers;
+        final XFunction<Object, ?, ?> function;
+        final XConsumer<Object, ?> consumer;
+        final Class<?> errorType;
+        final BiConsumer<Object, Object> errorHandler;
+
+        @SuppressWarnings("unchecked")
+        Spec(String name, int workers, XFunction<?, ?, ?> function, XConsumer<?, ?> consumer,
+             Class<?> errorType, BiConsumer<?, ?> errorHandler) {
+            if (workers < 1) {
+                throw new IllegalArgumentException("Non-positive workers " + workers);
+            }
+            this.name = Objects.requireNonNull(name);
+            this.workers = workers;
+            this.function = (XFunction<Object, ?, ?>) function;
+            this.consumer = (XConsumer<Object, ?>) consumer;
+            this.errorType = errorType;
+            this.errorHandler = (BiConsumer<Object, Object>) errorHandler;
+        }
+    }
+
+    private static final class Stage {
+        final Spec spec;
+        final Stage next;
+        final Worker[] workers;
+        final int batchSize;
+        final BiConsumer<String, Throwable> onError;
+        final LongAdder processed = new LongAdder();
+        final LongAdder failed = new LongAdder();
+        volatile boolean upstreamDone;
+
+        Stage(Spec spec, Builder<?, ?> builder, Stage next, boolean multiProducer) {
+            this.spec = spec;
+            this.next = next;
+            this.batchSize = builder.batchSize;
+            this.onError = builder.onError;
+            this.workers = new Worker[spec.workers];
+            for (int i = 0; i < workers.length; i++) {
+                RingBuffer<Object> queue = multiProducer
+                        ? RingBuffer.mpsc(builder.capacity)
+                        : RingBuffer.spsc(builder.capacity);
+                workers[i] = new Worker(this, queue, "pipeline-" + spec.name + "-" + i);
+            }
+        }
+
+        void start() {
+            for (Worker worker : workers) {
+                worker.thread.start();
+            }
+        }
+
+        boolean offer(Object item, int start) {
+            int n = workers.length;
+            for (int i = 0; i < n; i++) {
+                Worker worker = workers[((start + i) & Integer.MAX_VALUE) % n];
+                if (worker.queue.offer(item)) {
+                    if (worker.parked) {
+                        LockSupport.unpark(worker.thread);
+                    }
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        StageStats stats() {
+            int queued = 0;
+            int capacity = 0;
+            for (Worker worker : workers) {
+                queued += worker.queue.size();
+                capacity += worker.queue.capacity();
+            }
+            return new StageStats(spec.name, workers.length, processed.sum(), failed.sum(), queued, capacity);
+        }
+    }
+
+    private static final class Worker implements Runnable, Consumer<Object> {
+        final Stage stage;
+        final RingBuffer<Object> queue;
+        final Thread thread;
+        volatile boolean parked;
+        int cursor;
+
+        Worker(Stage stage, RingBuffer<Object> queue, String name) {
+            this.stage = stage;
+            this.queue = queue;
+            this.thread = new Thread(this, name);
+            this.thread.setDaemon(true);
+        }
+
+        @Override
+        public void run() {
+            for (int idle = 0; ; ) {
+                if (queue.drain(this, stage.batchSize) > 0) {
+                    idle = 0;
+                } else if (stage.upstreamDone && queue.isEmpty()) {
+                    return;
+                } else if (idle++ < 64) {
+                    Thread.yield();
+                } else {
+                    parked = true;
+                    // bounded park: the producer's ordered store may pass our flag, so do not rely on the unpark
+                    if (queue.isEmpty() && !stage.upstreamDone) {
+                        LockSupport.parkNanos(this, 1_000_000L);
+                    }
+                    parked = false;
+                }
+            }
+        }
+
+        @Override
+        public void accept(Object item) {
+            Spec spec = stage.spec;
+            try {
+                if (spec.function == null) {
+                    spec.consumer.accept(item);
+                } else {
+                    Object result = spec.function.apply(item);
+                    if (result != null) {
+                        for (int idle = 0; !stage.next.offer(result, cursor++); idle++) {
+                            backoff(idle);
+                        }
+                    }
+                }
+                stage.processed.increment();
+            } catch (Throwable e) {
+                stage.failed.increment();
+                handle(item, e);
+            }
+        }
+
+        private void handle(Object item, Throwable failure) {
+            Spec spec = stage.spec;
+            try {
+                if (spec.errorType != null && spec.errorType.isInstance(failure)) {
+                    spec.errorHandler.accept(item, failure);
+                } else {
+                    stage.onError.accept(spec.name, failure);
+                }
+            } catch (Throwable e) {
+                thread.getUncaughtExceptionHandler().uncaughtException(thread, e);
+            }
+        }
+    }
+
+    /**
+     * Counters of one stage of a {@link Pipeline}.
+     */
+    public static final class StageStats {
+        private final String name;
+        private final int workers;
+        private final long processed;
+        private final long failed;
+        private final int queued;
+        private final int capacity;
+
+        private StageStats(String name, int workers, long processed, long failed, int queued, int capacity) {
+            this.name = name;
+            this.workers = workers;
+            this.processed = processed;
+            this.failed = failed;
+            this.queued = queued;
+            this.capacity = capacity;
+        }
+
+        /**
+         * @return name of the stage
+         */
+        public String name() {
+            return name;
+        }
+
+        /**
+         * @return number of worker threads
+         */
+        public int workers() {
+            return workers;
+        }
+
+        /**
+         * @return number of items processed successfully
+         */
+        public long processed() {
+            return processed;
+        }
+
+        /**
+         * @return number of items whose processing threw
+         */
+        public long failed() {
+            return failed;
+        }
+
+        /**
+         * @return number of items waiting in the queues of the stage
+         */
+        public int queued() {
+            return queued;
+        }
+
+        /**
+         * @return total capacity of the queues of the stage
+         */
+        public int capacity() {
+            return capacity;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("[%s, workers=%d, processed=%d, failed=%d, queued=%d/%d]",
+                    name, workers, processed, failed, queued, capacity);
+        }
+    }
+
+    /**
+     * Builder of {@link Pipeline}, adding stages in order. By default each worker has a queue of 1024 items and
+     * drains it in batches of up to 64.
+     *
+     * @param <I> the type of items submitted
+     * @param <O> the type of items produced by the last stage added
+     */
+    public static final class Builder<I, O> {
+        private final List<Spec> specs = new ArrayList<>();
+        private int capacity = 1024;
+        private int batchSize = 64;
+        private BiConsumer<String, Throwable> onError = (stage, e) -> {
+            Thread thread = Thread.currentThread();
+            thread.getUncaughtExceptionHandler().uncaughtException(thread, e);
+        };
+
+        private Builder() {
+        }
+
+        /**
+         * @param capacity capacity of the queue of each worker, rounded up to a power of two
+         * @return this builder
+         */
+        public Builder<I, O> capacity(int capacity) {
+            if (capacity < 2 || capacity > 1 << 30) {
+                throw new IllegalArgumentException("Capacity out of range " + capacity);
+            }
+            this.capacity = capacity;
+            return this;
+        }
+
+        /**
+         * @param batchSize maximum number of items a worker takes from its queue at once
+         * @return this builder
+         */
+        public Builder<I, O> batchSize(int batchSize) {
+            if (batchSize < 1) {
+                throw new IllegalArgumentException("Non-positive batch size " + batchSize);
+            }
+            this.batchSize = batchSize;
+            return this;
+        }
+
+        /**
+         * @param onError handler of the exceptions which no stage handles, given the stage name
+         * @return this builder
+         */
+        public Builder<I, O> onError(BiConsumer<String, Throwable> onError) {
+            this.onError = Objects.requireNonNull(onError);
+            return this;
+        }
+
+        /**
+         * Adds a stage with one worker.
+         *
+         * @param name name of the stage
+         * @param function function applied to each item
+         * @param <R> the type of results
+         * @return this builder
+         */
+        public <R> Builder<I, R> stage(String name, XFunction<? super O, ? extends R, ?> function) {
+            return stage(name, 1, function);
+        }
+
+        /**
+         * Adds a stage with a pool of workers.
+         *
+         * @param name name of the stage
+         * @param workers number of workers
+         * @param function function applied to each item
+         * @param <R> the type of results
+         * @return this builder
+         */
+        public <R> Builder<I, R> stage(String name, int workers, XFunction<? super O, ? extends R, ?> function) {
+            return add(new Spec(name, workers, Objects.requireNonNull(function), null, null, null));
+        }
+
+        /**
+         * Adds a stage with a pool of workers and a handler of the exceptions it declares.
+         *
+         * @param name name of the stage
+         * @param workers number of workers
+         * @param function function applied to each item
+         * @param errorType type of the exceptions to handle
+         * @param onError handler of these exceptions, given the item
+         * @param <R> the type of results
+         * @param <X> the type of the exception thrown by the function
+         * @return this builder
+         */
+        public <R, X extends Exception> Builder<I, R> stage(String name, int workers,
+                                                             XFunction<? super O, ? extends R, X> function,
+                                                             Class<X> errorType,
+                                                             BiConsumer<? super O, ? super X> onError) {
+            return add(new Spec(name, workers, Objects.requireNonNull(function), null,
+                    Objects.requireNonNull(errorType), Objects.requireNonNull(onError)));
+        }
+
+        /**
+         * Adds the final stage with one worker and starts the pipeline.
+         *
+         * @param name name of the stage
+         * @param consumer consumer of the items
+         * @return a new running pipeline
+         */
+        public Pipeline<I> sink(String name, XConsumer<? super O, ?> consumer) {
+            return sink(name, 1, consumer);
+        }
+
+        /**
+         * Adds the final stage with a pool of workers and starts the pipeline.
+         *
+         * @param name name of the stage
+         * @param workers number of workers
+         * @param consumer consumer of the items
+         * @return a new running pipeline
+         */
+        public Pipeline<I> sink(String name, int workers, XConsumer<? super O, ?> consumer) {
+            add(new Spec(name, workers, null, Objects.requireNonNull(consumer), null, null));
+            return new Pipeline<>(this);
+        }
+
+        /**
+         * Adds the final stage with a pool of workers and a handler of the exceptions it declares, and starts the
+         * pipeline.
+         *
+         * @param name name of the stage
+         * @param workers number of workers
+         * @param consumer consumer of the items
+         * @param errorType type of the exceptions to handle
+         * @param onError handler of these exceptions, given the item
+         * @param <X> the type of the exception thrown by the consumer
+         * @return a new running pipeline
+         */
+        public <X extends Exception> Pipeline<I> sink(String name, int workers, XConsumer<? super O, X> consumer,
+                                                      Class<X> errorType, BiConsumer<? super O, ? super X> onError) {
+            add(new Spec(name, workers, null, Objects.requireNonNull(consumer),
+                    Objects.requireNonNull(errorType), Objects.requireNonNull(onError)));
+            return new Pipeline<>(this);
+        }
+
+        @SuppressWarnings("unchecked")
+        private <R> Builder<I, R> add(Spec spec) {
+            specs.add(spec);
+            return (Builder<I, R>) this;
+        }
+    }
+}
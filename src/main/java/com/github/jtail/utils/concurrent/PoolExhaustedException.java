@@ -0,0 +1,16 @@
+package com.github.jtail.utils.concurrent;
+
+import com.github.jtail.utils.xfn.StacklessException;
+
+/**
+ * Thrown by an {@link XPool} when no resource becomes available within the maximum wait.
+ * <p>
+ * Each pool throws one preallocated instance whose message names it, so a rejected borrow costs no allocation.
+ */
+public final class PoolExhaustedException extends StacklessException {
+    private static final long serialVersionUID = 1L;
+
+    PoolExhaustedException(String message) {
+        super(message);
+    }
+}
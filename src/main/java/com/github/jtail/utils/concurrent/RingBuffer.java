@@ -0,0 +1,107 @@
+package com.github.jtail.utils.concurrent;
+
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Consumer;
+
+/**
+ * Bounded lock-free queue on a power-of-two array, for passing elements between threads with as little
+ * coherence traffic as possible.
+ * <p>
+ * The head, owned by the consumer, and the tail, owned by the producers, are padded onto separate cache lines,
+ * and each side caches the last index it read of the other, so in the steady state a thread only touches the
+ * shared lines when its cached view says the queue is empty or full. Elements are published with ordered
+ * stores rather than full fences.
+ * <p>
+ * {@link #spsc(int)} allows one producer thread, {@link #mpsc(int)} any number of them; both allow one consumer
+ * thread. Null elements are not allowed.
+ *
+ * @param <E> the type of elements
+ */
+public abstract class RingBuffer<E> {
+    final AtomicReferenceArray<E> buffer;
+    final int mask;
+
+    RingBuffer(int capacity) {
+        if (capacity < 2 || capacity > 1 << 30) {
+            throw new IllegalArgumentException("Capacity out of range " + capacity);
+        }
+        int size = Integer.highestOneBit(capacity - 1) << 1;
+        this.buffer = new AtomicReferenceArray<>(size);
+        this.mask = size - 1;
+    }
+
+    /**
+     * @param capacity maximum number of elements, rounded up to a power of two
+     * @param <E> the type of elements
+     * @return a new queue for one producer and one consumer thread
+     */
+    public static <E> RingBuffer<E> spsc(int capacity) {
+        return new SpscRingBuffer<>(capacity);
+    }
+
+    /**
+     * @param capacity maximum number of elements, rounded up to a power of two
+     * @param <E> the type of elements
+     * @return a new queue for any number of producer threads and one consumer thread
+     */
+    public static <E> RingBuffer<E> mpsc(int capacity) {
+        return new MpscRingBuffer<>(capacity);
+    }
+
+    /**
+     * Adds the element if the queue is not full.
+     *
+     * @param element the element
+     * @return {@code true} if the element was added
+     */
+    public abstract boolean offer(E element);
+
+    /**
+     * Removes the oldest element, consumer thread only.
+     *
+     * @return the element, or {@code null} if the queue is empty
+     */
+    public abstract E poll();
+
+    /**
+     * Removes and processes up to {@code limit} elements, consumer thread only. If the action throws, the element
+     * it was given is removed and the others stay in the queue.
+     *
+     * @param action action processing the elements
+     * @param limit maximum number of elements
+     * @return number of elements removed
+     */
+    public int drain(Consumer<? super E> action, int limit) {
+        int drained = 0;
+        E element;
+        while (drained < limit && (element = poll()) != null) {
+            drained++;
+            action.accept(element);
+        }
+        return drained;
+    }
+
+    /**
+     * @return approximate number of elements
+     */
+    public abstract int size();
+
+    /**
+     * @return {@code true} if the queue appears empty
+     */
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    /**
+     * @return maximum number of elements
+     */
+    public int capacity() {
+        return mask + 1;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("RingBuffer[%d/%d]", size(), capacity());
+    }
+}
@@ -0,0 +1,123 @@
+package com.github.jtail.utils.concurrent;
+
+import com.github.jtail.utils.xfn.XFunction;
+
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * {@link XFunction} decorator which coalesces concurrent calls for equal keys into one invocation of the delegate.
+ * <p>
+ * The first caller for a key becomes the leader and invokes the delegate, callers arriving while it is in flight
+ * wait for it and receive the same value, or the same exception instance. Once the call completes the key is
+ * forgotten, so the next call invokes the delegate again: this is coalescing, not caching.
+ * <p>
+ * Blocking {@link #apply(Object)} and asynchronous {@link #submit(Object, XExecutor)} share in-flight calls,
+ * either may join a call started by the other. The in-flight calls are kept in a {@link ConcurrentHashMap},
+ * which locks individual bins on update and reads without locking, so callers for different keys do not contend.
+ * <p>
+ * The delegate must not call back into the same instance for the same key, it would wait for itself.
+ *
+ * @param <K> the type of keys
+ * @param <V> the type of values
+ * @param <X> the type of the exception thrown by the delegate
+ */
+public final class SingleFlight<K, V, X extends Exception> implements XFunction<K, V, X> {
+    private final ConcurrentHashMap<K, CompletableFuture<V>> calls = new ConcurrentHashMap<>();
+    private final XFunction<? super K, ? extends V, ? extends X> delegate;
+
+    private SingleFlight(XFunction<? super K, ? extends V, ? extends X> delegate) {
+        this.delegate = delegate;
+    }
+
+    /**
+     * @param delegate function to be invoked once per key at a time
+     * @param <K> the type of keys
+     * @param <V> the type of values
+     * @param <X> the type of the exception thrown by the delegate
+     * @return coalescing function
+     */
+    public static <K, V, X extends Exception> SingleFlight<K, V, X> of(
+            XFunction<? super K, ? extends V, ? extends X> delegate) {
+        return new SingleFlight<>(Objects.requireNonNull(delegate));
+    }
+
+    /**
+     * Invokes the delegate in the calling thread, or waits for the call in flight for an equal key.
+     * Waiting is not interruptible, the interrupt status is kept.
+     */
+    @Override
+    public V apply(K key) throws X {
+        CompletableFuture<V> call = new CompletableFuture<>();
+        CompletableFuture<V> inFlight = calls.putIfAbsent(Objects.requireNonNull(key), call);
+        if (inFlight != null) {
+            return await(inFlight);
+        }
+        return run(key, call);
+    }
+
+    /**
+     * Invokes the delegate in the executor, or joins the call in flight for an equal key.
+     * Cancelling the returned future does not cancel the shared call.
+     *
+     * @param key the key
+     * @param executor executor to invoke the delegate in, unless a call is already in flight
+     * @return future of the shared call
+     */
+    public XFuture<V, X> submit(K key, XExecutor executor) {
+        CompletableFuture<V> call = new CompletableFuture<>();
+        CompletableFuture<V> inFlight = calls.putIfAbsent(Objects.requireNonNull(key), call);
+        if (inFlight == null) {
+            inFlight = call;
+            try {
+                executor.toExecutorService().execute(() -> {
+                    try {
+                        run(key, call);
+                    } catch (Exception e) {
+                        // delivered through the future
+                    }
+                });
+            } catch (RejectedExecutionException e) {
+                calls.remove(key, call);
+                call.completeExceptionally(e);
+            }
+        }
+        return XFuture.of(inFlight.thenApply(v -> v));
+    }
+
+    /**
+     * @return number of calls currently in flight
+     */
+    public int inFlight() {
+        return calls.size();
+    }
+
+    private V run(K key, CompletableFuture<V> call) throws X {
+        try {
+            V value = delegate.apply(key);
+            call.complete(value);
+            return value;
+        } catch (Throwable e) {
+            call.completeExceptionally(e);
+            throw e;
+        } finally {
+            calls.remove(key, call);
+        }
+    }
+
+    private V await(CompletableFuture<V> call) throws X {
+        try {
+            return call.join();
+        } catch (CompletionException e) {
+            throw Exceptions.<X>rethrow(e.getCause());
+        }
+    }
+
+    @Override
+    public String toString() {
+        return String.format("SingleFlight[inFlight=%d]", inFlight());
+    }
+}
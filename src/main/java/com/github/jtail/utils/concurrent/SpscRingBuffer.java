@@ -0,0 +1,96 @@
+package com.github.jtail.utils.concurrent;
+
+import java.util.concurrent.atomic.AtomicLongFieldUpdater;
+
+/**
+ * {@link RingBuffer} for a single producer thread. The fields are spread over a class hierarchy, which the JVM lays
+ * out superclass first, so that the padding keeps the head and the tail on separate cache lines.
+ */
+final class SpscRingBuffer<E> extends SpscTail<E> {
+    @SuppressWarnings("rawtypes")
+    private static final AtomicLongFieldUpdater<SpscHead> HEAD =
+            AtomicLongFieldUpdater.newUpdater(SpscHead.class, "head");
+    @SuppressWarnings("rawtypes")
+    private static final AtomicLongFieldUpdater<SpscTail> TAIL =
+            AtomicLongFieldUpdater.newUpdater(SpscTail.class, "tail");
+
+    long p10, p11, p12, p13, p14, p15, p16, p17;
+
+    SpscRingBuffer(int capacity) {
+        super(capacity);
+    }
+
+    @Override
+    public boolean offer(E element) {
+        if (element == null) {
+            throw new NullPointerException();
+        }
+        long t = tail;
+        if (t - headCache > mask) {
+            headCache = head;
+            if (t - headCache > mask) {
+                return false;
+            }
+        }
+        buffer.lazySet((int) t & mask, element);
+        TAIL.lazySet(this, t + 1);
+        return true;
+    }
+
+    @Override
+    public E poll() {
+        long h = head;
+        if (h >= tailCache) {
+            tailCache = tail;
+            if (h >= tailCache) {
+                return null;
+            }
+        }
+        int index = (int) h & mask;
+        E element = buffer.get(index);
+        buffer.lazySet(index, null);
+        HEAD.lazySet(this, h + 1);
+        return element;
+    }
+
+    @Override
+    public int size() {
+        return (int) Math.max(0, Math.min(tail - head, mask + 1));
+    }
+}
+
+abstract class SpscPad0<E> extends RingBuffer<E> {
+    long p00, p01, p02, p03, p04, p05, p06, p07;
+
+    SpscPad0(int capacity) {
+        super(capacity);
+    }
+}
+
+abstract class SpscHead<E> extends SpscPad0<E> {
+    // consumer side
+    volatile long head;
+    long tailCache;
+
+    SpscHead(int capacity) {
+        super(capacity);
+    }
+}
+
+abstract class SpscPad1<E> extends SpscHead<E> {
+    long p00, p01, p02, p03, p04, p05, p06, p07;
+
+    SpscPad1(int capacity) {
+        super(capacity);
+    }
+}
+
+abstract class SpscTail<E> extends SpscPad1<E> {
+    // producer side
+    volatile long tail;
+    long headCache;
+
+    SpscTail(int capacity) {
+        super(capacity);
+    }
+}
@@ -0,0 +1,45 @@
+package com.github.jtail.utils.concurrent;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Creates executors which start a thread per task.
+ * <p>
+ * This is the variant for JVMs without virtual threads: an unbounded pool of daemon platform threads which are
+ * reused while they are hot and retire after a minute of idleness. The multi-release jar replaces this class with
+ * one backed by virtual threads on Java 21 and later.
+ */
+final class VirtualThreads {
+    private static final long KEEP_ALIVE_SECONDS = 60;
+
+    private VirtualThreads() {
+    }
+
+    /**
+     * @return {@code true} if the executors run tasks on virtual threads
+     */
+    static boolean isSupported() {
+        return false;
+    }
+
+    /**
+     * @param prefix name prefix of the threads
+     * @return executor starting or reusing a thread for each task
+     */
+    static ExecutorService newExecutor(String prefix) {
+        AtomicLong counter = new AtomicLong();
+        ThreadFactory factory = task -> {
+            Thread thread = new Thread(task, prefix + counter.getAndIncrement());
+            thread.setDaemon(true);
+            return thread;
+        };
+        return new ThreadPoolExecutor(
+                0, Integer.MAX_VALUE, KEEP_ALIVE_SECONDS, TimeUnit.SECONDS, new SynchronousQueue<>(), factory
+        );
+    }
+}
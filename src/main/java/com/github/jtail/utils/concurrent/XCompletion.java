@@ -0,0 +1,310 @@
+package com.github.jtail.utils.concurrent;
+
+import com.github.jtail.utils.xfn.XConsumer;
+import com.github.jtail.utils.xfn.XFunction;
+import com.github.jtail.utils.xfn.XOptional;
+import com.github.jtail.utils.xfn.XSupplier;
+
+import java.util.Objects;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Predicate;
+
+/**
+ * An asynchronous version of {@link XOptional}: a value which may be absent, computed later, or failed with
+ * {@code X}.
+ * <p>
+ * {@code map}, {@code flatMap}, {@code ifPresent} and {@code orElseGet} take the X-interfaces and run as
+ * continuations of the underlying {@link CompletableFuture} on the executor of the completion, so no thread waits
+ * for the value, and one parked on I/O elsewhere costs nothing here. A stage throwing {@code X} fails the
+ * following ones with that very exception, not wrapped into {@link CompletionException}, and the stages after it
+ * are skipped up to {@link #get()}, which rethrows it with its declared type.
+ * <p>
+ * A {@code null} value is the absent one, as for {@link XOptional#ofNullable(Object)}.
+ * <pre>{@code
+ * XCompletion<Invoice, IOException> invoice = XCompletion.supplyAsync(() -> orders.load(id), ioExecutor)
+ *         .filter(Order::isPaid)
+ *         .flatMap(order -> billing.invoiceAsync(order))
+ *         .orElseGet(() -> Invoice.pending(id));
+ * }</pre>
+ *
+ * @param <T> the type of the value
+ * @param <X> the type of the exception thrown by the stages
+ */
+public final class XCompletion<T, X extends Exception> {
+    private static final Executor DIRECT = Runnable::run;
+
+    private final CompletableFuture<T> future;
+    private final Executor executor;
+
+    private XCompletion(CompletableFuture<T> future, Executor executor) {
+        this.future = future;
+        this.executor = executor;
+    }
+
+    /**
+     * Views a stage which can only fail with {@code X} as a completion whose stages run in the thread completing
+     * the previous one.
+     *
+     * @param stage the stage to be wrapped, completed with {@code null} if the value is absent
+     * @param <T> the type of the value
+     * @param <X> the type of the exception of the stage
+     * @return completion of the stage
+     */
+    public static <T, X extends Exception> XCompletion<T, X> of(CompletionStage<T> stage) {
+        return of(stage, DIRECT);
+    }
+
+    /**
+     * Views a stage which can only fail with {@code X} as a completion whose stages run on the executor.
+     *
+     * @param stage the stage to be wrapped, completed with {@code null} if the value is absent
+     * @param executor executor running the stages
+     * @param <T> the type of the value
+     * @param <X> the type of the exception of the stage
+     * @return completion of the stage
+     */
+    public static <T, X extends Exception> XCompletion<T, X> of(CompletionStage<T> stage, Executor executor) {
+        return new XCompletion<>(stage.toCompletableFuture(), Objects.requireNonNull(executor));
+    }
+
+    /**
+     * Calls the supplier on the executor, which then runs the following stages.
+     *
+     * @param supplier supplier of the value, may return {@code null}
+     * @param executor executor running the supplier and the stages
+     * @param <T> the type of the value
+     * @param <X> the type of the exception thrown by the supplier
+     * @return completion of the value
+     */
+    public static <T, X extends Exception> XCompletion<T, X> supplyAsync(XSupplier<? extends T, ? extends X> supplier,
+                                                                         Executor executor) {
+        Objects.requireNonNull(supplier);
+        CompletableFuture<T> future = new CompletableFuture<>();
+        executor.execute(() -> {
+            try {
+                future.complete(supplier.get());
+            } catch (Throwable e) {
+                future.completeExceptionally(e);
+            }
+        });
+        return new XCompletion<>(future, executor);
+    }
+
+    /**
+     * @param value the value, may be {@code null}
+     * @param <T> the type of the value
+     * @param <X> the type of the exception thrown by the stages
+     * @return completion of the value, with stages running in the calling thread
+     */
+    public static <T, X extends Exception> XCompletion<T, X> completed(T value) {
+        return new XCompletion<>(CompletableFuture.completedFuture(value), DIRECT);
+    }
+
+    /**
+     * @param <T> the type of the value
+     * @param <X> the type of the exception thrown by the stages
+     * @return completion without a value, with stages running in the calling thread
+     */
+    public static <T, X extends Exception> XCompletion<T, X> empty() {
+        return completed(null);
+    }
+
+    /**
+     * @param exception the exception
+     * @param <T> the type of the value
+     * @param <X> the type of the exception
+     * @return completion failed with the exception
+     */
+    public static <T, X extends Exception> XCompletion<T, X> failed(X exception) {
+        CompletableFuture<T> future = new CompletableFuture<>();
+        future.completeExceptionally(Objects.requireNonNull(exception));
+        return new XCompletion<>(future, DIRECT);
+    }
+
+    /**
+     * @param executor executor running the following stages
+     * @return completion of the same value whose following stages run on the executor
+     */
+    public XCompletion<T, X> onExecutor(Executor executor) {
+        return new XCompletion<>(future, Objects.requireNonNull(executor));
+    }
+
+    /**
+     * If the value is present, applies the mapping function to it.
+     *
+     * @param mapper function mapping the value, may return {@code null}
+     * @param <U> the type of the result
+     * @return completion of the result, absent if the value is absent
+     */
+    public <U> XCompletion<U, X> map(XFunction<? super T, ? extends U, ? extends X> mapper) {
+        Objects.requireNonNull(mapper);
+        CompletableFuture<U> result = new CompletableFuture<>();
+        future.whenCompleteAsync((value, failure) -> {
+            if (failure != null) {
+                result.completeExceptionally(unwrap(failure));
+            } else {
+                try {
+                    result.complete(value == null ? null : mapper.apply(value));
+                } catch (Throwable e) {
+                    result.completeExceptionally(e);
+                }
+            }
+        }, executor);
+        return new XCompletion<>(result, executor);
+    }
+
+    /**
+     * If the value is present, applies the asynchronous mapping function to it, without waiting for its result.
+     *
+     * @param mapper function mapping the value to a completion
+     * @param <U> the type of the result
+     * @return completion of the result of the returned completion, absent if the value is absent
+     */
+    public <U> XCompletion<U, X> flatMap(
+            XFunction<? super T, ? extends XCompletion<? extends U, ? extends X>, ? extends X> mapper) {
+        Objects.requireNonNull(mapper);
+        CompletableFuture<U> result = new CompletableFuture<>();
+        future.whenCompleteAsync((value, failure) -> {
+            if (failure != null) {
+                result.completeExceptionally(unwrap(failure));
+            } else if (value == null) {
+                result.complete(null);
+            } else {
+                try {
+                    mapper.apply(value).toCompletableFuture().whenComplete((mapped, error) -> {
+                        if (error != null) {
+                            result.completeExceptionally(unwrap(error));
+                        } else {
+                            result.complete(mapped);
+                        }
+                    });
+                } catch (Throwable e) {
+                    result.completeExceptionally(e);
+                }
+            }
+        }, executor);
+        return new XCompletion<>(result, executor);
+    }
+
+    /**
+     * If the value is present and does not match the predicate, makes it absent.
+     *
+     * @param predicate predicate applied to the value, if present
+     * @return completion of the value if it matches the predicate
+     */
+    public XCompletion<T, X> filter(Predicate<? super T> predicate) {
+        Objects.requireNonNull(predicate);
+        return map(value -> predicate.test(value) ? value : null);
+    }
+
+    /**
+     * If the value is present, passes it to the consumer.
+     *
+     * @param consumer consumer of the value
+     * @return completion of the same value, after the consumer has returned
+     */
+    public XCompletion<T, X> ifPresent(XConsumer<? super T, ? extends X> consumer) {
+        Objects.requireNonNull(consumer);
+        return map(value -> {
+            consumer.accept(value);
+            return value;
+        });
+    }
+
+    /**
+     * If the value is absent, calls the supplier.
+     *
+     * @param other supplier of the value to use instead, may return {@code null}
+     * @return completion of the value, or of the value of the supplier if it was absent
+     */
+    public XCompletion<T, X> orElseGet(XSupplier<? extends T, ? extends X> other) {
+        Objects.requireNonNull(other);
+        CompletableFuture<T> result = new CompletableFuture<>();
+        future.whenCompleteAsync((value, failure) -> {
+            if (failure != null) {
+                result.completeExceptionally(unwrap(failure));
+            } else {
+                try {
+                    result.complete(value != null ? value : other.get());
+                } catch (Throwable e) {
+                    result.completeExceptionally(e);
+                }
+            }
+        }, executor);
+        return new XCompletion<>(result, executor);
+    }
+
+    /**
+     * @param other the value to use if the value is absent, may be {@code null}
+     * @return completion of the value, or of the other one if it was absent
+     */
+    public XCompletion<T, X> orElse(T other) {
+        return other == null ? this : orElseGet(() -> other);
+    }
+
+    /**
+     * Waits for the value.
+     *
+     * @return the value, empty if absent
+     * @throws X if a stage has thrown it
+     * @throws InterruptedException if the current thread was interrupted while waiting
+     * @throws CancellationException if the underlying future was cancelled
+     */
+    public XOptional<T> get() throws X, InterruptedException {
+        try {
+            return XOptional.ofNullable(future.get());
+        } catch (ExecutionException e) {
+            throw Exceptions.<X>rethrow(unwrap(e.getCause()));
+        }
+    }
+
+    /**
+     * Waits at most the given time for the value.
+     *
+     * @param timeout the maximum time to wait
+     * @param unit the time unit of the timeout argument
+     * @return the value, empty if absent
+     * @throws X if a stage has thrown it
+     * @throws InterruptedException if the current thread was interrupted while waiting
+     * @throws TimeoutException if the wait timed out
+     * @throws CancellationException if the underlying future was cancelled
+     */
+    public XOptional<T> get(long timeout, TimeUnit unit) throws X, InterruptedException, TimeoutException {
+        try {
+            return XOptional.ofNullable(future.get(timeout, unit));
+        } catch (ExecutionException e) {
+            throw Exceptions.<X>rethrow(unwrap(e.getCause()));
+        }
+    }
+
+    /**
+     * @return {@code true} if the value is available or a stage has failed
+     */
+    public boolean isDone() {
+        return future.isDone();
+    }
+
+    /**
+     * @return the underlying future, completed with {@code null} if the value is absent and exceptionally with
+     * the exception of the failed stage as is
+     */
+    public CompletableFuture<T> toCompletableFuture() {
+        return future;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("XCompletion[%s]", future);
+    }
+
+    private static Throwable unwrap(Throwable failure) {
+        return failure instanceof CompletionException && failure.getCause() != null ? failure.getCause() : failure;
+    }
+}
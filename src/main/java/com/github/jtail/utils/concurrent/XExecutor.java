@@ -0,0 +1,132 @@
+package com.github.jtail.utils.concurrent;
+
+import com.github.jtail.utils.xfn.XRunnable;
+import com.github.jtail.utils.xfn.XSupplier;
+
+import java.util.Objects;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A version of {@link ExecutorService} with exception support.
+ * <p>
+ * Tasks are {@link XSupplier}s and {@link XRunnable}s, and the returned {@link XFuture}s rethrow the task
+ * exception with its declared type, so the callers do not need to unwrap {@link java.util.concurrent.ExecutionException}.
+ * An existing {@link com.github.jtail.utils.xfn.XCallable} is submitted as {@code callable::call}; lambdas are
+ * not targeted at it directly because javac 8 rejects them unless the exception type is {@link Exception}.
+ * <p>
+ * {@link #newPerTaskExecutor(String)} runs each task on its own thread, virtual on Java 21 and later, which suits
+ * tasks that spend their time blocked on I/O: tens of thousands of them may be in flight at once.
+ */
+public final class XExecutor implements AutoCloseable {
+    private final ExecutorService executor;
+
+    private XExecutor(ExecutorService executor) {
+        this.executor = executor;
+    }
+
+    /**
+     * Wraps an existing executor service; closing the facade shuts it down.
+     *
+     * @param executor executor service to run the tasks
+     * @return executor with exception support
+     */
+    public static XExecutor of(ExecutorService executor) {
+        return new XExecutor(Objects.requireNonNull(executor));
+    }
+
+    /**
+     * Creates an executor which runs each task on a new virtual thread, or on an unbounded pool of daemon
+     * platform threads if the JVM has no virtual threads.
+     *
+     * @param prefix name prefix of the threads
+     * @return executor with exception support
+     */
+    public static XExecutor newPerTaskExecutor(String prefix) {
+        return new XExecutor(VirtualThreads.newExecutor(Objects.requireNonNull(prefix)));
+    }
+
+    /**
+     * @return {@code true} if {@link #newPerTaskExecutor(String)} uses virtual threads on this JVM
+     */
+    public static boolean isVirtualThreadsSupported() {
+        return VirtualThreads.isSupported();
+    }
+
+    /**
+     * Submits a value-returning task for execution.
+     *
+     * @param task the task to submit
+     * @param <T> the type of the result
+     * @param <X> the type of the exception thrown by the task
+     * @return future rethrowing the task exception
+     */
+    public <T, X extends Exception> XFuture<T, X> submit(XSupplier<T, X> task) {
+        Objects.requireNonNull(task);
+        return XFuture.of(executor.submit(task::get));
+    }
+
+    /**
+     * Submits a task for execution.
+     *
+     * @param task the task to submit
+     * @param <X> the type of the exception thrown by the task
+     * @return future rethrowing the task exception, its result is {@code null}
+     */
+    public <X extends Exception> XFuture<Void, X> submit(XRunnable<X> task) {
+        Objects.requireNonNull(task);
+        return XFuture.of(executor.submit(() -> {
+            task.run();
+            return null;
+        }));
+    }
+
+    /**
+     * Initiates an orderly shutdown, previously submitted tasks are executed.
+     */
+    public void shutdown() {
+        executor.shutdown();
+    }
+
+    /**
+     * @return {@code true} if all tasks have completed after shutdown
+     */
+    public boolean isTerminated() {
+        return executor.isTerminated();
+    }
+
+    /**
+     * Shuts down and waits for the submitted tasks to complete. If interrupted while waiting, cancels the tasks
+     * and restores the interrupt status when they are done.
+     */
+    @Override
+    public void close() {
+        boolean interrupted = false;
+        executor.shutdown();
+        while (!executor.isTerminated()) {
+            try {
+                executor.awaitTermination(1, TimeUnit.DAYS);
+            } catch (InterruptedException e) {
+                if (!interrupted) {
+                    executor.shutdownNow();
+                    interrupted = true;
+                }
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * @return the underlying executor service, for the APIs expecting one
+     */
+    public ExecutorService toExecutorService() {
+        return executor;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("XExecutor[%s]", executor);
+    }
+}
@@ -0,0 +1,106 @@
+package com.github.jtail.utils.concurrent;
+
+import java.util.Objects;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * A version of {@link Future} with exception support.
+ * <p>
+ * The task exception is rethrown by {@link #get()} as is, instead of being wrapped into {@link ExecutionException}.
+ * Unchecked exceptions and errors thrown by the task are rethrown as well, so the only checked exceptions to handle
+ * are {@code X} and {@link InterruptedException} of the waiting thread.
+ *
+ * @param <T> the type of the result
+ * @param <X> the type of the exception thrown by the task
+ */
+public final class XFuture<T, X extends Exception> {
+    private final Future<T> future;
+
+    private XFuture(Future<T> future) {
+        this.future = future;
+    }
+
+    /**
+     * Views a future of a task which can only throw {@code X} as an {@code XFuture}.
+     *
+     * @param future future to be wrapped
+     * @param <T> the type of the result
+     * @param <X> the type of the exception thrown by the task
+     * @return future with exception support
+     */
+    public static <T, X extends Exception> XFuture<T, X> of(Future<T> future) {
+        return new XFuture<>(Objects.requireNonNull(future));
+    }
+
+    /**
+     * Waits for the task to complete and returns its result.
+     *
+     * @return the result of the task
+     * @throws X if the task has thrown it
+     * @throws InterruptedException if the current thread was interrupted while waiting
+     * @throws CancellationException if the task was cancelled
+     */
+    public T get() throws X, InterruptedException {
+        try {
+            return future.get();
+        } catch (ExecutionException e) {
+            throw Exceptions.<X>rethrow(e.getCause());
+        }
+    }
+
+    /**
+     * Waits at most the given time for the task to complete and returns its result.
+     *
+     * @param timeout the maximum time to wait
+     * @param unit the time unit of the timeout argument
+     * @return the result of the task
+     * @throws X if the task has thrown it
+     * @throws InterruptedException if the current thread was interrupted while waiting
+     * @throws TimeoutException if the wait timed out
+     * @throws CancellationException if the task was cancelled
+     */
+    public T get(long timeout, TimeUnit unit) throws X, InterruptedException, TimeoutException {
+        try {
+            return future.get(timeout, unit);
+        } catch (ExecutionException e) {
+            throw Exceptions.<X>rethrow(e.getCause());
+        }
+    }
+
+    /**
+     * @see Future#cancel(boolean)
+     */
+    public boolean cancel(boolean mayInterruptIfRunning) {
+        return future.cancel(mayInterruptIfRunning);
+    }
+
+    /**
+     * @see Future#isCancelled()
+     */
+    public boolean isCancelled() {
+        return future.isCancelled();
+    }
+
+    /**
+     * @see Future#isDone()
+     */
+    public boolean isDone() {
+        return future.isDone();
+    }
+
+    /**
+     * @return the underlying future, for the APIs expecting one
+     */
+    public Future<T> toFuture() {
+        return future;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("XFuture[%s]", future);
+    }
+}
@@ -0,0 +1,568 @@
+package com.github.jtail.utils.concurrent;
+
+import com.github.jtail.utils.xfn.XConsumer;
+import com.github.jtail.utils.xfn.XFunction;
+import com.github.jtail.utils.xfn.XSupplier;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+import java.util.function.Predicate;
+
+/**
+ * Bounded pool of resources created by an {@link XSupplier} and destroyed by an {@link XConsumer}.
+ * <p>
+ * Each thread keeps the last resource it returned, and takes it back on its next borrow with a single
+ * compare-and-set. Other idle resources are kept in a lock-free stack, linked by their slot indices, with a stamp
+ * in the head against ABA. A borrow holds a {@link Semaphore} permit, so when all resources are out the borrower
+ * waits for one to come back, up to the maximum wait; a thread may take the resource another thread keeps, so none
+ * of them sits idle while someone waits. Borrowing and returning a pooled resource allocates nothing.
+ * <p>
+ * A resource failing validation on borrow is destroyed and replaced, as are the resources idle for longer than
+ * the maximum idle time. These are evicted periodically on a background thread, which the
+ * {@link HashedWheelTimer#shared() shared timer} only starts, so that a slow destroyer does not hold up the timer.
+ * <pre>{@code
+ * XPool<Parser, IOException> parsers = XPool.builder("parsers", Parser::new, Parser::close).maxSize(16).build();
+ * Document document = parsers.withResource(parser -> parser.parse(input));
+ * }</pre>
+ *
+ * @param <R> the type of resources
+ * @param <X> the type of the exception thrown by the factory
+ */
+public final class XPool<R, X extends Exception> implements AutoCloseable {
+    private static final int IN_USE = 0;
+    private static final int LOCAL = 1;
+    private static final int SHARED = 2;
+    private static final int REMOVED = 3;
+
+    private static final long INDEX_MASK = 0xFFFF_FFFFL;
+
+    private final String name;
+    private final XSupplier<? extends R, ? extends X> factory;
+    private final XConsumer<? super R, ?> destroyer;
+    private final Predicate<? super R> validator;
+    private final int maxSize;
+    private final long maxWaitNanos;
+    private final long maxIdleNanos;
+    private final LongSupplier ticker;
+    private final Semaphore permits;
+    private final AtomicReferenceArray<Lease<R>> slots;
+    private final AtomicInteger size = new AtomicInteger();
+    /**
+     * Top of the stack of shared idle resources: slot index plus one in the low half, 0 if empty, and a stamp
+     * incremented on each change in the high half.
+     */
+    private final AtomicLong head = new AtomicLong();
+    private final ThreadLocal<Lease<R>> local = new ThreadLocal<>();
+    private final LongAdder created = new LongAdder();
+    private final LongAdder destroyed = new LongAdder();
+    private final PoolExhaustedException exhausted;
+    private volatile HashedWheelTimer.Timeout eviction;
+    private volatile boolean closed;
+
+    private XPool(Builder<R, X> builder) {
+        this.name = builder.name;
+        this.factory = builder.factory;
+        this.destroyer = builder.destroyer;
+        this.validator = builder.validator;
+        this.maxSize = builder.maxSize;
+        this.maxWaitNanos = builder.maxWaitNanos;
+        this.maxIdleNanos = builder.maxIdleNanos;
+        this.ticker = builder.ticker;
+        this.permits = new Semaphore(maxSize);
+        this.slots = new AtomicReferenceArray<>(maxSize);
+        this.exhausted = new PoolExhaustedException("Pool " + name + " exhausted");
+        if (maxIdleNanos != 0) {
+            scheduleEviction();
+        }
+    }
+
+    /**
+     * @param name name of the pool, for reporting
+     * @param factory creates the resources
+     * @param destroyer releases the resources evicted, failing validation or left when the pool is closed
+     * @param <R> the type of resources
+     * @param <X> the type of the exception thrown by the factory
+     * @return builder of a new pool
+     */
+    public static <R, X extends Exception> Builder<R, X> builder(String name,
+                                                                 XSupplier<? extends R, ? extends X> factory,
+                                                                 XConsumer<? super R, ?> destroyer) {
+        return new Builder<>(Objects.requireNonNull(name), Objects.requireNonNull(factory),
+                Objects.requireNonNull(destroyer));
+    }
+
+    /**
+     * Takes a resource, creating one if there is none idle and the pool is not full, or waiting for one otherwise.
+     * The lease must be closed exactly once.
+     *
+     * @return lease of the resource
+     * @throws X if the factory has thrown it
+     * @throws InterruptedException if interrupted while waiting
+     * @throws PoolExhaustedException if no resource became available within the maximum wait
+     * @throws IllegalStateException if the pool has been closed
+     * @throws RuntimeException if the validator has thrown it, the resource is then destroyed
+     */
+    public Lease<R> borrow() throws X, InterruptedException {
+        if (closed) {
+            throw new IllegalStateException("Pool " + name + " closed");
+        }
+        if (!permits.tryAcquire() && !permits.tryAcquire(maxWaitNanos, TimeUnit.NANOSECONDS)) {
+            throw exhausted;
+        }
+        boolean taken = false;
+        try {
+            Lease<R> lease = take();
+            taken = true;
+            return lease;
+        } finally {
+            if (!taken) {
+                permits.release();
+            }
+        }
+    }
+
+    /**
+     * Calls the function with a borrowed resource, and returns the resource whether the function completes or
+     * throws.
+     *
+     * @param function function using the resource, it must not keep it
+     * @param <T> the type of the result
+     * @param <Y> the type of the exception thrown by the function
+     * @return result of the function
+     * @throws X if the factory has thrown it
+     * @throws Y if the function has thrown it
+     * @throws InterruptedException if interrupted while waiting for a resource
+     * @throws PoolExhaustedException if no resource became available within the maximum wait
+     */
+    public <T, Y extends Exception> T withResource(XFunction<? super R, ? extends T, Y> function)
+            throws X, Y, InterruptedException {
+        Lease<R> lease = borrow();
+        try {
+            return function.apply(lease.resource);
+        } finally {
+            lease.close();
+        }
+    }
+
+    /**
+     * Destroys the idle resources unused for longer than the maximum idle time, or all idle resources if it is not
+     * set. Runs periodically if the maximum idle time is set.
+     */
+    public void evictIdle() {
+        long now = ticker.getAsLong();
+        for (int i = 0; i < maxSize; i++) {
+            Lease<R> lease = slots.get(i);
+            if (lease != null && lease.state.get() == LOCAL && isIdleTooLong(lease, now)
+                    && lease.state.compareAndSet(LOCAL, REMOVED)) {
+                destroy(lease);
+            }
+        }
+        List<Lease<R>> kept = new ArrayList<>();
+        for (Lease<R> lease = pop(); lease != null; lease = pop()) {
+            if (isIdleTooLong(lease, now)) {
+                lease.state.set(REMOVED);
+                destroy(lease);
+            } else {
+                kept.add(lease);
+            }
+        }
+        for (int i = kept.size() - 1; i >= 0; i--) {
+            push(kept.get(i));
+        }
+        if (closed) {
+            // close() found the stack empty while the kept resources were out of it
+            destroyIdle();
+        }
+    }
+
+    private boolean isIdleTooLong(Lease<R> lease, long now) {
+        return maxIdleNanos == 0 || now - lease.idleSince >= maxIdleNanos;
+    }
+
+    /**
+     * @return number of resources, idle or borrowed
+     */
+    public int size() {
+        return size.get();
+    }
+
+    /**
+     * @return number of resources borrowed
+     */
+    public int borrowed() {
+        return maxSize - permits.availablePermits();
+    }
+
+    /**
+     * @return number of resources created so far
+     */
+    public long created() {
+        return created.sum();
+    }
+
+    /**
+     * @return number of resources destroyed so far
+     */
+    public long destroyed() {
+        return destroyed.sum();
+    }
+
+    /**
+     * Destroys the idle resources and stops lending and evicting; borrowed resources are destroyed when they are
+     * returned.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        HashedWheelTimer.Timeout timeout = eviction;
+        if (timeout != null) {
+            timeout.cancel();
+        }
+        destroyIdle();
+    }
+
+    private void destroyIdle() {
+        for (int i = 0; i < maxSize; i++) {
+            Lease<R> lease = slots.get(i);
+            if (lease != null && lease.state.compareAndSet(LOCAL, REMOVED)) {
+                destroy(lease);
+            }
+        }
+        for (Lease<R> lease = pop(); lease != null; lease = pop()) {
+            lease.state.set(REMOVED);
+            destroy(lease);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return String.format("XPool[%s, size=%d, borrowed=%d]", name, size(), borrowed());
+    }
+
+    /**
+     * Finds a resource for a borrower holding a permit. The permit guarantees that one is idle or may be created,
+     * though it may still be on its way back to the stack.
+     */
+    private Lease<R> take() throws X {
+        while (true) {
+            Lease<R> lease = local.get();
+            if (lease != null && lease.state.compareAndSet(LOCAL, IN_USE)) {
+                if (isValid(lease)) {
+                    return lease;
+                }
+                continue;
+            }
+            lease = pop();
+            if (lease != null) {
+                lease.state.set(IN_USE);
+                if (isValid(lease)) {
+                    return lease;
+                }
+                continue;
+            }
+            if (reserve()) {
+                return create();
+            }
+            lease = steal();
+            if (lease != null) {
+                if (isValid(lease)) {
+                    return lease;
+                }
+                continue;
+            }
+            Thread.yield();
+        }
+    }
+
+    /**
+     * Validates a resource taken for a borrower, destroying it if it is invalid or the validator throws, which is
+     * then rethrown.
+     */
+    private boolean isValid(Lease<R> lease) {
+        boolean valid = false;
+        try {
+            valid = validator.test(lease.resource);
+            return valid;
+        } finally {
+            if (!valid) {
+                lease.state.set(REMOVED);
+                destroy(lease);
+            }
+        }
+    }
+
+    private boolean reserve() {
+        int current;
+        do {
+            current = size.get();
+            if (current >= maxSize) {
+                return false;
+            }
+        } while (!size.compareAndSet(current, current + 1));
+        return true;
+    }
+
+    private Lease<R> create() throws X {
+        R resource;
+        try {
+            resource = Objects.requireNonNull(factory.get(), "Factory returned null");
+        } catch (Throwable e) {
+            size.decrementAndGet();
+            throw e;
+        }
+        created.increment();
+        // a reserved size guarantees a free slot, emptied before the size was decremented
+        for (int i = 0; ; i = (i + 1) % maxSize) {
+            if (slots.get(i) == null) {
+                Lease<R> lease = new Lease<>(this, i, resource);
+                if (slots.compareAndSet(i, null, lease)) {
+                    return lease;
+                }
+            }
+        }
+    }
+
+    /**
+     * Takes a resource kept idle by another thread.
+     */
+    private Lease<R> steal() {
+        for (int i = 0; i < maxSize; i++) {
+            Lease<R> lease = slots.get(i);
+            if (lease != null && lease.state.compareAndSet(LOCAL, IN_USE)) {
+                return lease;
+            }
+        }
+        return null;
+    }
+
+    private void release(Lease<R> lease) {
+        if (lease.state.get() != IN_USE) {
+            throw new IllegalStateException("Lease already returned");
+        }
+        if (closed) {
+            lease.state.set(REMOVED);
+            destroy(lease);
+        } else {
+            if (maxIdleNanos != 0) {
+                lease.idleSince = ticker.getAsLong();
+            }
+            Lease<R> kept = local.get();
+            if (kept == lease || kept == null || kept.state.get() != LOCAL) {
+                if (kept != lease) {
+                    local.set(lease);
+                }
+                lease.state.set(LOCAL);
+            } else {
+                lease.state.set(SHARED);
+                push(lease);
+            }
+            if (closed) {
+                // close() may have missed the resource on its way back
+                destroyIdle();
+            }
+        }
+        permits.release();
+    }
+
+    private void invalidate(Lease<R> lease) {
+        if (lease.state.get() != IN_USE) {
+            throw new IllegalStateException("Lease already returned");
+        }
+        lease.state.set(REMOVED);
+        destroy(lease);
+        permits.release();
+    }
+
+    private void destroy(Lease<R> lease) {
+        slots.compareAndSet(lease.index, lease, null);
+        size.decrementAndGet();
+        destroyed.increment();
+        try {
+            destroyer.accept(lease.resource);
+        } catch (Throwable e) {
+            Thread thread = Thread.currentThread();
+            thread.getUncaughtExceptionHandler().uncaughtException(thread, e);
+        }
+    }
+
+    private void push(Lease<R> lease) {
+        long current;
+        do {
+            current = head.get();
+            lease.next = (int) (current & INDEX_MASK);
+        } while (!head.compareAndSet(current, (current & ~INDEX_MASK) + (1L << 32) | lease.index + 1));
+    }
+
+    private Lease<R> pop() {
+        while (true) {
+            long current = head.get();
+            int top = (int) (current & INDEX_MASK);
+            if (top == 0) {
+                return null;
+            }
+            Lease<R> lease = slots.get(top - 1);
+            if (lease == null) {
+                // popped and destroyed meanwhile, the head has moved on
+                continue;
+            }
+            if (head.compareAndSet(current, (current & ~INDEX_MASK) + (1L << 32) | lease.next)) {
+                return lease;
+            }
+        }
+    }
+
+    private void scheduleEviction() {
+        long period = Math.max(TimeUnit.MILLISECONDS.toNanos(10), maxIdleNanos / 2);
+        eviction = HashedWheelTimer.shared().schedule(() -> Evictor.INSTANCE.execute(() -> {
+            if (!closed) {
+                evictIdle();
+                scheduleEviction();
+            }
+        }), period, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Executor of the periodic evictions, created on first use.
+     */
+    private static final class Evictor {
+        static final Executor INSTANCE = XExecutor.newPerTaskExecutor("xpool-evictor-").toExecutorService();
+    }
+
+    /**
+     * A borrowed resource, to be returned to its pool by {@link #close()} or destroyed by {@link #invalidate()}.
+     * The same lease is handed out each time the resource is borrowed.
+     *
+     * @param <R> the type of the resource
+     */
+    public static final class Lease<R> implements AutoCloseable {
+        private final XPool<R, ?> pool;
+        private final int index;
+        private final R resource;
+        private final AtomicInteger state = new AtomicInteger(IN_USE);
+        private int next;
+        private long idleSince;
+
+        private Lease(XPool<R, ?> pool, int index, R resource) {
+            this.pool = pool;
+            this.index = index;
+            this.resource = resource;
+        }
+
+        /**
+         * @return the resource, not to be used after the lease is closed
+         */
+        public R get() {
+            return resource;
+        }
+
+        /**
+         * Destroys the resource instead of returning it, for example after it failed.
+         */
+        public void invalidate() {
+            pool.invalidate(this);
+        }
+
+        /**
+         * Returns the resource to the pool.
+         */
+        @Override
+        public void close() {
+            pool.release(this);
+        }
+    }
+
+    /**
+     * Builder of {@link XPool}. By default the pool holds up to one resource per processor, a borrower waits up to
+     * 30 seconds for one, resources are not validated and idle ones are kept.
+     *
+     * @param <R> the type of resources
+     * @param <X> the type of the exception thrown by the factory
+     */
+    public static final class Builder<R, X extends Exception> {
+        private final String name;
+        private final XSupplier<? extends R, ? extends X> factory;
+        private final XConsumer<? super R, ?> destroyer;
+        private Predicate<? super R> validator = resource -> true;
+        private int maxSize = Runtime.getRuntime().availableProcessors();
+        private long maxWaitNanos = TimeUnit.SECONDS.toNanos(30);
+        private long maxIdleNanos;
+        private LongSupplier ticker = System::nanoTime;
+
+        private Builder(String name, XSupplier<? extends R, ? extends X> factory, XConsumer<? super R, ?> destroyer) {
+            this.name = name;
+            this.factory = factory;
+            this.destroyer = destroyer;
+        }
+
+        /**
+         * @param maxSize maximum number of resources, idle or borrowed
+         * @return this builder
+         */
+        public Builder<R, X> maxSize(int maxSize) {
+            if (maxSize < 1) {
+                throw new IllegalArgumentException("Non-positive size " + maxSize);
+            }
+            this.maxSize = maxSize;
+            return this;
+        }
+
+        /**
+         * @param maxWait how long a borrower waits for a resource when all of them are borrowed
+         * @return this builder
+         */
+        public Builder<R, X> maxWait(Duration maxWait) {
+            if (maxWait.isNegative()) {
+                throw new IllegalArgumentException("Negative duration " + maxWait);
+            }
+            this.maxWaitNanos = maxWait.toNanos();
+            return this;
+        }
+
+        /**
+         * @param maxIdle how long a resource may stay idle before it is destroyed
+         * @return this builder
+         */
+        public Builder<R, X> maxIdle(Duration maxIdle) {
+            if (maxIdle.isNegative() || maxIdle.isZero()) {
+                throw new IllegalArgumentException("Non-positive duration " + maxIdle);
+            }
+            this.maxIdleNanos = maxIdle.toNanos();
+            return this;
+        }
+
+        /**
+         * @param validator tells whether an idle resource may still be used, checked on each borrow
+         * @return this builder
+         */
+        public Builder<R, X> validateOnBorrow(Predicate<? super R> validator) {
+            this.validator = Objects.requireNonNull(validator);
+            return this;
+        }
+
+        /**
+         * @param ticker source of time in nanoseconds, for the idle times
+         * @return this builder
+         */
+        public Builder<R, X> ticker(LongSupplier ticker) {
+            this.ticker = Objects.requireNonNull(ticker);
+            return this;
+        }
+
+        /**
+         * @return a new empty pool
+         */
+        public XPool<R, X> build() {
+            return new XPool<>(this);
+        }
+    }
+}
@@ -0,0 +1,393 @@
+package com.github.jtail.utils.concurrent;
+
+import com.github.jtail.utils.xfn.XSupplier;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Structured fan-out and fan-in of tasks with exception support.
+ * <p>
+ * The owner thread opens a scope, forks subtasks into it, joins them, and closes the scope, preferably with
+ * try-with-resources:
+ * <pre>{@code
+ * try (XScope<Object, IOException> scope = XScope.allOf(executor, Duration.ofSeconds(2))) {
+ *     XScope.Subtask<User> user = scope.fork(() -> users.load(id));
+ *     XScope.Subtask<Orders> orders = scope.fork(() -> orders.load(id));
+ *     scope.join();
+ *     return new Page(user.get(), orders.get());
+ * }
+ * }</pre>
+ * An {@link #allOf(XExecutor) allOf} scope needs every subtask to succeed: the first failure cancels the rest and
+ * {@link #join()} rethrows it at once, with the failures that raced with it attached as suppressed.
+ * An {@link #anyOf(XExecutor) anyOf} scope needs one subtask to succeed: the first success cancels the rest and
+ * becomes the {@link #result()}, and only if all subtasks fail {@link #join()} rethrows the first failure with
+ * the others suppressed.
+ * <p>
+ * A deadline given when opening the scope bounds the join; once it passes the remaining subtasks are cancelled and
+ * {@link #join()} throws {@link TimeoutException}. Cancelled subtasks are interrupted, and {@link #close()} waits
+ * for them to finish, so no call outlives the scope.
+ *
+ * @param <T> the type of the subtask results, the common supertype if they differ
+ * @param <X> the type of the exception thrown by the subtasks
+ */
+public final class XScope<T, X extends Exception> implements AutoCloseable {
+    private final ExecutorService executor;
+    private final boolean anyOf;
+    private final boolean timed;
+    private final long deadline;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition changed = lock.newCondition();
+
+    /*
+     * Guarded by lock
+     */
+    private final List<Subtask<? extends T>> subtasks = new ArrayList<>();
+    private int pending;
+    private boolean shutdown;
+    private Throwable failure;
+    private Subtask<? extends T> winner;
+
+    private XScope(XExecutor executor, boolean anyOf, Duration timeout) {
+        this.executor = executor.toExecutorService();
+        this.anyOf = anyOf;
+        this.timed = timeout != null;
+        this.deadline = timed ? System.nanoTime() + timeout.toNanos() : 0;
+    }
+
+    /**
+     * Opens a scope which needs all subtasks to succeed.
+     *
+     * @param executor executor to run the subtasks
+     * @param <T> the type of the subtask results
+     * @param <X> the type of the exception thrown by the subtasks
+     * @return new scope
+     */
+    public static <T, X extends Exception> XScope<T, X> allOf(XExecutor executor) {
+        return new XScope<>(Objects.requireNonNull(executor), false, null);
+    }
+
+    /**
+     * Opens a scope which needs all subtasks to succeed before the timeout elapses.
+     *
+     * @param executor executor to run the subtasks
+     * @param timeout time from now after which the join fails
+     * @param <T> the type of the subtask results
+     * @param <X> the type of the exception thrown by the subtasks
+     * @return new scope
+     */
+    public static <T, X extends Exception> XScope<T, X> allOf(XExecutor executor, Duration timeout) {
+        return new XScope<>(Objects.requireNonNull(executor), false, Objects.requireNonNull(timeout));
+    }
+
+    /**
+     * Opens a scope which needs any subtask to succeed.
+     *
+     * @param executor executor to run the subtasks
+     * @param <T> the type of the subtask results
+     * @param <X> the type of the exception thrown by the subtasks
+     * @return new scope
+     */
+    public static <T, X extends Exception> XScope<T, X> anyOf(XExecutor executor) {
+        return new XScope<>(Objects.requireNonNull(executor), true, null);
+    }
+
+    /**
+     * Opens a scope which needs any subtask to succeed before the timeout elapses.
+     *
+     * @param executor executor to run the subtasks
+     * @param timeout time from now after which the join fails
+     * @param <T> the type of the subtask results
+     * @param <X> the type of the exception thrown by the subtasks
+     * @return new scope
+     */
+    public static <T, X extends Exception> XScope<T, X> anyOf(XExecutor executor, Duration timeout) {
+        return new XScope<>(Objects.requireNonNull(executor), true, Objects.requireNonNull(timeout));
+    }
+
+    /**
+     * Starts a subtask. If the scope has already been shut down the subtask is not started and stays cancelled.
+     *
+     * @param task the task to run
+     * @param <U> the type of the result
+     * @return handle of the subtask, to read its result after the join
+     */
+    public <U extends T> Subtask<U> fork(XSupplier<U, ? extends X> task) {
+        Subtask<U> subtask = new Subtask<>(this, Objects.requireNonNull(task));
+        lock.lock();
+        try {
+            if (shutdown) {
+                subtask.abandon();
+                return subtask;
+            }
+            subtasks.add(subtask);
+            pending++;
+        } finally {
+            lock.unlock();
+        }
+        try {
+            executor.execute(subtask.future);
+        } catch (RejectedExecutionException e) {
+            subtask.cancel();
+            throw e;
+        }
+        return subtask;
+    }
+
+    /**
+     * Waits until the outcome of the scope is known: all subtasks succeeded, or any subtask succeeded for
+     * an {@code anyOf} scope.
+     *
+     * @throws X the first failure of a subtask, with other failures suppressed
+     * @throws InterruptedException if interrupted while waiting, the subtasks are cancelled
+     * @throws TimeoutException if the deadline has passed, the subtasks are cancelled
+     */
+    public void join() throws X, InterruptedException, TimeoutException {
+        lock.lock();
+        try {
+            while (pending > 0 && !shutdown) {
+                if (!timed) {
+                    changed.await();
+                } else {
+                    long remaining = deadline - System.nanoTime();
+                    if (remaining <= 0) {
+                        shutdown();
+                        throw new TimeoutException("Deadline exceeded with " + pending + " subtasks pending");
+                    }
+                    changed.awaitNanos(remaining);
+                }
+            }
+            if (winner != null || failure == null) {
+                return;
+            }
+            throw Exceptions.<X>rethrow(failure);
+        } catch (InterruptedException e) {
+            shutdown();
+            throw e;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return result of the subtask which succeeded first in an {@code anyOf} scope
+     * @throws IllegalStateException if no subtask has succeeded, or if this is an {@code allOf} scope
+     */
+    public T result() {
+        lock.lock();
+        try {
+            if (winner == null) {
+                throw new IllegalStateException(anyOf ? "No subtask has succeeded" : "Not an anyOf scope");
+            }
+            return winner.get();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Cancels the subtasks which are still running, and waits for them to finish.
+     * If interrupted while waiting keeps waiting, and restores the interrupt status afterwards.
+     */
+    @Override
+    public void close() {
+        boolean interrupted = false;
+        lock.lock();
+        try {
+            shutdown();
+            while (pending > 0) {
+                try {
+                    changed.await();
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Cancels the subtasks, called under the lock.
+     */
+    private void shutdown() {
+        if (!shutdown) {
+            shutdown = true;
+            for (Subtask<? extends T> subtask : subtasks) {
+                subtask.cancel();
+            }
+            changed.signalAll();
+        }
+    }
+
+    /**
+     * Records the outcome of a finished subtask.
+     */
+    private void onComplete(Subtask<? extends T> subtask, boolean started) {
+        lock.lock();
+        try {
+            pending--;
+            if (started && !subtask.cancelled) {
+                if (subtask.state() == Subtask.State.SUCCESS) {
+                    if (anyOf && !shutdown) {
+                        winner = subtask;
+                        shutdown();
+                    }
+                } else if (failure == null) {
+                    failure = subtask.exception;
+                    if (!anyOf) {
+                        shutdown();
+                    }
+                } else if (failure != subtask.exception) {
+                    failure.addSuppressed(subtask.exception);
+                }
+            }
+            changed.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public String toString() {
+        lock.lock();
+        try {
+            return String.format("XScope[%s, subtasks=%d, pending=%d%s]",
+                    anyOf ? "anyOf" : "allOf", subtasks.size(), pending, shutdown ? ", shutdown" : "");
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Handle of a forked task.
+     *
+     * @param <T> the type of the result
+     */
+    public static final class Subtask<T> {
+        /**
+         * State of a subtask.
+         */
+        public enum State {
+            /**
+             * Not completed yet, or cancelled
+             */
+            UNAVAILABLE,
+            /**
+             * Completed with a result
+             */
+            SUCCESS,
+            /**
+             * Completed with an exception
+             */
+            FAILED
+        }
+
+        private static final int NEW = 0;
+        private static final int RUNNING = 1;
+        private static final int DONE = 2;
+
+        private final XScope<? super T, ?> scope;
+        private final XSupplier<T, ?> task;
+        private final AtomicInteger phase = new AtomicInteger(NEW);
+        private final FutureTask<Void> future = new FutureTask<>(this::run, null);
+        private volatile State state = State.UNAVAILABLE;
+        private volatile boolean cancelled;
+        private T value;
+        private Throwable exception;
+
+        private Subtask(XScope<? super T, ?> scope, XSupplier<T, ?> task) {
+            this.scope = scope;
+            this.task = task;
+        }
+
+        /**
+         * @return state of the subtask
+         */
+        public State state() {
+            return state;
+        }
+
+        /**
+         * @return the result
+         * @throws IllegalStateException if the subtask has not succeeded
+         */
+        public T get() {
+            if (state != State.SUCCESS) {
+                throw new IllegalStateException("Subtask " + state);
+            }
+            return value;
+        }
+
+        /**
+         * @return the exception thrown by the subtask
+         * @throws IllegalStateException if the subtask has not failed
+         */
+        public Throwable exception() {
+            if (state != State.FAILED) {
+                throw new IllegalStateException("Subtask " + state);
+            }
+            return exception;
+        }
+
+        @SuppressWarnings("unchecked")
+        private void run() {
+            if (!phase.compareAndSet(NEW, RUNNING)) {
+                return;
+            }
+            try {
+                value = task.get();
+                if (!cancelled) {
+                    state = State.SUCCESS;
+                }
+            } catch (Throwable e) {
+                exception = e;
+                if (!cancelled) {
+                    state = State.FAILED;
+                }
+            } finally {
+                phase.set(DONE);
+                ((XScope<T, ?>) scope).onComplete(this, true);
+            }
+        }
+
+        /**
+         * Marks a subtask which has never been submitted as cancelled.
+         */
+        private void abandon() {
+            cancelled = true;
+            phase.set(DONE);
+        }
+
+        /**
+         * Prevents the subtask from starting or interrupts it if running.
+         */
+        @SuppressWarnings("unchecked")
+        private void cancel() {
+            cancelled = true;
+            if (phase.compareAndSet(NEW, DONE)) {
+                ((XScope<T, ?>) scope).onComplete(this, false);
+            } else {
+                future.cancel(true);
+            }
+        }
+
+        @Override
+        public String toString() {
+            return String.format("Subtask[%s]", state);
+        }
+    }
+}
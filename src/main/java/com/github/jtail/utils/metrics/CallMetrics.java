@@ -0,0 +1,272 @@
+package com.github.jtail.utils.metrics;
+
+import com.github.jtail.utils.xfn.XCallable;
+import com.github.jtail.utils.xfn.XConsumer;
+import com.github.jtail.utils.xfn.XFunction;
+import com.github.jtail.utils.xfn.XSupplier;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Latency and outcome metrics of one call site, recorded by decorators of the X-interfaces.
+ * <p>
+ * Each call records its duration into a {@link Histogram} and counts as a success or as a failure of its exception
+ * class, in {@link LongAdder}s. Memory is fixed apart from one counter per distinct exception class. Overhead is
+ * dominated by the two {@link System#nanoTime()} calls.
+ * <p>
+ * Decorators of a {@link #disabled()} instance return the delegate itself, so disabled instrumentation leaves
+ * nothing for the JIT to execute.
+ * <pre>{@code
+ * CallMetrics metrics = enabled ? CallMetrics.of("users.load") : CallMetrics.disabled();
+ * XFunction<Long, User, IOException> load = metrics.function(users::load);
+ * }</pre>
+ */
+public final class CallMetrics {
+    private static final CallMetrics DISABLED = new CallMetrics("disabled");
+
+    private final String name;
+    private final Histogram latency = new Histogram();
+    private final LongAdder successes = new LongAdder();
+    private final ConcurrentHashMap<Class<?>, LongAdder> failures = new ConcurrentHashMap<>();
+
+    private CallMetrics(String name) {
+        this.name = name;
+    }
+
+    /**
+     * @param name name of the call site, for reporting
+     * @return new enabled metrics
+     */
+    public static CallMetrics of(String name) {
+        return new CallMetrics(Objects.requireNonNull(name));
+    }
+
+    /**
+     * @return metrics whose decorators return their delegates unchanged
+     */
+    public static CallMetrics disabled() {
+        return DISABLED;
+    }
+
+    /**
+     * @return {@code true} unless this is {@link #disabled()}
+     */
+    public boolean isEnabled() {
+        return this != DISABLED;
+    }
+
+    /**
+     * @return name of the call site
+     */
+    public String name() {
+        return name;
+    }
+
+    /**
+     * @param delegate the supplier to be measured
+     * @return supplier recording each call into these metrics
+     */
+    public <T, X extends Exception> XSupplier<T, X> supplier(XSupplier<T, X> delegate) {
+        Objects.requireNonNull(delegate);
+        if (!isEnabled()) {
+            return delegate;
+        }
+        return () -> {
+            long start = System.nanoTime();
+            try {
+                T result = delegate.get();
+                success(start);
+                return result;
+            } catch (Throwable e) {
+                failure(start, e);
+                throw e;
+            }
+        };
+    }
+
+    /**
+     * @param delegate the function to be measured
+     * @return function recording each call into these metrics
+     */
+    public <T, R, X extends Exception> XFunction<T, R, X> function(XFunction<T, R, X> delegate) {
+        Objects.requireNonNull(delegate);
+        if (!isEnabled()) {
+            return delegate;
+        }
+        return t -> {
+            long start = System.nanoTime();
+            try {
+                R result = delegate.apply(t);
+                success(start);
+                return result;
+            } catch (Throwable e) {
+                failure(start, e);
+                throw e;
+            }
+        };
+    }
+
+    /**
+     * @param delegate the consumer to be measured
+     * @return consumer recording each call into these metrics
+     */
+    public <T, X extends Exception> XConsumer<T, X> consumer(XConsumer<T, X> delegate) {
+        Objects.requireNonNull(delegate);
+        if (!isEnabled()) {
+            return delegate;
+        }
+        return t -> {
+            long start = System.nanoTime();
+            try {
+                delegate.accept(t);
+                success(start);
+            } catch (Throwable e) {
+                failure(start, e);
+                throw e;
+            }
+        };
+    }
+
+    /**
+     * @param delegate the callable to be measured
+     * @return callable recording each call into these metrics
+     */
+    public <T, X extends Exception> XCallable<T, X> callable(XCallable<T, X> delegate) {
+        Objects.requireNonNull(delegate);
+        if (!isEnabled()) {
+            return delegate;
+        }
+        // not a lambda, javac 8 rejects lambdas implementing XCallable with a generic exception
+        return new XCallable<T, X>() {
+            @Override
+            public T call() throws X {
+                long start = System.nanoTime();
+                try {
+                    T result = delegate.call();
+                    success(start);
+                    return result;
+                } catch (Throwable e) {
+                    failure(start, e);
+                    throw e;
+                }
+            }
+        };
+    }
+
+    /**
+     * Records a call measured elsewhere.
+     *
+     * @param nanos duration of the call
+     * @param failure exception thrown by the call, {@code null} if it succeeded
+     */
+    public void record(long nanos, Throwable failure) {
+        if (!isEnabled()) {
+            return;
+        }
+        latency.record(Math.max(0, nanos));
+        if (failure == null) {
+            successes.increment();
+        } else {
+            Class<?> type = failure.getClass();
+            LongAdder counter = failures.get(type);
+            if (counter == null) {
+                counter = failures.computeIfAbsent(type, k -> new LongAdder());
+            }
+            counter.increment();
+        }
+    }
+
+    /**
+     * @return copy of the current values, taken without locking
+     */
+    public Snapshot snapshot() {
+        Map<Class<?>, Long> counts = new HashMap<>();
+        failures.forEach((type, counter) -> counts.put(type, counter.sum()));
+        return new Snapshot(name, successes.sum(), counts, latency.snapshot());
+    }
+
+    /**
+     * Discards the recorded values.
+     */
+    public void reset() {
+        latency.reset();
+        successes.reset();
+        failures.clear();
+    }
+
+    private void success(long start) {
+        record(System.nanoTime() - start, null);
+    }
+
+    private void failure(long start, Throwable e) {
+        record(System.nanoTime() - start, e);
+    }
+
+    @Override
+    public String toString() {
+        return isEnabled() ? snapshot().toString() : "CallMetrics.disabled";
+    }
+
+    /**
+     * Immutable copy of {@link CallMetrics}.
+     */
+    public static final class Snapshot {
+        private final String name;
+        private final long successes;
+        private final Map<Class<?>, Long> failures;
+        private final Histogram.Snapshot latency;
+
+        private Snapshot(String name, long successes, Map<Class<?>, Long> failures, Histogram.Snapshot latency) {
+            this.name = name;
+            this.successes = successes;
+            this.failures = Collections.unmodifiableMap(failures);
+            this.latency = latency;
+        }
+
+        /**
+         * @return name of the call site
+         */
+        public String name() {
+            return name;
+        }
+
+        /**
+         * @return number of calls which completed normally
+         */
+        public long successes() {
+            return successes;
+        }
+
+        /**
+         * @return number of calls which threw, by exception class
+         */
+        public Map<Class<?>, Long> failures() {
+            return failures;
+        }
+
+        /**
+         * @param type exception class
+         * @return number of calls which threw exactly this class
+         */
+        public long failures(Class<? extends Throwable> type) {
+            return failures.getOrDefault(type, 0L);
+        }
+
+        /**
+         * @return nanoseconds taken by the calls, successful or not
+         */
+        public Histogram.Snapshot latency() {
+            return latency;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("CallMetrics[%s, successes=%d, failures=%s, latency=%s]", name, successes, failures, latency);
+        }
+    }
+}
@@ -0,0 +1,224 @@
+package com.github.jtail.utils.metrics;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Concurrent histogram of non-negative {@code long} values, such as latencies in nanoseconds or batch sizes.
+ * <p>
+ * Values below 64 are counted exactly, larger ones in log-linear buckets: 32 buckets per power of two, so that
+ * any reported quantile is within about 3% of the recorded value. Recording is a couple of atomic increments on
+ * a fixed array and never allocates, reading goes through a {@link Snapshot}.
+ * <p>
+ * Threads recording similar values hit the same bucket, so like {@link LongAdder} the histogram starts with one
+ * array of counts and, the first time an increment loses a race, adds per-thread-stripe arrays up to the number
+ * of processors. Uncontended histograms stay at one array of about 15 KB.
+ */
+public final class Histogram {
+    private static final int LINEAR_BITS = 6;
+    private static final int LINEAR = 1 << LINEAR_BITS;
+    private static final int SUB_BITS = LINEAR_BITS - 1;
+    private static final int SUB_BUCKETS = 1 << SUB_BITS;
+    private static final int BUCKETS = LINEAR + (63 - LINEAR_BITS) * SUB_BUCKETS;
+
+    private static final int MAX_STRIPES =
+            Integer.highestOneBit(Math.min(64, Runtime.getRuntime().availableProcessors()));
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private volatile AtomicLongArray[] stripes;
+    private final LongAdder count = new LongAdder();
+    private final LongAdder sum = new LongAdder();
+    private final LongAccumulator max = new LongAccumulator(Math::max, 0);
+
+    /**
+     * Records a value.
+     *
+     * @param value the value, not negative
+     */
+    public void record(long value) {
+        if (value < 0) {
+            throw new IllegalArgumentException("Negative value " + value);
+        }
+        int index = indexOf(value);
+        AtomicLongArray[] striped = stripes;
+        if (striped == null) {
+            long current = counts.get(index);
+            if (!counts.compareAndSet(index, current, current + 1)) {
+                striped = inflate();
+                striped[stripe(striped.length)].incrementAndGet(index);
+            }
+        } else {
+            striped[stripe(striped.length)].incrementAndGet(index);
+        }
+        count.increment();
+        sum.add(value);
+        max.accumulate(value);
+    }
+
+    /**
+     * @return number of recorded values
+     */
+    public long count() {
+        return count.sum();
+    }
+
+    /**
+     * Shortcut for {@code snapshot().valueAt(quantile)}.
+     *
+     * @param quantile quantile between 0 and 1, such as {@code 0.99}
+     * @return approximate value at the quantile, 0 if nothing has been recorded
+     */
+    public long valueAt(double quantile) {
+        return snapshot().valueAt(quantile);
+    }
+
+    /**
+     * Takes a copy of the counts. Values recorded concurrently may or may not be included.
+     *
+     * @return snapshot of the histogram
+     */
+    public Snapshot snapshot() {
+        long[] copy = new long[BUCKETS];
+        long total = 0;
+        AtomicLongArray[] striped = stripes;
+        for (int i = 0; i < BUCKETS; i++) {
+            copy[i] = counts.get(i);
+            if (striped != null) {
+                for (AtomicLongArray stripe : striped) {
+                    copy[i] += stripe.get(i);
+                }
+            }
+            total += copy[i];
+        }
+        return new Snapshot(copy, total, sum.sum(), max.get());
+    }
+
+    /**
+     * Discards all recorded values. Values recorded concurrently may survive partially.
+     */
+    public void reset() {
+        AtomicLongArray[] striped = stripes;
+        for (int i = 0; i < BUCKETS; i++) {
+            counts.set(i, 0);
+            if (striped != null) {
+                for (AtomicLongArray stripe : striped) {
+                    stripe.set(i, 0);
+                }
+            }
+        }
+        count.reset();
+        sum.reset();
+        max.reset();
+    }
+
+    @Override
+    public String toString() {
+        return snapshot().toString();
+    }
+
+    private synchronized AtomicLongArray[] inflate() {
+        AtomicLongArray[] striped = stripes;
+        if (striped == null) {
+            striped = new AtomicLongArray[MAX_STRIPES];
+            for (int i = 0; i < striped.length; i++) {
+                striped[i] = new AtomicLongArray(BUCKETS);
+            }
+            stripes = striped;
+        }
+        return striped;
+    }
+
+    private static int stripe(int stripes) {
+        long id = Thread.currentThread().getId();
+        return Long.hashCode(id * 0x9E3779B97F4A7C15L) & (stripes - 1);
+    }
+
+    static int indexOf(long value) {
+        if (value < LINEAR) {
+            return (int) value;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+        int mantissa = (int) (value >>> (exponent - SUB_BITS));
+        return LINEAR + (exponent - LINEAR_BITS) * SUB_BUCKETS + mantissa - SUB_BUCKETS;
+    }
+
+    /**
+     * @return the largest value counted in the bucket
+     */
+    static long highestValue(int index) {
+        if (index < LINEAR) {
+            return index;
+        }
+        int exponent = (index - LINEAR) / SUB_BUCKETS + LINEAR_BITS;
+        long mantissa = (index - LINEAR) % SUB_BUCKETS + SUB_BUCKETS;
+        long shift = exponent - SUB_BITS;
+        return ((mantissa + 1) << shift) - 1;
+    }
+
+    /**
+     * Immutable copy of the histogram counts.
+     */
+    public static final class Snapshot {
+        private final long[] counts;
+        private final long count;
+        private final long sum;
+        private final long max;
+
+        private Snapshot(long[] counts, long count, long sum, long max) {
+            this.counts = counts;
+            this.count = count;
+            this.sum = sum;
+            this.max = max;
+        }
+
+        /**
+         * @return number of values
+         */
+        public long count() {
+            return count;
+        }
+
+        /**
+         * @return the largest value, 0 if there are none
+         */
+        public long max() {
+            return max;
+        }
+
+        /**
+         * @return arithmetic mean of the values, 0 if there are none
+         */
+        public double mean() {
+            return count == 0 ? 0 : (double) sum / count;
+        }
+
+        /**
+         * @param quantile quantile between 0 and 1, such as {@code 0.99}
+         * @return approximate value at the quantile, 0 if there are no values
+         */
+        public long valueAt(double quantile) {
+            if (quantile < 0 || quantile > 1) {
+                throw new IllegalArgumentException("Quantile out of range " + quantile);
+            }
+            if (count == 0) {
+                return 0;
+            }
+            long rank = Math.max(1, (long) Math.ceil(quantile * count));
+            long seen = 0;
+            for (int i = 0; i < counts.length; i++) {
+                seen += counts[i];
+                if (seen >= rank) {
+                    return Math.min(highestValue(i), max);
+                }
+            }
+            return max;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("Histogram[count=%d, mean=%.1f, p50=%d, p90=%d, p99=%d, max=%d]",
+                    count, mean(), valueAt(0.5), valueAt(0.9), valueAt(0.99), max);
+        }
+    }
+}
@@ -0,0 +1,261 @@
+package com.github.jtail.utils.resilience;
+
+import com.github.jtail.utils.xfn.XCallable;
+import com.github.jtail.utils.xfn.XFunction;
+import com.github.jtail.utils.xfn.XSupplier;
+
+import java.time.Duration;
+import java.util.Objects;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Bound on the number of concurrent calls, decorating the X-interfaces.
+ * <p>
+ * Permits are held in a {@link Semaphore}, whose uncontended acquisition is a single compare-and-set. When all of
+ * them are taken, a limited number of calls may wait for one, for a limited time; the others are rejected at once
+ * rather than queueing without bound. Waiting parks the thread, so it costs no carrier thread on Java 21 virtual
+ * threads.
+ * <p>
+ * Decorated calls which get no permit throw a preallocated {@link RequestNotPermittedException}, as do those whose
+ * thread is interrupted while waiting, with the interrupt status restored.
+ * <pre>{@code
+ * Bulkhead bulkhead = Bulkhead.builder("reports").maxConcurrentCalls(4).maxWaitingCalls(16, Duration.ofSeconds(1))
+ *         .build();
+ * XSupplier<Report, SQLException> report = bulkhead.supplier(reports::monthly);
+ * }</pre>
+ */
+public final class Bulkhead {
+    private final String name;
+    private final int maxConcurrentCalls;
+    private final int maxWaitingCalls;
+    private final long maxWaitNanos;
+    private final Semaphore permits;
+    private final AtomicInteger waiting = new AtomicInteger();
+    private final LongAdder rejections = new LongAdder();
+    private final RequestNotPermittedException notPermitted;
+
+    private Bulkhead(Builder builder) {
+        this.name = builder.name;
+        this.maxConcurrentCalls = builder.maxConcurrentCalls;
+        this.maxWaitingCalls = builder.maxWaitingCalls;
+        this.maxWaitNanos = builder.maxWaitNanos;
+        this.permits = new Semaphore(maxConcurrentCalls, builder.fair);
+        this.notPermitted = new RequestNotPermittedException("Bulkhead " + name + " is full");
+    }
+
+    /**
+     * @param name name of the bulkhead, for reporting
+     * @return builder of a new bulkhead
+     */
+    public static Builder builder(String name) {
+        return new Builder(Objects.requireNonNull(name));
+    }
+
+    /**
+     * @return name of the bulkhead
+     */
+    public String name() {
+        return name;
+    }
+
+    /**
+     * Takes a permit if one is available now; it must be given back with {@link #release()}.
+     *
+     * @return {@code true} if a permit was taken
+     */
+    public boolean tryAcquire() {
+        return permits.tryAcquire();
+    }
+
+    /**
+     * Takes a permit, waiting for one within the configured limits; it must be given back with {@link #release()}.
+     *
+     * @return {@code true} if a permit was taken
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public boolean acquire() throws InterruptedException {
+        if (permits.tryAcquire()) {
+            return true;
+        }
+        if (maxWaitNanos == 0) {
+            return false;
+        }
+        if (waiting.incrementAndGet() > maxWaitingCalls) {
+            waiting.decrementAndGet();
+            return false;
+        }
+        try {
+            return permits.tryAcquire(maxWaitNanos, TimeUnit.NANOSECONDS);
+        } finally {
+            waiting.decrementAndGet();
+        }
+    }
+
+    /**
+     * Gives back a permit taken by {@link #tryAcquire()} or {@link #acquire()}.
+     */
+    public void release() {
+        permits.release();
+    }
+
+    /**
+     * @param delegate the supplier to limit
+     * @return supplier calling the delegate while holding a permit
+     */
+    public <T, X extends Exception> XSupplier<T, X> supplier(XSupplier<T, X> delegate) {
+        Objects.requireNonNull(delegate);
+        return () -> {
+            permit();
+            try {
+                return delegate.get();
+            } finally {
+                permits.release();
+            }
+        };
+    }
+
+    /**
+     * @param delegate the function to limit
+     * @return function calling the delegate while holding a permit
+     */
+    public <T, R, X extends Exception> XFunction<T, R, X> function(XFunction<T, R, X> delegate) {
+        Objects.requireNonNull(delegate);
+        return t -> {
+            permit();
+            try {
+                return delegate.apply(t);
+            } finally {
+                permits.release();
+            }
+        };
+    }
+
+    /**
+     * @param delegate the callable to limit
+     * @return callable calling the delegate while holding a permit
+     */
+    public <T, X extends Exception> XCallable<T, X> callable(XCallable<T, X> delegate) {
+        Objects.requireNonNull(delegate);
+        // not a lambda, javac 8 rejects lambdas implementing XCallable with a generic exception
+        return new XCallable<T, X>() {
+            @Override
+            public T call() throws X {
+                permit();
+                try {
+                    return delegate.call();
+                } finally {
+                    permits.release();
+                }
+            }
+        };
+    }
+
+    /**
+     * @return number of calls which may start now
+     */
+    public int available() {
+        return permits.availablePermits();
+    }
+
+    /**
+     * @return number of calls in progress
+     */
+    public int active() {
+        return maxConcurrentCalls - permits.availablePermits();
+    }
+
+    /**
+     * @return number of calls waiting for a permit
+     */
+    public int waiting() {
+        return waiting.get();
+    }
+
+    /**
+     * @return number of decorated calls rejected
+     */
+    public long rejections() {
+        return rejections.sum();
+    }
+
+    private void permit() {
+        try {
+            if (acquire()) {
+                return;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        rejections.increment();
+        throw notPermitted;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("Bulkhead[%s, active=%d, waiting=%d, rejections=%d]",
+                name, active(), waiting(), rejections());
+    }
+
+    /**
+     * Builder of {@link Bulkhead}. By default the bulkhead allows 25 concurrent calls and rejects the others at once.
+     */
+    public static final class Builder {
+        private final String name;
+        private int maxConcurrentCalls = 25;
+        private int maxWaitingCalls;
+        private long maxWaitNanos;
+        private boolean fair;
+
+        private Builder(String name) {
+            this.name = name;
+        }
+
+        /**
+         * @param maxConcurrentCalls maximum number of calls in progress
+         * @return this builder
+         */
+        public Builder maxConcurrentCalls(int maxConcurrentCalls) {
+            if (maxConcurrentCalls < 1) {
+                throw new IllegalArgumentException("Non-positive calls " + maxConcurrentCalls);
+            }
+            this.maxConcurrentCalls = maxConcurrentCalls;
+            return this;
+        }
+
+        /**
+         * @param maxWaitingCalls maximum number of calls waiting for a permit
+         * @param maxWait how long a call may wait for a permit
+         * @return this builder
+         */
+        public Builder maxWaitingCalls(int maxWaitingCalls, Duration maxWait) {
+            if (maxWaitingCalls < 0) {
+                throw new IllegalArgumentException("Negative calls " + maxWaitingCalls);
+            }
+            if (maxWait.isNegative()) {
+                throw new IllegalArgumentException("Negative duration " + maxWait);
+            }
+            this.maxWaitingCalls = maxWaitingCalls;
+            this.maxWaitNanos = maxWaitingCalls == 0 ? 0 : maxWait.toNanos();
+            return this;
+        }
+
+        /**
+         * @param fair {@code true} to hand permits to the waiting calls in arrival order, at some cost in throughput
+         * @return this builder
+         */
+        public Builder fair(boolean fair) {
+            this.fair = fair;
+            return this;
+        }
+
+        /**
+         * @return a new bulkhead with all permits available
+         */
+        public Bulkhead build() {
+            return new Bulkhead(this);
+        }
+    }
+}
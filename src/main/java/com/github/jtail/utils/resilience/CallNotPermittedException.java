@@ -0,0 +1,17 @@
+package com.github.jtail.utils.resilience;
+
+import com.github.jtail.utils.xfn.StacklessException;
+
+/**
+ * Thrown instead of calling the delegate of an open {@link CircuitBreaker}.
+ * <p>
+ * Each breaker throws one preallocated instance, so rejecting a call costs no allocation; its message names the
+ * breaker, and {@link CircuitBreaker#snapshot()} tells its current state.
+ */
+public final class CallNotPermittedException extends StacklessException {
+    private static final long serialVersionUID = 1L;
+
+    CallNotPermittedException(String name) {
+        super("Circuit breaker " + name + " does not permit calls");
+    }
+}
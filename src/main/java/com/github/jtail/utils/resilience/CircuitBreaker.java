@@ -0,0 +1,571 @@
+package com.github.jtail.utils.resilience;
+
+import com.github.jtail.utils.xfn.XCallable;
+import com.github.jtail.utils.xfn.XFunction;
+import com.github.jtail.utils.xfn.XSupplier;
+
+import java.time.Duration;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BiConsumer;
+import java.util.function.LongSupplier;
+import java.util.function.Predicate;
+
+/**
+ * Circuit breaker decorating the X-interfaces, which stops calling a dependency that keeps failing or slowing down.
+ * <p>
+ * While {@link State#CLOSED}, the outcomes of the last calls are kept in a sliding window. Once the window holds
+ * the minimum number of calls and the rate of failures or of slow calls reaches its threshold, the breaker opens:
+ * for the wait duration every call is rejected with a preallocated {@link CallNotPermittedException} without
+ * touching the delegate. Then the breaker becomes {@link State#HALF_OPEN} and lets a limited number of probe calls
+ * through; it closes if their rates stay below the thresholds and opens again otherwise.
+ * <p>
+ * Nothing locks. The state is an immutable phase object replaced by compare-and-set, each phase has its own
+ * window, and a window is a ring of outcomes whose counts are packed into one {@link AtomicLong}, so the counts and
+ * the state are read consistently without blocking the calls. Calls which complete after the phase they started
+ * in has ended are not counted.
+ * <pre>{@code
+ * CircuitBreaker breaker = CircuitBreaker.builder("users").slowCalls(Duration.ofSeconds(1), 0.5).build();
+ * XFunction<Long, User, IOException> load = breaker.function(users::load);
+ * }</pre>
+ */
+public final class CircuitBreaker {
+    private static final int SUCCESS = 1;
+    private static final int FAILURE = 3;
+    private static final int SLOW = 4;
+
+    /**
+     * State of a {@link CircuitBreaker}.
+     */
+    public enum State {
+        /** Calls are permitted and their outcomes counted */
+        CLOSED,
+        /** Calls are rejected */
+        OPEN,
+        /** A limited number of probe calls is permitted */
+        HALF_OPEN
+    }
+
+    private final String name;
+    private final int windowSize;
+    private final int minimumCalls;
+    private final double failureRateThreshold;
+    private final long slowCallNanos;
+    private final double slowCallRateThreshold;
+    private final long waitInOpenNanos;
+    private final int halfOpenCalls;
+    private final Predicate<? super Throwable> recordable;
+    private final BiConsumer<State, State> listener;
+    private final LongSupplier ticker;
+    private final CallNotPermittedException notPermitted;
+    private final LongAdder rejections = new LongAdder();
+    private final AtomicReference<Phase> phase;
+
+    private CircuitBreaker(Builder builder) {
+        this.name = builder.name;
+        this.windowSize = builder.windowSize;
+        this.minimumCalls = Math.min(builder.minimumCalls, builder.windowSize);
+        this.failureRateThreshold = builder.failureRateThreshold;
+        this.slowCallNanos = builder.slowCallNanos;
+        this.slowCallRateThreshold = builder.slowCallRateThreshold;
+        this.waitInOpenNanos = builder.waitInOpenNanos;
+        this.halfOpenCalls = builder.halfOpenCalls;
+        this.recordable = builder.recordable;
+        this.listener = builder.listener;
+        this.ticker = builder.ticker;
+        this.notPermitted = new CallNotPermittedException(name);
+        this.phase = new AtomicReference<>(new Phase(State.CLOSED, ticker.getAsLong(), windowSize));
+    }
+
+    /**
+     * @param name name of the breaker, for reporting
+     * @return builder of a new breaker
+     */
+    public static Builder builder(String name) {
+        return new Builder(Objects.requireNonNull(name));
+    }
+
+    /**
+     * @return name of the breaker
+     */
+    public String name() {
+        return name;
+    }
+
+    /**
+     * @return current state, moving from {@link State#OPEN} to {@link State#HALF_OPEN} if the wait is over
+     */
+    public State state() {
+        return current().state;
+    }
+
+    /**
+     * Calls the supplier if the breaker permits it and records the outcome.
+     *
+     * @param delegate the supplier to call
+     * @return result of the supplier
+     * @throws X exception of the supplier
+     * @throws CallNotPermittedException if the call is rejected
+     */
+    public <T, X extends Exception> T call(XSupplier<T, X> delegate) throws X {
+        Phase permit = acquire();
+        long start = slowCallNanos == Long.MAX_VALUE ? 0 : ticker.getAsLong();
+        try {
+            T result = delegate.get();
+            complete(permit, start, null);
+            return result;
+        } catch (Throwable e) {
+            complete(permit, start, e);
+            throw e;
+        }
+    }
+
+    /**
+     * @param delegate the supplier to protect
+     * @return supplier calling the delegate through this breaker
+     */
+    public <T, X extends Exception> XSupplier<T, X> supplier(XSupplier<T, X> delegate) {
+        Objects.requireNonNull(delegate);
+        return () -> call(delegate);
+    }
+
+    /**
+     * @param delegate the function to protect
+     * @return function calling the delegate through this breaker
+     */
+    public <T, R, X extends Exception> XFunction<T, R, X> function(XFunction<T, R, X> delegate) {
+        Objects.requireNonNull(delegate);
+        return t -> {
+            Phase permit = acquire();
+            long start = slowCallNanos == Long.MAX_VALUE ? 0 : ticker.getAsLong();
+            try {
+                R result = delegate.apply(t);
+                complete(permit, start, null);
+                return result;
+            } catch (Throwable e) {
+                complete(permit, start, e);
+                throw e;
+            }
+        };
+    }
+
+    /**
+     * @param delegate the callable to protect
+     * @return callable calling the delegate through this breaker
+     */
+    public <T, X extends Exception> XCallable<T, X> callable(XCallable<T, X> delegate) {
+        Objects.requireNonNull(delegate);
+        // not a lambda, javac 8 rejects lambdas implementing XCallable with a generic exception
+        return new XCallable<T, X>() {
+            @Override
+            public T call() throws X {
+                return CircuitBreaker.this.call(delegate::call);
+            }
+        };
+    }
+
+    /**
+     * Asks for a permission to make a call whose outcome will be reported by {@link #record(long, Throwable)}.
+     *
+     * @return {@code true} if the call is permitted
+     */
+    public boolean tryAcquirePermission() {
+        Phase current = current();
+        if (current.permit()) {
+            return true;
+        }
+        rejections.increment();
+        return false;
+    }
+
+    /**
+     * Records a call permitted by {@link #tryAcquirePermission()}, in the current phase.
+     *
+     * @param nanos duration of the call
+     * @param failure exception thrown by the call, {@code null} if it succeeded
+     */
+    public void record(long nanos, Throwable failure) {
+        Phase current = phase.get();
+        if (current.state != State.OPEN) {
+            record(current, nanos, failure);
+        }
+    }
+
+    /**
+     * Closes the breaker and clears its window.
+     */
+    public void reset() {
+        transition(phase.get(), State.CLOSED, true);
+    }
+
+    /**
+     * Opens the breaker for the wait duration.
+     */
+    public void open() {
+        transition(phase.get(), State.OPEN, true);
+    }
+
+    /**
+     * @return copy of the current state and window counts, taken without locking
+     */
+    public Snapshot snapshot() {
+        Phase current = current();
+        long counts = current.counts.get();
+        return new Snapshot(name, current.state, calls(counts), failures(counts), slowCalls(counts), rejections.sum());
+    }
+
+    private Phase acquire() {
+        Phase current = current();
+        if (!current.permit()) {
+            rejections.increment();
+            throw notPermitted;
+        }
+        return current;
+    }
+
+    private Phase current() {
+        Phase current = phase.get();
+        if (current.state == State.OPEN && ticker.getAsLong() - current.since >= waitInOpenNanos) {
+            transition(current, State.HALF_OPEN, false);
+            current = phase.get();
+        }
+        return current;
+    }
+
+    private void complete(Phase permit, long start, Throwable failure) {
+        long nanos = slowCallNanos == Long.MAX_VALUE ? 0 : ticker.getAsLong() - start;
+        if (phase.get() == permit) {
+            record(permit, nanos, failure);
+        }
+    }
+
+    private void record(Phase current, long nanos, Throwable failure) {
+        int outcome = failure != null && recordable.test(failure) ? FAILURE : SUCCESS;
+        if (nanos >= slowCallNanos) {
+            outcome |= SLOW;
+        }
+        long counts = current.record(outcome);
+        int calls = calls(counts);
+        if (current.state == State.CLOSED) {
+            if (calls >= minimumCalls && exceeded(calls, counts)) {
+                transition(current, State.OPEN, false);
+            }
+        } else if (calls >= halfOpenCalls) {
+            transition(current, exceeded(calls, counts) ? State.OPEN : State.CLOSED, false);
+        }
+    }
+
+    private boolean exceeded(int calls, long counts) {
+        return failures(counts) >= failureRateThreshold * calls || slowCalls(counts) >= slowCallRateThreshold * calls;
+    }
+
+    private void transition(Phase from, State to, boolean always) {
+        int size = to == State.CLOSED ? windowSize : to == State.HALF_OPEN ? halfOpenCalls : 1;
+        Phase next = new Phase(to, ticker.getAsLong(), size);
+        while (!phase.compareAndSet(from, next)) {
+            if (!always) {
+                return;
+            }
+            from = phase.get();
+        }
+        if (from.state != to) {
+            listener.accept(from.state, to);
+        }
+    }
+
+    // window counts are packed into a long as three signed 21-bit fields: calls, failures, slow calls
+
+    private static long pack(int outcome) {
+        return ((long) (outcome & 1) << 42) | ((long) ((outcome >> 1) & 1) << 21) | ((outcome >> 2) & 1);
+    }
+
+    private static int slowCalls(long counts) {
+        return Math.max(0, (int) ((counts << 43) >> 43));
+    }
+
+    private static int failures(long counts) {
+        long rest = (counts - ((counts << 43) >> 43)) >> 21;
+        return Math.max(0, (int) ((rest << 43) >> 43));
+    }
+
+    private static int calls(long counts) {
+        long rest = (counts - ((counts << 43) >> 43)) >> 21;
+        return Math.max(0, (int) ((rest - ((rest << 43) >> 43)) >> 21));
+    }
+
+    @Override
+    public String toString() {
+        return snapshot().toString();
+    }
+
+    /**
+     * State with its window of outcomes, replaced as a whole on every transition.
+     */
+    private final class Phase {
+        final State state;
+        final long since;
+        final AtomicIntegerArray outcomes;
+        // ring position while closed, probe permits taken while half-open
+        final AtomicInteger cursor = new AtomicInteger();
+        final AtomicLong counts = new AtomicLong();
+
+        Phase(State state, long since, int size) {
+            this.state = state;
+            this.since = since;
+            this.outcomes = new AtomicIntegerArray(size);
+        }
+
+        boolean permit() {
+            if (state == State.CLOSED) {
+                return true;
+            }
+            if (state == State.OPEN) {
+                return false;
+            }
+            while (true) {
+                int taken = cursor.get();
+                if (taken >= outcomes.length()) {
+                    return false;
+                }
+                if (cursor.compareAndSet(taken, taken + 1)) {
+                    return true;
+                }
+            }
+        }
+
+        /**
+         * @return window counts including the outcome
+         */
+        long record(int outcome) {
+            if (state != State.CLOSED) {
+                return counts.addAndGet(pack(outcome));
+            }
+            int slot = Math.floorMod(cursor.getAndIncrement(), outcomes.length());
+            return counts.addAndGet(pack(outcome) - pack(outcomes.getAndSet(slot, outcome)));
+        }
+    }
+
+    /**
+     * Immutable copy of the {@link CircuitBreaker} state and window counts.
+     */
+    public static final class Snapshot {
+        private final String name;
+        private final State state;
+        private final int calls;
+        private final int failures;
+        private final int slowCalls;
+        private final long rejections;
+
+        private Snapshot(String name, State state, int calls, int failures, int slowCalls, long rejections) {
+            this.name = name;
+            this.state = state;
+            this.calls = calls;
+            this.failures = failures;
+            this.slowCalls = slowCalls;
+            this.rejections = rejections;
+        }
+
+        /**
+         * @return name of the breaker
+         */
+        public String name() {
+            return name;
+        }
+
+        /**
+         * @return state of the breaker
+         */
+        public State state() {
+            return state;
+        }
+
+        /**
+         * @return number of calls in the window of the current state
+         */
+        public int calls() {
+            return calls;
+        }
+
+        /**
+         * @return number of failed calls in the window
+         */
+        public int failures() {
+            return failures;
+        }
+
+        /**
+         * @return number of slow calls in the window, failed or not
+         */
+        public int slowCalls() {
+            return slowCalls;
+        }
+
+        /**
+         * @return ratio of failed calls in the window, {@code 0.0} if it is empty
+         */
+        public double failureRate() {
+            return calls == 0 ? 0.0 : (double) failures / calls;
+        }
+
+        /**
+         * @return ratio of slow calls in the window, {@code 0.0} if it is empty
+         */
+        public double slowCallRate() {
+            return calls == 0 ? 0.0 : (double) slowCalls / calls;
+        }
+
+        /**
+         * @return number of calls rejected since the breaker was created
+         */
+        public long rejections() {
+            return rejections;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("CircuitBreaker[%s, %s, calls=%d, failures=%d, slowCalls=%d, rejections=%d]",
+                    name, state, calls, failures, slowCalls, rejections);
+        }
+    }
+
+    /**
+     * Builder of {@link CircuitBreaker}. By default the window holds 100 calls, the breaker opens when at least 10
+     * of them were made and half of them failed, stays open for a minute and then probes with 10 calls. Every
+     * exception counts as a failure and no call counts as slow.
+     */
+    public static final class Builder {
+        private final String name;
+        private int windowSize = 100;
+        private int minimumCalls = 10;
+        private double failureRateThreshold = 0.5;
+        private long slowCallNanos = Long.MAX_VALUE;
+        private double slowCallRateThreshold = 1.0;
+        private long waitInOpenNanos = TimeUnit.MINUTES.toNanos(1);
+        private int halfOpenCalls = 10;
+        private Predicate<? super Throwable> recordable = e -> true;
+        private BiConsumer<State, State> listener = (from, to) -> {
+        };
+        private LongSupplier ticker = System::nanoTime;
+
+        private Builder(String name) {
+            this.name = name;
+        }
+
+        /**
+         * @param windowSize number of the most recent calls whose outcomes are counted
+         * @return this builder
+         */
+        public Builder windowSize(int windowSize) {
+            if (windowSize < 1 || windowSize > 1 << 16) {
+                throw new IllegalArgumentException("Window size out of range " + windowSize);
+            }
+            this.windowSize = windowSize;
+            return this;
+        }
+
+        /**
+         * @param minimumCalls number of calls in the window before the rates are evaluated
+         * @return this builder
+         */
+        public Builder minimumCalls(int minimumCalls) {
+            if (minimumCalls < 1) {
+                throw new IllegalArgumentException("Non-positive calls " + minimumCalls);
+            }
+            this.minimumCalls = minimumCalls;
+            return this;
+        }
+
+        /**
+         * @param failureRateThreshold ratio of failed calls, between 0 and 1, at which the breaker opens
+         * @return this builder
+         */
+        public Builder failureRate(double failureRateThreshold) {
+            this.failureRateThreshold = rate(failureRateThreshold);
+            return this;
+        }
+
+        /**
+         * @param threshold duration at which a call counts as slow
+         * @param slowCallRateThreshold ratio of slow calls, between 0 and 1, at which the breaker opens
+         * @return this builder
+         */
+        public Builder slowCalls(Duration threshold, double slowCallRateThreshold) {
+            if (threshold.isNegative()) {
+                throw new IllegalArgumentException("Negative duration " + threshold);
+            }
+            this.slowCallNanos = threshold.toNanos();
+            this.slowCallRateThreshold = rate(slowCallRateThreshold);
+            return this;
+        }
+
+        /**
+         * @param waitInOpen how long the breaker rejects calls before probing
+         * @return this builder
+         */
+        public Builder waitInOpen(Duration waitInOpen) {
+            if (waitInOpen.isNegative()) {
+                throw new IllegalArgumentException("Negative duration " + waitInOpen);
+            }
+            this.waitInOpenNanos = waitInOpen.toNanos();
+            return this;
+        }
+
+        /**
+         * @param halfOpenCalls number of probe calls permitted in the half-open state
+         * @return this builder
+         */
+        public Builder halfOpenCalls(int halfOpenCalls) {
+            if (halfOpenCalls < 1 || halfOpenCalls > 1 << 16) {
+                throw new IllegalArgumentException("Probe calls out of range " + halfOpenCalls);
+            }
+            this.halfOpenCalls = halfOpenCalls;
+            return this;
+        }
+
+        /**
+         * @param recordable predicate selecting the exceptions which count as failures, others count as successes
+         * @return this builder
+         */
+        public Builder recordIf(Predicate<? super Throwable> recordable) {
+            this.recordable = Objects.requireNonNull(recordable);
+            return this;
+        }
+
+        /**
+         * @param listener called with the old and the new state on every transition, by the thread causing it
+         * @return this builder
+         */
+        public Builder onStateChange(BiConsumer<State, State> listener) {
+            this.listener = Objects.requireNonNull(listener);
+            return this;
+        }
+
+        /**
+         * @param ticker source of time in nanoseconds
+         * @return this builder
+         */
+        public Builder ticker(LongSupplier ticker) {
+            this.ticker = Objects.requireNonNull(ticker);
+            return this;
+        }
+
+        /**
+         * @return a new closed breaker
+         */
+        public CircuitBreaker build() {
+            return new CircuitBreaker(this);
+        }
+
+        private static double rate(double rate) {
+            if (!(rate > 0 && rate <= 1)) {
+                throw new IllegalArgumentException("Rate out of range " + rate);
+            }
+            return rate;
+        }
+    }
+}
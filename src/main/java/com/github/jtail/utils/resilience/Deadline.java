@@ -0,0 +1,227 @@
+package com.github.jtail.utils.resilience;
+
+import com.github.jtail.utils.concurrent.HashedWheelTimer;
+import com.github.jtail.utils.xfn.XSupplier;
+
+import java.time.Duration;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Point in time by which a call has to complete, propagated to the calls it makes.
+ * <p>
+ * {@link #run(XSupplier)} makes a deadline current for the calling thread while the supplier runs. A nested
+ * deadline never extends the enclosing one: the effective deadline is the earlier of the two, so a call made with
+ * a 5 second timeout from a call with 1 second left gets 1 second, rather than stacking the timeouts. Code doing
+ * I/O can pass {@link #current()} remaining time on as its own timeout.
+ * <p>
+ * {@link #withTimeout(XSupplier, Duration)} enforces the deadline as well: it schedules an interrupt of the calling
+ * thread on a {@link HashedWheelTimer}, which costs an allocation and two queue operations per call, and throws
+ * {@link DeadlineExceededException} if the call failed after being interrupted. A call which returns a value despite
+ * the interrupt keeps its value. Either way the interrupt of the timer is cleared, while one the calling thread had
+ * before the call is kept. An {@link com.github.jtail.utils.xfn.XCallable} is passed as {@code callable::call}, as
+ * javac 8 rejects lambdas targeting it.
+ * <p>
+ * Deadlines are thread-local; a task handed over to another thread should capture {@link #current()} and
+ * {@link #run(XSupplier)} with it.
+ */
+public final class Deadline implements Comparable<Deadline> {
+    private static final ThreadLocal<Deadline> CURRENT = new ThreadLocal<>();
+
+    private static final int RUNNING = 0;
+    private static final int DONE = 1;
+    private static final int INTERRUPTING = 2;
+    private static final int INTERRUPTED = 3;
+
+    private final long nanoTime;
+
+    private Deadline(long nanoTime) {
+        this.nanoTime = nanoTime;
+    }
+
+    /**
+     * @param timeout time from now
+     * @return deadline after the timeout
+     */
+    public static Deadline after(Duration timeout) {
+        return after(timeout.toNanos(), TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * @param timeout time from now
+     * @param unit unit of the timeout
+     * @return deadline after the timeout
+     */
+    public static Deadline after(long timeout, TimeUnit unit) {
+        long now = System.nanoTime();
+        long nanos = unit.toNanos(timeout);
+        // saturate instead of overflowing for very long timeouts
+        return new Deadline(nanos > Long.MAX_VALUE / 2 ? now + Long.MAX_VALUE / 2 : now + nanos);
+    }
+
+    /**
+     * @return deadline of the calling thread, if any
+     */
+    public static Optional<Deadline> current() {
+        return Optional.ofNullable(CURRENT.get());
+    }
+
+    /**
+     * Wraps the supplier so that it is interrupted when the timeout, or the deadline of the calling thread if it
+     * is earlier, expires, using the {@link HashedWheelTimer#shared() shared timer}.
+     *
+     * @param supplier the supplier to limit
+     * @param timeout maximum duration of each call
+     * @param <T> the type of the result
+     * @param <X> the type of the exception thrown by the supplier
+     * @return supplier throwing {@link DeadlineExceededException} when the deadline expires
+     */
+    public static <T, X extends Exception> XSupplier<T, X> withTimeout(XSupplier<T, X> supplier, Duration timeout) {
+        return withTimeout(supplier, timeout, HashedWheelTimer.shared());
+    }
+
+    /**
+     * Wraps the supplier so that it is interrupted when the timeout, or the deadline of the calling thread if it
+     * is earlier, expires.
+     *
+     * @param supplier the supplier to limit
+     * @param timeout maximum duration of each call
+     * @param timer timer to schedule the interrupts on
+     * @param <T> the type of the result
+     * @param <X> the type of the exception thrown by the supplier
+     * @return supplier throwing {@link DeadlineExceededException} when the deadline expires
+     */
+    public static <T, X extends Exception> XSupplier<T, X> withTimeout(XSupplier<T, X> supplier, Duration timeout,
+                                                                      HashedWheelTimer timer) {
+        Objects.requireNonNull(supplier);
+        Objects.requireNonNull(timer);
+        if (timeout.isNegative()) {
+            throw new IllegalArgumentException("Negative timeout " + timeout);
+        }
+        return () -> after(timeout).enforce(supplier, timer);
+    }
+
+    /**
+     * Runs the supplier with this deadline, or the current one if it is earlier, as the current deadline.
+     * The deadline is only propagated, not enforced.
+     *
+     * @param supplier the supplier to run
+     * @param <T> the type of the result
+     * @param <X> the type of the exception thrown by the supplier
+     * @return result of the supplier
+     * @throws X exception of the supplier
+     */
+    public <T, X extends Exception> T run(XSupplier<T, X> supplier) throws X {
+        Deadline previous = CURRENT.get();
+        CURRENT.set(previous == null ? this : min(previous));
+        try {
+            return supplier.get();
+        } finally {
+            if (previous == null) {
+                CURRENT.remove();
+            } else {
+                CURRENT.set(previous);
+            }
+        }
+    }
+
+    /**
+     * @return nanoseconds until the deadline, negative if it has passed
+     */
+    public long remainingNanos() {
+        return nanoTime - System.nanoTime();
+    }
+
+    /**
+     * @return time until the deadline, negative if it has passed
+     */
+    public Duration remaining() {
+        return Duration.ofNanos(remainingNanos());
+    }
+
+    /**
+     * @return {@code true} if the deadline has passed
+     */
+    public boolean isExpired() {
+        return remainingNanos() <= 0;
+    }
+
+    /**
+     * @param other another deadline
+     * @return the earlier of the two deadlines
+     */
+    public Deadline min(Deadline other) {
+        return compareTo(other) <= 0 ? this : other;
+    }
+
+    @Override
+    public int compareTo(Deadline other) {
+        return Long.signum(nanoTime - other.nanoTime);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return this == o || o instanceof Deadline && nanoTime == ((Deadline) o).nanoTime;
+    }
+
+    @Override
+    public int hashCode() {
+        return Long.hashCode(nanoTime);
+    }
+
+    @Override
+    public String toString() {
+        return String.format("Deadline[remaining=%s]", remaining());
+    }
+
+    private <T, X extends Exception> T enforce(XSupplier<T, X> supplier, HashedWheelTimer timer) throws X {
+        Deadline previous = CURRENT.get();
+        Deadline effective = previous == null ? this : min(previous);
+        long remaining = effective.remainingNanos();
+        if (remaining <= 0) {
+            throw new DeadlineExceededException("Deadline expired before the call");
+        }
+        Thread caller = Thread.currentThread();
+        boolean interrupted = caller.isInterrupted();
+        AtomicInteger state = new AtomicInteger(RUNNING);
+        HashedWheelTimer.Timeout timeout = timer.schedule(() -> {
+            if (state.compareAndSet(RUNNING, INTERRUPTING)) {
+                caller.interrupt();
+                state.set(INTERRUPTED);
+            }
+        }, remaining, TimeUnit.NANOSECONDS);
+        CURRENT.set(effective);
+        Throwable failure = null;
+        try {
+            return supplier.get();
+        } catch (Throwable e) {
+            failure = e;
+            throw e;
+        } finally {
+            if (previous == null) {
+                CURRENT.remove();
+            } else {
+                CURRENT.set(previous);
+            }
+            if (!state.compareAndSet(RUNNING, DONE)) {
+                timedOut(state, interrupted, failure);
+            }
+            timeout.cancel();
+        }
+    }
+
+    private static void timedOut(AtomicInteger state, boolean interrupted, Throwable failure) {
+        while (state.get() != INTERRUPTED) {
+            Thread.yield();
+        }
+        // clear the interrupt aimed at the call, it must not leak into the caller, unless the caller had its own
+        if (Thread.interrupted() && interrupted) {
+            Thread.currentThread().interrupt();
+        }
+        if (failure != null) {
+            throw new DeadlineExceededException("Deadline expired during the call", failure);
+        }
+    }
+}
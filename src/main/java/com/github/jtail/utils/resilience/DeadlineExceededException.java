@@ -0,0 +1,23 @@
+package com.github.jtail.utils.resilience;
+
+/**
+ * Thrown when a call does not complete before its {@link Deadline}.
+ */
+public class DeadlineExceededException extends RuntimeException {
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * @param message the detail message
+     */
+    public DeadlineExceededException(String message) {
+        super(message);
+    }
+
+    /**
+     * @param message the detail message
+     * @param cause exception thrown by the interrupted call, if any
+     */
+    public DeadlineExceededException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
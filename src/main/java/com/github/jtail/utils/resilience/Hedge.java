@@ -0,0 +1,338 @@
+package com.github.jtail.utils.resilience;
+
+import com.github.jtail.utils.concurrent.XExecutor;
+import com.github.jtail.utils.metrics.Histogram;
+import com.github.jtail.utils.xfn.XSupplier;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Policy for hedged calls: when a call takes longer than usual, a backup call is started and the first result wins.
+ * <p>
+ * The first attempt starts at once; each time the hedging delay passes without a result, another attempt starts,
+ * on the next replica if several are given, up to the maximum number of attempts. The first successful result is
+ * returned and the other attempts are cancelled with an interrupt. If every started attempt fails, the exception
+ * of the last one is thrown with the others attached as suppressed; a failure does not start an attempt by itself,
+ * that is what {@link Retry} is for.
+ * <p>
+ * The delay is either fixed or a quantile of the recent latencies of successful attempts, recomputed every
+ * {@code window} calls, so that for example only the slowest 5% of calls are hedged as the latencies shift. Hedges
+ * are also capped at a ratio of the calls by a token bucket, so a slow backend never gets twice the load.
+ * <pre>{@code
+ * Hedge hedge = Hedge.builder().quantileDelay(0.95, Duration.ofMillis(50)).maxHedgeRatio(0.05).build(executor);
+ * Profile profile = hedge.call(Arrays.asList(replica1::load, replica2::load));
+ * }</pre>
+ */
+public final class Hedge {
+    private static final long TOKEN = 1000;
+
+    private final XExecutor executor;
+    private final int maxAttempts;
+    private final double quantile;
+    private final int window;
+    private final long ratio;
+    private final long capacity;
+    private final Histogram latencies = new Histogram();
+    private final AtomicLong samples = new AtomicLong();
+    private final AtomicLong tokens;
+    private final LongAdder calls = new LongAdder();
+    private final LongAdder hedges = new LongAdder();
+    private volatile long delayNanos;
+
+    private Hedge(Builder builder, XExecutor executor) {
+        this.executor = Objects.requireNonNull(executor);
+        this.maxAttempts = builder.maxAttempts;
+        this.quantile = builder.quantile;
+        this.window = builder.window;
+        this.ratio = Math.round(builder.maxHedgeRatio * TOKEN);
+        this.capacity = builder.burst * TOKEN;
+        this.tokens = new AtomicLong(capacity);
+        this.delayNanos = builder.delayNanos;
+    }
+
+    /**
+     * @return builder of a new policy
+     */
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * Calls the task, and calls it again in parallel each time the hedging delay passes without a result.
+     *
+     * @param task the task to call
+     * @param <T> the type of the result
+     * @param <X> the type of the exception thrown by the task
+     * @return result of the first successful attempt
+     * @throws X exception of the last attempt, if all of them failed
+     * @throws InterruptedException if interrupted while waiting, the attempts are then cancelled
+     */
+    public <T, X extends Exception> T call(XSupplier<T, X> task) throws X, InterruptedException {
+        return call(Collections.singletonList(Objects.requireNonNull(task)));
+    }
+
+    /**
+     * Calls the first replica, and the next one in parallel each time the hedging delay passes without a result,
+     * starting over from the first replica if there are more attempts than replicas.
+     *
+     * @param replicas the replicas of the task
+     * @param <T> the type of the result
+     * @param <X> the type of the exception thrown by the replicas
+     * @return result of the first successful attempt
+     * @throws X exception of the last attempt, if all of them failed
+     * @throws InterruptedException if interrupted while waiting, the attempts are then cancelled
+     */
+    @SuppressWarnings("unchecked")
+    public <T, X extends Exception> T call(List<? extends XSupplier<? extends T, ? extends X>> replicas)
+            throws X, InterruptedException {
+        if (replicas.isEmpty()) {
+            throw new IllegalArgumentException("No replicas");
+        }
+        deposit();
+        BlockingQueue<Outcome> outcomes = new LinkedBlockingQueue<>();
+        List<Future<?>> attempts = new ArrayList<>(maxAttempts);
+        Throwable last = null;
+        boolean hedging = maxAttempts > 1;
+        try {
+            attempts.add(start(replicas.get(0), outcomes));
+            for (int finished = 0; ; ) {
+                Outcome outcome = hedging ? outcomes.poll(delayNanos, TimeUnit.NANOSECONDS) : outcomes.take();
+                if (outcome == null) {
+                    if (withdraw()) {
+                        hedges.increment();
+                        attempts.add(start(replicas.get(attempts.size() % replicas.size()), outcomes));
+                    }
+                    hedging = hedging && attempts.size() < maxAttempts && tokens.get() >= TOKEN;
+                    continue;
+                }
+                if (outcome.failure == null) {
+                    record(outcome.nanos);
+                    return (T) outcome.value;
+                }
+                if (last != null && outcome.failure != last) {
+                    outcome.failure.addSuppressed(last);
+                }
+                last = outcome.failure;
+                if (++finished == attempts.size()) {
+                    break;
+                }
+            }
+        } finally {
+            for (Future<?> attempt : attempts) {
+                attempt.cancel(true);
+            }
+        }
+        if (last instanceof Error) {
+            throw (Error) last;
+        }
+        throw (X) last;
+    }
+
+    /**
+     * @return current hedging delay
+     */
+    public Duration delay() {
+        return Duration.ofNanos(delayNanos);
+    }
+
+    /**
+     * @return nanoseconds taken by the successful attempts since the delay was last recomputed
+     */
+    public Histogram latencies() {
+        return latencies;
+    }
+
+    /**
+     * @return number of calls made
+     */
+    public long calls() {
+        return calls.sum();
+    }
+
+    /**
+     * @return number of backup attempts started
+     */
+    public long hedges() {
+        return hedges.sum();
+    }
+
+    private Future<?> start(XSupplier<?, ?> replica, BlockingQueue<Outcome> outcomes) {
+        return executor.toExecutorService().submit(() -> {
+            long start = System.nanoTime();
+            Outcome outcome;
+            try {
+                outcome = new Outcome(replica.get(), null, System.nanoTime() - start);
+            } catch (Throwable e) {
+                outcome = new Outcome(null, e, 0);
+            }
+            outcomes.add(outcome);
+        });
+    }
+
+    private void record(long nanos) {
+        latencies.record(nanos);
+        if (quantile > 0 && samples.incrementAndGet() % window == 0) {
+            delayNanos = Math.max(1, latencies.valueAt(quantile));
+            latencies.reset();
+        }
+    }
+
+    private void deposit() {
+        calls.increment();
+        long current;
+        do {
+            current = tokens.get();
+            if (current >= capacity) {
+                return;
+            }
+        } while (!tokens.compareAndSet(current, Math.min(capacity, current + ratio)));
+    }
+
+    private boolean withdraw() {
+        long current;
+        do {
+            current = tokens.get();
+            if (current < TOKEN) {
+                return false;
+            }
+        } while (!tokens.compareAndSet(current, current - TOKEN));
+        return true;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("Hedge[delay=%s, calls=%d, hedges=%d]", delay(), calls(), hedges());
+    }
+
+    private static final class Outcome {
+        final Object value;
+        final Throwable failure;
+        final long nanos;
+
+        Outcome(Object value, Throwable failure, long nanos) {
+            this.value = value;
+            this.failure = failure;
+            this.nanos = nanos;
+        }
+    }
+
+    /**
+     * Builder of {@link Hedge}. By default a call makes up to 2 attempts, the backup starts after 100 milliseconds,
+     * and at most 10% of the calls are hedged, with bursts of up to 10 hedges.
+     */
+    public static final class Builder {
+        private int maxAttempts = 2;
+        private long delayNanos = TimeUnit.MILLISECONDS.toNanos(100);
+        private double quantile;
+        private int window = 1000;
+        private double maxHedgeRatio = 0.1;
+        private int burst = 10;
+
+        private Builder() {
+        }
+
+        /**
+         * @param maxAttempts maximum number of attempts per call, including the first one
+         * @return this builder
+         */
+        public Builder maxAttempts(int maxAttempts) {
+            if (maxAttempts < 1) {
+                throw new IllegalArgumentException("Non-positive attempts " + maxAttempts);
+            }
+            this.maxAttempts = maxAttempts;
+            return this;
+        }
+
+        /**
+         * @param delay fixed delay before each backup attempt
+         * @return this builder
+         */
+        public Builder delay(Duration delay) {
+            this.delayNanos = positive(delay);
+            this.quantile = 0;
+            return this;
+        }
+
+        /**
+         * Takes the delay from a quantile of the latencies of the last 1000 successful calls.
+         *
+         * @param quantile quantile of the latencies, between 0 and 1
+         * @param initialDelay delay used until enough latencies are recorded
+         * @return this builder
+         */
+        public Builder quantileDelay(double quantile, Duration initialDelay) {
+            return quantileDelay(quantile, initialDelay, 1000);
+        }
+
+        /**
+         * Takes the delay from a quantile of the latencies of recent successful calls.
+         *
+         * @param quantile quantile of the latencies, between 0 and 1
+         * @param initialDelay delay used until enough latencies are recorded
+         * @param window number of calls after which the delay is recomputed from their latencies
+         * @return this builder
+         */
+        public Builder quantileDelay(double quantile, Duration initialDelay, int window) {
+            if (!(quantile > 0 && quantile <= 1)) {
+                throw new IllegalArgumentException("Quantile out of range " + quantile);
+            }
+            if (window < 1) {
+                throw new IllegalArgumentException("Non-positive window " + window);
+            }
+            this.delayNanos = positive(initialDelay);
+            this.quantile = quantile;
+            this.window = window;
+            return this;
+        }
+
+        /**
+         * @param maxHedgeRatio maximum ratio of backup attempts to calls, between 0 and 1
+         * @return this builder
+         */
+        public Builder maxHedgeRatio(double maxHedgeRatio) {
+            return maxHedgeRatio(maxHedgeRatio, 10);
+        }
+
+        /**
+         * @param maxHedgeRatio maximum ratio of backup attempts to calls, between 0 and 1
+         * @param burst maximum number of backup attempts beyond the ratio, for a quiet service
+         * @return this builder
+         */
+        public Builder maxHedgeRatio(double maxHedgeRatio, int burst) {
+            if (!(maxHedgeRatio >= 0 && maxHedgeRatio <= 1)) {
+                throw new IllegalArgumentException("Ratio out of range " + maxHedgeRatio);
+            }
+            if (burst < 1) {
+                throw new IllegalArgumentException("Non-positive burst " + burst);
+            }
+            this.maxHedgeRatio = maxHedgeRatio;
+            this.burst = burst;
+            return this;
+        }
+
+        /**
+         * @param executor executor running the attempts, it needs a thread per concurrent attempt
+         * @return a new policy
+         */
+        public Hedge build(XExecutor executor) {
+            return new Hedge(this, executor);
+        }
+
+        private static long positive(Duration delay) {
+            if (delay.isNegative() || delay.isZero()) {
+                throw new IllegalArgumentException("Non-positive delay " + delay);
+            }
+            return delay.toNanos();
+        }
+    }
+}
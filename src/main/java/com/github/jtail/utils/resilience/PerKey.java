@@ -0,0 +1,98 @@
+package com.github.jtail.utils.resilience;
+
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+import java.util.function.IntFunction;
+
+/**
+ * Instances of a limiter, breaker or any other stateful policy, one per key such as a tenant.
+ * <p>
+ * {@link #of(Function)} creates an instance for each distinct key on first use and keeps it until it is removed,
+ * which isolates the keys completely. {@link #striped(int, IntFunction)} spreads the keys by hash over a fixed
+ * number of instances instead, bounding the memory at the cost of keys sharing an instance now and then; it suits
+ * many small tenants whose individual limits need not be exact.
+ * <pre>{@code
+ * PerKey<String, RateLimiter> limiters = PerKey.of(tenant -> RateLimiter.builder(tenant).rate(20).build());
+ * limiters.get(tenant).function(search::query).apply(request);
+ * }</pre>
+ *
+ * @param <K> the type of keys
+ * @param <T> the type of instances
+ */
+public final class PerKey<K, T> {
+    private final Function<? super K, ? extends T> factory;
+    private final ConcurrentHashMap<K, T> instances;
+    private final Object[] stripes;
+
+    private PerKey(Function<? super K, ? extends T> factory, ConcurrentHashMap<K, T> instances, Object[] stripes) {
+        this.factory = factory;
+        this.instances = instances;
+        this.stripes = stripes;
+    }
+
+    /**
+     * @param factory creates the instance of a key
+     * @param <K> the type of keys
+     * @param <T> the type of instances
+     * @return instances created for each key on first use
+     */
+    public static <K, T> PerKey<K, T> of(Function<? super K, ? extends T> factory) {
+        return new PerKey<>(Objects.requireNonNull(factory), new ConcurrentHashMap<>(), null);
+    }
+
+    /**
+     * @param stripes number of instances, rounded up to a power of two
+     * @param factory creates the instance of a stripe, given its index
+     * @param <K> the type of keys
+     * @param <T> the type of instances
+     * @return fixed instances shared by the keys with the same hash
+     */
+    public static <K, T> PerKey<K, T> striped(int stripes, IntFunction<? extends T> factory) {
+        if (stripes < 1 || stripes > 1 << 16) {
+            throw new IllegalArgumentException("Stripes out of range " + stripes);
+        }
+        Object[] instances = new Object[stripes == 1 ? 1 : Integer.highestOneBit(stripes - 1) << 1];
+        for (int i = 0; i < instances.length; i++) {
+            instances[i] = Objects.requireNonNull(factory.apply(i));
+        }
+        return new PerKey<>(null, null, instances);
+    }
+
+    /**
+     * @param key the key
+     * @return instance of the key
+     */
+    @SuppressWarnings("unchecked")
+    public T get(K key) {
+        if (stripes != null) {
+            int hash = key.hashCode();
+            return (T) stripes[(hash ^ hash >>> 16) & (stripes.length - 1)];
+        }
+        T instance = instances.get(key);
+        return instance != null ? instance : instances.computeIfAbsent(key, factory);
+    }
+
+    /**
+     * Forgets the instance of a key, a new one is created on its next use. Does nothing for striped instances.
+     *
+     * @param key the key
+     */
+    public void remove(K key) {
+        if (instances != null) {
+            instances.remove(key);
+        }
+    }
+
+    /**
+     * @return number of instances
+     */
+    public int size() {
+        return stripes != null ? stripes.length : instances.size();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("PerKey[%s=%d]", stripes != null ? "stripes" : "keys", size());
+    }
+}
@@ -0,0 +1,277 @@
+package com.github.jtail.utils.resilience;
+
+import com.github.jtail.utils.xfn.XCallable;
+import com.github.jtail.utils.xfn.XFunction;
+import com.github.jtail.utils.xfn.XSupplier;
+
+import java.time.Duration;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.LongSupplier;
+
+/**
+ * Token bucket limiting the rate of calls, decorating the X-interfaces.
+ * <p>
+ * The bucket holds up to {@code burst} permits and refills at {@code rate} permits per second. Its whole state is
+ * the theoretical arrival time of the next permit in one {@link AtomicLong} (GCRA): a permit is one
+ * compare-and-set, and there is no refill thread. A blocking acquisition reserves a future permit the same way and
+ * parks until it is due, which suits virtual threads; it is only made if the permit is due within the wait limit.
+ * <p>
+ * Decorated calls which get no permit throw a preallocated {@link RequestNotPermittedException}, as do those whose
+ * thread is interrupted while waiting, with the interrupt status restored.
+ * <pre>{@code
+ * RateLimiter limiter = RateLimiter.builder("geocoder").rate(50).burst(10).maxWait(Duration.ofMillis(100)).build();
+ * XFunction<String, Point, IOException> geocode = limiter.function(geocoder::geocode);
+ * }</pre>
+ */
+public final class RateLimiter {
+    private final String name;
+    private final long interval;
+    private final long tolerance;
+    private final long maxWaitNanos;
+    private final LongSupplier ticker;
+    private final AtomicLong arrival;
+    private final LongAdder rejections = new LongAdder();
+    private final RequestNotPermittedException notPermitted;
+
+    private RateLimiter(Builder builder) {
+        this.name = builder.name;
+        this.interval = Math.max(1, (long) Math.ceil(1e9 / builder.rate));
+        this.tolerance = interval * (builder.burst - 1);
+        this.maxWaitNanos = builder.maxWaitNanos;
+        this.ticker = builder.ticker;
+        this.arrival = new AtomicLong(ticker.getAsLong());
+        this.notPermitted = new RequestNotPermittedException("Rate limiter " + name + " does not permit calls");
+    }
+
+    /**
+     * @param name name of the limiter, for reporting
+     * @return builder of a new limiter
+     */
+    public static Builder builder(String name) {
+        return new Builder(Objects.requireNonNull(name));
+    }
+
+    /**
+     * @return name of the limiter
+     */
+    public String name() {
+        return name;
+    }
+
+    /**
+     * Takes a permit if one is available now.
+     *
+     * @return {@code true} if a permit was taken
+     */
+    public boolean tryAcquire() {
+        return reserve(0) == 0;
+    }
+
+    /**
+     * Takes a permit, waiting for it if it will be available within the timeout.
+     *
+     * @param timeout maximum time to wait
+     * @return {@code true} if a permit was taken
+     * @throws InterruptedException if interrupted while waiting, the permit is then lost
+     */
+    public boolean tryAcquire(Duration timeout) throws InterruptedException {
+        long wait = reserve(timeout.toNanos());
+        if (wait < 0) {
+            return false;
+        }
+        park(wait);
+        return true;
+    }
+
+    /**
+     * Takes a permit, waiting as long as it takes.
+     *
+     * @throws InterruptedException if interrupted while waiting, the permit is then lost
+     */
+    public void acquire() throws InterruptedException {
+        park(reserve(Long.MAX_VALUE));
+    }
+
+    /**
+     * @param delegate the supplier to limit
+     * @return supplier calling the delegate once it has a permit
+     */
+    public <T, X extends Exception> XSupplier<T, X> supplier(XSupplier<T, X> delegate) {
+        Objects.requireNonNull(delegate);
+        return () -> {
+            permit();
+            return delegate.get();
+        };
+    }
+
+    /**
+     * @param delegate the function to limit
+     * @return function calling the delegate once it has a permit
+     */
+    public <T, R, X extends Exception> XFunction<T, R, X> function(XFunction<T, R, X> delegate) {
+        Objects.requireNonNull(delegate);
+        return t -> {
+            permit();
+            return delegate.apply(t);
+        };
+    }
+
+    /**
+     * @param delegate the callable to limit
+     * @return callable calling the delegate once it has a permit
+     */
+    public <T, X extends Exception> XCallable<T, X> callable(XCallable<T, X> delegate) {
+        Objects.requireNonNull(delegate);
+        // not a lambda, javac 8 rejects lambdas implementing XCallable with a generic exception
+        return new XCallable<T, X>() {
+            @Override
+            public T call() throws X {
+                permit();
+                return delegate.call();
+            }
+        };
+    }
+
+    /**
+     * @return approximate number of permits available right now
+     */
+    public long available() {
+        long backlog = Math.max(0, arrival.get() - ticker.getAsLong());
+        return backlog > tolerance ? 0 : (tolerance - backlog) / interval + 1;
+    }
+
+    /**
+     * @return number of decorated calls rejected
+     */
+    public long rejections() {
+        return rejections.sum();
+    }
+
+    /**
+     * Takes a permit for the decorators, within the maximum wait.
+     *
+     * @throws RequestNotPermittedException if there is no permit
+     */
+    private void permit() {
+        long wait = reserve(maxWaitNanos);
+        if (wait == 0) {
+            return;
+        }
+        try {
+            if (wait > 0) {
+                park(wait);
+                return;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        rejections.increment();
+        throw notPermitted;
+    }
+
+    /**
+     * Reserves the next permit if it is due within the maximum wait.
+     *
+     * @return nanoseconds until the permit is due, or {@code -1} if none was reserved
+     */
+    private long reserve(long maxWait) {
+        long now = ticker.getAsLong();
+        while (true) {
+            long current = arrival.get();
+            long backlog = Math.max(0, current - now);
+            long wait = Math.max(0, backlog - tolerance);
+            if (wait > maxWait) {
+                return -1;
+            }
+            if (arrival.compareAndSet(current, now + backlog + interval)) {
+                return wait;
+            }
+        }
+    }
+
+    private static void park(long nanos) throws InterruptedException {
+        long deadline = System.nanoTime() + nanos;
+        for (long remaining = nanos; remaining > 0; remaining = deadline - System.nanoTime()) {
+            LockSupport.parkNanos(remaining);
+            if (Thread.interrupted()) {
+                throw new InterruptedException();
+            }
+        }
+    }
+
+    @Override
+    public String toString() {
+        return String.format("RateLimiter[%s, available=%d, rejections=%d]", name, available(), rejections());
+    }
+
+    /**
+     * Builder of {@link RateLimiter}. By default the limiter allows 100 calls per second in bursts of up to 100,
+     * and decorated calls do not wait for a permit.
+     */
+    public static final class Builder {
+        private final String name;
+        private double rate = 100;
+        private int burst = 100;
+        private long maxWaitNanos;
+        private LongSupplier ticker = System::nanoTime;
+
+        private Builder(String name) {
+            this.name = name;
+        }
+
+        /**
+         * @param rate sustained number of permits per second
+         * @return this builder
+         */
+        public Builder rate(double rate) {
+            if (!(rate > 0)) {
+                throw new IllegalArgumentException("Non-positive rate " + rate);
+            }
+            this.rate = rate;
+            return this;
+        }
+
+        /**
+         * @param burst maximum number of permits available at once
+         * @return this builder
+         */
+        public Builder burst(int burst) {
+            if (burst < 1) {
+                throw new IllegalArgumentException("Non-positive burst " + burst);
+            }
+            this.burst = burst;
+            return this;
+        }
+
+        /**
+         * @param maxWait how long decorated calls may wait for a permit
+         * @return this builder
+         */
+        public Builder maxWait(Duration maxWait) {
+            if (maxWait.isNegative()) {
+                throw new IllegalArgumentException("Negative duration " + maxWait);
+            }
+            this.maxWaitNanos = maxWait.toNanos();
+            return this;
+        }
+
+        /**
+         * @param ticker source of time in nanoseconds
+         * @return this builder
+         */
+        public Builder ticker(LongSupplier ticker) {
+            this.ticker = Objects.requireNonNull(ticker);
+            return this;
+        }
+
+        /**
+         * @return a new limiter with all permits available
+         */
+        public RateLimiter build() {
+            return new RateLimiter(this);
+        }
+    }
+}
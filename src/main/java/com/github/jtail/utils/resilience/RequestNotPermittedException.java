@@ -0,0 +1,17 @@
+package com.github.jtail.utils.resilience;
+
+import com.github.jtail.utils.xfn.StacklessException;
+
+/**
+ * Thrown instead of calling the delegate of a {@link RateLimiter} or a {@link Bulkhead} which has no permit for
+ * the call.
+ * <p>
+ * Each limiter throws one preallocated instance whose message names it, so rejecting a call costs no allocation.
+ */
+public final class RequestNotPermittedException extends StacklessException {
+    private static final long serialVersionUID = 1L;
+
+    RequestNotPermittedException(String message) {
+        super(message);
+    }
+}
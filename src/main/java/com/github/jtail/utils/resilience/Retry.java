@@ -0,0 +1,323 @@
+package com.github.jtail.utils.resilience;
+
+import com.github.jtail.utils.xfn.XSupplier;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
+
+/**
+ * Policy for calling an {@link XSupplier} again when it fails.
+ * <p>
+ * A failed attempt is retried if its exception passes the filter, the maximum number of attempts has not been made,
+ * the next attempt would start within the time budget and the shared {@link RetryBudget} has a token. Otherwise the
+ * exception of the last attempt is thrown with its declared type, with the exceptions of the earlier attempts
+ * attached as suppressed. {@link Error}s are never retried.
+ * <p>
+ * Delays between attempts grow exponentially with decorrelated jitter: each one is random between the initial
+ * delay and three times the previous one, or the initial one before the first retry, capped at the maximum delay.
+ * This spreads out the retries of clients which failed together, instead of having them return in synchronized
+ * waves.
+ * <p>
+ * A successful first attempt allocates nothing. {@link #callAsync} runs the attempts on a scheduler and waits for
+ * the delays on its timer, so no thread is blocked between them.
+ * <p>
+ * By default a policy makes 3 attempts, retries checked exceptions only, waits 100 milliseconds to 10 seconds
+ * between attempts, and has neither a time budget nor a shared retry budget.
+ */
+public final class Retry {
+    private final int maxAttempts;
+    private final long initialDelayNanos;
+    private final long maxDelayNanos;
+    private final long maxDurationNanos;
+    private final Predicate<? super Exception> retryable;
+    private final RetryBudget budget;
+
+    private Retry(Builder builder) {
+        this.maxAttempts = builder.maxAttempts;
+        this.initialDelayNanos = builder.initialDelayNanos;
+        this.maxDelayNanos = builder.maxDelayNanos;
+        this.maxDurationNanos = builder.maxDurationNanos;
+        this.retryable = builder.retryable;
+        this.budget = builder.budget;
+    }
+
+    /**
+     * @return builder of a new policy
+     */
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * Calls the task until it succeeds or the policy gives up. If interrupted while waiting between attempts,
+     * gives up and restores the interrupt status.
+     *
+     * @param task the task to call
+     * @param <T> the type of the result
+     * @param <X> the type of the exception thrown by the task
+     * @return result of the first successful attempt
+     * @throws X exception of the last attempt
+     */
+    public <T, X extends Exception> T call(XSupplier<T, X> task) throws X {
+        // the clock is only read when the time is limited, so calls succeeding at once cost no more than bare ones
+        long start = maxDurationNanos == Long.MAX_VALUE ? 0 : System.nanoTime();
+        try {
+            return task.get();
+        } catch (Exception first) {
+            return retry(task, start, first);
+        }
+    }
+
+    /**
+     * Returns a supplier which calls the task with this policy.
+     *
+     * @param task the task to decorate
+     * @param <T> the type of the result
+     * @param <X> the type of the exception thrown by the task
+     * @return supplier retrying the task
+     */
+    public <T, X extends Exception> XSupplier<T, X> decorate(XSupplier<T, X> task) {
+        Objects.requireNonNull(task);
+        return () -> call(task);
+    }
+
+    /**
+     * Calls the task on the scheduler until it succeeds or the policy gives up. Cancelling the returned future
+     * stops the retries.
+     *
+     * @param task the task to call
+     * @param scheduler scheduler running the attempts
+     * @param <T> the type of the result
+     * @param <X> the type of the exception thrown by the task
+     * @return future completed with the result of the first successful attempt, or the exception of the last one
+     */
+    public <T, X extends Exception> CompletableFuture<T> callAsync(XSupplier<T, X> task,
+                                                                   ScheduledExecutorService scheduler) {
+        AsyncCall<T> call = new AsyncCall<>(Objects.requireNonNull(task), Objects.requireNonNull(scheduler));
+        call.schedule(0);
+        return call.result;
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T, X extends Exception> T retry(XSupplier<T, X> task, long start, Exception first) throws X {
+        long delay = 0;
+        Exception last = first;
+        for (int attempt = 1; ; attempt++) {
+            delay = nextDelay(attempt, start, delay, last);
+            if (delay < 0) {
+                break;
+            }
+            try {
+                TimeUnit.NANOSECONDS.sleep(delay);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+            try {
+                return task.get();
+            } catch (Exception e) {
+                suppress(e, last);
+                last = e;
+            }
+        }
+        throw (X) last;
+    }
+
+    /**
+     * Decides whether to retry after a failed attempt.
+     *
+     * @return delay before the next attempt in nanoseconds, or {@code -1} to give up
+     */
+    private long nextDelay(int attempts, long start, long previous, Exception failure) {
+        if (attempts >= maxAttempts || !retryable.test(failure)) {
+            return -1;
+        }
+        long base = previous == 0 ? initialDelayNanos : previous;
+        long delay = Math.min(randomBetween(initialDelayNanos, saturatedTriple(base)), maxDelayNanos);
+        if (maxDurationNanos != Long.MAX_VALUE && System.nanoTime() + delay - start >= maxDurationNanos) {
+            return -1;
+        }
+        return budget.tryAcquire() ? Math.max(delay, 1) : -1;
+    }
+
+    private static long saturatedTriple(long value) {
+        return value > Long.MAX_VALUE / 3 ? Long.MAX_VALUE : value * 3;
+    }
+
+    private static long randomBetween(long low, long high) {
+        return high <= low ? low : ThreadLocalRandom.current().nextLong(low, high);
+    }
+
+    private static void suppress(Exception failure, Exception previous) {
+        if (failure != previous) {
+            failure.addSuppressed(previous);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return String.format("Retry[maxAttempts=%d, delay=%s..%s, budget=%s]", maxAttempts,
+                Duration.ofNanos(initialDelayNanos), Duration.ofNanos(maxDelayNanos), budget);
+    }
+
+    private final class AsyncCall<T> implements Runnable {
+        final CompletableFuture<T> result = new CompletableFuture<>();
+        final XSupplier<T, ?> task;
+        final ScheduledExecutorService scheduler;
+        final long start = System.nanoTime();
+        int attempts;
+        long delay;
+        Exception last;
+
+        AsyncCall(XSupplier<T, ?> task, ScheduledExecutorService scheduler) {
+            this.task = task;
+            this.scheduler = scheduler;
+        }
+
+        @Override
+        public void run() {
+            if (result.isDone()) {
+                return;
+            }
+            attempts++;
+            try {
+                result.complete(task.get());
+                return;
+            } catch (Exception e) {
+                if (last != null) {
+                    suppress(e, last);
+                }
+                last = e;
+            } catch (Throwable e) {
+                result.completeExceptionally(e);
+                return;
+            }
+            delay = nextDelay(attempts, start, delay, last);
+            if (delay < 0) {
+                result.completeExceptionally(last);
+            } else {
+                schedule(delay);
+            }
+        }
+
+        void schedule(long nanos) {
+            try {
+                if (nanos == 0) {
+                    scheduler.execute(this);
+                } else {
+                    scheduler.schedule(this, nanos, TimeUnit.NANOSECONDS);
+                }
+            } catch (RejectedExecutionException e) {
+                if (last != null) {
+                    e.addSuppressed(last);
+                }
+                result.completeExceptionally(e);
+            }
+        }
+    }
+
+    /**
+     * Builder of {@link Retry}.
+     */
+    public static final class Builder {
+        private int maxAttempts = 3;
+        private long initialDelayNanos = TimeUnit.MILLISECONDS.toNanos(100);
+        private long maxDelayNanos = TimeUnit.SECONDS.toNanos(10);
+        private long maxDurationNanos = Long.MAX_VALUE;
+        private Predicate<? super Exception> retryable = e -> !(e instanceof RuntimeException);
+        private RetryBudget budget = RetryBudget.unlimited();
+
+        private Builder() {
+        }
+
+        /**
+         * @param maxAttempts maximum number of attempts, including the first one
+         * @return this builder
+         */
+        public Builder maxAttempts(int maxAttempts) {
+            if (maxAttempts < 1) {
+                throw new IllegalArgumentException("Non-positive attempts " + maxAttempts);
+            }
+            this.maxAttempts = maxAttempts;
+            return this;
+        }
+
+        /**
+         * @param initialDelay minimum delay before any retry
+         * @param maxDelay maximum delay before a retry
+         * @return this builder
+         */
+        public Builder backoff(Duration initialDelay, Duration maxDelay) {
+            if (initialDelay.isNegative() || initialDelay.compareTo(maxDelay) > 0) {
+                throw new IllegalArgumentException("Invalid delays " + initialDelay + ", " + maxDelay);
+            }
+            this.initialDelayNanos = initialDelay.toNanos();
+            this.maxDelayNanos = maxDelay.toNanos();
+            return this;
+        }
+
+        /**
+         * @param maxDuration time since the first attempt after which no further attempt is started
+         * @return this builder
+         */
+        public Builder maxDuration(Duration maxDuration) {
+            if (maxDuration.isNegative()) {
+                throw new IllegalArgumentException("Negative duration " + maxDuration);
+            }
+            this.maxDurationNanos = maxDuration.toNanos();
+            return this;
+        }
+
+        /**
+         * Retries only the exceptions of the given types and their subtypes.
+         *
+         * @param types retryable exception types
+         * @return this builder
+         */
+        @SafeVarargs
+        @SuppressWarnings("varargs")
+        public final Builder retryOn(Class<? extends Exception>... types) {
+            Class<?>[] copy = Arrays.copyOf(types, types.length);
+            return retryIf(e -> {
+                for (Class<?> type : copy) {
+                    if (type.isInstance(e)) {
+                        return true;
+                    }
+                }
+                return false;
+            });
+        }
+
+        /**
+         * @param retryable predicate selecting the retryable exceptions
+         * @return this builder
+         */
+        public Builder retryIf(Predicate<? super Exception> retryable) {
+            this.retryable = Objects.requireNonNull(retryable);
+            return this;
+        }
+
+        /**
+         * @param budget budget shared with other policies, each retry takes a token from it
+         * @return this builder
+         */
+        public Builder budget(RetryBudget budget) {
+            this.budget = Objects.requireNonNull(budget);
+            return this;
+        }
+
+        /**
+         * @return a new policy
+         */
+        public Retry build() {
+            return new Retry(this);
+        }
+    }
+}
@@ -0,0 +1,102 @@
+package com.github.jtail.utils.resilience;
+
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+/**
+ * Token bucket shared by the {@link Retry} policies of a service, bounding the rate of retries across all of them.
+ * <p>
+ * A healthy service rarely retries and keeps the bucket full. When a dependency fails, every caller wants to retry
+ * at once; the bucket lets through a burst of {@code capacity} retries and then {@code perSecond} retries per
+ * second, and the other calls fail with their first exception instead of multiplying the load.
+ * <p>
+ * The bucket is a single {@link AtomicLong} holding the theoretical arrival time of the next token (GCRA), so
+ * acquiring is one compare-and-set and never blocks.
+ */
+public final class RetryBudget {
+    private static final RetryBudget UNLIMITED = new RetryBudget(1, Double.POSITIVE_INFINITY, System::nanoTime);
+
+    private final long interval;
+    private final long tolerance;
+    private final LongSupplier ticker;
+    private final AtomicLong arrival;
+
+    private RetryBudget(int capacity, double perSecond, LongSupplier ticker) {
+        this.interval = Double.isInfinite(perSecond) ? 0 : (long) Math.ceil(1e9 / perSecond);
+        this.tolerance = interval * (capacity - 1);
+        this.ticker = ticker;
+        this.arrival = new AtomicLong(ticker.getAsLong());
+    }
+
+    /**
+     * @param capacity maximum burst of retries
+     * @param perSecond sustained rate of retries
+     * @return new budget, full
+     */
+    public static RetryBudget of(int capacity, double perSecond) {
+        return of(capacity, perSecond, System::nanoTime);
+    }
+
+    /**
+     * @param capacity maximum burst of retries
+     * @param perSecond sustained rate of retries
+     * @param ticker source of time in nanoseconds
+     * @return new budget, full
+     */
+    public static RetryBudget of(int capacity, double perSecond, LongSupplier ticker) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("Non-positive capacity " + capacity);
+        }
+        if (!(perSecond > 0)) {
+            throw new IllegalArgumentException("Non-positive rate " + perSecond);
+        }
+        return new RetryBudget(capacity, perSecond, Objects.requireNonNull(ticker));
+    }
+
+    /**
+     * @return budget which allows every retry
+     */
+    public static RetryBudget unlimited() {
+        return UNLIMITED;
+    }
+
+    /**
+     * Takes a token if one is available.
+     *
+     * @return {@code true} if a retry is allowed
+     */
+    public boolean tryAcquire() {
+        if (interval == 0) {
+            return true;
+        }
+        long now = ticker.getAsLong();
+        while (true) {
+            long current = arrival.get();
+            long backlog = Math.max(0, current - now);
+            if (backlog > tolerance) {
+                return false;
+            }
+            if (arrival.compareAndSet(current, now + backlog + interval)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * @return approximate number of retries which can be made right now
+     */
+    public long available() {
+        if (interval == 0) {
+            return Long.MAX_VALUE;
+        }
+        long now = ticker.getAsLong();
+        long backlog = Math.max(0, arrival.get() - now);
+        return backlog > tolerance ? 0 : (tolerance - backlog) / interval + 1;
+    }
+
+    @Override
+    public String toString() {
+        return interval == 0 ? "RetryBudget.unlimited" : String.format("RetryBudget[available=%d]", available());
+    }
+}
@@ -21,10 +21,20 @@ public class Condition {
             }
         }
 
+        @Override
+        public <C, X extends Exception> void orElse(C context, XConsumer<? super C, X> consumer) throws X {
+            consumer.accept(context);
+        }
+
         @Override
         public <X extends Exception> void orElseThrow(Supplier<X> supplier) throws X {
             throw supplier.get();
         }
+
+        @Override
+        public <X extends Exception> void orElseThrowInstance(X exception) throws X {
+            throw exception;
+        }
     };
 
     public static Condition present() {
@@ -38,8 +48,20 @@ public class Condition {
     public <X extends Exception> void orElse(XRunnable runnable) throws X {
     }
 
+    /**
+     * Invokes the consumer with the context if the value was absent, lets the consumer be non-capturing.
+     */
+    public <C, X extends Exception> void orElse(C context, XConsumer<? super C, X> consumer) throws X {
+    }
+
     public <X extends Exception> void orElseThrow(Supplier<X> supplier) throws X {
     }
 
+    /**
+     * Throws the given exception if the value was absent, best used with a shared {@link StacklessException}.
+     */
+    public <X extends Exception> void orElseThrowInstance(X exception) throws X {
+    }
+
 
 }
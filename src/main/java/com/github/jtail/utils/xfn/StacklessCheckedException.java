@@ -0,0 +1,23 @@
+package com.github.jtail.utils.xfn;
+
+/**
+ * A checked version of {@link StacklessException}, for methods declaring the failure in their signature.
+ */
+public class StacklessCheckedException extends Exception {
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * @param message the detail message
+     */
+    public StacklessCheckedException(String message) {
+        super(message, null, false, false);
+    }
+
+    /**
+     * @param message the detail message
+     * @param cause the cause, should be null for shared instances
+     */
+    public StacklessCheckedException(String message, Throwable cause) {
+        super(message, cause, false, false);
+    }
+}
@@ -0,0 +1,27 @@
+package com.github.jtail.utils.xfn;
+
+/**
+ * Unchecked exception without a stack trace, meant for control flow where failures are expected and frequent.
+ * <p>
+ * Both the stack trace and suppression are disabled, so creating one costs as much as any other small object, and
+ * an instance is effectively immutable: it can be created once, kept in a {@code static final} field and thrown
+ * from many threads, see {@link XOptional#orElseThrowInstance(Throwable)}.
+ */
+public class StacklessException extends RuntimeException {
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * @param message the detail message
+     */
+    public StacklessException(String message) {
+        super(message, null, false, false);
+    }
+
+    /**
+     * @param message the detail message
+     * @param cause the cause, should be null for shared instances
+     */
+    public StacklessException(String message, Throwable cause) {
+        super(message, cause, false, false);
+    }
+}
@@ -0,0 +1,16 @@
+package com.github.jtail.utils.xfn;
+
+/**
+ * Version of {@link java.util.function.DoubleConsumer} with exception support.
+ *
+ * @param <X> the type of the exception thrown by the consumer
+ */
+@FunctionalInterface
+public interface XDoubleConsumer<X extends Exception> {
+    /**
+     * Performs this operation on the given argument.
+     *
+     * @param value the input argument
+     */
+    void accept(double value) throws X;
+}
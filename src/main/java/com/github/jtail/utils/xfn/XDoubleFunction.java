@@ -0,0 +1,19 @@
+package com.github.jtail.utils.xfn;
+
+/**
+ * Version of {@link java.util.function.DoubleFunction} with exception support.
+ *
+ * @param <R> the type of the result of the function
+ * @param <X> the type of the exception thrown by the function
+ */
+@FunctionalInterface
+public interface XDoubleFunction<R, X extends Exception> {
+    /**
+     * Applies this function to the given argument.
+     *
+     * @param value the function argument
+     * @return the function result
+     * @throws X if exception occurs
+     */
+    R apply(double value) throws X;
+}
@@ -0,0 +1,16 @@
+package com.github.jtail.utils.xfn;
+
+/**
+ * Version of {@link java.util.function.IntSupplier} with exception support.
+ *
+ * @param <X> the type of the exception thrown by the supplier
+ */
+@FunctionalInterface
+public interface XIntSupplier<X extends Exception> {
+    /**
+     * Gets a result.
+     *
+     * @return a result
+     */
+    int getAsInt() throws X;
+}
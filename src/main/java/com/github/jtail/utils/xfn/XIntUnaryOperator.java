@@ -0,0 +1,18 @@
+package com.github.jtail.utils.xfn;
+
+/**
+ * Version of {@link java.util.function.IntUnaryOperator} with exception support.
+ *
+ * @param <X> the type of the exception thrown by the operator
+ */
+@FunctionalInterface
+public interface XIntUnaryOperator<X extends Exception> {
+    /**
+     * Applies this operator to the given operand.
+     *
+     * @param operand the operand
+     * @return the operator result
+     * @throws X if exception occurs
+     */
+    int applyAsInt(int operand) throws X;
+}
@@ -0,0 +1,16 @@
+package com.github.jtail.utils.xfn;
+
+/**
+ * Version of {@link java.util.function.LongConsumer} with exception support.
+ *
+ * @param <X> the type of the exception thrown by the consumer
+ */
+@FunctionalInterface
+public interface XLongConsumer<X extends Exception> {
+    /**
+     * Performs this operation on the given argument.
+     *
+     * @param value the input argument
+     */
+    void accept(long value) throws X;
+}
@@ -0,0 +1,16 @@
+package com.github.jtail.utils.xfn;
+
+/**
+ * Version of {@link java.util.function.LongSupplier} with exception support.
+ *
+ * @param <X> the type of the exception thrown by the supplier
+ */
+@FunctionalInterface
+public interface XLongSupplier<X extends Exception> {
+    /**
+     * Gets a result.
+     *
+     * @return a result
+     */
+    long getAsLong() throws X;
+}
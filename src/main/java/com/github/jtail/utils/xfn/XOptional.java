@@ -3,6 +3,7 @@ package com.github.jtail.utils.xfn;
 import java.util.NoSuchElementException;
 import java.util.Objects;
 import java.util.Optional;
+import java.util.function.BiPredicate;
 import java.util.function.Predicate;
 import java.util.function.Supplier;
 
@@ -135,6 +136,30 @@ public final class XOptional<T> {
         }
     }
 
+    /**
+     * If a value is present, invoke the specified consumer with the value and
+     * the context, otherwise do nothing.
+     *
+     * @apiNote Passing the context as an argument lets the consumer be a
+     * non-capturing lambda or a static method reference, which does not
+     * allocate on each call.
+     *
+     * @param <C> the type of the context
+     * @param context the second argument of the consumer, may be null
+     * @param consumer block to be executed if a value is present
+     * @throws NullPointerException if value is present and {@code consumer} is
+     * null
+     */
+    public <C, X extends Exception> Condition ifPresent(C context, XBiConsumer<? super T, ? super C, X> consumer)
+            throws X {
+        if (value != null) {
+            consumer.accept(value, context);
+            return Condition.present();
+        } else {
+            return Condition.absent();
+        }
+    }
+
     /**
      * If a value is present, and the value matches the given predicate,
      * return {@code XOptional} describing the value, otherwise return an
@@ -151,6 +176,25 @@ public final class XOptional<T> {
         return isPresent() ? predicate.test(value) ? this : empty() : this;
     }
 
+    /**
+     * If a value is present, and the value matches the given predicate invoked
+     * with the context, return {@code XOptional} describing the value,
+     * otherwise return an empty {@code XOptional}.
+     *
+     * @param <C> the type of the context
+     * @param context the second argument of the predicate, may be null
+     * @param predicate a predicate to apply to the value, if present
+     * @return {@code XOptional} describing the value of this {@code XOptional}
+     * if a value is present and the value matches the given predicate,
+     * otherwise an empty {@code XOptional}
+     * @throws NullPointerException if the predicate is null
+     * @see #ifPresent(Object, XBiConsumer)
+     */
+    public <C> XOptional<T> filter(C context, BiPredicate<? super T, ? super C> predicate) {
+        Objects.requireNonNull(predicate);
+        return isPresent() ? predicate.test(value, context) ? this : empty() : this;
+    }
+
     /**
      * If a value is present, apply the provided mapping function to it,
      * and if the result is non-null, return {@code XOptional} describing the
@@ -185,6 +229,27 @@ public final class XOptional<T> {
         return isPresent() ? XOptional.ofNullable(mapper.apply(value)) : empty();
     }
 
+    /**
+     * If a value is present, apply the provided mapping function to it and
+     * the context, and if the result is non-null, return {@code XOptional}
+     * describing the result.  Otherwise return an empty {@code XOptional}.
+     *
+     * @param <C> the type of the context
+     * @param <U> The type of the result of the mapping function
+     * @param context the second argument of the mapping function, may be null
+     * @param mapper a mapping function to apply to the value, if present
+     * @return {@code XOptional} describing the result of applying a mapping
+     * function to the value of this {@code XOptional}, if a value is present,
+     * otherwise an empty {@code XOptional}
+     * @throws NullPointerException if the mapping function is null
+     * @see #ifPresent(Object, XBiConsumer)
+     */
+    public <C, U, X extends Exception> XOptional<U> map(
+            C context, XBiFunction<? super T, ? super C, ? extends U, X> mapper) throws X {
+        Objects.requireNonNull(mapper);
+        return isPresent() ? XOptional.ofNullable(mapper.apply(value, context)) : empty();
+    }
+
     /**
      * If a value is present, apply the provided {@code XOptional}-bearing
      * mapping function to it, return that result, otherwise return an empty
@@ -207,6 +272,77 @@ public final class XOptional<T> {
         return isPresent() ? Objects.requireNonNull(mapper.apply(value)) : empty();
     }
 
+    /**
+     * If a value is present, apply the provided {@code XOptional}-bearing
+     * mapping function to it and the context, return that result, otherwise
+     * return an empty {@code XOptional}.
+     *
+     * @param <C> the type of the context
+     * @param <U> The type parameter to the {@code XOptional} returned by
+     *           the mapping function
+     * @param context the second argument of the mapping function, may be null
+     * @param mapper a mapping function to apply to the value, if present
+     * @return the result of applying {@code XOptional}-bearing mapping
+     * function to the value of this {@code XOptional}, if a value is present,
+     * otherwise an empty {@code XOptional}
+     * @throws NullPointerException if the mapping function is null or returns
+     * a null result
+     * @see #ifPresent(Object, XBiConsumer)
+     */
+    public <C, U, X extends Exception> XOptional<U> flatMap(
+            C context, XBiFunction<? super T, ? super C, XOptional<U>, X> mapper) throws X {
+        Objects.requireNonNull(mapper);
+        return isPresent() ? Objects.requireNonNull(mapper.apply(value, context)) : empty();
+    }
+
+    /**
+     * If a value is present, apply the provided {@code int}-valued mapping
+     * function to it and return {@code XOptionalInt} describing the result,
+     * otherwise return an empty {@code XOptionalInt}.
+     *
+     * @param mapper a mapping function to apply to the value, if present
+     * @return {@code XOptionalInt} describing the result of applying a mapping
+     * function to the value of this {@code XOptional}, if a value is present,
+     * otherwise an empty {@code XOptionalInt}
+     * @throws NullPointerException if the mapping function is null
+     */
+    public <X extends Exception> XOptionalInt mapToInt(XToIntFunction<? super T, X> mapper) throws X {
+        Objects.requireNonNull(mapper);
+        return isPresent() ? XOptionalInt.of(mapper.applyAsInt(value)) : XOptionalInt.empty();
+    }
+
+    /**
+     * If a value is present, apply the provided {@code long}-valued mapping
+     * function to it and return {@code XOptionalLong} describing the result,
+     * otherwise return an empty {@code XOptionalLong}.
+     *
+     * @param mapper a mapping function to apply to the value, if present
+     * @return {@code XOptionalLong} describing the result of applying a mapping
+     * function to the value of this {@code XOptional}, if a value is present,
+     * otherwise an empty {@code XOptionalLong}
+     * @throws NullPointerException if the mapping function is null
+     */
+    public <X extends Exception> XOptionalLong mapToLong(XToLongFunction<? super T, X> mapper) throws X {
+        Objects.requireNonNull(mapper);
+        return isPresent() ? XOptionalLong.of(mapper.applyAsLong(value)) : XOptionalLong.empty();
+    }
+
+    /**
+     * If a value is present, apply the provided {@code double}-valued mapping
+     * function to it and return {@code XOptionalDouble} describing the result,
+     * otherwise return an empty {@code XOptionalDouble}.
+     *
+     * @param mapper a mapping function to apply to the value, if present
+     * @return {@code XOptionalDouble} describing the result of applying a mapping
+     * function to the value of this {@code XOptional}, if a value is present,
+     * otherwise an empty {@code XOptionalDouble}
+     * @throws NullPointerException if the mapping function is null
+     */
+    public <X extends Exception> XOptionalDouble mapToDouble(XToDoubleFunction<? super T, X> mapper) throws X {
+        Objects.requireNonNull(mapper);
+        return isPresent() ? XOptionalDouble.of(mapper.applyAsDouble(value)) : XOptionalDouble.empty();
+    }
+
     /**
      * Return the value if present, otherwise return {@code other}.
      *
@@ -232,6 +368,22 @@ public final class XOptional<T> {
         return value != null ? value : other.get();
     }
 
+    /**
+     * Return the value if present, otherwise invoke {@code other} with the
+     * context and return the result of that invocation.
+     *
+     * @param <C> the type of the context
+     * @param context the argument of {@code other}, may be null
+     * @param other a function whose result is returned if no value is present
+     * @return the value if present otherwise the result of {@code other.apply(context)}
+     * @throws NullPointerException if value is not present and {@code other} is
+     * null
+     * @see #ifPresent(Object, XBiConsumer)
+     */
+    public <C, X extends Exception> T orElseGet(C context, XFunction<? super C, ? extends T, X> other) throws X {
+        return value != null ? value : other.apply(context);
+    }
+
     /**
      * Return the contained value, if present, otherwise throw an exception
      * to be created by the provided supplier.
@@ -256,6 +408,28 @@ public final class XOptional<T> {
         }
     }
 
+    /**
+     * Return the contained value, if present, otherwise throw the given
+     * exception.
+     *
+     * @apiNote Unlike {@link #orElseThrow(Supplier)} this does not create
+     * the exception, so when absence is common the exception can be a shared
+     * {@link StacklessException} and throwing it costs little more than
+     * a branch.
+     *
+     * @param <X> Type of the exception to be thrown
+     * @param exception the exception to be thrown, not null
+     * @return the present value
+     * @throws X if there is no value present
+     */
+    public <X extends Throwable> T orElseThrowInstance(X exception) throws X {
+        if (value != null) {
+            return value;
+        } else {
+            throw exception;
+        }
+    }
+
     /**
      * Indicates whether some other object is "equal to" this XOptional. The
      * other object is considered equal if:
@@ -0,0 +1,340 @@
+package com.github.jtail.utils.xfn;
+
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.OptionalInt;
+import java.util.function.IntPredicate;
+import java.util.function.Supplier;
+
+/**
+ * A version of {@link OptionalInt} with exception support.
+ * <p>
+ * Primitive counterpart of {@link XOptional}, values are never boxed unless {@link #boxed()} is called.
+ */
+public final class XOptionalInt {
+    /**
+     * Common instance for {@code empty()}.
+     */
+    private static final XOptionalInt EMPTY = new XOptionalInt();
+
+    /**
+     * If true then the value is present, otherwise indicates no value is present
+     */
+    private final boolean isPresent;
+    private final int value;
+
+    /**
+     * Constructs an empty instance.
+     *
+     * @implNote Generally only one empty instance, {@link XOptionalInt#EMPTY},
+     * should exist per VM.
+     */
+    private XOptionalInt() {
+        this.isPresent = false;
+        this.value = 0;
+    }
+
+    /**
+     * Construct an instance with the value present.
+     *
+     * @param value the int value to be present
+     */
+    private XOptionalInt(int value) {
+        this.isPresent = true;
+        this.value = value;
+    }
+
+    /**
+     * Returns an empty {@code XOptionalInt} instance.  No value is present for this
+     * XOptionalInt.
+     *
+     * @apiNote Though it may be tempting to do so, avoid testing if an object
+     * is empty by comparing with {@code ==} against instances returned by
+     * {@code XOptionalInt.empty()}. There is no guarantee that it is a singleton.
+     * Instead, use {@link #isPresent()}.
+     *
+     * @return an empty {@code XOptionalInt}
+     */
+    public static XOptionalInt empty() {
+        return EMPTY;
+    }
+
+    /**
+     * Return {@code XOptionalInt} with the specified value present.
+     *
+     * @param value the value to be present
+     * @return {@code XOptionalInt} with the value present
+     */
+    public static XOptionalInt of(int value) {
+        return new XOptionalInt(value);
+    }
+
+    /**
+     * Returns {@code XOptionalInt} describing the specified value, if non-null,
+     * otherwise returns an empty {@code XOptionalInt}.
+     *
+     * @param value the possibly-null value to describe
+     * @return {@code XOptionalInt} with a present value if the specified value
+     * is non-null, otherwise an empty {@code XOptionalInt}
+     */
+    public static XOptionalInt ofNullable(Integer value) {
+        return value == null ? EMPTY : new XOptionalInt(value);
+    }
+
+    /**
+     * Transforms {@code OptionalInt} into {@code XOptionalInt}
+     * @param optional optional to be transformed
+     * @return {@code XOptionalInt} built from a given {@code OptionalInt}
+     */
+    public static XOptionalInt from(OptionalInt optional) {
+        return optional.isPresent() ? new XOptionalInt(optional.getAsInt()) : EMPTY;
+    }
+
+    /**
+     * Transforms {@code XOptional} of a boxed value into {@code XOptionalInt}
+     * @param optional optional to be transformed
+     * @return {@code XOptionalInt} built from a given {@code XOptional}
+     */
+    public static XOptionalInt from(XOptional<Integer> optional) {
+        return optional.isPresent() ? new XOptionalInt(optional.get()) : EMPTY;
+    }
+
+    /**
+     * Transforms this instance into {@code OptionalInt}
+     *
+     * @return {@code OptionalInt} describing the same value, if any
+     */
+    public OptionalInt toOptionalInt() {
+        return isPresent ? OptionalInt.of(value) : OptionalInt.empty();
+    }
+
+    /**
+     * Transforms this instance into {@code XOptional} of a boxed value
+     *
+     * @return {@code XOptional} describing the same value, if any
+     */
+    public XOptional<Integer> boxed() {
+        return isPresent ? XOptional.of(value) : XOptional.empty();
+    }
+
+    /**
+     * If a value is present in this {@code XOptionalInt}, returns the value,
+     * otherwise throws {@code NoSuchElementException}.
+     *
+     * @return the value held by this {@code XOptionalInt}
+     * @throws NoSuchElementException if there is no value present
+     *
+     * @see XOptionalInt#isPresent()
+     */
+    public int getAsInt() {
+        if (!isPresent) {
+            throw new NoSuchElementException("No value present");
+        }
+        return value;
+    }
+
+    /**
+     * Return {@code true} if there is a value present, otherwise {@code false}.
+     *
+     * @return {@code true} if there is a value present, otherwise {@code false}
+     */
+    public boolean isPresent() {
+        return isPresent;
+    }
+
+    /**
+     * If a value is present, invoke the specified consumer with the value,
+     * otherwise do nothing.
+     *
+     * @param consumer block to be executed if a value is present
+     * @throws NullPointerException if value is present and {@code consumer} is
+     * null
+     */
+    public <X extends Exception> Condition ifPresent(XIntConsumer<X> consumer) throws X {
+        if (isPresent) {
+            consumer.accept(value);
+            return Condition.present();
+        } else {
+            return Condition.absent();
+        }
+    }
+
+    /**
+     * If a value is present, and the value matches the given predicate,
+     * return {@code XOptionalInt} describing the value, otherwise return an
+     * empty {@code XOptionalInt}.
+     *
+     * @param predicate a predicate to apply to the value, if present
+     * @return {@code XOptionalInt} describing the value of this {@code XOptionalInt}
+     * if a value is present and the value matches the given predicate,
+     * otherwise an empty {@code XOptionalInt}
+     * @throws NullPointerException if the predicate is null
+     */
+    public XOptionalInt filter(IntPredicate predicate) {
+        Objects.requireNonNull(predicate);
+        return isPresent ? predicate.test(value) ? this : EMPTY : this;
+    }
+
+    /**
+     * If a value is present, apply the provided operator to it and return
+     * {@code XOptionalInt} describing the result, otherwise return an empty
+     * {@code XOptionalInt}.
+     *
+     * @param mapper an operator to apply to the value, if present
+     * @return {@code XOptionalInt} describing the result of applying the operator
+     * to the value of this {@code XOptionalInt}, if a value is present,
+     * otherwise an empty {@code XOptionalInt}
+     * @throws NullPointerException if the operator is null
+     */
+    public <X extends Exception> XOptionalInt map(XIntUnaryOperator<X> mapper) throws X {
+        Objects.requireNonNull(mapper);
+        return isPresent ? new XOptionalInt(mapper.applyAsInt(value)) : EMPTY;
+    }
+
+    /**
+     * If a value is present, apply the provided mapping function to it,
+     * and if the result is non-null, return {@code XOptional} describing the
+     * result.  Otherwise return an empty {@code XOptional}.
+     *
+     * @param <U> The type of the result of the mapping function
+     * @param mapper a mapping function to apply to the value, if present
+     * @return {@code XOptional} describing the result of applying a mapping
+     * function to the value of this {@code XOptionalInt}, if a value is present,
+     * otherwise an empty {@code XOptional}
+     * @throws NullPointerException if the mapping function is null
+     */
+    public <U, X extends Exception> XOptional<U> mapToObj(XIntFunction<? extends U, X> mapper) throws X {
+        Objects.requireNonNull(mapper);
+        return isPresent ? XOptional.ofNullable(mapper.apply(value)) : XOptional.empty();
+    }
+
+    /**
+     * If a value is present, apply the provided {@code XOptionalInt}-bearing
+     * mapping function to it, return that result, otherwise return an empty
+     * {@code XOptionalInt}.
+     *
+     * @param mapper a mapping function to apply to the value, if present
+     * @return the result of applying {@code XOptionalInt}-bearing mapping
+     * function to the value of this {@code XOptionalInt}, if a value is present,
+     * otherwise an empty {@code XOptionalInt}
+     * @throws NullPointerException if the mapping function is null or returns
+     * a null result
+     */
+    public <X extends Exception> XOptionalInt flatMap(XIntFunction<XOptionalInt, X> mapper) throws X {
+        Objects.requireNonNull(mapper);
+        return isPresent ? Objects.requireNonNull(mapper.apply(value)) : EMPTY;
+    }
+
+    /**
+     * Return the value if present, otherwise return {@code other}.
+     *
+     * @param other the value to be returned if there is no value present
+     * @return the value, if present, otherwise {@code other}
+     */
+    public int orElse(int other) {
+        return isPresent ? value : other;
+    }
+
+    /**
+     * Return the value if present, otherwise invoke {@code other} and return
+     * the result of that invocation.
+     *
+     * @param other a supplier whose result is returned if no value is present
+     * @return the value if present otherwise the result of {@code other.getAsInt()}
+     * @throws NullPointerException if value is not present and {@code other} is
+     * null
+     */
+    public <X extends Exception> int orElseGet(XIntSupplier<X> other) throws X {
+        return isPresent ? value : other.getAsInt();
+    }
+
+    /**
+     * Return the contained value, if present, otherwise throw an exception
+     * to be created by the provided supplier.
+     *
+     * @param <X> Type of the exception to be thrown
+     * @param exceptionSupplier The supplier which will return the exception to
+     * be thrown
+     * @return the present value
+     * @throws X if there is no value present
+     * @throws NullPointerException if no value is present and
+     * {@code exceptionSupplier} is null
+     */
+    public <X extends Throwable> int orElseThrow(Supplier<? extends X> exceptionSupplier) throws X {
+        if (isPresent) {
+            return value;
+        } else {
+            throw exceptionSupplier.get();
+        }
+    }
+
+    /**
+     * Return the contained value, if present, otherwise throw the given
+     * exception.
+     *
+     * @apiNote Unlike {@link #orElseThrow(Supplier)} this does not create
+     * the exception, so when absence is common the exception can be a shared
+     * {@link StacklessException} and throwing it costs little more than
+     * a branch.
+     *
+     * @param <X> Type of the exception to be thrown
+     * @param exception the exception to be thrown, not null
+     * @return the present value
+     * @throws X if there is no value present
+     */
+    public <X extends Throwable> int orElseThrowInstance(X exception) throws X {
+        if (isPresent) {
+            return value;
+        } else {
+            throw exception;
+        }
+    }
+
+    /**
+     * Indicates whether some other object is "equal to" this XOptionalInt. The
+     * other object is considered equal if:
+     * <ul>
+     * <li>it is also {@code XOptionalInt} and;
+     * <li>both instances have no value present or;
+     * <li>the present values are "equal to" each other via {@code ==}.
+     * </ul>
+     *
+     * @param obj an object to be tested for equality
+     * @return {code true} if the other object is "equal to" this object
+     * otherwise {@code false}
+     */
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) {
+            return true;
+        } else if (obj instanceof XOptionalInt) {
+            XOptionalInt other = (XOptionalInt) obj;
+            return isPresent && other.isPresent ? value == other.value : isPresent == other.isPresent;
+        } else {
+            return false;
+        }
+    }
+
+    /**
+     * Returns the hash code value of the present value, if any, or 0 (zero) if
+     * no value is present.
+     *
+     * @return hash code value of the present value or 0 if no value is present
+     */
+    @Override
+    public int hashCode() {
+        return isPresent ? Integer.hashCode(value) : 0;
+    }
+
+    /**
+     * Returns a non-empty string representation of this XOptionalInt suitable for
+     * debugging. The exact presentation format is unspecified and may vary
+     * between implementations and versions.
+     *
+     * @return the string representation of this instance
+     */
+    @Override
+    public String toString() {
+        return isPresent ? String.format("XOptionalInt[%s]", value) : "XOptionalInt.empty";
+    }
+}
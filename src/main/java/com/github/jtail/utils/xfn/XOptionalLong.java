@@ -0,0 +1,340 @@
+package com.github.jtail.utils.xfn;
+
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.OptionalLong;
+import java.util.function.LongPredicate;
+import java.util.function.Supplier;
+
+/**
+ * A version of {@link OptionalLong} with exception support.
+ * <p>
+ * Primitive counterpart of {@link XOptional}, values are never boxed unless {@link #boxed()} is called.
+ */
+public final class XOptionalLong {
+    /**
+     * Common instance for {@code empty()}.
+     */
+    private static final XOptionalLong EMPTY = new XOptionalLong();
+
+    /**
+     * If true then the value is present, otherwise indicates no value is present
+     */
+    private final boolean isPresent;
+    private final long value;
+
+    /**
+     * Constructs an empty instance.
+     *
+     * @implNote Generally only one empty instance, {@link XOptionalLong#EMPTY},
+     * should exist per VM.
+     */
+    private XOptionalLong() {
+        this.isPresent = false;
+        this.value = 0;
+    }
+
+    /**
+     * Construct an instance with the value present.
+     *
+     * @param value the long value to be present
+     */
+    private XOptionalLong(long value) {
+        this.isPresent = true;
+        this.value = value;
+    }
+
+    /**
+     * Returns an empty {@code XOptionalLong} instance.  No value is present for this
+     * XOptionalLong.
+     *
+     * @apiNote Though it may be tempting to do so, avoid testing if an object
+     * is empty by comparing with {@code ==} against instances returned by
+     * {@code XOptionalLong.empty()}. There is no guarantee that it is a singleton.
+     * Instead, use {@link #isPresent()}.
+     *
+     * @return an empty {@code XOptionalLong}
+     */
+    public static XOptionalLong empty() {
+        return EMPTY;
+    }
+
+    /**
+     * Return {@code XOptionalLong} with the specified value present.
+     *
+     * @param value the value to be present
+     * @return {@code XOptionalLong} with the value present
+     */
+    public static XOptionalLong of(long value) {
+        return new XOptionalLong(value);
+    }
+
+    /**
+     * Returns {@code XOptionalLong} describing the specified value, if non-null,
+     * otherwise returns an empty {@code XOptionalLong}.
+     *
+     * @param value the possibly-null value to describe
+     * @return {@code XOptionalLong} with a present value if the specified value
+     * is non-null, otherwise an empty {@code XOptionalLong}
+     */
+    public static XOptionalLong ofNullable(Long value) {
+        return value == null ? EMPTY : new XOptionalLong(value);
+    }
+
+    /**
+     * Transforms {@code OptionalLong} into {@code XOptionalLong}
+     * @param optional optional to be transformed
+     * @return {@code XOptionalLong} built from a given {@code OptionalLong}
+     */
+    public static XOptionalLong from(OptionalLong optional) {
+        return optional.isPresent() ? new XOptionalLong(optional.getAsLong()) : EMPTY;
+    }
+
+    /**
+     * Transforms {@code XOptional} of a boxed value into {@code XOptionalLong}
+     * @param optional optional to be transformed
+     * @return {@code XOptionalLong} built from a given {@code XOptional}
+     */
+    public static XOptionalLong from(XOptional<Long> optional) {
+        return optional.isPresent() ? new XOptionalLong(optional.get()) : EMPTY;
+    }
+
+    /**
+     * Transforms this instance into {@code OptionalLong}
+     *
+     * @return {@code OptionalLong} describing the same value, if any
+     */
+    public OptionalLong toOptionalLong() {
+        return isPresent ? OptionalLong.of(value) : OptionalLong.empty();
+    }
+
+    /**
+     * Transforms this instance into {@code XOptional} of a boxed value
+     *
+     * @return {@code XOptional} describing the same value, if any
+     */
+    public XOptional<Long> boxed() {
+        return isPresent ? XOptional.of(value) : XOptional.empty();
+    }
+
+    /**
+     * If a value is present in this {@code XOptionalLong}, returns the value,
+     * otherwise throws {@code NoSuchElementException}.
+     *
+     * @return the value held by this {@code XOptionalLong}
+     * @throws NoSuchElementException if there is no value present
+     *
+     * @see XOptionalLong#isPresent()
+     */
+    public long getAsLong() {
+        if (!isPresent) {
+            throw new NoSuchElementException("No value present");
+        }
+        return value;
+    }
+
+    /**
+     * Return {@code true} if there is a value present, otherwise {@code false}.
+     *
+     * @return {@code true} if there is a value present, otherwise {@code false}
+     */
+    public boolean isPresent() {
+        return isPresent;
+    }
+
+    /**
+     * If a value is present, invoke the specified consumer with the value,
+     * otherwise do nothing.
+     *
+     * @param consumer block to be executed if a value is present
+     * @throws NullPointerException if value is present and {@code consumer} is
+     * null
+     */
+    public <X extends Exception> Condition ifPresent(XLongConsumer<X> consumer) throws X {
+        if (isPresent) {
+            consumer.accept(value);
+            return Condition.present();
+        } else {
+            return Condition.absent();
+        }
+    }
+
+    /**
+     * If a value is present, and the value matches the given predicate,
+     * return {@code XOptionalLong} describing the value, otherwise return an
+     * empty {@code XOptionalLong}.
+     *
+     * @param predicate a predicate to apply to the value, if present
+     * @return {@code XOptionalLong} describing the value of this {@code XOptionalLong}
+     * if a value is present and the value matches the given predicate,
+     * otherwise an empty {@code XOptionalLong}
+     * @throws NullPointerException if the predicate is null
+     */
+    public XOptionalLong filter(LongPredicate predicate) {
+        Objects.requireNonNull(predicate);
+        return isPresent ? predicate.test(value) ? this : EMPTY : this;
+    }
+
+    /**
+     * If a value is present, apply the provided operator to it and return
+     * {@code XOptionalLong} describing the result, otherwise return an empty
+     * {@code XOptionalLong}.
+     *
+     * @param mapper an operator to apply to the value, if present
+     * @return {@code XOptionalLong} describing the result of applying the operator
+     * to the value of this {@code XOptionalLong}, if a value is present,
+     * otherwise an empty {@code XOptionalLong}
+     * @throws NullPointerException if the operator is null
+     */
+    public <X extends Exception> XOptionalLong map(XLongUnaryOperator<X> mapper) throws X {
+        Objects.requireNonNull(mapper);
+        return isPresent ? new XOptionalLong(mapper.applyAsLong(value)) : EMPTY;
+    }
+
+    /**
+     * If a value is present, apply the provided mapping function to it,
+     * and if the result is non-null, return {@code XOptional} describing the
+     * result.  Otherwise return an empty {@code XOptional}.
+     *
+     * @param <U> The type of the result of the mapping function
+     * @param mapper a mapping function to apply to the value, if present
+     * @return {@code XOptional} describing the result of applying a mapping
+     * function to the value of this {@code XOptionalLong}, if a value is present,
+     * otherwise an empty {@code XOptional}
+     * @throws NullPointerException if the mapping function is null
+     */
+    public <U, X extends Exception> XOptional<U> mapToObj(XLongFunction<? extends U, X> mapper) throws X {
+        Objects.requireNonNull(mapper);
+        return isPresent ? XOptional.ofNullable(mapper.apply(value)) : XOptional.empty();
+    }
+
+    /**
+     * If a value is present, apply the provided {@code XOptionalLong}-bearing
+     * mapping function to it, return that result, otherwise return an empty
+     * {@code XOptionalLong}.
+     *
+     * @param mapper a mapping function to apply to the value, if present
+     * @return the result of applying {@code XOptionalLong}-bearing mapping
+     * function to the value of this {@code XOptionalLong}, if a value is present,
+     * otherwise an empty {@code XOptionalLong}
+     * @throws NullPointerException if the mapping function is null or returns
+     * a null result
+     */
+    public <X extends Exception> XOptionalLong flatMap(XLongFunction<XOptionalLong, X> mapper) throws X {
+        Objects.requireNonNull(mapper);
+        return isPresent ? Objects.requireNonNull(mapper.apply(value)) : EMPTY;
+    }
+
+    /**
+     * Return the value if present, otherwise return {@code other}.
+     *
+     * @param other the value to be returned if there is no value present
+     * @return the value, if present, otherwise {@code other}
+     */
+    public long orElse(long other) {
+        return isPresent ? value : other;
+    }
+
+    /**
+     * Return the value if present, otherwise invoke {@code other} and return
+     * the result of that invocation.
+     *
+     * @param other a supplier whose result is returned if no value is present
+     * @return the value if present otherwise the result of {@code other.getAsLong()}
+     * @throws NullPointerException if value is not present and {@code other} is
+     * null
+     */
+    public <X extends Exception> long orElseGet(XLongSupplier<X> other) throws X {
+        return isPresent ? value : other.getAsLong();
+    }
+
+    /**
+     * Return the contained value, if present, otherwise throw an exception
+     * to be created by the provided supplier.
+     *
+     * @param <X> Type of the exception to be thrown
+     * @param exceptionSupplier The supplier which will return the exception to
+     * be thrown
+     * @return the present value
+     * @throws X if there is no value present
+     * @throws NullPointerException if no value is present and
+     * {@code exceptionSupplier} is null
+     */
+    public <X extends Throwable> long orElseThrow(Supplier<? extends X> exceptionSupplier) throws X {
+        if (isPresent) {
+            return value;
+        } else {
+            throw exceptionSupplier.get();
+        }
+    }
+
+    /**
+     * Return the contained value, if present, otherwise throw the given
+     * exception.
+     *
+     * @apiNote Unlike {@link #orElseThrow(Supplier)} this does not create
+     * the exception, so when absence is common the exception can be a shared
+     * {@link StacklessException} and throwing it costs little more than
+     * a branch.
+     *
+     * @param <X> Type of the exception to be thrown
+     * @param exception the exception to be thrown, not null
+     * @return the present value
+     * @throws X if there is no value present
+     */
+    public <X extends Throwable> long orElseThrowInstance(X exception) throws X {
+        if (isPresent) {
+            return value;
+        } else {
+            throw exception;
+        }
+    }
+
+    /**
+     * Indicates whether some other object is "equal to" this XOptionalLong. The
+     * other object is considered equal if:
+     * <ul>
+     * <li>it is also {@code XOptionalLong} and;
+     * <li>both instances have no value present or;
+     * <li>the present values are "equal to" each other via {@code ==}.
+     * </ul>
+     *
+     * @param obj an object to be tested for equality
+     * @return {code true} if the other object is "equal to" this object
+     * otherwise {@code false}
+     */
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) {
+            return true;
+        } else if (obj instanceof XOptionalLong) {
+            XOptionalLong other = (XOptionalLong) obj;
+            return isPresent && other.isPresent ? value == other.value : isPresent == other.isPresent;
+        } else {
+            return false;
+        }
+    }
+
+    /**
+     * Returns the hash code value of the present value, if any, or 0 (zero) if
+     * no value is present.
+     *
+     * @return hash code value of the present value or 0 if no value is present
+     */
+    @Override
+    public int hashCode() {
+        return isPresent ? Long.hashCode(value) : 0;
+    }
+
+    /**
+     * Returns a non-empty string representation of this XOptionalLong suitable for
+     * debugging. The exact presentation format is unspecified and may vary
+     * between implementations and versions.
+     *
+     * @return the string representation of this instance
+     */
+    @Override
+    public String toString() {
+        return isPresent ? String.format("XOptionalLong[%s]", value) : "XOptionalLong.empty";
+    }
+}
@@ -0,0 +1,20 @@
+package com.github.jtail.utils.xfn;
+
+/**
+ * Version of {@link java.util.function.Predicate} with exception support.
+ *
+ * @param <T> the type of the input to the predicate
+ * @param <X> the type of the exception thrown by the predicate
+ */
+@FunctionalInterface
+public interface XPredicate<T, X extends Exception> {
+    /**
+     * Evaluates this predicate on the given argument.
+     *
+     * @param t the input argument
+     * @return {@code true} if the input argument matches the predicate,
+     * otherwise {@code false}
+     * @throws X if exception occurs
+     */
+    boolean test(T t) throws X;
+}
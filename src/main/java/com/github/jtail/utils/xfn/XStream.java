@@ -0,0 +1,1036 @@
+package com.github.jtail.utils.xfn;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Objects;
+import java.util.Queue;
+import java.util.Set;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.BiConsumer;
+import java.util.function.BinaryOperator;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+import java.util.stream.Collector;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * A version of {@link java.util.stream.Stream} with exception support.
+ * <p>
+ * Intermediate operations are lazy and fused: when a terminal operation starts, the whole chain is
+ * assembled into a single nest of sinks and the source pushes elements straight through it, so the
+ * stream creates no objects per element. The first exception thrown by any stage stops the pipeline
+ * and reaches the caller of the terminal operation as is, without being wrapped.
+ * <p>
+ * Like {@code Stream}, an instance can only be consumed once. Streams are sequential unless
+ * {@link #parallel(ForkJoinPool)} is requested.
+ *
+ * @param <T> the type of the stream elements
+ * @param <X> the type of the exception that stages of the stream may throw
+ */
+public final class XStream<T, X extends Exception> {
+    private static final Stage<?, ?, ?> IDENTITY = downstream -> downstream;
+
+    /**
+     * Elements of the stream before any of the intermediate operations are applied
+     */
+    private final Spliterator<Object> source;
+
+    /**
+     * All intermediate operations applied so far, fused together
+     */
+    private final Stage<Object, T, X> stage;
+
+    /**
+     * Whether one of the stages may stop consuming elements before the source is exhausted
+     */
+    private final boolean shortCircuit;
+
+    /**
+     * Pool to evaluate the terminal operation in, {@code null} for sequential evaluation
+     */
+    private final ForkJoinPool pool;
+
+    /**
+     * Whether parallel collection has to preserve encounter order
+     */
+    private final boolean ordered;
+
+    /**
+     * Whether the fused stages include a stateful one, so that they cannot be copied per chunk
+     */
+    private final boolean stateful;
+
+    /**
+     * Whether the source is known to be finite, so that a parallel barrier may buffer all of it
+     */
+    private final boolean sized;
+
+    private XStream(Spliterator<Object> source, Stage<Object, T, X> stage, boolean shortCircuit,
+                    ForkJoinPool pool, boolean ordered, boolean stateful, boolean sized) {
+        this.source = source;
+        this.stage = stage;
+        this.shortCircuit = shortCircuit;
+        this.pool = pool;
+        this.ordered = ordered;
+        this.stateful = stateful;
+        this.sized = sized;
+    }
+
+    /**
+     * Returns a stream of the elements reported by the given spliterator.
+     *
+     * @param spliterator source of the elements
+     * @param <T> the type of the stream elements
+     * @param <X> the type of the exception that stages of the stream may throw
+     * @return a new stream
+     */
+    @SuppressWarnings("unchecked")
+    public static <T, X extends Exception> XStream<T, X> from(Spliterator<? extends T> spliterator) {
+        Objects.requireNonNull(spliterator);
+        return new XStream<>((Spliterator<Object>) spliterator, (Stage<Object, T, X>) IDENTITY, false, null, true,
+                false, spliterator.hasCharacteristics(Spliterator.SIZED));
+    }
+
+    /**
+     * Returns a stream of the elements of the given {@code Stream}. The {@code Stream} is consumed lazily,
+     * when the terminal operation of the returned stream is invoked.
+     *
+     * @param stream source of the elements
+     * @param <T> the type of the stream elements
+     * @param <X> the type of the exception that stages of the stream may throw
+     * @return a new stream
+     */
+    public static <T, X extends Exception> XStream<T, X> from(Stream<? extends T> stream) {
+        return from(stream.spliterator());
+    }
+
+    /**
+     * Returns a stream of the elements of the given iterator.
+     *
+     * @param iterator source of the elements
+     * @param <T> the type of the stream elements
+     * @param <X> the type of the exception that stages of the stream may throw
+     * @return a new stream
+     */
+    public static <T, X extends Exception> XStream<T, X> from(Iterator<? extends T> iterator) {
+        return from(Spliterators.spliteratorUnknownSize(iterator, Spliterator.ORDERED));
+    }
+
+    /**
+     * Returns a stream of the elements of the given {@code Iterable}, in its iteration order.
+     *
+     * @param iterable source of the elements
+     * @param <T> the type of the stream elements
+     * @param <X> the type of the exception that stages of the stream may throw
+     * @return a new stream
+     */
+    public static <T, X extends Exception> XStream<T, X> of(Iterable<? extends T> iterable) {
+        return from(iterable.spliterator());
+    }
+
+    /**
+     * Returns a stream of the given values.
+     *
+     * @param values the elements of the stream
+     * @param <T> the type of the stream elements
+     * @param <X> the type of the exception that stages of the stream may throw
+     * @return a new stream
+     */
+    @SafeVarargs
+    @SuppressWarnings("varargs")
+    public static <T, X extends Exception> XStream<T, X> of(T... values) {
+        return from(Arrays.spliterator(values));
+    }
+
+    /**
+     * Returns an empty stream.
+     *
+     * @param <T> the type of the stream elements
+     * @param <X> the type of the exception that stages of the stream may throw
+     * @return an empty stream
+     */
+    public static <T, X extends Exception> XStream<T, X> empty() {
+        return from(Spliterators.<T>emptySpliterator());
+    }
+
+    /**
+     * Returns an infinite stream where each element is produced by the given supplier.
+     * Should be bounded with a short-circuiting operation such as {@link #limit(long)} or {@link #findFirst()}.
+     *
+     * @param supplier the supplier of the elements
+     * @param <T> the type of the stream elements
+     * @param <X> the type of the exception that stages of the stream may throw
+     * @return a new infinite stream
+     */
+    public static <T, X extends Exception> XStream<T, X> generate(XSupplier<? extends T, ? extends X> supplier) {
+        Objects.requireNonNull(supplier);
+        XSupplier<? extends T, RuntimeException> unchecked = unchecked(supplier);
+        return from(new Spliterators.AbstractSpliterator<T>(Long.MAX_VALUE, Spliterator.ORDERED) {
+            @Override
+            public boolean tryAdvance(Consumer<? super T> action) {
+                action.accept(unchecked.get());
+                return true;
+            }
+        });
+    }
+
+    /**
+     * Returns a stream consisting of the results of applying the given function to the elements of this stream.
+     *
+     * @param mapper a function to apply to each element
+     * @param <R> the type of the elements of the new stream
+     * @return the new stream
+     */
+    public <R> XStream<R, X> map(XFunction<? super T, ? extends R, ? extends X> mapper) {
+        Objects.requireNonNull(mapper);
+        return chain(shortCircuit, downstream -> new Chained<T, R, X>(downstream) {
+            @Override
+            void accept(T t) throws X {
+                this.downstream.accept(mapper.apply(t));
+            }
+        });
+    }
+
+    /**
+     * Returns a stream consisting of the elements of this stream that match the given predicate.
+     *
+     * @param predicate a predicate to apply to each element to determine if it should be included
+     * @return the new stream
+     */
+    public XStream<T, X> filter(XPredicate<? super T, ? extends X> predicate) {
+        Objects.requireNonNull(predicate);
+        return chain(shortCircuit, downstream -> new Chained<T, T, X>(downstream) {
+            @Override
+            void accept(T t) throws X {
+                if (predicate.test(t)) {
+                    this.downstream.accept(t);
+                }
+            }
+        });
+    }
+
+    /**
+     * Returns a stream consisting of the results of replacing each element of this stream with the contents
+     * of the stream produced by applying the provided mapping function to it. A {@code null} result is treated
+     * as an empty stream.
+     *
+     * @param mapper a function to apply to each element which produces a stream of new values
+     * @param <R> the type of the elements of the new stream
+     * @return the new stream
+     */
+    public <R> XStream<R, X> flatMap(XFunction<? super T, ? extends XStream<? extends R, X>, ? extends X> mapper) {
+        Objects.requireNonNull(mapper);
+        return chain(shortCircuit, downstream -> new Chained<T, R, X>(downstream) {
+            @Override
+            void accept(T t) throws X {
+                XStream<? extends R, X> inner = mapper.apply(t);
+                if (inner != null) {
+                    inner.push(this.downstream);
+                }
+            }
+        });
+    }
+
+    /**
+     * Returns a stream consisting of the elements of this stream, additionally performing the provided action
+     * on each element as elements are consumed.
+     *
+     * @param action an action to perform on the elements
+     * @return the new stream
+     */
+    public XStream<T, X> peek(XConsumer<? super T, ? extends X> action) {
+        Objects.requireNonNull(action);
+        return chain(shortCircuit, downstream -> new Chained<T, T, X>(downstream) {
+            @Override
+            void accept(T t) throws X {
+                action.accept(t);
+                this.downstream.accept(t);
+            }
+        });
+    }
+
+    /**
+     * Returns a stream consisting of the elements of this stream, truncated to be no longer than
+     * {@code maxSize} in length.
+     *
+     * @param maxSize the number of elements the stream should be limited to
+     * @return the new stream
+     * @throws IllegalArgumentException if {@code maxSize} is negative
+     */
+    public XStream<T, X> limit(long maxSize) {
+        if (maxSize < 0) {
+            throw new IllegalArgumentException(Long.toString(maxSize));
+        }
+        return stateful(true, true, downstream -> new Chained<T, T, X>(downstream) {
+            private long remaining = maxSize;
+
+            @Override
+            void accept(T t) throws X {
+                if (remaining > 0) {
+                    remaining--;
+                    this.downstream.accept(t);
+                }
+            }
+
+            @Override
+            boolean cancellationRequested() {
+                return remaining == 0 || this.downstream.cancellationRequested();
+            }
+        });
+    }
+
+    /**
+     * Returns a stream consisting of the remaining elements of this stream after discarding the first
+     * {@code n} elements.
+     *
+     * @param n the number of leading elements to skip
+     * @return the new stream
+     * @throws IllegalArgumentException if {@code n} is negative
+     */
+    public XStream<T, X> skip(long n) {
+        if (n < 0) {
+            throw new IllegalArgumentException(Long.toString(n));
+        }
+        return stateful(shortCircuit, false, downstream -> new Chained<T, T, X>(downstream) {
+            private long skipped = 0;
+
+            @Override
+            void accept(T t) throws X {
+                if (skipped < n) {
+                    skipped++;
+                } else {
+                    this.downstream.accept(t);
+                }
+            }
+        });
+    }
+
+    /**
+     * Returns a stream consisting of the distinct elements (according to {@link Object#equals(Object)})
+     * of this stream.
+     *
+     * @return the new stream
+     */
+    public XStream<T, X> distinct() {
+        return stateful(shortCircuit, false, downstream -> new Chained<T, T, X>(downstream) {
+            private final Set<T> seen = new HashSet<>();
+
+            @Override
+            void accept(T t) throws X {
+                if (seen.add(t)) {
+                    this.downstream.accept(t);
+                }
+            }
+        });
+    }
+
+    /**
+     * Returns a stream consisting of the elements of this stream, sorted according to the provided
+     * {@code Comparator}. Elements are buffered until the upstream is exhausted.
+     *
+     * @param comparator a comparator to be used to compare stream elements
+     * @return the new stream
+     */
+    public XStream<T, X> sorted(Comparator<? super T> comparator) {
+        Objects.requireNonNull(comparator);
+        return stateful(shortCircuit, false, downstream -> new Chained<T, T, X>(downstream) {
+            private final List<T> buffer = new ArrayList<>();
+
+            @Override
+            void accept(T t) {
+                buffer.add(t);
+            }
+
+            @Override
+            boolean cancellationRequested() {
+                return false;
+            }
+
+            @Override
+            void end() throws X {
+                buffer.sort(comparator);
+                for (T t : buffer) {
+                    if (this.downstream.cancellationRequested()) {
+                        break;
+                    }
+                    this.downstream.accept(t);
+                }
+                this.downstream.end();
+            }
+        });
+    }
+
+    /**
+     * Returns an equivalent stream whose terminal operation is evaluated in parallel on the common
+     * {@link ForkJoinPool}.
+     *
+     * @return a parallel stream
+     * @see #parallel(ForkJoinPool)
+     */
+    public XStream<T, X> parallel() {
+        return parallel(ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Returns an equivalent stream whose terminal operation is evaluated in parallel on the given pool.
+     * <p>
+     * The source is split into chunks, each chunk is pushed through its own copy of the fused stages,
+     * and partial results are combined in encounter order. Actions passed to the stages may be invoked
+     * concurrently from the pool threads.
+     * <p>
+     * The first exception thrown in any chunk cancels all outstanding subtasks; the terminal operation then
+     * rethrows that exception as is, with the failures that raced with it attached as suppressed.
+     * <p>
+     * Stateful stages ({@link #limit}, {@link #skip}, {@link #distinct}, {@link #sorted}) act as barriers:
+     * their upstream is evaluated in parallel and buffered, the stage itself runs sequentially, and
+     * the stages after it are parallel again. Stateful stages applied before this method are evaluated
+     * sequentially the same way. A source of unknown size may be infinite and is never buffered as a whole:
+     * its stateful stages and the ones after them are evaluated sequentially, up to a {@link #limit}, after
+     * which the stages are parallel again. {@link #findFirst()} is always evaluated sequentially.
+     *
+     * @param pool the pool to run the subtasks in
+     * @return a parallel stream
+     */
+    public XStream<T, X> parallel(ForkJoinPool pool) {
+        Objects.requireNonNull(pool);
+        if (stateful && sized) {
+            XStream<T, X> prefix = sequential();
+            return barrier(pool, prefix::toList);
+        }
+        return new XStream<>(source, stage, shortCircuit, pool, ordered, stateful, sized);
+    }
+
+    /**
+     * Returns an equivalent stream that is evaluated sequentially, in the calling thread.
+     *
+     * @return a sequential stream
+     */
+    public XStream<T, X> sequential() {
+        return new XStream<>(source, stage, shortCircuit, null, ordered, stateful, sized);
+    }
+
+    /**
+     * Returns an equivalent stream that does not need to preserve encounter order when collected.
+     * In parallel mode this lets {@link #collect(Collector)} accumulate concurrent collectors into a single
+     * shared container instead of merging per-chunk containers.
+     *
+     * @return an unordered stream
+     */
+    public XStream<T, X> unordered() {
+        return new XStream<>(source, stage, shortCircuit, pool, false, stateful, sized);
+    }
+
+    /**
+     * @return {@code true} if terminal operation of this stream would be evaluated in parallel
+     */
+    public boolean isParallel() {
+        return pool != null;
+    }
+
+    /**
+     * Performs an action for each element of this stream. Sequential stream performs the action in encounter
+     * order, parallel one performs it concurrently, in no particular order.
+     *
+     * @param action an action to perform on the elements
+     * @throws X if any of the stages or the action throws
+     */
+    public void forEach(XConsumer<? super T, ? extends X> action) throws X {
+        Objects.requireNonNull(action);
+        evaluate(() -> new Leaf<T, Void, X>(null) {
+            @Override
+            void accept(T t) throws X {
+                action.accept(t);
+            }
+        }, (left, right) -> null, false);
+    }
+
+    /**
+     * Performs a reduction on the elements of this stream, using the provided identity value and an
+     * associative accumulation function, and returns the reduced value.
+     *
+     * @param identity the identity value for the accumulating function
+     * @param accumulator a function for combining two values
+     * @return the result of the reduction
+     * @throws X if any of the stages or the accumulator throws
+     */
+    public T reduce(T identity, XBiFunction<T, ? super T, T, ? extends X> accumulator) throws X {
+        Objects.requireNonNull(accumulator);
+        return evaluate(() -> new Leaf<T, T, X>(identity) {
+            @Override
+            void accept(T t) throws X {
+                result = accumulator.apply(result, t);
+            }
+        }, accumulator::apply, false);
+    }
+
+    /**
+     * Performs a reduction on the elements of this stream, using an associative accumulation function,
+     * and returns {@code XOptional} describing the reduced value, if any.
+     *
+     * @param accumulator a function for combining two values
+     * @return the result of the reduction, or an empty {@code XOptional} if the stream is empty
+     * @throws X if any of the stages or the accumulator throws
+     */
+    public XOptional<T> reduce(XBiFunction<T, ? super T, T, ? extends X> accumulator) throws X {
+        Objects.requireNonNull(accumulator);
+        return XOptional.ofNullable(evaluate(() -> new Leaf<T, T, X>(null) {
+            @Override
+            void accept(T t) throws X {
+                result = result == null ? t : accumulator.apply(result, t);
+            }
+        }, (left, right) -> left == null ? right : right == null ? left : accumulator.apply(left, right), false));
+    }
+
+    /**
+     * Performs a mutable reduction on the elements of this stream using a {@code Collector}.
+     * Parallel stream merges per-chunk containers in encounter order. A concurrent collector which is unordered,
+     * or used on an {@link #unordered()} stream, has all chunks accumulate into a single shared container instead.
+     *
+     * @param collector the {@code Collector} describing the reduction
+     * @param <A> the intermediate accumulation type of the {@code Collector}
+     * @param <R> the type of the result
+     * @return the result of the reduction
+     * @throws X if any of the stages throws
+     */
+    public <R, A> R collect(Collector<? super T, A, R> collector) throws X {
+        Set<Collector.Characteristics> characteristics = collector.characteristics();
+        Supplier<A> supplier = collector.supplier();
+        BiConsumer<A, ? super T> accumulator = collector.accumulator();
+        A container;
+        if (pool != null && characteristics.contains(Collector.Characteristics.CONCURRENT)
+                && (!ordered || characteristics.contains(Collector.Characteristics.UNORDERED))) {
+            A shared = supplier.get();
+            container = evaluate(() -> new Leaf<T, A, X>(shared) {
+                @Override
+                void accept(T t) {
+                    accumulator.accept(result, t);
+                }
+            }, (left, right) -> shared, false);
+        } else {
+            BinaryOperator<A> combiner = collector.combiner();
+            container = evaluate(() -> new Leaf<T, A, X>(supplier.get()) {
+                @Override
+                void accept(T t) {
+                    accumulator.accept(result, t);
+                }
+            }, combiner::apply, false);
+        }
+        return finish(collector, container);
+    }
+
+    /**
+     * Accumulates the elements of this stream into a new {@code List}, in encounter order.
+     *
+     * @return a list with the elements of this stream
+     * @throws X if any of the stages throws
+     */
+    public List<T> toList() throws X {
+        return collect(Collectors.toList());
+    }
+
+    /**
+     * Accumulates the elements of this stream into the given collection.
+     *
+     * @param collection the collection to add elements to
+     * @param <C> the type of the collection
+     * @return the given collection
+     * @throws X if any of the stages throws
+     */
+    public <C extends Collection<? super T>> C into(C collection) throws X {
+        if (pool != null) {
+            collection.addAll(toList());
+        } else {
+            forEach(collection::add);
+        }
+        return collection;
+    }
+
+    /**
+     * Returns the count of elements in this stream.
+     *
+     * @return the count of elements in this stream
+     * @throws X if any of the stages throws
+     */
+    public long count() throws X {
+        return evaluate(() -> new Leaf<T, Long, X>(null) {
+            private long count;
+
+            @Override
+            void accept(T t) {
+                count++;
+            }
+
+            @Override
+            void end() {
+                result = count;
+            }
+        }, Long::sum, false);
+    }
+
+    /**
+     * Returns the minimum element of this stream according to the provided {@code Comparator}.
+     *
+     * @param comparator a comparator to compare elements of this stream
+     * @return {@code XOptional} describing the minimum element, or an empty {@code XOptional} if the stream is empty
+     * @throws X if any of the stages throws
+     */
+    public XOptional<T> min(Comparator<? super T> comparator) throws X {
+        Objects.requireNonNull(comparator);
+        return reduce((a, b) -> comparator.compare(a, b) <= 0 ? a : b);
+    }
+
+    /**
+     * Returns the maximum element of this stream according to the provided {@code Comparator}.
+     *
+     * @param comparator a comparator to compare elements of this stream
+     * @return {@code XOptional} describing the maximum element, or an empty {@code XOptional} if the stream is empty
+     * @throws X if any of the stages throws
+     */
+    public XOptional<T> max(Comparator<? super T> comparator) throws X {
+        Objects.requireNonNull(comparator);
+        return reduce((a, b) -> comparator.compare(a, b) >= 0 ? a : b);
+    }
+
+    /**
+     * Returns {@code XOptional} describing the first element of this stream, or an empty {@code XOptional}
+     * if the stream is empty. The upstream is not consumed past the first element.
+     *
+     * @return {@code XOptional} describing the first element of this stream
+     * @throws X if any of the stages throws
+     * @throws NullPointerException if the element selected is null
+     */
+    public XOptional<T> findFirst() throws X {
+        return XOptional.ofNullable(evaluate(() -> new Leaf<T, T, X>(null) {
+            @Override
+            void accept(T t) {
+                result = Objects.requireNonNull(t);
+                stop(false);
+            }
+        }, null, true));
+    }
+
+    /**
+     * Returns whether any elements of this stream match the provided predicate.
+     * The upstream is not consumed past the first matching element.
+     *
+     * @param predicate a predicate to apply to elements of this stream
+     * @return {@code true} if any elements of the stream match the provided predicate, otherwise {@code false}
+     * @throws X if any of the stages or the predicate throws
+     */
+    public boolean anyMatch(XPredicate<? super T, ? extends X> predicate) throws X {
+        return match(predicate, true);
+    }
+
+    /**
+     * Returns whether all elements of this stream match the provided predicate.
+     * The upstream is not consumed past the first mismatching element.
+     *
+     * @param predicate a predicate to apply to elements of this stream
+     * @return {@code true} if either all elements of the stream match the provided predicate or the stream is empty,
+     * otherwise {@code false}
+     * @throws X if any of the stages or the predicate throws
+     */
+    public boolean allMatch(XPredicate<? super T, ? extends X> predicate) throws X {
+        return !match(predicate, false);
+    }
+
+    /**
+     * Returns whether no elements of this stream match the provided predicate.
+     * The upstream is not consumed past the first matching element.
+     *
+     * @param predicate a predicate to apply to elements of this stream
+     * @return {@code true} if either no elements of the stream match the provided predicate or the stream is empty,
+     * otherwise {@code false}
+     * @throws X if any of the stages or the predicate throws
+     */
+    public boolean noneMatch(XPredicate<? super T, ? extends X> predicate) throws X {
+        return !match(predicate, true);
+    }
+
+    /**
+     * Looks for an element on which predicate evaluates to {@code expected}, stopping all chunks once it is found.
+     */
+    private boolean match(XPredicate<? super T, ? extends X> predicate, boolean expected) throws X {
+        Objects.requireNonNull(predicate);
+        Boolean found = evaluate(() -> new Leaf<T, Boolean, X>(Boolean.FALSE) {
+            @Override
+            void accept(T t) throws X {
+                if (predicate.test(t) == expected) {
+                    result = Boolean.TRUE;
+                    stop(true);
+                }
+            }
+        }, (left, right) -> left || right, true);
+        // a chunk which found the match cancels the others, so the combined result may be lost
+        return found == null || found;
+    }
+
+    /**
+     * Appends a stage to this stream.
+     */
+    private <R> XStream<R, X> chain(boolean shortCircuit, Stage<T, R, X> next) {
+        return chain(shortCircuit, stateful, next);
+    }
+
+    private <R> XStream<R, X> chain(boolean shortCircuit, boolean stateful, Stage<T, R, X> next) {
+        Stage<Object, T, X> upstream = stage;
+        return new XStream<>(source, downstream -> upstream.wrap(next.wrap(downstream)), shortCircuit, pool, ordered,
+                stateful, sized);
+    }
+
+    /**
+     * Appends a stage which needs to see all elements in encounter order. In parallel mode the upstream is
+     * evaluated and buffered first, then the stage is applied sequentially to the buffer, which becomes
+     * the source for the remaining stages. The upstream of a source of unknown size is evaluated sequentially
+     * instead, and only a {@code limiting} stage, which stops pulling elements, ends with a barrier.
+     */
+    private XStream<T, X> stateful(boolean shortCircuit, boolean limiting, Stage<T, T, X> next) {
+        if (pool == null || !sized && !limiting) {
+            return chain(shortCircuit, true, next);
+        }
+        XStream<T, X> upstream = this;
+        if (!sized) {
+            return barrier(pool, () -> upstream.sequential().chain(shortCircuit, next).toList());
+        }
+        return barrier(pool, () -> XStream.<T, X>of(upstream.toList()).chain(shortCircuit, next).toList());
+    }
+
+    /**
+     * Returns a parallel stream of the buffer computed on first use.
+     */
+    private XStream<T, X> barrier(ForkJoinPool pool, XSupplier<List<T>, ? extends X> buffer) {
+        @SuppressWarnings("unchecked")
+        Spliterator<Object> source = (Spliterator<Object>) (Spliterator<?>) new Deferred<T>(
+                () -> buffer.get().spliterator());
+        @SuppressWarnings("unchecked")
+        Stage<Object, T, X> identity = (Stage<Object, T, X>) IDENTITY;
+        return new XStream<>(source, identity, false, pool, ordered, false, true);
+    }
+
+    /**
+     * Runs the pipeline into the terminal sinks created by {@code leaves}. Sequential stream uses a single
+     * sink, parallel one creates a sink per chunk and merges partial results with the {@code combiner}.
+     * Operations without a combiner, and stateful stages of a source of unknown size, are always evaluated
+     * sequentially.
+     */
+    private <R> R evaluate(Supplier<? extends Leaf<T, R, X>> leaves,
+                           XBiFunction<R, R, R, ? extends X> combiner,
+                           boolean shortCircuit) throws X {
+        if (pool == null || combiner == null || stateful) {
+            Leaf<T, R, X> leaf = leaves.get();
+            Sink<Object, X> sink = stage.wrap(leaf);
+            drive(source, sink, shortCircuit || this.shortCircuit);
+            sink.end();
+            return leaf.result;
+        }
+        return new Parallel<>(pool, stage, leaves, combiner).invoke(source);
+    }
+
+    /**
+     * Pushes all elements of this stream into a sink of some other stream, as {@link #flatMap} does.
+     * Inner stages are ended, but the outer sink is not.
+     */
+    private void push(Sink<? super T, X> outer) throws X {
+        Sink<Object, X> sink = stage.wrap(new Chained<T, T, X>(outer) {
+            @Override
+            void accept(T t) throws X {
+                this.downstream.accept(t);
+            }
+
+            @Override
+            void end() {
+            }
+        });
+        drive(source, sink, true);
+        sink.end();
+    }
+
+    /**
+     * Feeds elements of the source into the sink until either is exhausted.
+     * Checked exceptions raised by the sink pass through the source untouched, since they are not visible
+     * to the compiler at this point.
+     */
+    private static void drive(Spliterator<Object> source, Sink<Object, ?> sink, boolean shortCircuit) {
+        Sink<Object, RuntimeException> unchecked = unchecked(sink);
+        Consumer<Object> consumer = unchecked::accept;
+        if (shortCircuit) {
+            //noinspection StatementWithEmptyBody
+            while (!sink.cancellationRequested() && source.tryAdvance(consumer)) {
+            }
+        } else {
+            source.forEachRemaining(consumer);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <R, A> R finish(Collector<?, A, R> collector, A container) {
+        return collector.characteristics().contains(Collector.Characteristics.IDENTITY_FINISH)
+                ? (R) container
+                : collector.finisher().apply(container);
+    }
+
+    /**
+     * Erases exception type of a sink, used to pass it through the interfaces that do not declare exceptions.
+     */
+    @SuppressWarnings("unchecked")
+    private static <T> Sink<T, RuntimeException> unchecked(Sink<T, ?> sink) {
+        return (Sink<T, RuntimeException>) sink;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> XSupplier<T, RuntimeException> unchecked(XSupplier<T, ?> supplier) {
+        return (XSupplier<T, RuntimeException>) supplier;
+    }
+
+    /**
+     * Rethrows a failure captured in a pool thread.
+     */
+    @SuppressWarnings("unchecked")
+    private static <X extends Exception> X raise(Throwable failure) throws X {
+        if (failure instanceof Error) {
+            throw (Error) failure;
+        }
+        throw (X) failure;
+    }
+
+    /**
+     * Intermediate operation, represented as a transformation of the downstream sink into the upstream one.
+     */
+    @FunctionalInterface
+    private interface Stage<S, T, X extends Exception> {
+        Sink<S, X> wrap(Sink<? super T, X> downstream);
+    }
+
+    /**
+     * Receiver of the stream elements.
+     */
+    private abstract static class Sink<T, X extends Exception> {
+        abstract void accept(T t) throws X;
+
+        /**
+         * @return {@code true} if no more elements are wanted
+         */
+        boolean cancellationRequested() {
+            return false;
+        }
+
+        /**
+         * Signals that no more elements will be pushed.
+         */
+        void end() throws X {
+        }
+    }
+
+    /**
+     * Sink of an intermediate operation which forwards elements to the downstream sink.
+     */
+    private abstract static class Chained<T, R, X extends Exception> extends Sink<T, X> {
+        final Sink<? super R, X> downstream;
+
+        Chained(Sink<? super R, X> downstream) {
+            this.downstream = Objects.requireNonNull(downstream);
+        }
+
+        @Override
+        boolean cancellationRequested() {
+            return downstream.cancellationRequested();
+        }
+
+        @Override
+        void end() throws X {
+            downstream.end();
+        }
+    }
+
+    /**
+     * Terminal sink which accumulates the result of a whole sequential stream or of a single chunk
+     * of a parallel one.
+     */
+    private abstract static class Leaf<T, R, X extends Exception> extends Sink<T, X> {
+        R result;
+        private boolean done;
+        private Parallel<?, ?, ?> parallel;
+
+        Leaf(R initial) {
+            this.result = initial;
+        }
+
+        @Override
+        boolean cancellationRequested() {
+            return done || parallel != null && parallel.cancelled;
+        }
+
+        /**
+         * Stops consuming elements in this sink, and in all other chunks if {@code global} is set.
+         */
+        void stop(boolean global) {
+            done = true;
+            if (global && parallel != null) {
+                parallel.cancel();
+            }
+        }
+    }
+
+    /**
+     * Parallel evaluation of a terminal operation with first-failure cancellation.
+     */
+    private static final class Parallel<T, R, X extends Exception> {
+        private final ForkJoinPool pool;
+        private final Stage<Object, T, X> stage;
+        private final Supplier<? extends Leaf<T, R, X>> leaves;
+        private final XBiFunction<R, R, R, ? extends X> combiner;
+        private final AtomicReference<Throwable> failure = new AtomicReference<>();
+        private final Queue<Throwable> suppressed = new ConcurrentLinkedQueue<>();
+        private final Queue<ForkJoinTask<?>> forked = new ConcurrentLinkedQueue<>();
+        private volatile boolean cancelled;
+        private long threshold;
+
+        Parallel(ForkJoinPool pool, Stage<Object, T, X> stage,
+                 Supplier<? extends Leaf<T, R, X>> leaves, XBiFunction<R, R, R, ? extends X> combiner) {
+            this.pool = pool;
+            this.stage = stage;
+            this.leaves = leaves;
+            this.combiner = combiner;
+        }
+
+        R invoke(Spliterator<Object> source) throws X {
+            threshold = Math.max(1, source.estimateSize() / ((long) pool.getParallelism() << 2));
+            R result = pool.invoke(new Task(source));
+            Throwable first = failure.get();
+            if (first != null) {
+                Set<Throwable> seen = Collections.newSetFromMap(new IdentityHashMap<>());
+                seen.add(first);
+                for (Throwable other : suppressed) {
+                    if (seen.add(other)) {
+                        first.addSuppressed(other);
+                    }
+                }
+                throw XStream.<X>raise(first);
+            }
+            return result;
+        }
+
+        void fail(Throwable t) {
+            if (!failure.compareAndSet(null, t)) {
+                suppressed.add(t);
+            }
+            cancel();
+        }
+
+        void cancel() {
+            cancelled = true;
+            for (ForkJoinTask<?> task : forked) {
+                task.cancel(false);
+            }
+        }
+
+        private final class Task extends RecursiveTask<R> {
+            private static final long serialVersionUID = 1L;
+
+            private final Spliterator<Object> spliterator;
+
+            Task(Spliterator<Object> spliterator) {
+                this.spliterator = spliterator;
+            }
+
+            @Override
+            protected R compute() {
+                try {
+                    if (cancelled) {
+                        return null;
+                    }
+                    Spliterator<Object> prefix;
+                    if (spliterator.estimateSize() > threshold && (prefix = spliterator.trySplit()) != null) {
+                        Task right = new Task(spliterator);
+                        forked.add(right);
+                        right.fork();
+                        R left = new Task(prefix).compute();
+                        R rest = join(right);
+                        return cancelled ? null : combiner.apply(left, rest);
+                    }
+                    Leaf<T, R, X> leaf = leaves.get();
+                    leaf.parallel = Parallel.this;
+                    Sink<Object, X> sink = stage.wrap(leaf);
+                    drive(spliterator, sink, true);
+                    sink.end();
+                    return leaf.result;
+                } catch (Throwable t) {
+                    fail(t);
+                    return null;
+                }
+            }
+
+            private R join(Task task) {
+                try {
+                    return task.join();
+                } catch (CancellationException e) {
+                    return null;
+                }
+            }
+        }
+    }
+
+    /**
+     * Spliterator which is computed on first use, keeps stateful stages of parallel streams lazy.
+     */
+    private static final class Deferred<T> implements Spliterator<T> {
+        private final XSupplier<Spliterator<T>, RuntimeException> supplier;
+        private Spliterator<T> delegate;
+
+        Deferred(XSupplier<Spliterator<T>, ?> supplier) {
+            this.supplier = unchecked(supplier);
+        }
+
+        private Spliterator<T> get() {
+            if (delegate == null) {
+                delegate = supplier.get();
+            }
+            return delegate;
+        }
+
+        @Override
+        public boolean tryAdvance(Consumer<? super T> action) {
+            return get().tryAdvance(action);
+        }
+
+        @Override
+        public void forEachRemaining(Consumer<? super T> action) {
+            get().forEachRemaining(action);
+        }
+
+        @Override
+        public Spliterator<T> trySplit() {
+            return get().trySplit();
+        }
+
+        @Override
+        public long estimateSize() {
+            return get().estimateSize();
+        }
+
+        @Override
+        public int characteristics() {
+            return get().characteristics();
+        }
+
+        @Override
+        public Comparator<? super T> getComparator() {
+            return get().getComparator();
+        }
+    }
+}
@@ -0,0 +1,19 @@
+package com.github.jtail.utils.xfn;
+
+/**
+ * Version of {@link java.util.function.ToDoubleFunction} with exception support.
+ *
+ * @param <T> the type of the input to the function
+ * @param <X> the type of the exception thrown by the function
+ */
+@FunctionalInterface
+public interface XToDoubleFunction<T, X extends Exception> {
+    /**
+     * Applies this function to the given argument.
+     *
+     * @param t the function argument
+     * @return the function result
+     * @throws X if exception occurs
+     */
+    double applyAsDouble(T t) throws X;
+}
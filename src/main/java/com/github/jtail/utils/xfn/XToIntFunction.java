@@ -0,0 +1,19 @@
+package com.github.jtail.utils.xfn;
+
+/**
+ * Version of {@link java.util.function.ToIntFunction} with exception support.
+ *
+ * @param <T> the type of the input to the function
+ * @param <X> the type of the exception thrown by the function
+ */
+@FunctionalInterface
+public interface XToIntFunction<T, X extends Exception> {
+    /**
+     * Applies this function to the given argument.
+     *
+     * @param t the function argument
+     * @return the function result
+     * @throws X if exception occurs
+     */
+    int applyAsInt(T t) throws X;
+}
@@ -0,0 +1,304 @@
+package com.github.jtail.utils.xfn;
+
+import java.lang.reflect.UndeclaredThrowableException;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.function.Function;
+
+/**
+ * Outcome of a computation which either produced a value or failed with an exception of type {@code X}.
+ * <p>
+ * A companion to {@link XOptional} for code where failures are common enough that throwing and catching them
+ * costs too much, like per-record validation in bulk processing: the failure is passed along as a value, and
+ * thrown at most once, by {@link #get()}. On the success path nothing is allocated beyond the {@code XTry} itself.
+ * <p>
+ * Only checked exceptions are captured by default, unchecked ones are programming errors and propagate.
+ * A factory taking the exception class captures exactly the instances of that class, checked or not.
+ *
+ * @param <T> the type of the value
+ * @param <X> the type of the exception
+ */
+public final class XTry<T, X extends Exception> {
+    /**
+     * The value, meaningless if there is a failure
+     */
+    private final T value;
+
+    /**
+     * If non-null, the exception; if null, indicates success
+     */
+    private final X failure;
+
+    private XTry(T value, X failure) {
+        this.value = value;
+        this.failure = failure;
+    }
+
+    /**
+     * @param value the value, may be null
+     * @param <T> the type of the value
+     * @param <X> the type of the exception
+     * @return successful {@code XTry} holding the value
+     */
+    public static <T, X extends Exception> XTry<T, X> success(T value) {
+        return new XTry<>(value, null);
+    }
+
+    /**
+     * @param failure the exception, not null
+     * @param <T> the type of the value
+     * @param <X> the type of the exception
+     * @return failed {@code XTry} holding the exception
+     */
+    public static <T, X extends Exception> XTry<T, X> failure(X failure) {
+        return new XTry<>(null, Objects.requireNonNull(failure));
+    }
+
+    /**
+     * Invokes the supplier and captures its result or its checked exception.
+     *
+     * @param supplier computation to run
+     * @param <T> the type of the value
+     * @param <X> the type of the exception
+     * @return outcome of the computation
+     */
+    public static <T, X extends Exception> XTry<T, X> of(XSupplier<? extends T, ? extends X> supplier) {
+        try {
+            return success(supplier.get());
+        } catch (Exception e) {
+            return XTry.<T, X>capture(e);
+        }
+    }
+
+    /**
+     * Invokes the supplier and captures its result or its exception of the given class.
+     * Other exceptions propagate.
+     *
+     * @param type class of the exceptions to capture, may be unchecked
+     * @param supplier computation to run
+     * @param <T> the type of the value
+     * @param <X> the type of the exception
+     * @return outcome of the computation
+     */
+    public static <T, X extends Exception> XTry<T, X> of(Class<X> type, XSupplier<? extends T, ? extends X> supplier) {
+        Objects.requireNonNull(type);
+        try {
+            return success(supplier.get());
+        } catch (Exception e) {
+            if (type.isInstance(e)) {
+                return failure(type.cast(e));
+            }
+            if (e instanceof RuntimeException) {
+                throw (RuntimeException) e;
+            }
+            throw new UndeclaredThrowableException(e);
+        }
+    }
+
+    /**
+     * Invokes the callable and captures its result or its checked exception.
+     *
+     * @param callable computation to run
+     * @param <T> the type of the value
+     * @param <X> the type of the exception
+     * @return outcome of the computation
+     */
+    public static <T, X extends Exception> XTry<T, X> call(XCallable<? extends T, ? extends X> callable) {
+        try {
+            return success(callable.call());
+        } catch (Exception e) {
+            return XTry.<T, X>capture(e);
+        }
+    }
+
+    /**
+     * @return {@code true} if there is a value
+     */
+    public boolean isSuccess() {
+        return failure == null;
+    }
+
+    /**
+     * @return {@code true} if there is an exception
+     */
+    public boolean isFailure() {
+        return failure != null;
+    }
+
+    /**
+     * Returns the value or throws the exception.
+     *
+     * @return the value, may be null
+     * @throws X the captured exception
+     */
+    public T get() throws X {
+        if (failure != null) {
+            throw failure;
+        }
+        return value;
+    }
+
+    /**
+     * @return the captured exception
+     * @throws NoSuchElementException if this is a success
+     */
+    public X getFailure() {
+        if (failure == null) {
+            throw new NoSuchElementException("No failure present");
+        }
+        return failure;
+    }
+
+    /**
+     * If this is a success, applies the mapping function to the value and captures the outcome,
+     * otherwise returns this failure.
+     *
+     * @param mapper a mapping function to apply to the value, if present
+     * @param <U> the type of the result of the mapping function
+     * @return outcome of the mapping function, or this failure
+     */
+    @SuppressWarnings("unchecked")
+    public <U> XTry<U, X> map(XFunction<? super T, ? extends U, ? extends X> mapper) {
+        Objects.requireNonNull(mapper);
+        if (failure != null) {
+            return (XTry<U, X>) this;
+        }
+        try {
+            return success(mapper.apply(value));
+        } catch (Exception e) {
+            return XTry.<U, X>capture(e);
+        }
+    }
+
+    /**
+     * If this is a success, applies the {@code XTry}-bearing mapping function to the value,
+     * otherwise returns this failure.
+     *
+     * @param mapper a mapping function to apply to the value, if present
+     * @param <U> the type of the value of the {@code XTry} returned by the mapping function
+     * @return the result of the mapping function, or this failure
+     * @throws NullPointerException if the mapping function returns null
+     */
+    @SuppressWarnings("unchecked")
+    public <U> XTry<U, X> flatMap(XFunction<? super T, XTry<U, X>, ? extends X> mapper) {
+        Objects.requireNonNull(mapper);
+        if (failure != null) {
+            return (XTry<U, X>) this;
+        }
+        try {
+            return Objects.requireNonNull(mapper.apply(value));
+        } catch (Exception e) {
+            return XTry.<U, X>capture(e);
+        }
+    }
+
+    /**
+     * If this is a failure, applies the recovery function to the exception and captures the outcome,
+     * otherwise returns this success.
+     *
+     * @param recovery a function computing a value from the exception
+     * @return this success, or the outcome of the recovery function
+     */
+    public XTry<T, X> recover(XFunction<? super X, ? extends T, ? extends X> recovery) {
+        Objects.requireNonNull(recovery);
+        if (failure == null) {
+            return this;
+        }
+        try {
+            return success(recovery.apply(failure));
+        } catch (Exception e) {
+            return XTry.<T, X>capture(e);
+        }
+    }
+
+    /**
+     * If this is a failure, translates the exception, otherwise returns this success.
+     *
+     * @param translation a function translating the exception, must not return null
+     * @param <Y> the type of the translated exception
+     * @return this success, or a failure with the translated exception
+     */
+    @SuppressWarnings("unchecked")
+    public <Y extends Exception> XTry<T, Y> mapFailure(Function<? super X, ? extends Y> translation) {
+        Objects.requireNonNull(translation);
+        return failure == null ? (XTry<T, Y>) this : failure(translation.apply(failure));
+    }
+
+    /**
+     * If this is a success, invokes the consumer with the value.
+     *
+     * @param consumer block to be executed if there is a value
+     * @param <Y> the type of the exception thrown by the consumer
+     * @return this
+     */
+    public <Y extends Exception> XTry<T, X> ifSuccess(XConsumer<? super T, Y> consumer) throws Y {
+        if (failure == null) {
+            consumer.accept(value);
+        }
+        return this;
+    }
+
+    /**
+     * If this is a failure, invokes the consumer with the exception.
+     *
+     * @param consumer block to be executed if there is an exception
+     * @param <Y> the type of the exception thrown by the consumer
+     * @return this
+     */
+    public <Y extends Exception> XTry<T, X> ifFailure(XConsumer<? super X, Y> consumer) throws Y {
+        if (failure != null) {
+            consumer.accept(failure);
+        }
+        return this;
+    }
+
+    /**
+     * @param other the value to be returned if this is a failure, may be null
+     * @return the value if this is a success, otherwise {@code other}
+     */
+    public T orElse(T other) {
+        return failure == null ? value : other;
+    }
+
+    /**
+     * Converts to {@code XOptional}, discarding the exception.
+     *
+     * @return {@code XOptional} describing the value, empty if it is null or this is a failure
+     */
+    public XOptional<T> toOptional() {
+        return failure == null ? XOptional.ofNullable(value) : XOptional.empty();
+    }
+
+    /**
+     * Captures an exception thrown by a function declared to throw {@code X}, letting unchecked ones propagate.
+     */
+    @SuppressWarnings("unchecked")
+    private static <T, X extends Exception> XTry<T, X> capture(Exception e) {
+        if (e instanceof RuntimeException) {
+            throw (RuntimeException) e;
+        }
+        return failure((X) e);
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) {
+            return true;
+        } else if (obj instanceof XTry) {
+            XTry<?, ?> other = (XTry<?, ?>) obj;
+            return Objects.equals(value, other.value) && Objects.equals(failure, other.failure);
+        } else {
+            return false;
+        }
+    }
+
+    @Override
+    public int hashCode() {
+        return failure == null ? Objects.hashCode(value) : ~failure.hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return failure == null ? String.format("XTry.success[%s]", value) : String.format("XTry.failure[%s]", failure);
+    }
+}
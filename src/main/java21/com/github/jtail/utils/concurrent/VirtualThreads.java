@@ -0,0 +1,31 @@
+package com.github.jtail.utils.concurrent;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Creates executors which start a thread per task.
+ * <p>
+ * This is the Java 21 variant of the class, packaged into {@code META-INF/versions/21} of the multi-release jar:
+ * every task runs on a new virtual thread, so blocking calls park the virtual thread instead of holding
+ * a platform one.
+ */
+final class VirtualThreads {
+    private VirtualThreads() {
+    }
+
+    /**
+     * @return {@code true} if the executors run tasks on virtual threads
+     */
+    static boolean isSupported() {
+        return true;
+    }
+
+    /**
+     * @param prefix name prefix of the threads
+     * @return executor starting a virtual thread for each task
+     */
+    static ExecutorService newExecutor(String prefix) {
+        return Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name(prefix, 0).factory());
+    }
+}
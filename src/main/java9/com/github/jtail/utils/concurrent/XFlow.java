@@ -0,0 +1,504 @@
+package com.github.jtail.utils.concurrent;
+
+import com.github.jtail.utils.xfn.XConsumer;
+import com.github.jtail.utils.xfn.XFunction;
+import com.github.jtail.utils.xfn.XSupplier;
+
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Flow;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Bridges the X-interfaces to the reactive streams of {@link Flow}, keeping their exceptions and backpressure.
+ * <p>
+ * Suppliers become cold publishers: nothing is called before a subscriber requests items, each subscriber gets its
+ * own calls, and no more calls are made than items requested. Functions become processors with an asynchronous
+ * boundary: items from upstream are requested {@code prefetch} at a time and buffered in a bounded
+ * {@link RingBuffer}, then mapped and passed downstream on an executor as downstream demand allows. Once three
+ * quarters of a prefetch batch have been mapped they are requested again in one call, so a slow subscriber holds
+ * up at most {@code prefetch} buffered items and a fast one is not held up by a request per item.
+ * <p>
+ * An exception thrown by a supplier, function or consumer is signalled with {@code onError} and the upstream
+ * subscription is cancelled. These classes are only built on Java 9 and later, and are published separately with
+ * the {@code java9} classifier.
+ * <pre>{@code
+ * Flow.Processor<Order, Invoice> invoicing = XFlow.builder().prefetch(64).processor(billing::invoice);
+ * orders.subscribe(invoicing);
+ * XFlow.consume(invoicing, ledger::post).get();
+ * }</pre>
+ */
+public final class XFlow {
+    private static final Flow.Subscription CANCELLED = new Flow.Subscription() {
+        @Override
+        public void request(long n) {
+        }
+
+        @Override
+        public void cancel() {
+        }
+    };
+
+    private XFlow() {
+    }
+
+    /**
+     * @return builder of processors and subscribers with a custom prefetch or executor
+     */
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * Creates a publisher of the single value of the supplier, called once per subscriber when it first requests
+     * items. A {@code null} value completes the stream without items.
+     *
+     * @param supplier supplier of the value
+     * @param <T> the type of the value
+     * @return a cold publisher of one value
+     */
+    public static <T> Flow.Publisher<T> publisher(XSupplier<? extends T, ?> supplier) {
+        Objects.requireNonNull(supplier);
+        return subscriber -> subscriber.onSubscribe(new SupplierSubscription<>(subscriber, supplier, true));
+    }
+
+    /**
+     * Creates a publisher of the values of the supplier, called once per item requested until it returns
+     * {@code null}, which completes the stream. The supplier is called on the thread requesting the items.
+     *
+     * @param supplier supplier of the values, called from one thread at a time per subscriber
+     * @param <T> the type of the values
+     * @return a cold publisher of the values
+     */
+    public static <T> Flow.Publisher<T> generate(XSupplier<? extends T, ?> supplier) {
+        Objects.requireNonNull(supplier);
+        return subscriber -> subscriber.onSubscribe(new SupplierSubscription<>(subscriber, supplier, false));
+    }
+
+    /**
+     * Creates a processor mapping items with the function, with the default prefetch on the common pool.
+     *
+     * @param function function mapping the items, a {@code null} result drops the item
+     * @param <T> the type of items received
+     * @param <R> the type of items published
+     * @return a new processor, to be subscribed by a single subscriber
+     * @see Builder#processor(XFunction)
+     */
+    public static <T, R> Flow.Processor<T, R> processor(XFunction<? super T, ? extends R, ?> function) {
+        return builder().processor(function);
+    }
+
+    /**
+     * Subscribes the consumer to the publisher, with the default prefetch.
+     *
+     * @param publisher the publisher
+     * @param consumer consumer of the items, called on the threads of the publisher
+     * @param <T> the type of items
+     * @return future completed when the stream completes, or exceptionally when it or the consumer fails
+     * @see Builder#consume(Flow.Publisher, XConsumer)
+     */
+    public static <T> CompletableFuture<Void> consume(Flow.Publisher<? extends T> publisher,
+                                                      XConsumer<? super T, ?> consumer) {
+        return builder().consume(publisher, consumer);
+    }
+
+    private static long addCap(AtomicLong requested, long n) {
+        long current;
+        long next;
+        do {
+            current = requested.get();
+            if (current == Long.MAX_VALUE) {
+                return Long.MAX_VALUE;
+            }
+            next = current + n < 0 ? Long.MAX_VALUE : current + n;
+        } while (!requested.compareAndSet(current, next));
+        return current;
+    }
+
+    private static IllegalArgumentException nonPositive(long n) {
+        return new IllegalArgumentException("Non-positive request " + n);
+    }
+
+    /**
+     * Subscription calling the supplier on the requesting thread; whichever thread raises the demand from zero
+     * emits until it is met again, so calls are never concurrent nor reentrant.
+     */
+    private static final class SupplierSubscription<T> implements Flow.Subscription {
+        private final Flow.Subscriber<? super T> subscriber;
+        private final XSupplier<? extends T, ?> supplier;
+        private final boolean single;
+        private final AtomicLong requested = new AtomicLong();
+        private volatile boolean cancelled;
+
+        SupplierSubscription(Flow.Subscriber<? super T> subscriber, XSupplier<? extends T, ?> supplier,
+                             boolean single) {
+            this.subscriber = subscriber;
+            this.supplier = supplier;
+            this.single = single;
+        }
+
+        @Override
+        public void request(long n) {
+            if (n <= 0) {
+                if (!cancelled) {
+                    cancelled = true;
+                    subscriber.onError(nonPositive(n));
+                }
+                return;
+            }
+            if (addCap(requested, n) != 0) {
+                return;
+            }
+            long emitted = 0;
+            long demand = requested.get();
+            while (true) {
+                for (; emitted != demand; emitted++) {
+                    if (cancelled) {
+                        return;
+                    }
+                    T item;
+                    try {
+                        item = supplier.get();
+                    } catch (Throwable e) {
+                        cancelled = true;
+                        subscriber.onError(e);
+                        return;
+                    }
+                    if (item != null) {
+                        subscriber.onNext(item);
+                    }
+                    if (item == null || single) {
+                        if (!cancelled) {
+                            cancelled = true;
+                            subscriber.onComplete();
+                        }
+                        return;
+                    }
+                }
+                demand = requested.get();
+                if (demand == emitted) {
+                    demand = requested.addAndGet(-emitted);
+                    if (demand == 0) {
+                        return;
+                    }
+                    emitted = 0;
+                }
+            }
+        }
+
+        @Override
+        public void cancel() {
+            cancelled = true;
+        }
+    }
+
+    /**
+     * Processor draining its buffer on the executor. The work counter ensures a single drain runs at a time, so
+     * the buffer has one producer, the upstream publisher, and one consumer, the drain.
+     */
+    private static final class MappingProcessor<T, R> implements Flow.Processor<T, R>, Flow.Subscription, Runnable {
+        private final XFunction<? super T, ? extends R, ?> function;
+        private final Executor executor;
+        private final int prefetch;
+        private final int limit;
+        private final RingBuffer<T> queue;
+        private final AtomicReference<Flow.Subscription> upstream = new AtomicReference<>();
+        private final AtomicReference<Flow.Subscriber<? super R>> downstream = new AtomicReference<>();
+        private final AtomicLong requested = new AtomicLong();
+        private final AtomicInteger work = new AtomicInteger();
+        private final AtomicReference<Throwable> failure = new AtomicReference<>();
+        private volatile boolean done;
+        private volatile boolean cancelled;
+        private Throwable error;
+        private long emitted;
+        private int consumed;
+
+        MappingProcessor(Builder builder, XFunction<? super T, ? extends R, ?> function) {
+            this.function = Objects.requireNonNull(function);
+            this.executor = builder.executor;
+            this.prefetch = builder.prefetch;
+            this.limit = prefetch - (prefetch >> 2);
+            this.queue = RingBuffer.spsc(Math.max(2, prefetch));
+        }
+
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            if (upstream.compareAndSet(null, Objects.requireNonNull(subscription))) {
+                if (cancelled) {
+                    subscription.cancel();
+                } else {
+                    subscription.request(prefetch);
+                }
+            } else {
+                subscription.cancel();
+            }
+        }
+
+        @Override
+        public void onNext(T item) {
+            if (!queue.offer(Objects.requireNonNull(item))) {
+                failure.compareAndSet(null, new IllegalStateException("Item beyond demand " + prefetch));
+            }
+            schedule();
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            error = Objects.requireNonNull(throwable);
+            done = true;
+            schedule();
+        }
+
+        @Override
+        public void onComplete() {
+            done = true;
+            schedule();
+        }
+
+        @Override
+        public void subscribe(Flow.Subscriber<? super R> subscriber) {
+            Objects.requireNonNull(subscriber);
+            if (downstream.compareAndSet(null, subscriber)) {
+                subscriber.onSubscribe(this);
+                schedule();
+            } else {
+                subscriber.onSubscribe(CANCELLED);
+                subscriber.onError(new IllegalStateException("Processor already subscribed"));
+            }
+        }
+
+        @Override
+        public void request(long n) {
+            if (n <= 0) {
+                failure.compareAndSet(null, nonPositive(n));
+            } else {
+                addCap(requested, n);
+            }
+            schedule();
+        }
+
+        @Override
+        public void cancel() {
+            if (!cancelled) {
+                cancelled = true;
+                cancelUpstream();
+                schedule();
+            }
+        }
+
+        private void schedule() {
+            if (work.getAndIncrement() == 0) {
+                executor.execute(this);
+            }
+        }
+
+        @Override
+        public void run() {
+            Flow.Subscriber<? super R> subscriber = downstream.get();
+            for (int missed = 1; missed != 0; missed = work.addAndGet(-missed)) {
+                if (cancelled) {
+                    clear();
+                    continue;
+                }
+                Throwable failed = failure.get();
+                if (failed != null) {
+                    fail(subscriber, failed);
+                    continue;
+                }
+                if (subscriber == null) {
+                    subscriber = downstream.get();
+                    if (subscriber == null) {
+                        continue;
+                    }
+                }
+                long demand = requested.get();
+                while (emitted != demand && !cancelled) {
+                    boolean terminated = done;
+                    T item = queue.poll();
+                    if (item == null) {
+                        if (terminated) {
+                            complete(subscriber);
+                        }
+                        break;
+                    }
+                    R result;
+                    try {
+                        result = function.apply(item);
+                    } catch (Throwable e) {
+                        fail(subscriber, e);
+                        break;
+                    }
+                    if (++consumed == limit) {
+                        consumed = 0;
+                        upstream.get().request(limit);
+                    }
+                    if (result != null) {
+                        emitted++;
+                        subscriber.onNext(result);
+                    }
+                }
+                if (!cancelled && done && queue.isEmpty()) {
+                    complete(subscriber);
+                }
+            }
+        }
+
+        private void complete(Flow.Subscriber<? super R> subscriber) {
+            cancelled = true;
+            Throwable failed = error;
+            if (failed != null) {
+                subscriber.onError(failed);
+            } else {
+                subscriber.onComplete();
+            }
+        }
+
+        private void fail(Flow.Subscriber<? super R> subscriber, Throwable failed) {
+            cancelled = true;
+            cancelUpstream();
+            clear();
+            if (subscriber != null) {
+                subscriber.onError(failed);
+            }
+        }
+
+        private void cancelUpstream() {
+            Flow.Subscription subscription = upstream.getAndSet(CANCELLED);
+            if (subscription != null) {
+                subscription.cancel();
+            }
+        }
+
+        private void clear() {
+            while (queue.poll() != null) {
+                // drop items nobody will receive
+            }
+        }
+    }
+
+    /**
+     * Subscriber passing items to a consumer and requesting them again in batches.
+     */
+    private static final class ConsumingSubscriber<T> implements Flow.Subscriber<T> {
+        private final XConsumer<? super T, ?> consumer;
+        private final int prefetch;
+        private final int limit;
+        private final CompletableFuture<Void> completion = new CompletableFuture<>();
+        private Flow.Subscription subscription;
+        private int consumed;
+
+        ConsumingSubscriber(XConsumer<? super T, ?> consumer, int prefetch) {
+            this.consumer = Objects.requireNonNull(consumer);
+            this.prefetch = prefetch;
+            this.limit = prefetch - (prefetch >> 2);
+        }
+
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            if (this.subscription != null) {
+                subscription.cancel();
+                return;
+            }
+            this.subscription = subscription;
+            completion.whenComplete((v, e) -> {
+                if (completion.isCancelled()) {
+                    subscription.cancel();
+                }
+            });
+            subscription.request(prefetch);
+        }
+
+        @Override
+        public void onNext(T item) {
+            if (completion.isDone()) {
+                return;
+            }
+            try {
+                consumer.accept(item);
+            } catch (Throwable e) {
+                subscription.cancel();
+                completion.completeExceptionally(e);
+                return;
+            }
+            if (++consumed == limit) {
+                consumed = 0;
+                subscription.request(limit);
+            }
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            completion.completeExceptionally(throwable);
+        }
+
+        @Override
+        public void onComplete() {
+            completion.complete(null);
+        }
+    }
+
+    /**
+     * Builder of processors and subscribers. By default they prefetch {@link Flow#defaultBufferSize()} items
+     * and processors run on the {@link ForkJoinPool#commonPool() common pool}.
+     */
+    public static final class Builder {
+        private int prefetch = Flow.defaultBufferSize();
+        private Executor executor = ForkJoinPool.commonPool();
+
+        private Builder() {
+        }
+
+        /**
+         * @param prefetch maximum number of items requested from upstream and not yet handled
+         * @return this builder
+         */
+        public Builder prefetch(int prefetch) {
+            if (prefetch < 1 || prefetch > 1 << 30) {
+                throw new IllegalArgumentException("Prefetch out of range " + prefetch);
+            }
+            this.prefetch = prefetch;
+            return this;
+        }
+
+        /**
+         * @param executor executor on which processors map and publish their items
+         * @return this builder
+         */
+        public Builder executor(XExecutor executor) {
+            this.executor = executor.toExecutorService();
+            return this;
+        }
+
+        /**
+         * Creates a processor mapping the items with the function across an asynchronous boundary. It accepts one
+         * subscriber, and buffers up to {@code prefetch} items until it subscribes.
+         *
+         * @param function function mapping the items, a {@code null} result drops the item
+         * @param <T> the type of items received
+         * @param <R> the type of items published
+         * @return a new processor
+         */
+        public <T, R> Flow.Processor<T, R> processor(XFunction<? super T, ? extends R, ?> function) {
+            return new MappingProcessor<>(this, function);
+        }
+
+        /**
+         * Subscribes the consumer to the publisher. Cancelling the returned future cancels the subscription.
+         *
+         * @param publisher the publisher
+         * @param consumer consumer of the items, called on the threads of the publisher
+         * @param <T> the type of items
+         * @return future completed when the stream completes, or exceptionally when it or the consumer fails
+         */
+        public <T> CompletableFuture<Void> consume(Flow.Publisher<? extends T> publisher,
+                                                   XConsumer<? super T, ?> consumer) {
+            ConsumingSubscriber<T> subscriber = new ConsumingSubscriber<>(consumer, prefetch);
+            publisher.subscribe(subscriber);
+            return subscriber.completion;
+        }
+    }
+}
@@ -0,0 +1,170 @@
+package com.github.jtail.utils;
+
+
+import com.github.jtail.utils.concurrent.BatchingLoader;
+import com.github.jtail.utils.concurrent.XExecutor;
+import com.github.jtail.utils.concurrent.XFuture;
+import org.junit.After;
+import org.junit.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Tests for {@link BatchingLoader}
+ */
+public class BatchingLoaderTest {
+    private final XExecutor executor = XExecutor.newPerTaskExecutor("batch-");
+    private final List<List<Integer>> batches = new CopyOnWriteArrayList<>();
+
+    @After
+    public void shutdown() {
+        executor.close();
+    }
+
+    @Test
+    public void callsBatched() throws Exception {
+        try (BatchingLoader<Integer, String, CheckedException> loader = BatchingLoader.builder()
+                .maxBatchSize(10)
+                .maxDelay(Duration.ofMillis(200))
+                .build(this::load)) {
+            List<XFuture<String, CheckedException>> results = new ArrayList<>();
+            for (int i = 0; i < 30; i++) {
+                int key = i;
+                results.add(executor.submit(() -> loader.apply(key)));
+            }
+            for (int i = 0; i < 30; i++) {
+                assertEquals("v" + i, results.get(i).get());
+            }
+            assertTrue("Batches " + batches, batches.size() < 30);
+            for (List<Integer> batch : batches) {
+                assertTrue(batch.size() <= 10);
+            }
+            assertEquals(batches.size(), loader.batchSizes().count());
+            assertEquals(30, loader.queueWaits().count());
+            assertTrue(loader.batchSizes().snapshot().max() > 1);
+        }
+    }
+
+    @Test
+    public void delayBounded() throws Exception {
+        try (BatchingLoader<Integer, String, CheckedException> loader = BatchingLoader.builder()
+                .maxBatchSize(1000)
+                .maxDelay(Duration.ofMillis(5))
+                .build(this::load)) {
+            long start = System.nanoTime();
+            assertEquals("v7", loader.apply(7));
+            assertTrue(System.nanoTime() - start < Duration.ofSeconds(5).toNanos());
+            assertEquals(Collections.singletonList(Collections.singletonList(7)), batches);
+        }
+    }
+
+    @Test
+    public void failureDeliveredToEachCaller() throws Exception {
+        CheckedException failure = new CheckedException();
+        try (BatchingLoader<Integer, String, CheckedException> loader = BatchingLoader.builder()
+                .maxDelay(Duration.ofMillis(50))
+                .executor(executor)
+                .build(keys -> {
+                    throw failure;
+                })) {
+            List<XFuture<String, CheckedException>> results = new ArrayList<>();
+            for (int i = 0; i < 5; i++) {
+                int key = i;
+                results.add(executor.submit(() -> loader.apply(key)));
+            }
+            for (XFuture<String, CheckedException> result : results) {
+                try {
+                    result.get();
+                    fail("Exception expected");
+                } catch (CheckedException e) {
+                    assertSame(failure, e);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void missingAndDuplicateKeys() throws Exception {
+        try (BatchingLoader<Integer, String, CheckedException> loader = BatchingLoader.builder()
+                .maxDelay(Duration.ofMillis(100))
+                .build(keys -> {
+                    batches.add(keys);
+                    return Collections.singletonMap(1, "one");
+                })) {
+            XFuture<String, CheckedException> first = executor.submit(() -> loader.apply(1));
+            XFuture<String, CheckedException> second = executor.submit(() -> loader.apply(1));
+            XFuture<String, CheckedException> missing = executor.submit(() -> loader.apply(2));
+            assertEquals("one", first.get());
+            assertEquals("one", second.get());
+            assertNull(missing.get());
+            for (List<Integer> batch : batches) {
+                assertEquals(batch.size(), batch.stream().distinct().count());
+            }
+        }
+    }
+
+    @Test(timeout = 10_000)
+    public void closeDuringSynchronousLoad() throws Exception {
+        CountDownLatch loading = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        BatchingLoader<Integer, String, InterruptedException> loader = BatchingLoader.builder()
+                .maxBatchSize(1)
+                .maxDelay(Duration.ZERO)
+                .build(keys -> {
+                    loading.countDown();
+                    release.await();
+                    return load(keys);
+                });
+        XFuture<String, InterruptedException> slow = executor.submit(() -> loader.apply(1));
+        loading.await();
+        List<XFuture<String, InterruptedException>> queued = new ArrayList<>();
+        for (int i = 2; i < 5; i++) {
+            int key = i;
+            queued.add(executor.submit(() -> loader.apply(key)));
+        }
+        // the dispatcher is stuck in the first load, so the other keys stay queued
+        while (loader.queued() < 3) {
+            Thread.sleep(1);
+        }
+        XFuture<Void, RuntimeException> closing = executor.submit(() -> {
+            loader.close();
+            return null;
+        });
+        Thread.sleep(20);
+        release.countDown();
+        closing.get();
+        assertEquals("Not interrupted", "v1", slow.get());
+        for (int i = 0; i < queued.size(); i++) {
+            assertEquals("v" + (i + 2), queued.get(i).get());
+        }
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void closed() throws Exception {
+        BatchingLoader<Integer, String, CheckedException> loader = BatchingLoader.builder().build(this::load);
+        loader.close();
+        loader.apply(1);
+    }
+
+    private Map<Integer, String> load(List<Integer> keys) {
+        batches.add(keys);
+        Map<Integer, String> values = new HashMap<>();
+        for (Integer key : keys) {
+            values.put(key, "v" + key);
+        }
+        return values;
+    }
+}
@@ -0,0 +1,104 @@
+package com.github.jtail.utils;
+
+import com.github.jtail.utils.resilience.Bulkhead;
+import com.github.jtail.utils.resilience.RequestNotPermittedException;
+import com.github.jtail.utils.xfn.XSupplier;
+import org.junit.Test;
+
+import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Tests for {@link Bulkhead}
+ */
+public class BulkheadTest {
+    private final CountDownLatch started = new CountDownLatch(1);
+    private final CountDownLatch proceed = new CountDownLatch(1);
+
+    @Test
+    public void rejectsWhenFull() throws Exception {
+        Bulkhead bulkhead = Bulkhead.builder("test").maxConcurrentCalls(1).build();
+        XSupplier<String, InterruptedException> supplier = bulkhead.supplier(this::block);
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Future<String> blocked = executor.submit(supplier::get);
+            assertTrue(started.await(5, TimeUnit.SECONDS));
+            assertEquals(1, bulkhead.active());
+            assertFalse(bulkhead.tryAcquire());
+            try {
+                supplier.get();
+                fail("Exception expected");
+            } catch (RequestNotPermittedException expected) {
+                assertEquals(1, bulkhead.rejections());
+            }
+            proceed.countDown();
+            assertEquals("done", blocked.get());
+            assertEquals(0, bulkhead.active());
+            assertEquals("done", supplier.get());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void waitsForPermit() throws Exception {
+        Bulkhead bulkhead = Bulkhead.builder("test")
+                .maxConcurrentCalls(1)
+                .maxWaitingCalls(1, Duration.ofSeconds(10))
+                .build();
+        XSupplier<String, InterruptedException> supplier = bulkhead.supplier(this::block);
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            Future<String> first = executor.submit(supplier::get);
+            assertTrue(started.await(5, TimeUnit.SECONDS));
+            Future<String> second = executor.submit(supplier::get);
+            while (bulkhead.waiting() == 0) {
+                Thread.sleep(1);
+            }
+            try {
+                supplier.get();
+                fail("Exception expected");
+            } catch (RequestNotPermittedException expected) {
+                // queue full
+            }
+            proceed.countDown();
+            assertEquals("done", first.get());
+            assertEquals("done", second.get());
+            assertEquals(0, bulkhead.waiting());
+            assertEquals(1, bulkhead.available());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void permitReleasedOnFailure() throws Exception {
+        Bulkhead bulkhead = Bulkhead.builder("test").maxConcurrentCalls(1).build();
+        XSupplier<String, CheckedException> failing = bulkhead.supplier(() -> {
+            throw new CheckedException();
+        });
+        for (int i = 0; i < 3; i++) {
+            try {
+                failing.get();
+                fail("Exception expected");
+            } catch (CheckedException expected) {
+                assertEquals(1, bulkhead.available());
+            }
+        }
+    }
+
+    private String block() throws InterruptedException {
+        started.countDown();
+        proceed.await();
+        return "done";
+    }
+}
@@ -0,0 +1,111 @@
+package com.github.jtail.utils;
+
+
+import com.github.jtail.utils.metrics.CallMetrics;
+import com.github.jtail.utils.xfn.XCallable;
+import com.github.jtail.utils.xfn.XConsumer;
+import com.github.jtail.utils.xfn.XFunction;
+import com.github.jtail.utils.xfn.XSupplier;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Tests for {@link CallMetrics}
+ */
+public class CallMetricsTest {
+    private final CallMetrics metrics = CallMetrics.of("test");
+
+    @Test
+    public void supplier() throws Exception {
+        XSupplier<String, CheckedException> supplier = metrics.supplier(() -> "value");
+        assertEquals("value", supplier.get());
+        assertEquals("value", supplier.get());
+        CallMetrics.Snapshot snapshot = metrics.snapshot();
+        assertEquals(2, snapshot.successes());
+        assertEquals(2, snapshot.latency().count());
+        assertEquals("test", snapshot.name());
+    }
+
+    @Test
+    public void functionFailures() throws Exception {
+        XFunction<Integer, Integer, CheckedException> function = metrics.function(i -> {
+            if (i < 0) {
+                throw new CheckedException();
+            }
+            if (i == 0) {
+                throw new ObscureException();
+            }
+            return i;
+        });
+        assertEquals(Integer.valueOf(1), function.apply(1));
+        for (int i = -1; i <= 0; i++) {
+            try {
+                function.apply(i);
+                fail("Exception expected");
+            } catch (CheckedException | ObscureException expected) {
+                // counted
+            }
+        }
+        CallMetrics.Snapshot snapshot = metrics.snapshot();
+        assertEquals(1, snapshot.successes());
+        assertEquals(1, snapshot.failures(CheckedException.class));
+        assertEquals(1, snapshot.failures(ObscureException.class));
+        assertEquals(0, snapshot.failures(IllegalStateException.class));
+        assertEquals(3, snapshot.latency().count());
+    }
+
+    @Test
+    public void consumer() throws Exception {
+        List<String> sink = new ArrayList<>();
+        XConsumer<String, CheckedException> consumer = metrics.consumer(sink::add);
+        consumer.accept("a");
+        assertEquals(1, sink.size());
+        assertEquals(1, metrics.snapshot().successes());
+    }
+
+    @Test(expected = CheckedException.class)
+    public void callable() throws Exception {
+        XCallable<String, CheckedException> callable = metrics.callable(new XCallable<String, CheckedException>() {
+            @Override
+            public String call() throws CheckedException {
+                throw new CheckedException();
+            }
+        });
+        try {
+            callable.call();
+        } finally {
+            assertEquals(1, metrics.snapshot().failures(CheckedException.class));
+        }
+    }
+
+    @Test
+    public void disabledReturnsDelegate() {
+        CallMetrics disabled = CallMetrics.disabled();
+        XSupplier<String, CheckedException> supplier = () -> "value";
+        XFunction<String, String, CheckedException> function = s -> s;
+        assertFalse(disabled.isEnabled());
+        assertSame(supplier, disabled.supplier(supplier));
+        assertSame(function, disabled.function(function));
+        disabled.record(10, null);
+        assertEquals(0, disabled.snapshot().successes());
+    }
+
+    @Test
+    public void reset() throws Exception {
+        assertTrue(metrics.isEnabled());
+        metrics.record(100, null);
+        metrics.record(100, new CheckedException());
+        metrics.reset();
+        assertEquals(0, metrics.snapshot().successes());
+        assertTrue(metrics.snapshot().failures().isEmpty());
+        assertEquals(0, metrics.snapshot().latency().count());
+    }
+}
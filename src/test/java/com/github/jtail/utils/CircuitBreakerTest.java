@@ -0,0 +1,223 @@
+package com.github.jtail.utils;
+
+import com.github.jtail.utils.resilience.CallNotPermittedException;
+import com.github.jtail.utils.resilience.CircuitBreaker;
+import com.github.jtail.utils.resilience.CircuitBreaker.State;
+import com.github.jtail.utils.xfn.XFunction;
+import org.junit.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Tests for {@link CircuitBreaker}
+ */
+public class CircuitBreakerTest {
+    private final AtomicLong time = new AtomicLong();
+    private final AtomicInteger calls = new AtomicInteger();
+    private final List<String> transitions = new ArrayList<>();
+
+    @Test
+    public void opensOnFailureRate() throws Exception {
+        CircuitBreaker breaker = builder().build();
+        for (int i = 0; i < 4; i++) {
+            success(breaker);
+        }
+        for (int i = 0; i < 3; i++) {
+            assertEquals(State.CLOSED, breaker.state());
+            failure(breaker);
+        }
+        assertEquals(State.OPEN, breaker.state());
+        assertEquals(7, calls.get());
+        CallNotPermittedException rejected = rejected(breaker);
+        assertSame(rejected, rejected(breaker));
+        assertEquals(0, rejected.getStackTrace().length);
+        assertEquals(7, calls.get());
+        assertEquals(2, breaker.snapshot().rejections());
+    }
+
+    @Test
+    public void staysClosedBelowMinimumCalls() throws Exception {
+        CircuitBreaker breaker = builder().build();
+        for (int i = 0; i < 4; i++) {
+            failure(breaker);
+        }
+        assertEquals(State.CLOSED, breaker.state());
+        assertEquals(1.0, breaker.snapshot().failureRate(), 0.0);
+        failure(breaker);
+        assertEquals(State.OPEN, breaker.state());
+    }
+
+    @Test
+    public void slidingWindow() throws Exception {
+        CircuitBreaker breaker = builder().build();
+        for (int i = 0; i < 7; i++) {
+            success(breaker);
+        }
+        for (int i = 0; i < 3; i++) {
+            failure(breaker);
+        }
+        assertEquals(3, breaker.snapshot().failures());
+        for (int i = 0; i < 30; i++) {
+            success(breaker);
+        }
+        CircuitBreaker.Snapshot snapshot = breaker.snapshot();
+        assertEquals(State.CLOSED, snapshot.state());
+        assertEquals(10, snapshot.calls());
+        assertEquals(0, snapshot.failures());
+    }
+
+    @Test
+    public void opensOnSlowCallRate() throws Exception {
+        CircuitBreaker breaker = builder().slowCalls(Duration.ofSeconds(1), 0.5).build();
+        XFunction<Long, Long, RuntimeException> slow = breaker.function(nanos -> time.addAndGet(nanos));
+        for (int i = 0; i < 4; i++) {
+            slow.apply(1L);
+        }
+        slow.apply(TimeUnit.SECONDS.toNanos(2));
+        assertEquals(State.CLOSED, breaker.state());
+        slow.apply(TimeUnit.SECONDS.toNanos(2));
+        slow.apply(TimeUnit.SECONDS.toNanos(2));
+        assertEquals(State.CLOSED, breaker.state());
+        slow.apply(TimeUnit.SECONDS.toNanos(2));
+        assertEquals(State.OPEN, breaker.state());
+    }
+
+    @Test
+    public void halfOpenCloses() throws Exception {
+        CircuitBreaker breaker = builder().build();
+        breaker.open();
+        time.addAndGet(TimeUnit.SECONDS.toNanos(10));
+        assertEquals(State.HALF_OPEN, breaker.state());
+        assertTrue(breaker.tryAcquirePermission());
+        assertTrue(breaker.tryAcquirePermission());
+        assertFalse(breaker.tryAcquirePermission());
+        breaker.record(1, null);
+        assertEquals(State.HALF_OPEN, breaker.state());
+        breaker.record(1, null);
+        assertEquals(State.CLOSED, breaker.state());
+        assertEquals("[CLOSED->OPEN, OPEN->HALF_OPEN, HALF_OPEN->CLOSED]", transitions.toString());
+    }
+
+    @Test
+    public void halfOpenReopens() throws Exception {
+        CircuitBreaker breaker = builder().build();
+        breaker.open();
+        rejected(breaker);
+        time.addAndGet(TimeUnit.SECONDS.toNanos(10));
+        success(breaker);
+        failure(breaker);
+        assertEquals(State.OPEN, breaker.state());
+        rejected(breaker);
+        time.addAndGet(TimeUnit.SECONDS.toNanos(10));
+        success(breaker);
+        success(breaker);
+        assertEquals(State.CLOSED, breaker.state());
+        assertEquals(0, breaker.snapshot().calls());
+    }
+
+    @Test
+    public void ignoredFailures() throws Exception {
+        CircuitBreaker breaker = builder().recordIf(e -> !(e instanceof ObscureException)).build();
+        for (int i = 0; i < 10; i++) {
+            try {
+                breaker.call(() -> {
+                    throw new ObscureException();
+                });
+                fail("Exception expected");
+            } catch (ObscureException expected) {
+                // counted as success
+            }
+        }
+        assertEquals(State.CLOSED, breaker.state());
+        assertEquals(0, breaker.snapshot().failures());
+    }
+
+    @Test
+    public void reset() throws Exception {
+        CircuitBreaker breaker = builder().build();
+        breaker.open();
+        breaker.reset();
+        assertEquals(State.CLOSED, breaker.state());
+        success(breaker);
+    }
+
+    @Test
+    public void concurrentCounts() throws Exception {
+        CircuitBreaker breaker = CircuitBreaker.builder("concurrent").windowSize(1000).minimumCalls(1000).build();
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<?>> results = new ArrayList<>();
+            for (int t = 0; t < 4; t++) {
+                int thread = t;
+                results.add(executor.submit(() -> {
+                    for (int i = 0; i < 250; i++) {
+                        breaker.record(1, thread == 0 && i < 100 ? new CheckedException() : null);
+                    }
+                }));
+            }
+            for (Future<?> result : results) {
+                result.get();
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        CircuitBreaker.Snapshot snapshot = breaker.snapshot();
+        assertEquals(1000, snapshot.calls());
+        assertEquals(100, snapshot.failures());
+        assertEquals(State.CLOSED, snapshot.state());
+    }
+
+    private CircuitBreaker.Builder builder() {
+        return CircuitBreaker.builder("test")
+                .windowSize(10)
+                .minimumCalls(5)
+                .failureRate(0.4)
+                .waitInOpen(Duration.ofSeconds(10))
+                .halfOpenCalls(2)
+                .onStateChange((from, to) -> transitions.add(from + "->" + to))
+                .ticker(time::get);
+    }
+
+    private void success(CircuitBreaker breaker) throws CheckedException {
+        assertEquals("ok", breaker.call(() -> {
+            calls.incrementAndGet();
+            return "ok";
+        }));
+    }
+
+    private void failure(CircuitBreaker breaker) {
+        try {
+            breaker.call(() -> {
+                calls.incrementAndGet();
+                throw new CheckedException();
+            });
+            fail("Exception expected");
+        } catch (CheckedException expected) {
+            // recorded
+        }
+    }
+
+    private static CallNotPermittedException rejected(CircuitBreaker breaker) {
+        try {
+            breaker.call(() -> "unexpected");
+            fail("Exception expected");
+            return null;
+        } catch (CallNotPermittedException e) {
+            return e;
+        }
+    }
+}
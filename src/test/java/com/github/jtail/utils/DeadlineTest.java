@@ -0,0 +1,134 @@
+package com.github.jtail.utils;
+
+import com.github.jtail.utils.concurrent.HashedWheelTimer;
+import com.github.jtail.utils.resilience.Deadline;
+import com.github.jtail.utils.resilience.DeadlineExceededException;
+import com.github.jtail.utils.xfn.XSupplier;
+import org.junit.After;
+import org.junit.Test;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Tests for {@link Deadline}
+ */
+public class DeadlineTest {
+    private final HashedWheelTimer timer = HashedWheelTimer.create(Duration.ofMillis(1), 64);
+
+    @After
+    public void close() {
+        timer.close();
+    }
+
+    @Test
+    public void completesInTime() throws Exception {
+        XSupplier<String, CheckedException> callable = Deadline.withTimeout(() -> {
+            assertTrue(Deadline.current().isPresent());
+            return "ok";
+        }, Duration.ofSeconds(10), timer);
+        assertEquals("ok", callable.get());
+        assertFalse(Deadline.current().isPresent());
+        assertFalse(Thread.currentThread().isInterrupted());
+        assertEquals(0, timer.pending());
+    }
+
+    @Test
+    public void interrupted() throws Exception {
+        XSupplier<String, InterruptedException> callable = Deadline.withTimeout(() -> {
+            Thread.sleep(10_000);
+            return "late";
+        }, Duration.ofMillis(20), timer);
+        long start = System.nanoTime();
+        try {
+            callable.get();
+            fail("Exception expected");
+        } catch (DeadlineExceededException e) {
+            assertTrue(e.getCause() instanceof InterruptedException);
+            assertFalse(Thread.currentThread().isInterrupted());
+            assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(5));
+        }
+    }
+
+    @Test
+    public void lateValueKept() throws Exception {
+        XSupplier<String, CheckedException> callable = Deadline.withTimeout(() -> {
+            long end = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(50);
+            while (System.nanoTime() - end < 0) {
+                Thread.yield();
+            }
+            return "late";
+        }, Duration.ofMillis(5), timer);
+        assertEquals("late", callable.get());
+        assertFalse(Thread.currentThread().isInterrupted());
+    }
+
+    @Test
+    public void callerInterruptKept() throws Exception {
+        XSupplier<String, CheckedException> callable = Deadline.withTimeout(() -> {
+            long end = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(50);
+            while (System.nanoTime() - end < 0) {
+                Thread.yield();
+            }
+            return "late";
+        }, Duration.ofMillis(5), timer);
+        Thread.currentThread().interrupt();
+        try {
+            assertEquals("late", callable.get());
+            assertTrue(Thread.currentThread().isInterrupted());
+        } finally {
+            Thread.interrupted();
+        }
+    }
+
+    @Test
+    public void nestedInheritsRemaining() throws Exception {
+        XSupplier<Long, CheckedException> inner = Deadline.withTimeout(
+                () -> Deadline.current().get().remainingNanos(), Duration.ofSeconds(60), timer);
+        XSupplier<Long, CheckedException> outer = Deadline.withTimeout(inner, Duration.ofSeconds(1), timer);
+        long remaining = outer.get();
+        assertTrue(remaining <= TimeUnit.SECONDS.toNanos(1));
+        assertTrue(remaining > 0);
+    }
+
+    @Test
+    public void expiredBeforeCall() throws Exception {
+        XSupplier<String, CheckedException> callable =
+                Deadline.withTimeout(() -> "unexpected", Duration.ofSeconds(1), timer);
+        try {
+            Deadline.after(Duration.ZERO).run(callable::get);
+            fail("Exception expected");
+        } catch (DeadlineExceededException expected) {
+            assertEquals(0, timer.pending());
+        }
+    }
+
+    @Test
+    public void runPropagates() throws Exception {
+        Deadline outer = Deadline.after(Duration.ofSeconds(1));
+        Deadline later = Deadline.after(Duration.ofSeconds(60));
+        Deadline seen = outer.run(() -> later.run(() -> Deadline.current().get()));
+        assertSame(outer, seen);
+        assertEquals(outer, later.min(outer));
+        assertFalse(Deadline.current().isPresent());
+    }
+
+    @Test
+    public void failurePropagated() {
+        CheckedException failure = new CheckedException();
+        try {
+            Deadline.withTimeout(() -> {
+                throw failure;
+            }, Duration.ofSeconds(10), timer).get();
+            fail("Exception expected");
+        } catch (CheckedException e) {
+            assertSame(failure, e);
+        }
+    }
+}
@@ -0,0 +1,98 @@
+package com.github.jtail.utils;
+
+import com.github.jtail.utils.concurrent.HashedWheelTimer;
+import org.junit.After;
+import org.junit.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Tests for {@link HashedWheelTimer}
+ */
+public class HashedWheelTimerTest {
+    private final HashedWheelTimer timer = HashedWheelTimer.create(Duration.ofMillis(1), 8);
+
+    @After
+    public void close() {
+        timer.close();
+    }
+
+    @Test
+    public void expires() throws Exception {
+        CountDownLatch fired = new CountDownLatch(1);
+        long start = System.nanoTime();
+        HashedWheelTimer.Timeout timeout = timer.schedule(fired::countDown, Duration.ofMillis(30));
+        assertTrue(fired.await(5, TimeUnit.SECONDS));
+        assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(30));
+        assertTrue(timeout.isExpired());
+        assertFalse(timeout.cancel());
+        assertEquals(0, timer.pending());
+    }
+
+    @Test
+    public void severalRounds() throws Exception {
+        // 8 buckets of 1 ms, so these go around the wheel several times
+        CountDownLatch fired = new CountDownLatch(3);
+        List<Long> order = new ArrayList<>();
+        for (int delay : new int[]{50, 10, 30}) {
+            timer.schedule(() -> {
+                order.add((long) delay);
+                fired.countDown();
+            }, Duration.ofMillis(delay));
+        }
+        assertTrue(fired.await(5, TimeUnit.SECONDS));
+        assertEquals("[10, 30, 50]", order.toString());
+    }
+
+    @Test
+    public void cancelled() throws Exception {
+        AtomicInteger runs = new AtomicInteger();
+        List<HashedWheelTimer.Timeout> timeouts = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            timeouts.add(timer.schedule(runs::incrementAndGet, Duration.ofSeconds(10)));
+        }
+        assertEquals(1000, timer.pending());
+        for (HashedWheelTimer.Timeout timeout : timeouts) {
+            assertTrue(timeout.cancel());
+            assertTrue(timeout.isCancelled());
+        }
+        assertEquals(0, timer.pending());
+        CountDownLatch fired = new CountDownLatch(1);
+        timer.schedule(fired::countDown, Duration.ofMillis(40));
+        assertTrue(fired.await(5, TimeUnit.SECONDS));
+        assertEquals(0, runs.get());
+    }
+
+    @Test
+    public void failingTaskDoesNotStopTimer() throws Exception {
+        timer.schedule(() -> {
+            throw new ObscureException();
+        }, Duration.ZERO);
+        CountDownLatch fired = new CountDownLatch(1);
+        timer.schedule(fired::countDown, Duration.ofMillis(5));
+        assertTrue(fired.await(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void closedTimerRejects() {
+        HashedWheelTimer.Timeout timeout = timer.schedule(() -> fail("Cancelled task run"), Duration.ofHours(1));
+        timer.close();
+        assertTrue(timeout.isCancelled());
+        try {
+            timer.schedule(() -> { }, Duration.ZERO);
+            fail("Exception expected");
+        } catch (IllegalStateException expected) {
+            // closed
+        }
+    }
+}
@@ -0,0 +1,137 @@
+package com.github.jtail.utils;
+
+import com.github.jtail.utils.concurrent.XExecutor;
+import com.github.jtail.utils.resilience.Hedge;
+import com.github.jtail.utils.xfn.XSupplier;
+import org.junit.After;
+import org.junit.Test;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Tests for {@link Hedge}
+ */
+public class HedgeTest {
+    private final XExecutor executor = XExecutor.newPerTaskExecutor("hedge-test");
+    private final AtomicInteger attempts = new AtomicInteger();
+
+    @After
+    public void close() {
+        executor.toExecutorService().shutdownNow();
+    }
+
+    @Test
+    public void fastCallNotHedged() throws Exception {
+        Hedge hedge = Hedge.builder().delay(Duration.ofSeconds(10)).build(executor);
+        assertEquals("ok", hedge.call(() -> {
+            attempts.incrementAndGet();
+            return "ok";
+        }));
+        assertEquals(1, attempts.get());
+        assertEquals(0, hedge.hedges());
+    }
+
+    @Test
+    public void slowReplicaHedged() throws Exception {
+        CountDownLatch cancelled = new CountDownLatch(1);
+        XSupplier<String, InterruptedException> slow = () -> {
+            try {
+                Thread.sleep(10_000);
+                return "slow";
+            } catch (InterruptedException e) {
+                cancelled.countDown();
+                throw e;
+            }
+        };
+        XSupplier<String, InterruptedException> fast = () -> "fast";
+        Hedge hedge = Hedge.builder().delay(Duration.ofMillis(20)).build(executor);
+        long start = System.nanoTime();
+        assertEquals("fast", hedge.call(Arrays.asList(slow, fast)));
+        assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(5));
+        assertEquals(1, hedge.hedges());
+        assertTrue(cancelled.await(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void allFailed() throws Exception {
+        CountDownLatch hedged = new CountDownLatch(1);
+        CheckedException second = new CheckedException();
+        XSupplier<String, CheckedException> first = () -> {
+            try {
+                hedged.await();
+            } catch (InterruptedException e) {
+                throw new IllegalStateException(e);
+            }
+            throw new CheckedException();
+        };
+        XSupplier<String, CheckedException> backup = () -> {
+            hedged.countDown();
+            throw second;
+        };
+        Hedge hedge = Hedge.builder().delay(Duration.ofMillis(10)).build(executor);
+        try {
+            hedge.call(Arrays.asList(first, backup));
+            fail("Exception expected");
+        } catch (CheckedException e) {
+            assertEquals(1, e.getSuppressed().length);
+            assertTrue(e == second || e.getSuppressed()[0] == second);
+        }
+    }
+
+    @Test
+    public void failureDoesNotStartAttempt() throws Exception {
+        CheckedException failure = new CheckedException();
+        Hedge hedge = Hedge.builder().delay(Duration.ofSeconds(10)).maxAttempts(3).build(executor);
+        try {
+            hedge.call(() -> {
+                attempts.incrementAndGet();
+                throw failure;
+            });
+            fail("Exception expected");
+        } catch (CheckedException e) {
+            assertSame(failure, e);
+            assertEquals(1, attempts.get());
+        }
+    }
+
+    @Test
+    public void hedgeRateCapped() throws Exception {
+        Hedge hedge = Hedge.builder()
+                .delay(Duration.ofMillis(1))
+                .maxHedgeRatio(0.1, 2)
+                .build(executor);
+        for (int i = 0; i < 20; i++) {
+            hedge.call(() -> {
+                Thread.sleep(5);
+                return "slow";
+            });
+        }
+        assertEquals(20, hedge.calls());
+        assertTrue("Hedges " + hedge.hedges(), hedge.hedges() <= 4);
+    }
+
+    @Test
+    public void quantileDelay() throws Exception {
+        Hedge hedge = Hedge.builder()
+                .quantileDelay(0.5, Duration.ofSeconds(10), 10)
+                .build(executor);
+        for (int i = 0; i < 10; i++) {
+            hedge.call(() -> {
+                Thread.sleep(2);
+                return "ok";
+            });
+        }
+        assertTrue(hedge.delay().compareTo(Duration.ofMillis(1)) > 0);
+        assertTrue(hedge.delay().compareTo(Duration.ofSeconds(1)) < 0);
+        assertEquals(0, hedge.hedges());
+    }
+}
@@ -0,0 +1,64 @@
+package com.github.jtail.utils;
+
+
+import com.github.jtail.utils.metrics.Histogram;
+import org.junit.Test;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Tests for {@link Histogram}
+ */
+public class HistogramTest {
+
+    @Test
+    public void quantiles() {
+        Histogram histogram = new Histogram();
+        for (int i = 1; i <= 1000; i++) {
+            histogram.record(i * 1000L);
+        }
+        Histogram.Snapshot snapshot = histogram.snapshot();
+        assertEquals(1000, snapshot.count());
+        assertEquals(1_000_000, snapshot.max());
+        assertEquals(500_500, snapshot.mean(), 0.001);
+        assertEquals(500_000, snapshot.valueAt(0.5), 500_000 * 0.035);
+        assertEquals(990_000, snapshot.valueAt(0.99), 990_000 * 0.035);
+        assertEquals(1_000_000, snapshot.valueAt(1));
+        histogram.record(Long.MAX_VALUE);
+        assertEquals(Long.MAX_VALUE, histogram.valueAt(1));
+        histogram.reset();
+        assertEquals(0, histogram.valueAt(0.5));
+    }
+
+    @Test
+    public void exactSmallValues() {
+        Histogram histogram = new Histogram();
+        for (int i = 0; i < 64; i++) {
+            histogram.record(i);
+        }
+        assertEquals(31, histogram.valueAt(0.5));
+        assertEquals(0, histogram.valueAt(0));
+        assertEquals(63, histogram.valueAt(1));
+    }
+
+    @Test
+    public void concurrentRecording() throws Exception {
+        Histogram histogram = new Histogram();
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        for (int t = 0; t < 8; t++) {
+            executor.execute(() -> {
+                for (int i = 0; i < 10_000; i++) {
+                    histogram.record(i);
+                }
+            });
+        }
+        executor.shutdown();
+        executor.awaitTermination(1, TimeUnit.MINUTES);
+        assertEquals(80_000, histogram.count());
+        assertEquals(80_000, histogram.snapshot().count());
+    }
+}
@@ -0,0 +1,115 @@
+package com.github.jtail.utils;
+
+import com.github.jtail.utils.concurrent.KeyedExecutor;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Tests for {@link KeyedExecutor}
+ */
+public class KeyedExecutorTest {
+    @Test
+    public void orderedPerKey() throws Exception {
+        Map<Integer, List<Integer>> seen = new ConcurrentHashMap<>();
+        KeyedExecutor<Integer, int[]> executor = KeyedExecutor.builder()
+                .lanes(8)
+                .threads(4)
+                .capacity(16)
+                .batchSize(4)
+                .build((int[] event) -> seen.computeIfAbsent(event[0], k -> new ArrayList<>()).add(event[1]));
+        for (int i = 0; i < 1000; i++) {
+            for (int key = 0; key < 20; key++) {
+                executor.submit(key, new int[]{key, i});
+            }
+        }
+        executor.close();
+        assertEquals(20, seen.size());
+        for (List<Integer> events : seen.values()) {
+            assertEquals(1000, events.size());
+            for (int i = 0; i < 1000; i++) {
+                assertEquals(i, events.get(i).intValue());
+            }
+        }
+        assertEquals(20_000, executor.handled());
+    }
+
+    @Test
+    public void failureReportedWithKey() throws Exception {
+        List<String> errors = Collections.synchronizedList(new ArrayList<>());
+        List<String> handled = Collections.synchronizedList(new ArrayList<>());
+        KeyedExecutor<String, String> executor = KeyedExecutor.builder()
+                .onError((key, e) -> errors.add(key + ":" + e.getClass().getSimpleName()))
+                .build((String event) -> {
+                    if (event.startsWith("bad")) {
+                        throw new CheckedException();
+                    }
+                    handled.add(event);
+                });
+        executor.submit("a", "bad1");
+        executor.submit("a", "a2");
+        executor.submit("b", "b1");
+        executor.close();
+        assertEquals("[a:CheckedException]", errors.toString());
+        assertTrue(handled.contains("a2"));
+        assertEquals(1, executor.failed());
+        assertEquals(2, executor.handled());
+    }
+
+    @Test
+    public void blockedLaneDoesNotStallOthers() throws Exception {
+        CountDownLatch blocked = new CountDownLatch(1);
+        CountDownLatch other = new CountDownLatch(1);
+        KeyedExecutor<Integer, String> executor = KeyedExecutor.builder()
+                .lanes(4)
+                .threads(2)
+                .build((String event) -> {
+                    if (event.equals("block")) {
+                        blocked.await();
+                    } else {
+                        other.countDown();
+                    }
+                });
+        executor.submit(0, "block");
+        executor.submit(1, "go");
+        assertTrue(other.await(5, TimeUnit.SECONDS));
+        blocked.countDown();
+        executor.close();
+    }
+
+    @Test
+    public void boundedLanes() throws Exception {
+        CountDownLatch proceed = new CountDownLatch(1);
+        KeyedExecutor<Integer, String> executor = KeyedExecutor.builder()
+                .lanes(1)
+                .capacity(4)
+                .batchSize(1)
+                .build((String event) -> proceed.await());
+        int accepted = 0;
+        while (executor.offer(0, "event")) {
+            accepted++;
+        }
+        assertTrue("Accepted " + accepted, accepted <= 5);
+        assertFalse(executor.offer(0, "event"));
+        proceed.countDown();
+        executor.close();
+        assertEquals(accepted, executor.handled());
+        try {
+            executor.offer(0, "late");
+            fail("Exception expected");
+        } catch (IllegalStateException expected) {
+            // closed
+        }
+    }
+}
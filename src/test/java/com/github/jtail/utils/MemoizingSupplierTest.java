@@ -0,0 +1,136 @@
+package com.github.jtail.utils;
+
+
+import com.github.jtail.utils.cache.FailurePolicy;
+import com.github.jtail.utils.cache.MemoizingSupplier;
+import org.junit.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Tests for {@link MemoizingSupplier}
+ */
+public class MemoizingSupplierTest {
+
+    @Test
+    public void invokedOnce() throws Exception {
+        AtomicInteger calls = new AtomicInteger();
+        MemoizingSupplier<String, CheckedException> supplier = MemoizingSupplier.of(() -> "v" + calls.incrementAndGet());
+        assertFalse(supplier.isInitialized());
+        assertEquals("v1", supplier.get());
+        assertEquals("v1", supplier.get());
+        assertTrue(supplier.isInitialized());
+        assertEquals(1, calls.get());
+    }
+
+    @Test
+    public void nullMemoized() throws Exception {
+        AtomicInteger calls = new AtomicInteger();
+        MemoizingSupplier<String, CheckedException> supplier = MemoizingSupplier.of(() -> {
+            calls.incrementAndGet();
+            return null;
+        });
+        assertNull(supplier.get());
+        assertNull(supplier.get());
+        assertEquals(1, calls.get());
+    }
+
+    @Test
+    public void concurrentFirstCalls() throws Exception {
+        AtomicInteger calls = new AtomicInteger();
+        CountDownLatch start = new CountDownLatch(1);
+        MemoizingSupplier<Integer, InterruptedException> supplier = MemoizingSupplier.of(() -> {
+            Thread.sleep(50);
+            return calls.incrementAndGet();
+        });
+        ExecutorService executor = Executors.newFixedThreadPool(16);
+        try {
+            List<Future<Integer>> results = new ArrayList<>();
+            for (int i = 0; i < 16; i++) {
+                results.add(executor.submit(() -> {
+                    start.await();
+                    return supplier.get();
+                }));
+            }
+            start.countDown();
+            for (Future<Integer> result : results) {
+                assertEquals(Integer.valueOf(1), result.get());
+            }
+            assertEquals(1, calls.get());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void cacheFailure() throws Exception {
+        AtomicInteger calls = new AtomicInteger();
+        MemoizingSupplier<String, CheckedException> supplier = MemoizingSupplier.of(() -> {
+            calls.incrementAndGet();
+            throw new CheckedException();
+        }, FailurePolicy.cache());
+        CheckedException first = failure(supplier);
+        assertSame(first, failure(supplier));
+        assertEquals(1, calls.get());
+    }
+
+    @Test
+    public void retryFailure() throws Exception {
+        AtomicInteger calls = new AtomicInteger();
+        MemoizingSupplier<String, CheckedException> supplier = MemoizingSupplier.of(() -> {
+            if (calls.incrementAndGet() == 1) {
+                throw new CheckedException();
+            }
+            return "ok";
+        });
+        failure(supplier);
+        assertEquals("ok", supplier.get());
+        assertEquals(2, calls.get());
+    }
+
+    @Test
+    public void backoffFailure() throws Exception {
+        AtomicInteger calls = new AtomicInteger();
+        MemoizingSupplier<String, CheckedException> supplier = MemoizingSupplier.of(() -> {
+            if (calls.incrementAndGet() == 1) {
+                throw new CheckedException();
+            }
+            return "ok";
+        }, FailurePolicy.backoff(Duration.ofMillis(100), Duration.ofSeconds(1)));
+        CheckedException first = failure(supplier);
+        assertSame(first, failure(supplier));
+        assertEquals(1, calls.get());
+        Thread.sleep(150);
+        assertEquals("ok", supplier.get());
+        assertEquals(2, calls.get());
+    }
+
+    @Test(expected = ObscureException.class)
+    public void uncheckedFailure() throws Exception {
+        MemoizingSupplier.<String, CheckedException>of(() -> {throw new ObscureException();}).get();
+    }
+
+    private static CheckedException failure(MemoizingSupplier<String, CheckedException> supplier) {
+        try {
+            supplier.get();
+            fail("Exception expected");
+            return null;
+        } catch (CheckedException e) {
+            return e;
+        }
+    }
+}
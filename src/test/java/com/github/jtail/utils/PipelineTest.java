@@ -0,0 +1,133 @@
+package com.github.jtail.utils;
+
+import com.github.jtail.utils.concurrent.Pipeline;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Tests for {@link Pipeline}
+ */
+public class PipelineTest {
+    @Test
+    public void orderedThroughSingleWorkers() throws Exception {
+        List<String> results = new ArrayList<>();
+        Pipeline<String> pipeline = Pipeline.<String>builder()
+                .stage("parse", Integer::parseInt)
+                .stage("square", i -> (long) i * i)
+                .sink("collect", v -> results.add(String.valueOf(v)));
+        for (int i = 0; i < 1000; i++) {
+            pipeline.submit(String.valueOf(i));
+        }
+        pipeline.close();
+        assertEquals(1000, results.size());
+        assertEquals("998001", results.get(999));
+        for (Pipeline.StageStats stats : pipeline.stats()) {
+            assertEquals(1000, stats.processed());
+            assertEquals(0, stats.queued());
+        }
+    }
+
+    @Test
+    public void workerPools() throws Exception {
+        AtomicLong sum = new AtomicLong();
+        Pipeline<Integer> pipeline = Pipeline.<Integer>builder()
+                .capacity(16)
+                .stage("double", 3, i -> i * 2L)
+                .sink("sum", 2, sum::addAndGet);
+        for (int i = 0; i < 10_000; i++) {
+            pipeline.submit(i);
+        }
+        pipeline.close();
+        assertEquals(9_999L * 10_000, sum.get());
+        assertEquals(3, pipeline.stats().get(0).workers());
+        assertEquals(10_000, pipeline.stats().get(1).processed());
+    }
+
+    @Test
+    public void typedErrorsRouted() throws Exception {
+        List<String> rejected = Collections.synchronizedList(new ArrayList<>());
+        List<String> unexpected = Collections.synchronizedList(new ArrayList<>());
+        List<Integer> results = Collections.synchronizedList(new ArrayList<>());
+        Pipeline<String> pipeline = Pipeline.<String>builder()
+                .onError((stage, e) -> unexpected.add(stage + ":" + e.getClass().getSimpleName()))
+                .stage("check", 1, PipelineTest::check, CheckedException.class, (item, e) -> rejected.add(item))
+                .sink("collect", results::add);
+        for (String item : new String[]{"1", "bad", "2", "worse"}) {
+            pipeline.submit(item);
+        }
+        pipeline.close();
+        assertEquals("[1, 2]", results.toString());
+        assertEquals("[bad]", rejected.toString());
+        assertEquals("[check:ObscureException]", unexpected.toString());
+        assertEquals(2, pipeline.stats().get(0).failed());
+    }
+
+    @Test
+    public void nullResultsDropped() throws Exception {
+        List<Integer> results = new ArrayList<>();
+        Pipeline<Integer> pipeline = Pipeline.<Integer>builder()
+                .stage("even", i -> i % 2 == 0 ? i : null)
+                .sink("collect", results::add);
+        for (int i = 0; i < 10; i++) {
+            pipeline.submit(i);
+        }
+        pipeline.close();
+        assertEquals("[0, 2, 4, 6, 8]", results.toString());
+    }
+
+    @Test
+    public void backpressure() throws Exception {
+        CountDownLatch proceed = new CountDownLatch(1);
+        Pipeline<Integer> pipeline = Pipeline.<Integer>builder()
+                .capacity(4)
+                .batchSize(1)
+                .sink("slow", i -> proceed.await());
+        int accepted = 0;
+        while (pipeline.offer(accepted)) {
+            accepted++;
+        }
+        assertTrue("Accepted " + accepted, accepted <= 5);
+        proceed.countDown();
+        pipeline.close();
+        assertEquals(accepted, pipeline.stats().get(0).processed());
+        try {
+            pipeline.offer(0);
+            fail("Exception expected");
+        } catch (IllegalStateException expected) {
+            // closed
+        }
+    }
+
+    @Test
+    public void idleWorkersWake() throws Exception {
+        CountDownLatch done = new CountDownLatch(1);
+        Pipeline<Integer> pipeline = Pipeline.<Integer>builder().sink("latch", i -> done.countDown());
+        Thread.sleep(50);
+        long start = System.nanoTime();
+        pipeline.submit(1);
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        assertFalse(System.nanoTime() - start > TimeUnit.SECONDS.toNanos(1));
+        pipeline.close();
+    }
+
+    private static Integer check(String item) throws CheckedException {
+        if (item.equals("bad")) {
+            throw new CheckedException();
+        }
+        if (item.equals("worse")) {
+            throw new ObscureException();
+        }
+        return Integer.valueOf(item);
+    }
+}
@@ -0,0 +1,118 @@
+package com.github.jtail.utils;
+
+import com.github.jtail.utils.resilience.PerKey;
+import com.github.jtail.utils.resilience.RateLimiter;
+import com.github.jtail.utils.resilience.RequestNotPermittedException;
+import com.github.jtail.utils.xfn.XFunction;
+import org.junit.Test;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Tests for {@link RateLimiter} and {@link PerKey}
+ */
+public class RateLimiterTest {
+    private final AtomicLong time = new AtomicLong();
+
+    @Test
+    public void burstThenRate() {
+        RateLimiter limiter = RateLimiter.builder("test").rate(10).burst(3).ticker(time::get).build();
+        assertEquals(3, limiter.available());
+        assertTrue(limiter.tryAcquire());
+        assertTrue(limiter.tryAcquire());
+        assertTrue(limiter.tryAcquire());
+        assertFalse(limiter.tryAcquire());
+        time.addAndGet(TimeUnit.MILLISECONDS.toNanos(100));
+        assertTrue(limiter.tryAcquire());
+        assertFalse(limiter.tryAcquire());
+        time.addAndGet(TimeUnit.SECONDS.toNanos(10));
+        assertEquals(3, limiter.available());
+    }
+
+    @Test
+    public void decoratedRejected() throws Exception {
+        RateLimiter limiter = RateLimiter.builder("test").rate(1).burst(2).ticker(time::get).build();
+        XFunction<Integer, Integer, CheckedException> function = limiter.function(i -> i + 1);
+        assertEquals(Integer.valueOf(2), function.apply(1));
+        assertEquals(Integer.valueOf(3), function.apply(2));
+        RequestNotPermittedException first = rejected(function);
+        assertSame(first, rejected(function));
+        assertEquals(0, first.getStackTrace().length);
+        assertEquals(2, limiter.rejections());
+    }
+
+    @Test
+    public void decoratedWaits() throws Exception {
+        RateLimiter limiter = RateLimiter.builder("test").rate(50).burst(1).maxWait(Duration.ofSeconds(1)).build();
+        XFunction<Integer, Integer, CheckedException> function = limiter.function(i -> i + 1);
+        long start = System.nanoTime();
+        for (int i = 0; i < 4; i++) {
+            function.apply(i);
+        }
+        assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(55));
+        assertEquals(0, limiter.rejections());
+    }
+
+    @Test
+    public void blockingAcquire() throws Exception {
+        RateLimiter limiter = RateLimiter.builder("test").rate(100).burst(1).build();
+        limiter.acquire();
+        long start = System.nanoTime();
+        limiter.acquire();
+        assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(9));
+        assertFalse(limiter.tryAcquire(Duration.ofMillis(1)));
+        assertTrue(limiter.tryAcquire(Duration.ofSeconds(1)));
+    }
+
+    @Test
+    public void interruptedWhileWaiting() throws Exception {
+        RateLimiter limiter = RateLimiter.builder("test").rate(0.1).burst(1).maxWait(Duration.ofMinutes(1)).build();
+        XFunction<Integer, Integer, CheckedException> function = limiter.function(i -> i + 1);
+        function.apply(0);
+        Thread.currentThread().interrupt();
+        rejected(function);
+        assertTrue(Thread.interrupted());
+    }
+
+    @Test
+    public void perKey() {
+        PerKey<String, RateLimiter> limiters = PerKey.of(
+                tenant -> RateLimiter.builder(tenant).rate(1).burst(1).ticker(time::get).build());
+        assertTrue(limiters.get("a").tryAcquire());
+        assertFalse(limiters.get("a").tryAcquire());
+        assertTrue(limiters.get("b").tryAcquire());
+        assertEquals(2, limiters.size());
+        limiters.remove("a");
+        assertTrue(limiters.get("a").tryAcquire());
+    }
+
+    @Test
+    public void striped() {
+        PerKey<Integer, RateLimiter> limiters = PerKey.striped(5,
+                stripe -> RateLimiter.builder("stripe-" + stripe).ticker(time::get).build());
+        assertEquals(8, limiters.size());
+        assertSame(limiters.get(3), limiters.get(3));
+        assertNotSame(limiters.get(3), limiters.get(4));
+        assertSame(limiters.get(3), limiters.get(11));
+    }
+
+    private static RequestNotPermittedException rejected(XFunction<Integer, Integer, CheckedException> function)
+            throws CheckedException {
+        try {
+            function.apply(0);
+            fail("Exception expected");
+            return null;
+        } catch (RequestNotPermittedException e) {
+            return e;
+        }
+    }
+}
@@ -0,0 +1,134 @@
+package com.github.jtail.utils;
+
+import com.github.jtail.utils.cache.FailurePolicy;
+import com.github.jtail.utils.cache.RefreshingSupplier;
+import org.junit.Test;
+
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Tests for {@link RefreshingSupplier}
+ */
+public class RefreshingSupplierTest {
+    private final AtomicLong time = new AtomicLong();
+    private final Queue<Runnable> refreshes = new ArrayDeque<>();
+    private final AtomicInteger calls = new AtomicInteger();
+    private final List<Exception> failures = new ArrayList<>();
+    private volatile CheckedException failure;
+
+    private RefreshingSupplier<Integer, CheckedException> supplier(FailurePolicy policy) {
+        return RefreshingSupplier.builder()
+                .refreshAfter(Duration.ofSeconds(10))
+                .expireAfter(Duration.ofSeconds(60))
+                .failurePolicy(policy)
+                .executor(refreshes::add)
+                .onRefreshFailure(failures::add)
+                .ticker(time::get)
+                .build(() -> {
+                    if (failure != null) {
+                        throw failure;
+                    }
+                    return calls.incrementAndGet();
+                });
+    }
+
+    private void advance(long seconds) {
+        time.addAndGet(TimeUnit.SECONDS.toNanos(seconds));
+    }
+
+    @Test
+    public void freshValueKept() throws Exception {
+        RefreshingSupplier<Integer, CheckedException> supplier = supplier(FailurePolicy.retry());
+        assertFalse(supplier.isInitialized());
+        assertEquals(1, supplier.get().intValue());
+        advance(9);
+        assertEquals(1, supplier.get().intValue());
+        assertTrue(refreshes.isEmpty());
+        assertEquals(1, calls.get());
+    }
+
+    @Test
+    public void staleValueServedDuringRefresh() throws Exception {
+        RefreshingSupplier<Integer, CheckedException> supplier = supplier(FailurePolicy.retry());
+        supplier.get();
+        advance(10);
+        assertEquals(1, supplier.get().intValue());
+        assertEquals(1, supplier.get().intValue());
+        assertEquals("Single refresh", 1, refreshes.size());
+        refreshes.poll().run();
+        assertEquals(2, supplier.get().intValue());
+        assertTrue(refreshes.isEmpty());
+    }
+
+    @Test
+    public void expiredValueLoadedInCaller() throws Exception {
+        RefreshingSupplier<Integer, CheckedException> supplier = supplier(FailurePolicy.retry());
+        supplier.get();
+        advance(60);
+        assertEquals(2, supplier.get().intValue());
+        assertTrue(refreshes.isEmpty());
+    }
+
+    @Test
+    public void failedRefreshKeepsValue() throws Exception {
+        RefreshingSupplier<Integer, CheckedException> supplier = supplier(
+                FailurePolicy.backoff(Duration.ofSeconds(5), Duration.ofSeconds(20)));
+        supplier.get();
+        failure = new CheckedException();
+        advance(10);
+        assertEquals(1, supplier.get().intValue());
+        refreshes.poll().run();
+        assertEquals(1, failures.size());
+        assertSame(failure, failures.get(0));
+        assertEquals(1, supplier.get().intValue());
+        assertTrue("No refresh during backoff", refreshes.isEmpty());
+        advance(5);
+        supplier.get();
+        assertEquals(1, refreshes.size());
+        failure = null;
+        refreshes.poll().run();
+        assertEquals(2, supplier.get().intValue());
+    }
+
+    @Test
+    public void failedLoadThrown() throws Exception {
+        RefreshingSupplier<Integer, CheckedException> supplier = supplier(FailurePolicy.cache());
+        failure = new CheckedException();
+        try {
+            supplier.get();
+            fail();
+        } catch (CheckedException e) {
+            assertSame(failure, e);
+        }
+        failure = null;
+        assertEquals(1, supplier.get().intValue());
+        failure = new CheckedException();
+        advance(60);
+        try {
+            supplier.get();
+            fail();
+        } catch (CheckedException e) {
+            assertSame(failure, e);
+        }
+        assertTrue(failures.isEmpty());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void expiryBeforeRefresh() {
+        RefreshingSupplier.builder().refreshAfter(Duration.ofMinutes(2)).expireAfter(Duration.ofMinutes(1))
+                .build(() -> 1);
+    }
+}
@@ -0,0 +1,247 @@
+package com.github.jtail.utils;
+
+import com.github.jtail.utils.resilience.Retry;
+import com.github.jtail.utils.resilience.RetryBudget;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Tests for {@link Retry} and {@link RetryBudget}
+ */
+public class RetryTest {
+    private final AtomicInteger attempts = new AtomicInteger();
+
+    @Test
+    public void retriedUntilSuccess() throws Exception {
+        Retry retry = fast().maxAttempts(5).build();
+        assertEquals("ok", retry.call(() -> failTimes(3)));
+        assertEquals(4, attempts.get());
+    }
+
+    @Test
+    public void lastFailureThrown() {
+        Retry retry = fast().maxAttempts(3).build();
+        try {
+            retry.call(() -> failTimes(10));
+            fail("Exception expected");
+        } catch (CheckedException e) {
+            assertEquals(3, attempts.get());
+            assertEquals(1, e.getSuppressed().length);
+            assertEquals(1, e.getSuppressed()[0].getSuppressed().length);
+        }
+    }
+
+    @Test
+    public void uncheckedNotRetriedByDefault() throws Exception {
+        Retry retry = fast().maxAttempts(5).build();
+        try {
+            retry.call(() -> {
+                attempts.incrementAndGet();
+                throw new ObscureException();
+            });
+            fail("Exception expected");
+        } catch (ObscureException expected) {
+            assertEquals(1, attempts.get());
+        }
+    }
+
+    @Test
+    public void filteredByType() {
+        Retry retry = fast().maxAttempts(5).retryOn(IOException.class).build();
+        try {
+            retry.call(() -> failTimes(10));
+            fail("Exception expected");
+        } catch (CheckedException expected) {
+            assertEquals(1, attempts.get());
+        }
+    }
+
+    @Test
+    public void timeBudget() {
+        Retry retry = Retry.builder()
+                .maxAttempts(1000)
+                .backoff(Duration.ofMillis(20), Duration.ofMillis(20))
+                .maxDuration(Duration.ofMillis(100))
+                .build();
+        long start = System.nanoTime();
+        try {
+            retry.call(() -> failTimes(Integer.MAX_VALUE));
+            fail("Exception expected");
+        } catch (CheckedException expected) {
+            assertTrue(attempts.get() <= 5);
+            assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(1));
+        }
+    }
+
+    @Test
+    public void timeBudgetIncludesFirstAttempt() {
+        Retry retry = fast().maxAttempts(1000).maxDuration(Duration.ofMillis(50)).build();
+        try {
+            retry.call(() -> {
+                Thread.sleep(60);
+                return failTimes(Integer.MAX_VALUE);
+            });
+            fail("Exception expected");
+        } catch (Exception expected) {
+            assertEquals(1, attempts.get());
+        }
+    }
+
+    @Test
+    public void firstDelayJittered() {
+        Set<Long> delays = new HashSet<>();
+        ScheduledThreadPoolExecutor scheduler = new ScheduledThreadPoolExecutor(1) {
+            @Override
+            public ScheduledFuture<?> schedule(Runnable command, long delay, TimeUnit unit) {
+                // the first attempt is executed at once, the retry is only recorded
+                if (delay == 0) {
+                    command.run();
+                } else {
+                    delays.add(unit.toNanos(delay));
+                }
+                return null;
+            }
+        };
+        try {
+            Retry retry = Retry.builder().maxAttempts(2).backoff(Duration.ofMillis(100), Duration.ofSeconds(1)).build();
+            for (int i = 0; i < 20; i++) {
+                retry.callAsync(() -> failTimes(Integer.MAX_VALUE), scheduler);
+            }
+        } finally {
+            scheduler.shutdownNow();
+        }
+        assertTrue("Delays " + delays, delays.size() > 1);
+        for (long delay : delays) {
+            assertTrue(delay >= TimeUnit.MILLISECONDS.toNanos(100) && delay <= TimeUnit.MILLISECONDS.toNanos(300));
+        }
+    }
+
+    @Test
+    public void sharedBudget() {
+        AtomicLong time = new AtomicLong();
+        RetryBudget budget = RetryBudget.of(2, 1, time::get);
+        Retry retry = fast().maxAttempts(3).budget(budget).build();
+        for (int i = 0; i < 3; i++) {
+            try {
+                retry.call(() -> failTimes(Integer.MAX_VALUE));
+                fail("Exception expected");
+            } catch (CheckedException expected) {
+                // gave up
+            }
+        }
+        assertEquals(5, attempts.get());
+        assertEquals(0, budget.available());
+        time.addAndGet(TimeUnit.SECONDS.toNanos(1));
+        assertEquals(1, budget.available());
+    }
+
+    @Test
+    public void budgetRefills() {
+        AtomicLong time = new AtomicLong();
+        RetryBudget budget = RetryBudget.of(3, 10, time::get);
+        assertTrue(budget.tryAcquire());
+        assertTrue(budget.tryAcquire());
+        assertTrue(budget.tryAcquire());
+        assertFalse(budget.tryAcquire());
+        time.addAndGet(TimeUnit.MILLISECONDS.toNanos(100));
+        assertTrue(budget.tryAcquire());
+        assertFalse(budget.tryAcquire());
+        time.addAndGet(TimeUnit.SECONDS.toNanos(10));
+        assertEquals(3, budget.available());
+    }
+
+    @Test
+    public void interruptStopsRetries() {
+        Retry retry = Retry.builder().maxAttempts(5).backoff(Duration.ofSeconds(10), Duration.ofSeconds(10)).build();
+        Thread.currentThread().interrupt();
+        try {
+            retry.call(() -> failTimes(10));
+            fail("Exception expected");
+        } catch (CheckedException expected) {
+            assertTrue(Thread.interrupted());
+            assertEquals(1, attempts.get());
+        }
+    }
+
+    @Test
+    public void async() throws Exception {
+        ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor();
+        try {
+            Retry retry = fast().maxAttempts(5).build();
+            assertEquals("ok", retry.callAsync(() -> failTimes(2), scheduler).get(5, TimeUnit.SECONDS));
+            assertEquals(3, attempts.get());
+            attempts.set(0);
+            CompletableFuture<String> failed = retry.callAsync(() -> failTimes(10), scheduler);
+            try {
+                failed.get(5, TimeUnit.SECONDS);
+                fail("Exception expected");
+            } catch (ExecutionException e) {
+                assertTrue(e.getCause() instanceof CheckedException);
+                assertEquals(5, attempts.get());
+            }
+        } finally {
+            scheduler.shutdownNow();
+        }
+    }
+
+    @Test
+    public void asyncCancelled() throws Exception {
+        ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor();
+        try {
+            Retry retry = Retry.builder().maxAttempts(5).backoff(Duration.ofMillis(50), Duration.ofMillis(50)).build();
+            CompletableFuture<String> result = retry.callAsync(() -> failTimes(10), scheduler);
+            Thread.sleep(20);
+            result.cancel(false);
+            Thread.sleep(100);
+            assertEquals(1, attempts.get());
+        } finally {
+            scheduler.shutdownNow();
+        }
+    }
+
+    @Test
+    public void decorated() throws Exception {
+        CheckedException failure = new CheckedException();
+        Retry retry = fast().maxAttempts(2).build();
+        try {
+            retry.decorate(() -> {
+                attempts.incrementAndGet();
+                throw failure;
+            }).get();
+            fail("Exception expected");
+        } catch (CheckedException e) {
+            assertSame(failure, e);
+            assertEquals(2, attempts.get());
+        }
+    }
+
+    private static Retry.Builder fast() {
+        return Retry.builder().backoff(Duration.ofMillis(1), Duration.ofMillis(5));
+    }
+
+    private String failTimes(int failures) throws CheckedException {
+        if (attempts.incrementAndGet() <= failures) {
+            throw new CheckedException();
+        }
+        return "ok";
+    }
+}
@@ -0,0 +1,112 @@
+package com.github.jtail.utils;
+
+import com.github.jtail.utils.concurrent.RingBuffer;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests for {@link RingBuffer}
+ */
+public class RingBufferTest {
+    @Test
+    public void bounded() {
+        for (RingBuffer<Integer> queue : queues(3)) {
+            assertEquals(4, queue.capacity());
+            for (int i = 0; i < 4; i++) {
+                assertTrue(queue.offer(i));
+            }
+            assertFalse(queue.offer(4));
+            assertEquals(4, queue.size());
+            assertEquals(Integer.valueOf(0), queue.poll());
+            assertTrue(queue.offer(4));
+            List<Integer> drained = new ArrayList<>();
+            assertEquals(3, queue.drain(drained::add, 3));
+            assertEquals("[1, 2, 3]", drained.toString());
+            assertEquals(Integer.valueOf(4), queue.poll());
+            assertNull(queue.poll());
+            assertTrue(queue.isEmpty());
+        }
+    }
+
+    @Test
+    public void spscOrder() throws Exception {
+        RingBuffer<Integer> queue = RingBuffer.spsc(64);
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Future<?> producer = executor.submit(() -> {
+                for (int i = 0; i < 100_000; i++) {
+                    while (!queue.offer(i)) {
+                        Thread.yield();
+                    }
+                }
+            });
+            for (int expected = 0; expected < 100_000; ) {
+                Integer element = queue.poll();
+                if (element == null) {
+                    Thread.yield();
+                } else {
+                    assertEquals(expected++, element.intValue());
+                }
+            }
+            producer.get();
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void mpscAllDelivered() throws Exception {
+        RingBuffer<Integer> queue = RingBuffer.mpsc(64);
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<?>> producers = new ArrayList<>();
+            for (int p = 0; p < 4; p++) {
+                int base = p * 25_000;
+                producers.add(executor.submit(() -> {
+                    for (int i = 0; i < 25_000; i++) {
+                        while (!queue.offer(base + i)) {
+                            Thread.yield();
+                        }
+                    }
+                }));
+            }
+            int[] last = {-1, -1, -1, -1};
+            long sum = 0;
+            for (int received = 0; received < 100_000; ) {
+                Integer element = queue.poll();
+                if (element == null) {
+                    Thread.yield();
+                    continue;
+                }
+                int producer = element / 25_000;
+                assertTrue(element > last[producer]);
+                last[producer] = element;
+                sum += element;
+                received++;
+            }
+            for (Future<?> producer : producers) {
+                producer.get();
+            }
+            assertEquals(99_999L * 100_000 / 2, sum);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private static List<RingBuffer<Integer>> queues(int capacity) {
+        List<RingBuffer<Integer>> queues = new ArrayList<>();
+        queues.add(RingBuffer.spsc(capacity));
+        queues.add(RingBuffer.mpsc(capacity));
+        return queues;
+    }
+}
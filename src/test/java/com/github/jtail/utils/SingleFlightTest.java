@@ -0,0 +1,151 @@
+package com.github.jtail.utils;
+
+
+import com.github.jtail.utils.concurrent.SingleFlight;
+import com.github.jtail.utils.concurrent.XExecutor;
+import com.github.jtail.utils.concurrent.XFuture;
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Tests for {@link SingleFlight}
+ */
+public class SingleFlightTest {
+    private final XExecutor executor = XExecutor.newPerTaskExecutor("flight-");
+    private final AtomicInteger calls = new AtomicInteger();
+    private final CountDownLatch release = new CountDownLatch(1);
+
+    @After
+    public void shutdown() {
+        release.countDown();
+        executor.close();
+    }
+
+    @Test
+    public void concurrentCallsCoalesced() throws Exception {
+        SingleFlight<String, String, InterruptedException> flight = SingleFlight.of(key -> {
+            calls.incrementAndGet();
+            release.await();
+            return key.toUpperCase();
+        });
+        CountDownLatch started = new CountDownLatch(50);
+        List<XFuture<String, InterruptedException>> results = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            results.add(executor.submit(() -> {
+                started.countDown();
+                return flight.apply("hot");
+            }));
+        }
+        started.await();
+        awaitInFlight(flight, 1);
+        release.countDown();
+        for (XFuture<String, InterruptedException> result : results) {
+            assertEquals("HOT", result.get());
+        }
+        assertEquals(1, calls.get());
+        assertEquals(0, flight.inFlight());
+    }
+
+    @Test
+    public void distinctKeysNotCoalesced() throws Exception {
+        SingleFlight<Integer, Integer, CheckedException> flight = SingleFlight.of(key -> {
+            calls.incrementAndGet();
+            return key * 2;
+        });
+        assertEquals(Integer.valueOf(2), flight.apply(1));
+        assertEquals(Integer.valueOf(4), flight.apply(2));
+        assertEquals(Integer.valueOf(2), flight.apply(1));
+        assertEquals(3, calls.get());
+    }
+
+    @Test
+    public void sameExceptionShared() throws Exception {
+        CheckedException failure = new CheckedException();
+        SingleFlight<String, String, Exception> flight = SingleFlight.of(key -> {
+            calls.incrementAndGet();
+            release.await();
+            throw failure;
+        });
+        CountDownLatch started = new CountDownLatch(10);
+        List<XFuture<String, Exception>> results = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            results.add(executor.submit(() -> {
+                started.countDown();
+                return flight.apply("key");
+            }));
+        }
+        started.await();
+        awaitInFlight(flight, 1);
+        release.countDown();
+        for (XFuture<String, Exception> result : results) {
+            try {
+                result.get();
+                fail("Exception expected");
+            } catch (CheckedException e) {
+                assertSame(failure, e);
+            }
+        }
+        assertEquals(1, calls.get());
+    }
+
+    @Test
+    public void asyncJoinsBlocking() throws Exception {
+        SingleFlight<String, Integer, InterruptedException> flight = SingleFlight.of(key -> {
+            release.await();
+            return calls.incrementAndGet();
+        });
+        XFuture<Integer, InterruptedException> blocking = executor.submit(() -> flight.apply("key"));
+        awaitInFlight(flight, 1);
+        XFuture<Integer, InterruptedException> async = flight.submit("key", executor);
+        release.countDown();
+        assertEquals(Integer.valueOf(1), blocking.get());
+        assertEquals(Integer.valueOf(1), async.get());
+    }
+
+    @Test
+    public void asyncFailure() throws Exception {
+        CheckedException failure = new CheckedException();
+        SingleFlight<String, String, CheckedException> flight = SingleFlight.of(key -> {
+            throw failure;
+        });
+        try {
+            flight.submit("key", executor).get(5, TimeUnit.SECONDS);
+            fail("Exception expected");
+        } catch (CheckedException e) {
+            assertSame(failure, e);
+        }
+    }
+
+    @Test
+    public void cancellingViewKeepsCall() throws Exception {
+        SingleFlight<String, String, InterruptedException> flight = SingleFlight.of(key -> {
+            release.await();
+            return "done";
+        });
+        XFuture<String, InterruptedException> first = flight.submit("key", executor);
+        XFuture<String, InterruptedException> second = flight.submit("key", executor);
+        assertTrue(first.cancel(true));
+        release.countDown();
+        assertEquals("done", second.get(5, TimeUnit.SECONDS));
+    }
+
+    private static void awaitInFlight(SingleFlight<?, ?, ?> flight, int expected) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (flight.inFlight() != expected && System.nanoTime() < deadline) {
+            Thread.sleep(1);
+        }
+        // give the other callers a moment to join the call
+        Thread.sleep(50);
+    }
+}
@@ -0,0 +1,77 @@
+package com.github.jtail.utils;
+
+
+import com.github.jtail.utils.xfn.StacklessCheckedException;
+import com.github.jtail.utils.xfn.StacklessException;
+import com.github.jtail.utils.xfn.XOptional;
+import com.github.jtail.utils.xfn.XOptionalDouble;
+import com.github.jtail.utils.xfn.XOptionalInt;
+import com.github.jtail.utils.xfn.XOptionalLong;
+import com.github.jtail.utils.xfn.XRunnable;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+
+/**
+ * Tests for {@link StacklessException} and the {@code orElseThrowInstance} methods
+ */
+public class StacklessExceptionTest {
+    private static final StacklessException ABSENT = new StacklessException("absent");
+    private static final StacklessCheckedException CHECKED_ABSENT = new StacklessCheckedException("absent");
+
+    @Test
+    public void noStackTrace() {
+        assertEquals(0, ABSENT.getStackTrace().length);
+        assertEquals(0, CHECKED_ABSENT.getStackTrace().length);
+        assertEquals("absent", ABSENT.getMessage());
+    }
+
+    @Test
+    public void suppressionDisabled() {
+        ABSENT.addSuppressed(new IllegalStateException());
+        CHECKED_ABSENT.addSuppressed(new IllegalStateException());
+        assertEquals(0, ABSENT.getSuppressed().length);
+        assertEquals(0, CHECKED_ABSENT.getSuppressed().length);
+    }
+
+    @Test
+    public void cause() {
+        IllegalStateException cause = new IllegalStateException();
+        assertSame(cause, new StacklessException("failed", cause).getCause());
+        assertSame(cause, new StacklessCheckedException("failed", cause).getCause());
+    }
+
+    @Test
+    public void present() throws Exception {
+        assertEquals("v", XOptional.of("v").orElseThrowInstance(ABSENT));
+        assertEquals(1, XOptionalInt.of(1).orElseThrowInstance(ABSENT));
+        assertEquals(2L, XOptionalLong.of(2L).orElseThrowInstance(CHECKED_ABSENT));
+        assertEquals(3.0, XOptionalDouble.of(3.0).orElseThrowInstance(CHECKED_ABSENT), 0);
+        XOptional.of("v").ifPresent(v -> { }).orElseThrowInstance(CHECKED_ABSENT);
+    }
+
+    @Test
+    public void absent() {
+        assertThrown(() -> XOptional.empty().orElseThrowInstance(CHECKED_ABSENT));
+        assertThrown(() -> XOptionalInt.empty().orElseThrowInstance(CHECKED_ABSENT));
+        assertThrown(() -> XOptionalLong.empty().orElseThrowInstance(CHECKED_ABSENT));
+        assertThrown(() -> XOptionalDouble.empty().orElseThrowInstance(CHECKED_ABSENT));
+        assertThrown(() -> XOptional.empty().ifPresent(v -> { }).orElseThrowInstance(CHECKED_ABSENT));
+    }
+
+    @Test(expected = StacklessException.class)
+    public void unchecked() {
+        XOptional.empty().orElseThrowInstance(ABSENT);
+    }
+
+    private static void assertThrown(XRunnable<StacklessCheckedException> block) {
+        try {
+            block.run();
+            fail("Exception expected");
+        } catch (StacklessCheckedException e) {
+            assertSame(CHECKED_ABSENT, e);
+        }
+    }
+}
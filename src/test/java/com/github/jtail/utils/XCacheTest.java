@@ -0,0 +1,244 @@
+package com.github.jtail.utils;
+
+
+import com.github.jtail.utils.cache.FailurePolicy;
+import com.github.jtail.utils.cache.XCache;
+import org.junit.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Tests for {@link XCache}
+ */
+public class XCacheTest {
+    private final AtomicLong time = new AtomicLong();
+    private final AtomicInteger loads = new AtomicInteger();
+
+    @Test
+    public void loadedOnce() throws Exception {
+        XCache<Integer, String, CheckedException> cache = XCache.<Integer, String>builder().build(this::load);
+        assertEquals("v1", cache.apply(1));
+        assertEquals("v1", cache.apply(1));
+        assertEquals("v2", cache.apply(2));
+        assertEquals(2, loads.get());
+        assertEquals(1, cache.stats().hits());
+        assertEquals(2, cache.stats().misses());
+    }
+
+    @Test
+    public void concurrentLoadsShared() throws Exception {
+        XCache<Integer, Integer, InterruptedException> cache = XCache.<Integer, Integer>builder().build(key -> {
+            Thread.sleep(50);
+            return loads.incrementAndGet();
+        });
+        ExecutorService executor = Executors.newFixedThreadPool(16);
+        try {
+            List<Future<Integer>> results = new ArrayList<>();
+            for (int i = 0; i < 16; i++) {
+                results.add(executor.submit(() -> cache.apply(7)));
+            }
+            for (Future<Integer> result : results) {
+                assertEquals(Integer.valueOf(1), result.get());
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        assertEquals(1, loads.get());
+    }
+
+    @Test
+    public void sizeBounded() throws Exception {
+        XCache<Integer, String, CheckedException> cache = XCache.<Integer, String>builder()
+                .maximumSize(100)
+                .build(this::load);
+        for (int i = 0; i < 1000; i++) {
+            cache.apply(i);
+        }
+        cache.cleanUp();
+        assertEquals(100, cache.estimatedSize());
+        assertEquals(900, cache.stats().evictions());
+    }
+
+    @Test
+    public void frequentKeysRetained() throws Exception {
+        XCache<Integer, String, CheckedException> cache = XCache.<Integer, String>builder()
+                .maximumSize(100)
+                .build(this::load);
+        for (int round = 0; round < 10; round++) {
+            for (int hot = 0; hot < 50; hot++) {
+                cache.apply(hot);
+            }
+        }
+        cache.cleanUp();
+        for (int cold = 1000; cold < 5000; cold++) {
+            cache.apply(cold);
+        }
+        cache.cleanUp();
+        int retained = 0;
+        for (int hot = 0; hot < 50; hot++) {
+            if (cache.getIfPresent(hot) != null) {
+                retained++;
+            }
+        }
+        assertTrue("Retained " + retained, retained > 40);
+    }
+
+    @Test
+    public void weightBounded() throws Exception {
+        XCache<Integer, String, CheckedException> cache = XCache.<Integer, String>builder()
+                .maximumWeight(10, (k, v) -> k)
+                .build(this::load);
+        cache.apply(4);
+        cache.apply(5);
+        cache.apply(6);
+        cache.cleanUp();
+        assertTrue(cache.estimatedSize() <= 2);
+    }
+
+    @Test
+    public void largeWeightSketchSizedByEntries() throws Exception {
+        // sized by weight, the sketch would take gigabytes
+        XCache<Integer, String, CheckedException> cache = XCache.<Integer, String>builder()
+                .maximumWeight(1L << 40, (k, v) -> 1 << 20)
+                .build(this::load);
+        for (int i = 0; i < 5000; i++) {
+            cache.apply(i);
+        }
+        cache.cleanUp();
+        assertEquals(5000, cache.estimatedSize());
+    }
+
+    @Test
+    public void expireAfterWrite() throws Exception {
+        XCache<Integer, String, CheckedException> cache = XCache.<Integer, String>builder()
+                .expireAfterWrite(Duration.ofSeconds(10))
+                .ticker(time::get)
+                .build(this::load);
+        assertEquals("v1", cache.apply(1));
+        time.addAndGet(Duration.ofSeconds(5).toNanos());
+        assertEquals("v1", cache.apply(1));
+        time.addAndGet(Duration.ofSeconds(5).toNanos());
+        assertEquals("v2", cache.apply(1));
+        assertEquals(1, cache.stats().expirations());
+    }
+
+    @Test
+    public void expireAfterAccess() throws Exception {
+        XCache<Integer, String, CheckedException> cache = XCache.<Integer, String>builder()
+                .expireAfterAccess(Duration.ofSeconds(10))
+                .ticker(time::get)
+                .build(this::load);
+        cache.apply(1);
+        cache.apply(2);
+        for (int i = 0; i < 3; i++) {
+            time.addAndGet(Duration.ofSeconds(6).toNanos());
+            assertEquals("v1", cache.apply(1));
+        }
+        cache.cleanUp();
+        assertNull(cache.getIfPresent(2));
+        assertEquals(1, cache.estimatedSize());
+    }
+
+    @Test
+    public void failuresNotCachedByDefault() throws Exception {
+        CheckedException failure = new CheckedException();
+        XCache<Integer, String, CheckedException> cache = XCache.<Integer, String>builder().build(key -> {
+            if (loads.incrementAndGet() == 1) {
+                throw failure;
+            }
+            return "ok";
+        });
+        try {
+            cache.apply(1);
+            fail("Exception expected");
+        } catch (CheckedException e) {
+            assertSame(failure, e);
+        }
+        assertEquals("ok", cache.apply(1));
+        assertEquals(1, cache.stats().loadFailures());
+    }
+
+    @Test
+    public void negativeCaching() throws Exception {
+        XCache<Integer, String, CheckedException> cache = XCache.<Integer, String>builder()
+                .failurePolicy(FailurePolicy.backoff(Duration.ofSeconds(1), Duration.ofSeconds(10)))
+                .ticker(time::get)
+                .build(key -> {
+                    loads.incrementAndGet();
+                    throw new CheckedException();
+                });
+        for (int i = 0; i < 3; i++) {
+            try {
+                cache.apply(1);
+                fail("Exception expected");
+            } catch (CheckedException expected) {
+                // remembered
+            }
+        }
+        assertEquals(1, loads.get());
+        time.addAndGet(Duration.ofSeconds(1).toNanos());
+        try {
+            cache.apply(1);
+            fail("Exception expected");
+        } catch (CheckedException expected) {
+            // retried
+        }
+        assertEquals(2, loads.get());
+    }
+
+    @Test
+    public void uncheckedPropagated() throws Exception {
+        XCache<Integer, String, CheckedException> cache = XCache.<Integer, String>builder().build(key -> {
+            throw new ObscureException();
+        });
+        try {
+            cache.apply(1);
+            fail("Exception expected");
+        } catch (ObscureException expected) {
+            assertEquals(0, cache.estimatedSize());
+        }
+    }
+
+    @Test
+    public void invalidate() throws Exception {
+        XCache<Integer, String, CheckedException> cache = XCache.<Integer, String>builder()
+                .maximumSize(10)
+                .build(this::load);
+        cache.apply(1);
+        cache.apply(2);
+        cache.invalidate(1);
+        assertNull(cache.getIfPresent(1));
+        assertEquals("v2", cache.getIfPresent(2));
+        cache.invalidateAll();
+        assertEquals(0, cache.estimatedSize());
+        assertEquals("v3", cache.apply(1));
+    }
+
+    @Test
+    public void nullValues() throws Exception {
+        XCache<Integer, String, CheckedException> cache = XCache.<Integer, String>builder().build(key -> {
+            loads.incrementAndGet();
+            return null;
+        });
+        assertNull(cache.apply(1));
+        assertNull(cache.apply(1));
+        assertEquals(1, loads.get());
+    }
+
+    private String load(Integer key) {
+        return "v" + loads.incrementAndGet();
+    }
+}
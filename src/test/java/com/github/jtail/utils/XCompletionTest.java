@@ -0,0 +1,140 @@
+package com.github.jtail.utils;
+
+import com.github.jtail.utils.concurrent.XCompletion;
+import com.github.jtail.utils.xfn.XOptional;
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Tests for {@link XCompletion}
+ */
+public class XCompletionTest {
+    private final ExecutorService executor = Executors.newFixedThreadPool(2, r -> {
+        Thread thread = new Thread(r, "completion-test");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    @After
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void map() throws Exception {
+        XCompletion<Integer, CheckedException> length = XCompletion.<String, CheckedException>supplyAsync(
+                () -> "four", executor).map(String::length);
+        assertEquals(XOptional.of(4), length.get());
+    }
+
+    @Test
+    public void stagesRunOnExecutor() throws Exception {
+        AtomicReference<String> thread = new AtomicReference<>();
+        CompletableFuture<String> io = new CompletableFuture<>();
+        XCompletion<String, CheckedException> completion = XCompletion.<String, CheckedException>of(io, executor)
+                .ifPresent(s -> thread.set(Thread.currentThread().getName()));
+        assertFalse(completion.isDone());
+        io.complete("done");
+        assertEquals("done", completion.get(1, TimeUnit.SECONDS).get());
+        assertEquals("completion-test", thread.get());
+    }
+
+    @Test
+    public void exceptionNotWrapped() throws Exception {
+        CheckedException exception = new CheckedException();
+        AtomicInteger skipped = new AtomicInteger();
+        XCompletion<Integer, CheckedException> completion = XCompletion.<String, CheckedException>completed("x")
+                .onExecutor(executor)
+                .map(s -> {
+                    throw exception;
+                })
+                .map(s -> skipped.incrementAndGet())
+                .orElseGet(skipped::incrementAndGet);
+        try {
+            completion.get();
+            fail();
+        } catch (CheckedException e) {
+            assertSame(exception, e);
+        }
+        assertEquals(0, skipped.get());
+        try {
+            completion.toCompletableFuture().get();
+            fail();
+        } catch (ExecutionException e) {
+            assertSame(exception, e.getCause());
+        }
+    }
+
+    @Test
+    public void exceptionOfCompletableFutureUnwrapped() throws Exception {
+        CheckedException exception = new CheckedException();
+        CompletableFuture<String> chained = CompletableFuture.<String>supplyAsync(() -> "x", executor)
+                .thenApply(s -> {
+                    throw new ObscureException();
+                });
+        try {
+            XCompletion.<String, CheckedException>of(chained).map(String::length).get();
+            fail();
+        } catch (ObscureException expected) {
+            // CompletionException of thenApply removed
+        }
+        try {
+            XCompletion.<String, CheckedException>failed(exception).get();
+            fail();
+        } catch (CheckedException e) {
+            assertSame(exception, e);
+        }
+    }
+
+    @Test
+    public void flatMap() throws Exception {
+        CompletableFuture<Integer> remote = new CompletableFuture<>();
+        XCompletion<Integer, CheckedException> completion = XCompletion.<String, CheckedException>completed("key")
+                .flatMap(key -> XCompletion.of(remote));
+        assertFalse(completion.isDone());
+        remote.complete(42);
+        assertEquals(XOptional.of(42), completion.get());
+        CheckedException exception = new CheckedException();
+        try {
+            XCompletion.<String, CheckedException>completed("key")
+                    .flatMap(key -> XCompletion.<Integer, CheckedException>failed(exception))
+                    .get();
+            fail();
+        } catch (CheckedException e) {
+            assertSame(exception, e);
+        }
+    }
+
+    @Test
+    public void absent() throws Exception {
+        AtomicInteger calls = new AtomicInteger();
+        XCompletion<String, CheckedException> completion = XCompletion.<String, CheckedException>supplyAsync(
+                () -> null, executor)
+                .map(s -> {
+                    calls.incrementAndGet();
+                    return s;
+                })
+                .ifPresent(s -> calls.incrementAndGet());
+        assertEquals(XOptional.empty(), completion.get());
+        assertEquals("default", completion.orElse("default").get().get());
+        assertEquals("other", completion.orElseGet(() -> "other").get().get());
+        assertEquals("kept", XCompletion.completed("kept").filter(s -> s.startsWith("k")).orElse("no").get().get());
+        assertEquals("no", XCompletion.completed("kept").filter(String::isEmpty).orElse("no").get().get());
+        assertEquals(0, calls.get());
+        assertTrue(completion.isDone());
+    }
+}
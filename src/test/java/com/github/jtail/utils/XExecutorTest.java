@@ -0,0 +1,123 @@
+package com.github.jtail.utils;
+
+
+import com.github.jtail.utils.concurrent.XExecutor;
+import com.github.jtail.utils.concurrent.XFuture;
+import com.github.jtail.utils.xfn.XCallable;
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Tests for {@link XExecutor} and {@link XFuture}
+ */
+public class XExecutorTest {
+    private final XExecutor executor = XExecutor.newPerTaskExecutor("test-");
+
+    @After
+    public void shutdown() {
+        executor.close();
+    }
+
+    @Test
+    public void result() throws Exception {
+        XFuture<String, CheckedException> future = executor.submit(() -> "done");
+        assertEquals("done", future.get());
+        assertTrue(future.isDone());
+    }
+
+    @Test
+    public void checkedRethrown() throws InterruptedException {
+        CheckedException failure = new CheckedException();
+        XFuture<String, CheckedException> future = executor.submit(() -> {
+            throw failure;
+        });
+        try {
+            future.get();
+            fail("Exception expected");
+        } catch (CheckedException e) {
+            assertSame(failure, e);
+        }
+    }
+
+    @Test(expected = ObscureException.class)
+    public void uncheckedRethrown() throws Exception {
+        XFuture<Void, CheckedException> future = executor.submit(() -> {
+            throw new ObscureException();
+        });
+        future.get();
+    }
+
+    @Test
+    public void runnable() throws Exception {
+        AtomicInteger runs = new AtomicInteger();
+        XFuture<Void, CheckedException> future = executor.submit(() -> {
+            runs.incrementAndGet();
+        });
+        assertNull(future.get());
+        assertEquals(1, runs.get());
+    }
+
+    @Test
+    public void callable() throws Exception {
+        XCallable<String, CheckedException> callable = new XCallable<String, CheckedException>() {
+            @Override
+            public String call() {
+                return "called";
+            }
+        };
+        assertEquals("called", executor.submit(callable::call).get());
+    }
+
+    @Test(expected = TimeoutException.class)
+    public void timeout() throws Exception {
+        CountDownLatch latch = new CountDownLatch(1);
+        try {
+            executor.<Boolean, InterruptedException>submit(() -> latch.await(1, TimeUnit.MINUTES))
+                    .get(10, TimeUnit.MILLISECONDS);
+        } finally {
+            latch.countDown();
+        }
+    }
+
+    @Test(expected = CancellationException.class)
+    public void cancelled() throws Exception {
+        XFuture<Boolean, InterruptedException> future = executor.submit(() -> new CountDownLatch(1).await(1, TimeUnit.MINUTES));
+        assertTrue(future.cancel(true));
+        future.get();
+    }
+
+    @Test
+    public void manyBlockingTasks() throws Exception {
+        int tasks = 1000;
+        CountDownLatch started = new CountDownLatch(tasks);
+        CountDownLatch release = new CountDownLatch(1);
+        List<XFuture<Integer, InterruptedException>> futures = new ArrayList<>();
+        for (int i = 0; i < tasks; i++) {
+            int n = i;
+            futures.add(executor.submit(() -> {
+                started.countDown();
+                release.await();
+                return n;
+            }));
+        }
+        assertTrue("All tasks run concurrently", started.await(30, TimeUnit.SECONDS));
+        release.countDown();
+        for (int i = 0; i < tasks; i++) {
+            assertEquals(Integer.valueOf(i), futures.get(i).get());
+        }
+    }
+}
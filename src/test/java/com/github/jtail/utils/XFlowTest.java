@@ -0,0 +1,181 @@
+package com.github.jtail.utils;
+
+import com.github.jtail.utils.concurrent.XFlow;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Flow;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Tests for {@link XFlow}
+ */
+public class XFlowTest {
+    @Test
+    public void publisherIsCold() throws Exception {
+        AtomicInteger calls = new AtomicInteger();
+        Flow.Publisher<Integer> publisher = XFlow.publisher(calls::incrementAndGet);
+        assertEquals(0, calls.get());
+        List<Integer> first = new ArrayList<>();
+        XFlow.consume(publisher, first::add).get(1, TimeUnit.SECONDS);
+        List<Integer> second = new ArrayList<>();
+        XFlow.consume(publisher, second::add).get(1, TimeUnit.SECONDS);
+        assertEquals("[1]", first.toString());
+        assertEquals("[2]", second.toString());
+    }
+
+    @Test
+    public void generateHonoursDemand() {
+        AtomicInteger calls = new AtomicInteger();
+        Recorder<Integer> recorder = new Recorder<>();
+        XFlow.generate(calls::incrementAndGet).subscribe(recorder);
+        assertEquals(0, calls.get());
+        recorder.subscription.request(3);
+        assertEquals(3, calls.get());
+        recorder.subscription.request(2);
+        assertEquals(5, calls.get());
+        recorder.subscription.cancel();
+        recorder.subscription.request(2);
+        assertEquals("[1, 2, 3, 4, 5]", recorder.items.toString());
+    }
+
+    @Test
+    public void generateCompletesOnNull() throws Exception {
+        AtomicInteger count = new AtomicInteger();
+        Flow.Publisher<Integer> publisher = XFlow.generate(() -> count.get() < 1000 ? count.incrementAndGet() : null);
+        List<Integer> items = new ArrayList<>();
+        XFlow.builder().prefetch(16).consume(publisher, items::add).get(1, TimeUnit.SECONDS);
+        assertEquals(1000, items.size());
+        assertEquals(Integer.valueOf(1000), items.get(999));
+    }
+
+    @Test
+    public void processorKeepsOrder() throws Exception {
+        AtomicInteger count = new AtomicInteger();
+        Flow.Processor<Integer, Integer> doubler = XFlow.builder().prefetch(8).processor((Integer i) -> 2 * i);
+        XFlow.generate(() -> count.get() < 10_000 ? count.incrementAndGet() : null).subscribe(doubler);
+        List<Integer> items = new ArrayList<>();
+        XFlow.consume(doubler, items::add).get(10, TimeUnit.SECONDS);
+        assertEquals(10_000, items.size());
+        for (int i = 0; i < items.size(); i++) {
+            assertEquals(2 * (i + 1), items.get(i).intValue());
+        }
+    }
+
+    @Test
+    public void processorBuffersUpToPrefetch() throws Exception {
+        AtomicInteger calls = new AtomicInteger();
+        Flow.Processor<Integer, Integer> identity = XFlow.builder().prefetch(8).processor((Integer i) -> i);
+        XFlow.generate(calls::incrementAndGet).subscribe(identity);
+        Recorder<Integer> recorder = new Recorder<>();
+        identity.subscribe(recorder);
+        recorder.subscription.request(1);
+        recorder.await(1);
+        Thread.sleep(50);
+        assertEquals(8, calls.get());
+        recorder.subscription.request(6);
+        recorder.await(7);
+        // six items were mapped from the first batch, so the next one was requested
+        assertEquals(14, calls.get());
+        recorder.subscription.cancel();
+    }
+
+    @Test
+    public void exceptionSignalledAsError() throws Exception {
+        AtomicInteger calls = new AtomicInteger();
+        Flow.Processor<Integer, Integer> failing = XFlow.builder().prefetch(4).processor((Integer i) -> {
+            if (i == 3) {
+                throw new CheckedException();
+            }
+            return i;
+        });
+        XFlow.generate(calls::incrementAndGet).subscribe(failing);
+        List<Integer> items = new ArrayList<>();
+        try {
+            XFlow.consume(failing, items::add).get(1, TimeUnit.SECONDS);
+            fail();
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof CheckedException);
+        }
+        assertEquals("[1, 2]", items.toString());
+        int generated = calls.get();
+        Thread.sleep(20);
+        assertEquals("Upstream cancelled", generated, calls.get());
+    }
+
+    @Test
+    public void consumerExceptionCancels() throws Exception {
+        AtomicInteger calls = new AtomicInteger();
+        CompletableFuture<Void> completion = XFlow.consume(XFlow.generate(calls::incrementAndGet), i -> {
+            throw new CheckedException();
+        });
+        try {
+            completion.get(1, TimeUnit.SECONDS);
+            fail();
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof CheckedException);
+        }
+        assertEquals(1, calls.get());
+    }
+
+    @Test
+    public void nonPositiveRequest() throws Exception {
+        Flow.Processor<Integer, Integer> identity = XFlow.processor((Integer i) -> i);
+        XFlow.generate(() -> 1).subscribe(identity);
+        Recorder<Integer> recorder = new Recorder<>();
+        identity.subscribe(recorder);
+        recorder.subscription.request(0);
+        assertTrue(recorder.error.get(1, TimeUnit.SECONDS) instanceof IllegalArgumentException);
+    }
+
+    @Test
+    public void singleSubscriber() throws Exception {
+        Flow.Processor<Integer, Integer> identity = XFlow.processor((Integer i) -> i);
+        identity.subscribe(new Recorder<>());
+        Recorder<Integer> second = new Recorder<>();
+        identity.subscribe(second);
+        assertTrue(second.error.get(1, TimeUnit.SECONDS) instanceof IllegalStateException);
+    }
+
+    private static final class Recorder<T> implements Flow.Subscriber<T> {
+        final List<T> items = new ArrayList<>();
+        final CompletableFuture<Throwable> error = new CompletableFuture<>();
+        Flow.Subscription subscription;
+
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            this.subscription = subscription;
+        }
+
+        @Override
+        public synchronized void onNext(T item) {
+            items.add(item);
+            notifyAll();
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            error.complete(throwable);
+        }
+
+        @Override
+        public void onComplete() {
+        }
+
+        synchronized void await(int count) throws InterruptedException {
+            long deadline = System.currentTimeMillis() + 1000;
+            while (items.size() < count && System.currentTimeMillis() < deadline) {
+                wait(10);
+            }
+            assertEquals(count, items.size());
+        }
+    }
+}
@@ -0,0 +1,81 @@
+package com.github.jtail.utils;
+
+
+import com.github.jtail.utils.xfn.XOptional;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests for the context-passing overloads of {@link XOptional}
+ */
+public class XOptionalContextTest {
+    private final XOptional<String> present = XOptional.of("duke");
+    private final XOptional<String> absent = XOptional.empty();
+    private final Map<String, Integer> ages = Collections.singletonMap("duke", 25);
+
+    @Test
+    public void map() throws Exception {
+        assertEquals(XOptional.of(25), present.map(ages, XOptionalContextTest::lookup));
+        assertEquals(XOptional.empty(), XOptional.of("tux").map(ages, XOptionalContextTest::lookup));
+        assertEquals(XOptional.empty(), absent.map(ages, XOptionalContextTest::lookup));
+    }
+
+    @Test
+    public void flatMap() throws Exception {
+        assertEquals(XOptional.of(25), present.flatMap(ages, (v, m) -> XOptional.ofNullable(m.get(v))));
+        assertEquals(XOptional.empty(), absent.flatMap(ages, (v, m) -> XOptional.ofNullable(m.get(v))));
+    }
+
+    @Test
+    public void filter() {
+        assertEquals(present, present.filter(ages, (v, m) -> m.containsKey(v)));
+        assertFalse(XOptional.of("tux").filter(ages, (v, m) -> m.containsKey(v)).isPresent());
+        assertFalse(absent.filter(ages, (v, m) -> true).isPresent());
+    }
+
+    @Test
+    public void ifPresent() throws Exception {
+        List<String> sink = new ArrayList<>();
+        present.ifPresent(sink, (v, s) -> s.add(v)).orElse(sink, s -> s.add("absent"));
+        absent.ifPresent(sink, (v, s) -> s.add(v)).orElse(sink, s -> s.add("absent"));
+        assertEquals(Arrays.asList("duke", "absent"), sink);
+    }
+
+    @Test(expected = CheckedException.class)
+    public void ifPresentException() throws Exception {
+        present.ifPresent(ages, (v, m) -> {
+            throw new CheckedException();
+        });
+    }
+
+    @Test(expected = CheckedException.class)
+    public void orElseException() throws Exception {
+        absent.ifPresent(ages, (v, m) -> { }).orElse(ages, m -> {
+            throw new CheckedException();
+        });
+    }
+
+    @Test
+    public void orElseGet() throws Exception {
+        assertEquals("duke", present.orElseGet(ages, m -> "other"));
+        assertEquals("1", absent.orElseGet(ages, m -> String.valueOf(m.size())));
+    }
+
+    @Test
+    public void contextMayBeNull() throws Exception {
+        assertTrue(present.map(null, (v, c) -> v + c).isPresent());
+    }
+
+    private static Integer lookup(String name, Map<String, Integer> ages) {
+        return ages.get(name);
+    }
+}
@@ -0,0 +1,102 @@
+package com.github.jtail.utils;
+
+
+import com.github.jtail.utils.xfn.XOptional;
+import com.github.jtail.utils.xfn.XOptionalDouble;
+import com.github.jtail.utils.xfn.XOptionalInt;
+import com.github.jtail.utils.xfn.XOptionalLong;
+import org.junit.Test;
+
+import java.util.NoSuchElementException;
+import java.util.OptionalLong;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests for primitive specializations of {@link XOptional}
+ */
+public class XOptionalPrimitiveTest {
+    private XOptionalLong present = XOptionalLong.of(42L);
+    private XOptionalLong absent = XOptionalLong.empty();
+
+    @Test
+    public void empty() {
+        assertFalse(absent.isPresent());
+        assertEquals(absent, XOptionalLong.empty());
+        assertNotEquals(absent, present);
+        assertEquals(0, absent.hashCode());
+        assertEquals(7L, absent.orElse(7L));
+        assertEquals(7L, absent.orElseGet(() -> 7L));
+        assertFalse(absent.map(v -> v + 1).isPresent());
+        assertFalse(absent.mapToObj(Long::toString).isPresent());
+    }
+
+    @Test(expected = NoSuchElementException.class)
+    public void emptyGet() {
+        absent.getAsLong();
+    }
+
+    @Test(expected = CheckedException.class)
+    public void emptyOrElseThrow() throws Exception {
+        absent.orElseThrow(CheckedException::new);
+    }
+
+    @Test
+    public void present() throws Exception {
+        assertTrue(present.isPresent());
+        assertEquals(42L, present.getAsLong());
+        assertEquals(present, XOptionalLong.of(42L));
+        assertEquals(Long.hashCode(42L), present.hashCode());
+        assertTrue(present.toString().contains("42"));
+        assertEquals(42L, present.orElse(7L));
+        assertEquals(42L, present.orElseGet(null));
+        assertEquals(42L, present.orElseThrow(CheckedException::new));
+        assertEquals(43L, present.map(v -> v + 1).getAsLong());
+        assertEquals("42", present.mapToObj(Long::toString).get());
+        assertFalse(present.filter(v -> v < 0).isPresent());
+        assertEquals(XOptionalLong.empty(), present.flatMap(v -> XOptionalLong.empty()));
+    }
+
+    @Test
+    public void ifPresent() throws Exception {
+        AtomicLong marker = new AtomicLong();
+        present.ifPresent(marker::set).orElse(this::fail);
+        assertEquals(42L, marker.get());
+        absent.ifPresent(v -> fail()).orElse(() -> marker.set(-1));
+        assertEquals(-1L, marker.get());
+    }
+
+    @Test(expected = CheckedException.class)
+    public void mapException() throws Exception {
+        present.map(v -> {throw new CheckedException();});
+    }
+
+    @Test
+    public void conversions() {
+        assertEquals(OptionalLong.of(42L), present.toOptionalLong());
+        assertEquals(OptionalLong.empty(), absent.toOptionalLong());
+        assertEquals(present, XOptionalLong.from(OptionalLong.of(42L)));
+        assertEquals(present, XOptionalLong.from(XOptional.of(42L)));
+        assertEquals(absent, XOptionalLong.ofNullable(null));
+        assertEquals(XOptional.of(42L), present.boxed());
+        assertEquals(XOptional.empty(), absent.boxed());
+        assertEquals(XOptionalInt.of(4), XOptional.of("Duke").mapToInt(String::length));
+        assertEquals(XOptionalLong.empty(), XOptional.<String>empty().mapToLong(Long::parseLong));
+        assertEquals(XOptionalDouble.of(0.5), XOptional.of("0.5").mapToDouble(Double::parseDouble));
+    }
+
+    @Test
+    public void doubleEquality() {
+        assertEquals(XOptionalDouble.of(Double.NaN), XOptionalDouble.of(Double.NaN));
+        assertNotEquals(XOptionalDouble.of(0.0), XOptionalDouble.of(-0.0));
+        assertNotEquals(XOptionalDouble.of(0.0), XOptionalDouble.empty());
+    }
+
+    private void fail() {
+        throw new ObscureException();
+    }
+}
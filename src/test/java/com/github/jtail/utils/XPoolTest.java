@@ -0,0 +1,288 @@
+package com.github.jtail.utils;
+
+import com.github.jtail.utils.concurrent.PoolExhaustedException;
+import com.github.jtail.utils.concurrent.XPool;
+import org.junit.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Tests for {@link XPool}
+ */
+public class XPoolTest {
+    private final AtomicInteger ids = new AtomicInteger();
+    private final List<Resource> destroyed = new ArrayList<>();
+
+    private XPool.Builder<Resource, CheckedException> builder() {
+        return XPool.builder("test", () -> new Resource(ids.incrementAndGet()), this::destroy);
+    }
+
+    private synchronized void destroy(Resource resource) {
+        destroyed.add(resource);
+    }
+
+    @Test
+    public void reusedByThread() throws Exception {
+        try (XPool<Resource, CheckedException> pool = builder().maxSize(2).build()) {
+            Resource first;
+            try (XPool.Lease<Resource> lease = pool.borrow()) {
+                first = lease.get();
+            }
+            try (XPool.Lease<Resource> lease = pool.borrow()) {
+                assertSame(first, lease.get());
+                assertEquals(1, pool.borrowed());
+            }
+            assertEquals(1, pool.created());
+            assertEquals(0, pool.borrowed());
+        }
+        assertEquals(1, destroyed.size());
+    }
+
+    @Test
+    public void bounded() throws Exception {
+        XPool<Resource, CheckedException> pool = builder().maxSize(2).maxWait(Duration.ofMillis(20)).build();
+        XPool.Lease<Resource> first = pool.borrow();
+        XPool.Lease<Resource> second = pool.borrow();
+        assertNotSame(first.get(), second.get());
+        assertEquals(2, pool.size());
+        try {
+            pool.borrow();
+            fail();
+        } catch (PoolExhaustedException expected) {
+            // both borrowed
+        }
+        second.close();
+        first.close();
+        try (XPool.Lease<Resource> lease = pool.borrow(); XPool.Lease<Resource> other = pool.borrow()) {
+            assertNotSame(lease.get(), other.get());
+        }
+        assertEquals(2, pool.created());
+    }
+
+    @Test
+    public void waitsForReturn() throws Exception {
+        XPool<Resource, CheckedException> pool = builder().maxSize(1).build();
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            XPool.Lease<Resource> lease = pool.borrow();
+            CountDownLatch waiting = new CountDownLatch(1);
+            Future<Resource> other = executor.submit(() -> {
+                waiting.countDown();
+                return pool.withResource(r -> r);
+            });
+            waiting.await();
+            Thread.sleep(20);
+            assertFalse(other.isDone());
+            Resource resource = lease.get();
+            lease.close();
+            assertSame("Taken from the thread keeping it", resource, other.get(1, TimeUnit.SECONDS));
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void releasedOnException() throws Exception {
+        XPool<Resource, CheckedException> pool = builder().maxSize(1).maxWait(Duration.ZERO).build();
+        try {
+            pool.withResource(r -> {
+                throw new CheckedException();
+            });
+            fail();
+        } catch (CheckedException expected) {
+            // released anyway
+        }
+        assertEquals(0, pool.borrowed());
+        assertEquals(1, pool.withResource(r -> r.id).intValue());
+    }
+
+    @Test
+    public void factoryFailureReleasesPermit() throws Exception {
+        AtomicInteger attempts = new AtomicInteger();
+        XPool<Resource, CheckedException> pool = XPool.<Resource, CheckedException>builder("failing", () -> {
+            if (attempts.incrementAndGet() == 1) {
+                throw new CheckedException();
+            }
+            return new Resource(attempts.get());
+        }, this::destroy).maxSize(1).maxWait(Duration.ZERO).build();
+        try {
+            pool.borrow();
+            fail();
+        } catch (CheckedException expected) {
+            // nothing created
+        }
+        assertEquals(0, pool.size());
+        assertEquals(2, pool.withResource(r -> r.id).intValue());
+    }
+
+    @Test
+    public void invalidReplaced() throws Exception {
+        XPool<Resource, CheckedException> pool = builder().validateOnBorrow(r -> r.valid).build();
+        Resource first = pool.withResource(r -> r);
+        first.valid = false;
+        Resource second = pool.withResource(r -> r);
+        assertNotSame(first, second);
+        assertEquals(1, pool.size());
+        assertEquals(1, destroyed.size());
+        assertSame(first, destroyed.get(0));
+
+        XPool.Lease<Resource> lease = pool.borrow();
+        lease.invalidate();
+        assertEquals(0, pool.size());
+        assertEquals(0, pool.borrowed());
+        try {
+            lease.close();
+            fail();
+        } catch (IllegalStateException expected) {
+            // already given back
+        }
+    }
+
+    @Test
+    public void throwingValidatorDestroys() throws Exception {
+        XPool<Resource, CheckedException> pool = builder().maxSize(2).maxWait(Duration.ofMillis(20))
+                .validateOnBorrow(r -> {
+                    if (!r.valid) {
+                        throw new ObscureException();
+                    }
+                    return true;
+                }).build();
+        for (int i = 0; i < 3; i++) {
+            pool.withResource(r -> r.valid = false);
+            try {
+                pool.borrow();
+                fail();
+            } catch (ObscureException expected) {
+                // resource destroyed
+            }
+            assertEquals(0, pool.size());
+            assertEquals(0, pool.borrowed());
+        }
+        assertEquals(3, destroyed.size());
+        try (XPool.Lease<Resource> lease = pool.borrow(); XPool.Lease<Resource> other = pool.borrow()) {
+            assertNotSame(lease.get(), other.get());
+        }
+    }
+
+    @Test
+    public void idleEvicted() throws Exception {
+        AtomicLong time = new AtomicLong();
+        XPool<Resource, CheckedException> pool = builder().maxSize(4).maxIdle(Duration.ofMinutes(1))
+                .ticker(time::get).build();
+        XPool.Lease<Resource> kept = pool.borrow();
+        XPool.Lease<Resource> stacked = pool.borrow();
+        XPool.Lease<Resource> recent = pool.borrow();
+        kept.close();
+        stacked.close();
+        time.addAndGet(TimeUnit.SECONDS.toNanos(30));
+        recent.close();
+        time.addAndGet(TimeUnit.SECONDS.toNanos(30));
+        pool.evictIdle();
+        assertEquals(1, pool.size());
+        assertEquals(2, destroyed.size());
+        assertSame(recent.get(), pool.withResource(r -> r));
+        pool.close();
+    }
+
+    @Test
+    public void closedDuringEviction() throws Exception {
+        AtomicLong time = new AtomicLong();
+        AtomicReference<XPool<Resource, CheckedException>> closing = new AtomicReference<>();
+        XPool<Resource, CheckedException> pool = XPool.<Resource, CheckedException>builder("closing",
+                () -> new Resource(ids.incrementAndGet()), r -> {
+                    destroy(r);
+                    if (r.id == 2) {
+                        closing.get().close();
+                    }
+                }).maxSize(3).maxIdle(Duration.ofMinutes(1)).ticker(time::get).build();
+        closing.set(pool);
+        XPool.Lease<Resource> first = pool.borrow();
+        XPool.Lease<Resource> second = pool.borrow();
+        XPool.Lease<Resource> third = pool.borrow();
+        first.close();
+        second.close();
+        time.addAndGet(TimeUnit.MINUTES.toNanos(1));
+        third.close();
+        // the fresh third resource is taken off the stack when the second one closes the pool
+        pool.evictIdle();
+        assertEquals(0, pool.size());
+        assertEquals(3, destroyed.size());
+    }
+
+    @Test(timeout = 10_000)
+    public void evictedOffTimer() throws Exception {
+        List<String> threads = new CopyOnWriteArrayList<>();
+        XPool<Resource, CheckedException> pool = XPool.<Resource, CheckedException>builder("evicted",
+                () -> new Resource(ids.incrementAndGet()), r -> threads.add(Thread.currentThread().getName()))
+                .maxIdle(Duration.ofMillis(20)).build();
+        try {
+            pool.withResource(r -> r);
+            while (threads.isEmpty()) {
+                Thread.sleep(5);
+            }
+            assertTrue(threads.get(0), threads.get(0).startsWith("xpool-evictor-"));
+        } finally {
+            pool.close();
+        }
+    }
+
+    @Test
+    public void concurrentBorrowers() throws Exception {
+        XPool<Resource, CheckedException> pool = builder().maxSize(3).build();
+        Set<Resource> inUse = ConcurrentHashMap.newKeySet();
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < 8; t++) {
+                futures.add(executor.submit(() -> {
+                    for (int i = 0; i < 20_000; i++) {
+                        pool.withResource(r -> {
+                            assertTrue("Lent twice", inUse.add(r));
+                            inUse.remove(r);
+                            return null;
+                        });
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get(30, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        assertTrue(pool.created() <= 3);
+        assertEquals(0, pool.borrowed());
+        pool.close();
+        assertEquals(pool.created(), destroyed.size());
+    }
+
+    private static final class Resource {
+        final int id;
+        volatile boolean valid = true;
+
+        Resource(int id) {
+            this.id = id;
+        }
+    }
+}
@@ -0,0 +1,157 @@
+package com.github.jtail.utils;
+
+
+import com.github.jtail.utils.concurrent.XExecutor;
+import com.github.jtail.utils.concurrent.XScope;
+import org.junit.After;
+import org.junit.Test;
+
+import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Tests for {@link XScope}
+ */
+public class XScopeTest {
+    private final XExecutor executor = XExecutor.newPerTaskExecutor("scope-");
+    private final AtomicInteger interrupted = new AtomicInteger();
+    private volatile CountDownLatch blocked = new CountDownLatch(1);
+
+    @After
+    public void shutdown() {
+        executor.close();
+    }
+
+    @Test
+    public void allSucceed() throws Exception {
+        try (XScope<Object, CheckedException> scope = XScope.allOf(executor)) {
+            XScope.Subtask<String> name = scope.fork(() -> "Duke");
+            XScope.Subtask<Integer> age = scope.fork(() -> 42);
+            scope.join();
+            assertEquals("Duke", name.get());
+            assertEquals(Integer.valueOf(42), age.get());
+            assertEquals(XScope.Subtask.State.SUCCESS, age.state());
+        }
+    }
+
+    @Test
+    public void failureCancelsSiblings() throws Exception {
+        CheckedException failure = new CheckedException();
+        blocked = new CountDownLatch(2);
+        long start = System.nanoTime();
+        XScope.Subtask<Boolean> slow;
+        try (XScope<Object, Exception> scope = XScope.allOf(executor)) {
+            slow = scope.fork(this::block);
+            scope.fork(this::block);
+            scope.fork(() -> {
+                blocked.await();
+                throw failure;
+            });
+            try {
+                scope.join();
+                fail("Exception expected");
+            } catch (Exception e) {
+                assertSame(failure, e);
+            }
+        }
+        assertEquals(2, interrupted.get());
+        assertEquals(XScope.Subtask.State.UNAVAILABLE, slow.state());
+        assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(10));
+    }
+
+    @Test
+    public void allFailed() throws Exception {
+        CheckedException first = new CheckedException();
+        CheckedException second = new CheckedException();
+        try (XScope<Object, CheckedException> scope = XScope.anyOf(executor)) {
+            scope.fork(() -> {
+                throw first;
+            });
+            scope.fork(() -> {
+                throw second;
+            });
+            try {
+                scope.join();
+                fail("Exception expected");
+            } catch (CheckedException e) {
+                Throwable other = e == first ? second : first;
+                assertArrayEquals(new Throwable[]{other}, e.getSuppressed());
+            }
+        }
+    }
+
+    @Test
+    public void anySucceeds() throws Exception {
+        try (XScope<String, Exception> scope = XScope.anyOf(executor)) {
+            scope.fork(() -> {
+                throw new CheckedException();
+            });
+            scope.fork(() -> {
+                block();
+                return "slow";
+            });
+            scope.fork(() -> {
+                blocked.await();
+                return "fast";
+            });
+            scope.join();
+            assertEquals("fast", scope.result());
+        }
+        assertEquals(1, interrupted.get());
+    }
+
+    @Test
+    public void deadline() throws Exception {
+        try (XScope<Object, InterruptedException> scope = XScope.allOf(executor, Duration.ofMillis(50))) {
+            scope.fork(() -> "fast");
+            scope.fork(this::block);
+            try {
+                scope.join();
+                fail("Exception expected");
+            } catch (TimeoutException expected) {
+                // slow subtask abandoned
+            }
+        }
+        assertEquals(1, interrupted.get());
+    }
+
+    @Test
+    public void forkAfterShutdown() throws Exception {
+        try (XScope<Object, CheckedException> scope = XScope.anyOf(executor)) {
+            scope.fork(() -> "first");
+            scope.join();
+            XScope.Subtask<String> late = scope.fork(() -> "late");
+            assertEquals(XScope.Subtask.State.UNAVAILABLE, late.state());
+            assertEquals("first", scope.result());
+        }
+    }
+
+    @Test(expected = ObscureException.class)
+    public void uncheckedRethrown() throws Exception {
+        try (XScope<Object, CheckedException> scope = XScope.allOf(executor)) {
+            scope.fork(() -> {
+                throw new ObscureException();
+            });
+            scope.join();
+        }
+    }
+
+    private Boolean block() throws InterruptedException {
+        blocked.countDown();
+        try {
+            return new CountDownLatch(1).await(1, TimeUnit.MINUTES);
+        } catch (InterruptedException e) {
+            interrupted.incrementAndGet();
+            throw e;
+        }
+    }
+}
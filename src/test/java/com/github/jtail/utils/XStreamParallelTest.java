@@ -0,0 +1,167 @@
+package com.github.jtail.utils;
+
+
+import com.github.jtail.utils.xfn.XStream;
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Tests for parallel evaluation of {@link XStream}
+ */
+public class XStreamParallelTest {
+    private final ForkJoinPool pool = new ForkJoinPool(4);
+    private final List<Integer> numbers = IntStream.range(0, 10_000).boxed().collect(Collectors.toList());
+
+    @After
+    public void shutdown() {
+        pool.shutdownNow();
+    }
+
+    @Test
+    public void ordered() throws Exception {
+        List<Integer> result = XStream.<Integer, CheckedException>of(numbers)
+                .parallel(pool)
+                .map(i -> i * 2)
+                .filter(i -> i % 3 != 0)
+                .toList();
+        assertEquals(numbers.stream().map(i -> i * 2).filter(i -> i % 3 != 0).collect(Collectors.toList()), result);
+    }
+
+    @Test
+    public void terminals() throws Exception {
+        assertTrue(XStream.of(numbers).parallel(pool).isParallel());
+        assertEquals(10_000, XStream.of(numbers).parallel(pool).count());
+        assertEquals(Integer.valueOf(49_995_000), XStream.of(numbers).parallel(pool).reduce(0, Integer::sum));
+        assertEquals(Integer.valueOf(9_999), XStream.of(numbers).parallel(pool).max(Comparator.naturalOrder()).get());
+        assertTrue(XStream.of(numbers).parallel(pool).anyMatch(i -> i == 7_777));
+        assertFalse(XStream.of(numbers).parallel(pool).anyMatch(i -> i < 0));
+        assertTrue(XStream.of(numbers).parallel(pool).allMatch(i -> i >= 0));
+        assertEquals(Integer.valueOf(0), XStream.of(numbers).parallel(pool).findFirst().get());
+    }
+
+    @Test
+    public void unordered() throws Exception {
+        Map<Integer, Integer> result = XStream.of(numbers)
+                .parallel(pool)
+                .unordered()
+                .collect(Collectors.toConcurrentMap(i -> i, i -> i * i));
+        assertEquals(10_000, result.size());
+        assertEquals(Integer.valueOf(81), result.get(9));
+    }
+
+    @Test
+    public void statefulBarrier() throws Exception {
+        List<Integer> result = XStream.of(numbers)
+                .parallel(pool)
+                .map(i -> i % 100)
+                .distinct()
+                .sorted(Comparator.reverseOrder())
+                .skip(1)
+                .limit(3)
+                .map(i -> i + 1)
+                .toList();
+        assertEquals(Arrays.asList(99, 98, 97), result);
+    }
+
+    @Test
+    public void statefulBeforeParallel() throws Exception {
+        assertEquals(10, XStream.of(numbers).limit(10).parallel(pool).count());
+        assertEquals(10, XStream.of(numbers).skip(9990).parallel(pool).count());
+        List<Integer> sorted = XStream.of(numbers).sorted(Comparator.reverseOrder()).parallel(pool).toList();
+        assertEquals(Integer.valueOf(9_999), sorted.get(0));
+        assertEquals(Integer.valueOf(0), sorted.get(9_999));
+        assertEquals(100, XStream.of(numbers).map(i -> i % 100).distinct().parallel(pool).map(i -> -i).count());
+    }
+
+    @Test(timeout = 10_000)
+    public void infiniteLimited() throws Exception {
+        AtomicInteger counter = new AtomicInteger();
+        assertEquals(5, XStream.generate(counter::incrementAndGet).parallel(pool).limit(5).count());
+        counter.set(0);
+        assertEquals(Arrays.asList(5, 6, 7), XStream.generate(counter::incrementAndGet)
+                .parallel(pool).skip(3).limit(3).map(i -> i + 1).toList());
+        counter.set(0);
+        assertEquals(Arrays.asList(2, 1), XStream.generate(counter::incrementAndGet).limit(2)
+                .parallel(pool).sorted(Comparator.reverseOrder()).toList());
+    }
+
+    @Test
+    public void customPool() throws Exception {
+        AtomicInteger foreign = new AtomicInteger();
+        XStream.of(numbers).parallel(pool).forEach(i -> {
+            if (ForkJoinTask.inForkJoinPool() && ForkJoinTask.getPool() != pool) {
+                foreign.incrementAndGet();
+            }
+        });
+        assertEquals(0, foreign.get());
+    }
+
+    @Test
+    public void firstFailureCancels() {
+        AtomicInteger processed = new AtomicInteger();
+        CheckedException failure = new CheckedException();
+        try {
+            XStream.<Integer, CheckedException>of(numbers).parallel(pool).forEach(i -> {
+                if (i == 0) {
+                    throw failure;
+                }
+                processed.incrementAndGet();
+                sleep();
+            });
+            fail("Exception expected");
+        } catch (CheckedException e) {
+            assertSame(failure, e);
+        }
+        assertTrue("Processed " + processed.get(), processed.get() < 1000);
+    }
+
+    @Test
+    public void otherFailuresSuppressed() {
+        try {
+            XStream.<Integer, CheckedException>of(numbers).parallel(pool).forEach(i -> {
+                if (i % 500 == 0) {
+                    throw new CheckedException();
+                }
+            });
+            fail("Exception expected");
+        } catch (CheckedException e) {
+            for (Throwable suppressed : e.getSuppressed()) {
+                assertTrue(suppressed instanceof CheckedException);
+            }
+        }
+    }
+
+    @Test(expected = ObscureException.class)
+    public void uncheckedFailure() throws Exception {
+        XStream.of(numbers).parallel(pool).map(i -> {
+            if (i == 5_000) {
+                throw new ObscureException();
+            }
+            return i;
+        }).count();
+    }
+
+    private static void sleep() {
+        try {
+            Thread.sleep(1);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,113 @@
+package com.github.jtail.utils;
+
+
+import com.github.jtail.utils.xfn.XOptional;
+import com.github.jtail.utils.xfn.XStream;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Tests for sequential {@link XStream}
+ */
+public class XStreamTest {
+    private final List<String> names = Arrays.asList("Duke", "Tux", "Moby", "Gopher", "Tux");
+
+    @Test
+    public void pipeline() throws Exception {
+        List<Integer> result = XStream.<String, CheckedException>of(names)
+                .filter(s -> !s.startsWith("G"))
+                .map(String::length)
+                .toList();
+        assertEquals(Arrays.asList(4, 3, 4, 3), result);
+    }
+
+    @Test
+    public void terminals() throws Exception {
+        assertEquals(5, XStream.of(names).count());
+        assertEquals("DukeTuxMobyGopherTux", XStream.of(names).reduce("", String::concat));
+        assertEquals(XOptional.of("DukeTux"), XStream.of("Duke", "Tux").reduce(String::concat));
+        assertEquals(XOptional.empty(), XStream.<String, RuntimeException>empty().reduce(String::concat));
+        assertEquals("Duke,Tux", XStream.of("Duke", "Tux").collect(Collectors.joining(",")));
+        assertEquals(XOptional.of("Duke"), XStream.of(names).findFirst());
+        assertEquals(XOptional.of("Gopher"), XStream.of(names).max(Comparator.comparing(String::length)));
+        assertEquals(XOptional.of("Duke"), XStream.of(names).min(Comparator.naturalOrder()));
+        assertTrue(XStream.of(names).anyMatch(s -> s.equals("Moby")));
+        assertTrue(XStream.of(names).allMatch(s -> s.length() > 2));
+        assertTrue(XStream.of(names).noneMatch(String::isEmpty));
+        assertFalse(XStream.<String, RuntimeException>empty().anyMatch(s -> true));
+    }
+
+    @Test
+    public void statefulStages() throws Exception {
+        assertEquals(Arrays.asList("Tux", "Moby"), XStream.of(names).skip(1).limit(2).toList());
+        assertEquals(Arrays.asList("Duke", "Tux", "Moby", "Gopher"), XStream.of(names).distinct().toList());
+        assertEquals(Arrays.asList("Duke", "Gopher"),
+                XStream.of(names).sorted(Comparator.naturalOrder()).limit(2).toList());
+    }
+
+    @Test
+    public void flatMap() throws Exception {
+        List<Character> result = XStream.<String, CheckedException>of("ab", "", "c")
+                .flatMap(s -> XStream.from(s.chars().mapToObj(c -> (char) c)))
+                .toList();
+        assertEquals(Arrays.asList('a', 'b', 'c'), result);
+        assertEquals(Arrays.asList('a'), XStream.of("ab", "c")
+                .flatMap(s -> XStream.from(s.chars().mapToObj(c -> (char) c)))
+                .limit(1)
+                .toList());
+    }
+
+    @Test
+    public void shortCircuit() throws Exception {
+        AtomicInteger seen = new AtomicInteger();
+        assertEquals(XOptional.of("Tux"), XStream.of(names).peek(s -> seen.incrementAndGet()).skip(1).findFirst());
+        assertEquals(2, seen.get());
+
+        AtomicInteger generated = new AtomicInteger();
+        assertEquals(Arrays.asList(1, 2, 3), XStream.generate(generated::incrementAndGet).limit(3).toList());
+        assertEquals(3, generated.get());
+    }
+
+    @Test
+    public void exceptionStopsPipeline() {
+        List<String> processed = new ArrayList<>();
+        CheckedException failure = new CheckedException();
+        try {
+            XStream.<String, CheckedException>from(Stream.of("Duke", "Tux", "Moby"))
+                    .map(s -> {
+                        if (s.equals("Tux")) {
+                            throw failure;
+                        }
+                        return s;
+                    })
+                    .forEach(processed::add);
+            fail("Exception expected");
+        } catch (CheckedException e) {
+            assertSame(failure, e);
+        }
+        assertEquals(Arrays.asList("Duke"), processed);
+    }
+
+    @Test(expected = CheckedException.class)
+    public void terminalException() throws Exception {
+        XStream.<String, CheckedException>of(names).forEach(s -> {throw new CheckedException();});
+    }
+
+    @Test(expected = CheckedException.class)
+    public void sourceException() throws Exception {
+        XStream.<String, CheckedException>generate(() -> {throw new CheckedException();}).findFirst();
+    }
+}
@@ -0,0 +1,124 @@
+package com.github.jtail.utils;
+
+
+import com.github.jtail.utils.xfn.XOptional;
+import com.github.jtail.utils.xfn.XTry;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.NoSuchElementException;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests for {@link XTry}
+ */
+public class XTryTest {
+    private final CheckedException failure = new CheckedException();
+
+    @Test
+    public void success() throws Exception {
+        XTry<Integer, CheckedException> result = XTry.of(() -> parse("42"));
+        assertTrue(result.isSuccess());
+        assertEquals(Integer.valueOf(42), result.get());
+        assertEquals(XOptional.of(42), result.toOptional());
+    }
+
+    @Test
+    public void failure() {
+        XTry<Integer, CheckedException> result = XTry.of(() -> parse("x"));
+        assertTrue(result.isFailure());
+        assertFalse(result.toOptional().isPresent());
+        assertEquals(Integer.valueOf(-1), result.orElse(-1));
+        try {
+            result.get();
+        } catch (CheckedException e) {
+            return;
+        }
+        throw new AssertionError("Exception expected");
+    }
+
+    @Test(expected = ObscureException.class)
+    public void uncheckedPropagated() {
+        XTry.<Integer, CheckedException>of(() -> {
+            throw new ObscureException();
+        });
+    }
+
+    @Test
+    public void uncheckedCapturedByType() {
+        ObscureException obscure = new ObscureException();
+        XTry<Integer, ObscureException> result = XTry.of(ObscureException.class, () -> {
+            throw obscure;
+        });
+        assertSame(obscure, result.getFailure());
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void otherTypesPropagated() {
+        XTry.of(ObscureException.class, () -> {
+            throw new IllegalStateException();
+        });
+    }
+
+    @Test
+    public void map() throws Exception {
+        assertEquals(Integer.valueOf(84), XTry.<Integer, CheckedException>success(42).map(i -> i * 2).get());
+        assertSame(failure, XTry.<Integer, CheckedException>success(42).map(i -> {
+            throw failure;
+        }).getFailure());
+        assertSame(failure, XTry.<Integer, CheckedException>failure(failure).map(i -> i * 2).getFailure());
+    }
+
+    @Test
+    public void flatMap() throws Exception {
+        assertEquals(Integer.valueOf(7), XTry.<String, CheckedException>success("7").flatMap(s -> XTry.of(() -> parse(s))).get());
+        assertTrue(XTry.<String, CheckedException>success("x").flatMap(s -> XTry.of(() -> parse(s))).isFailure());
+    }
+
+    @Test
+    public void recover() throws Exception {
+        assertEquals(Integer.valueOf(0), XTry.<Integer, CheckedException>failure(failure).recover(e -> 0).get());
+        assertEquals(Integer.valueOf(1), XTry.<Integer, CheckedException>success(1).recover(e -> 0).get());
+    }
+
+    @Test
+    public void mapFailure() {
+        IOException io = XTry.<Integer, CheckedException>failure(failure).mapFailure(IOException::new).getFailure();
+        assertSame(failure, io.getCause());
+    }
+
+    @Test
+    public void callbacks() throws Exception {
+        AtomicReference<Object> seen = new AtomicReference<>();
+        XTry.<Integer, CheckedException>success(1).ifSuccess(seen::set).ifFailure(seen::set);
+        assertEquals(1, seen.get());
+        XTry.<Integer, CheckedException>failure(failure).ifSuccess(seen::set).ifFailure(seen::set);
+        assertSame(failure, seen.get());
+    }
+
+    @Test(expected = NoSuchElementException.class)
+    public void noFailure() {
+        XTry.success(1).getFailure();
+    }
+
+    @Test
+    public void nullValue() throws Exception {
+        XTry<String, CheckedException> result = XTry.success(null);
+        assertTrue(result.isSuccess());
+        assertEquals(null, result.get());
+        assertFalse(result.toOptional().isPresent());
+    }
+
+    private static Integer parse(String s) throws CheckedException {
+        try {
+            return Integer.valueOf(s);
+        } catch (NumberFormatException e) {
+            throw new CheckedException();
+        }
+    }
+}